@@ -0,0 +1,134 @@
+package uk.ac.soton.comp1206;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.function.LongFunction;
+import uk.ac.soton.comp1206.bot.AutoPlayer;
+import uk.ac.soton.comp1206.bot.ExpectimaxSearch;
+import uk.ac.soton.comp1206.bot.Player;
+import uk.ac.soton.comp1206.bot.RandomPlayer;
+import uk.ac.soton.comp1206.engine.PieceSet;
+import uk.ac.soton.comp1206.sim.BatchSimulation;
+import uk.ac.soton.comp1206.sim.ResultWriter;
+import uk.ac.soton.comp1206.sim.SimulationResults;
+
+/**
+ * Command line entry point that plays a batch of games with a bot and no window, then writes the distribution of the
+ * scores, levels, lines and game lengths. It is used to tune the bots and the scoring rules.
+ * Usage: Simulator [--games N] [--seed S] [--bot greedy|random|expectimax] [--size COLSxROWS] [--threads N]
+ * [--virtual] [--think MS] [--max-pieces N] [--budget MS] [--depth N] [--pieces SET] [--out FILE.csv|FILE.json]
+ */
+public class Simulator {
+
+    /**
+     * Only run from main
+     */
+    private Simulator() {
+    }
+
+    /**
+     * Run a simulation
+     * @param args commandline arguments
+     * @throws IOException if the results can't be written
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = 1000, cols = 5, rows = 5, maxPieces = 10_000, depth = 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 0, think = 1000, budget = 100;
+        boolean virtual = false;
+        String bot = "greedy", pieces = PieceSet.STANDARD;
+        Path out = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--virtual")) {
+                virtual = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--games" -> games = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--bot" -> bot = value;
+                case "--size" -> {
+                    String[] size = value.toLowerCase().split("x");
+                    cols = Integer.parseInt(size[0]);
+                    rows = Integer.parseInt(size.length > 1 ? size[1] : size[0]);
+                }
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--think" -> think = Long.parseLong(value);
+                case "--max-pieces" -> maxPieces = Integer.parseInt(value);
+                case "--budget" -> budget = Long.parseLong(value);
+                case "--depth" -> depth = Integer.parseInt(value);
+                case "--pieces" -> pieces = value;
+                case "--out" -> out = Path.of(value);
+                default -> usage("Unknown option " + arg);
+            }
+        }
+
+        LongFunction<Player> players = createPlayers(bot, budget, depth);
+        if (players == null) {
+            usage("Unknown bot " + bot);
+        }
+        BatchSimulation simulation = new BatchSimulation(cols, rows, players);
+        simulation.setThink(think);
+        simulation.setMaxPieces(maxPieces);
+        PieceSet pieceSet = PieceSet.load(pieces);
+        simulation.setPieceSet(pieceSet);
+
+        System.err.printf("Playing %d games of %dx%d with %s and %s pieces, seeds %d to %d%n", games, cols, rows,
+            bot, pieceSet, seed, seed + games - 1);
+        ExecutorService executor = BatchSimulation.createExecutor(threads, virtual);
+        long start = System.nanoTime();
+        SimulationResults results;
+        try {
+            results = simulation.run(seed, games, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Played %d games in %.1f s (%.0f games per second)%n", results.getGames(), seconds,
+            results.getGames() / seconds);
+
+        if (out == null) {
+            ResultWriter.writeCsv(results, new PrintWriter(System.out));
+        } else {
+            ResultWriter.write(results, out);
+            System.err.println("Wrote " + out);
+        }
+    }
+
+    /**
+     * Get what makes the players for a bot
+     * @param bot the name of the bot
+     * @param budget milliseconds the expectimax bot may think per move
+     * @param depth deepest search of the expectimax bot
+     * @return makes a player from a seed, null if there is no such bot
+     */
+    private static LongFunction<Player> createPlayers(String bot, long budget, int depth) {
+        return switch (bot) {
+            case "greedy" -> seed -> new AutoPlayer();
+            case "random" -> seed -> new RandomPlayer(~seed);
+            case "expectimax" -> seed -> new ExpectimaxSearch(budget, depth);
+            default -> null;
+        };
+    }
+
+    /**
+     * Print the usage and exit
+     * @param problem what was wrong with the arguments
+     */
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: Simulator [--games N] [--seed S] [--bot greedy|random|expectimax] "
+            + "[--size COLSxROWS] [--threads N] [--virtual] [--think MS] [--max-pieces N] [--budget MS] [--depth N] "
+            + "[--pieces SET] [--out FILE.csv|FILE.json]");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,226 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.util.SplittableRandom;
+import uk.ac.soton.comp1206.engine.BoardBatch;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.Grid;
+import uk.ac.soton.comp1206.engine.MoveList;
+import uk.ac.soton.comp1206.engine.PieceSet;
+import uk.ac.soton.comp1206.engine.PieceSource;
+
+/**
+ * Checks a BoardBatch against GameEngine and then compares their speed.
+ * First every board of a batch is played move for move alongside its own GameEngine, with random legal moves and a
+ * lost life whenever the current piece doesn't fit, and the blocks, score, multiplier, level, lives and lines cleared
+ * are compared after every step. Random moves, legal or not, are also checked with canPlay. Then the same stream of
+ * random moves is tried on the batch and on one GameEngine per board, and the moves per second of each are reported.
+ * Usage: BoardBatchBenchmark [boards] [steps]
+ */
+public class BoardBatchBenchmark {
+
+  /**
+   * Run the check and the benchmark
+   * @param args number of boards (default 4096) and steps per round (default 200)
+   */
+  public static void main(String[] args) {
+    int boards = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+    int steps = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+    for (int[] size : new int[][] {{5, 5}, {8, 8}, {6, 4}}) {
+      long checked = check(Math.min(boards, 1024), size[0], size[1], PieceSet.standard(), 1206 + size[0]);
+      System.out.printf("%dx%d: %d moves matched GameEngine%n", size[0], size[1], checked);
+    }
+    PieceSet big = PieceSet.load("pentomino");
+    long checked = check(Math.min(boards, 1024), 8, 8, big, 1206);
+    System.out.printf("8x8 %s: %d moves matched GameEngine%n", big, checked);
+    benchmark(boards, steps, 5, 5);
+  }
+
+  /**
+   * Play every board of a batch alongside a GameEngine until every game is over
+   * @param boards number of boards
+   * @param cols number of columns
+   * @param rows number of rows
+   * @param set the set the pieces come from
+   * @param seed seed of the pieces and moves
+   * @return the number of moves compared
+   */
+  private static long check(int boards, int cols, int rows, PieceSet set, long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    BoardBatch batch = new BoardBatch(boards, cols, rows, set);
+    GameEngine[] engines = new GameEngine[boards];
+    int reach = set.getCentre() + 1;
+    for (int board = 0; board < boards; board++) {
+      engines[board] = new GameEngine(cols, rows, PieceSource.random(random.nextLong(), set));
+      engines[board].start();
+    }
+    int[] pieces = new int[boards], xs = new int[boards], ys = new int[boards];
+    boolean[] result = new boolean[boards], timeouts = new boolean[boards];
+    MoveList moves = new MoveList();
+    long compared = 0;
+
+    for (boolean running = true; running; ) {
+      //Any move at all, checked against the grid
+      for (int board = 0; board < boards; board++) {
+        pieces[board] = random.nextInt(set.getCount() * GamePiece.ROTATIONS);
+        xs[board] = random.nextInt(cols + 2 * reach) - reach;
+        ys[board] = random.nextInt(rows + 2 * reach) - reach;
+      }
+      batch.canPlay(pieces, xs, ys, result);
+      for (int board = 0; board < boards; board++) {
+        GamePiece piece = set.createPiece(pieces[board] / GamePiece.ROTATIONS,
+            pieces[board] % GamePiece.ROTATIONS);
+        boolean expected = !engines[board].isOver()
+            && engines[board].getGrid().canPlayPiece(piece, xs[board], ys[board]);
+        if (result[board] != expected) {
+          fail(board, "canPlay of " + piece + " at " + xs[board] + "," + ys[board]);
+        }
+      }
+
+      //A random legal move of the current piece on every board, or a lost life if it doesn't fit
+      running = false;
+      for (int board = 0; board < boards; board++) {
+        GameEngine engine = engines[board];
+        timeouts[board] = false;
+        xs[board] = -2;
+        if (engine.isOver()) {
+          continue;
+        }
+        running = true;
+        if (engine.getGrid().legalMoves(engine.getCurrentPiece(), moves) == 0) {
+          timeouts[board] = true;
+          engine.timeout();
+          continue;
+        }
+        int move = random.nextInt(moves.size());
+        engine.rotate(moves.getRotation(move));
+        pieces[board] = BoardBatch.pieceCode(engine.getCurrentPiece());
+        xs[board] = moves.getX(move);
+        ys[board] = moves.getY(move);
+        if (!engine.play(xs[board], ys[board])) {
+          fail(board, "GameEngine refused a legal move");
+        }
+      }
+      batch.play(pieces, xs, ys, result);
+      batch.clear(result);
+      batch.loseLife(timeouts);
+
+      for (int board = 0; board < boards; board++) {
+        if (result[board] != (xs[board] != -2)) {
+          fail(board, "play");
+        }
+        if (result[board]) {
+          compared++;
+          if (batch.getLastLines(board) != engines[board].getLastCleared().getLines()
+              || batch.getLastBlocks(board) != engines[board].getLastCleared().getBlocks()) {
+            fail(board, "lines cleared");
+          }
+        }
+        compare(batch, board, engines[board]);
+      }
+    }
+    return compared;
+  }
+
+  /**
+   * Compare one board of a batch with an engine
+   * @param batch the batch
+   * @param board the board
+   * @param engine the engine
+   */
+  private static void compare(BoardBatch batch, int board, GameEngine engine) {
+    Grid grid = engine.getGrid();
+    for (int y = 0; y < grid.getRows(); y++) {
+      for (int x = 0; x < grid.getCols(); x++) {
+        boolean filled = (batch.getOccupancy(board) & (1L << (y * grid.getCols() + x))) != 0;
+        if (batch.get(board, x, y) != grid.get(x, y) || filled != (grid.get(x, y) != 0)) {
+          fail(board, "block " + x + "," + y);
+        }
+      }
+    }
+    if (batch.getScore(board) != engine.getScore() || batch.getMultiplier(board) != engine.getMultiplier()
+        || batch.getLevel(board) != engine.getLevel() || batch.getLives(board) != engine.getLives()
+        || batch.isOver(board) != engine.isOver()) {
+      fail(board, "counters");
+    }
+  }
+
+  /**
+   * Stop with a difference between the batch and the engine
+   * @param board the board
+   * @param what what differed
+   */
+  private static void fail(int board, String what) {
+    throw new IllegalStateException("Board " + board + " differs from GameEngine: " + what);
+  }
+
+  /**
+   * Try the same random moves on a batch and on one engine per board, and print the moves tried per second
+   * @param boards number of boards
+   * @param steps moves per board in each round
+   * @param cols number of columns
+   * @param rows number of rows
+   */
+  private static void benchmark(int boards, int steps, int cols, int rows) {
+    SplittableRandom random = new SplittableRandom(1206);
+    int[][] pieces = new int[steps][boards], xs = new int[steps][boards], ys = new int[steps][boards];
+    for (int step = 0; step < steps; step++) {
+      for (int board = 0; board < boards; board++) {
+        pieces[step][board] = random.nextInt(PieceSet.standard().getCount() * GamePiece.ROTATIONS);
+        xs[step][board] = random.nextInt(cols);
+        ys[step][board] = random.nextInt(rows);
+      }
+    }
+    GamePiece[] table = new GamePiece[PieceSet.standard().getCount() * GamePiece.ROTATIONS];
+    for (int code = 0; code < table.length; code++) {
+      table[code] = PieceSet.standard().createPiece(code / GamePiece.ROTATIONS, code % GamePiece.ROTATIONS);
+    }
+
+    BoardBatch batch = new BoardBatch(boards, cols, rows);
+    boolean[] played = new boolean[boards];
+    GameEngine[] engines = new GameEngine[boards];
+    long batchNanos = 0, engineNanos = 0, batchPlayed = 0, enginePlayed = 0;
+    for (int round = 0; round < 15; round++) {
+      batch.reset();
+      long start = System.nanoTime();
+      for (int step = 0; step < steps; step++) {
+        batch.play(pieces[step], xs[step], ys[step], played);
+        batch.clear(played);
+        if (round >= 5) {
+          for (boolean move : played) {
+            batchPlayed += move ? 1 : 0;
+          }
+        }
+      }
+      long batchTime = System.nanoTime() - start;
+
+      for (int board = 0; board < boards; board++) {
+        engines[board] = new GameEngine(cols, rows, PieceSource.random(board));
+        engines[board].start();
+      }
+      start = System.nanoTime();
+      for (int step = 0; step < steps; step++) {
+        for (int board = 0; board < boards; board++) {
+          engines[board].setCurrentPiece(table[pieces[step][board]]);
+          if (engines[board].play(xs[step][board], ys[step][board]) && round >= 5) {
+            enginePlayed++;
+          }
+        }
+      }
+      long engineTime = System.nanoTime() - start;
+
+      //The first rounds warm up the JIT
+      if (round >= 5) {
+        batchNanos += batchTime;
+        engineNanos += engineTime;
+      }
+    }
+    double moves = 10.0 * steps * boards;
+    System.out.printf("%d boards of %dx%d, %d steps per round%n", boards, cols, rows, steps);
+    System.out.printf("BoardBatch: %.1f M moves tried per second (%d played)%n", moves / batchNanos * 1e3,
+        batchPlayed);
+    System.out.printf("GameEngine: %.1f M moves tried per second (%d played)%n", moves / engineNanos * 1e3,
+        enginePlayed);
+  }
+}
@@ -0,0 +1,149 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.util.SplittableRandom;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.Grid;
+import uk.ac.soton.comp1206.engine.MoveList;
+import uk.ac.soton.comp1206.engine.PieceSet;
+
+/**
+ * Benchmark of finding every legal placement of a piece on large boards. Grid.legalPlacements and Grid.legalMoves check
+ * 64 columns at once with the row bitmasks; the baseline tries every rotation and position with Grid.canPlayPiece, one
+ * block at a time. All three are run on the same randomly filled boards, every piece in turn, and must agree.
+ * Usage: PlacementBenchmark [fill percent] [piece set]
+ */
+public class PlacementBenchmark {
+
+  /**
+   * The board sizes measured
+   */
+  private static final int[][] SIZES = {{32, 32}, {63, 40}, {64, 64}, {100, 30}, {128, 128}};
+
+  /**
+   * Run the benchmark
+   * @param args percentage of blocks filled (default 30), and the piece set (default standard)
+   */
+  public static void main(String[] args) {
+    int fill = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+    PieceSet set = PieceSet.load(args.length > 1 ? args[1] : PieceSet.STANDARD);
+    int pieces = set.getCount();
+    SplittableRandom random = new SplittableRandom(1206);
+
+    for (int[] size : SIZES) {
+      Grid grid = new Grid(size[0], size[1]);
+      for (int y = 0; y < grid.getRows(); y++) {
+        for (int x = 0; x < grid.getCols(); x++) {
+          if (random.nextInt(100) < fill) {
+            grid.set(x, y, set.createPiece(random.nextInt(pieces)).getValue());
+          }
+        }
+      }
+      MoveList fast = new MoveList(), slow = new MoveList();
+      long[] map = new long[grid.getPlacementRows() * grid.getPlacementWords()];
+      for (int piece = 0; piece < pieces; piece++) {
+        grid.legalMoves(set.createPiece(piece), fast);
+        perCell(grid, set.createPiece(piece), slow);
+        if (!fast.toString().equals(slow.toString())) {
+          throw new IllegalStateException("Moves differ on " + size[0] + "x" + size[1] + " for piece " + piece);
+        }
+        checkMap(grid, set.createPiece(piece), map);
+      }
+
+      //Repeat until each takes long enough to time, keeping the best of a few runs
+      double mapMicros = time(() -> {
+        for (int piece = 0; piece < pieces; piece++) {
+          for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            grid.legalPlacements(set.createPiece(piece, rotation), map);
+          }
+        }
+      });
+      double fastMicros = time(() -> {
+        for (int piece = 0; piece < pieces; piece++) {
+          grid.legalMoves(set.createPiece(piece), fast);
+        }
+      });
+      double slowMicros = time(() -> {
+        for (int piece = 0; piece < pieces; piece++) {
+          perCell(grid, set.createPiece(piece), slow);
+        }
+      });
+      System.out.printf("%dx%d, %d%% filled, per piece: map of 4 rotations %.2f us, move list %.2f us, "
+          + "per block %.2f us (%.0fx)%n", size[0], size[1], fill, mapMicros / pieces, fastMicros / pieces,
+          slowMicros / pieces, slowMicros / mapMicros);
+    }
+  }
+
+  /**
+   * Find every legal move by trying every rotation and position with canPlayPiece, in the order legalMoves lists them
+   * @param grid the grid
+   * @param piece the piece
+   * @param moves the list to clear and fill
+   */
+  private static void perCell(Grid grid, GamePiece piece, MoveList moves) {
+    moves.clear();
+    for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+      GamePiece rotated = piece.rotated(rotation);
+      boolean repeated = false;
+      for (int earlier = 0; earlier < rotation; earlier++) {
+        repeated |= piece.rotated(earlier).getMask() == rotated.getMask();
+      }
+      if (repeated) {
+        continue;
+      }
+      for (int y = -piece.getCentre(); y < grid.getRows() + piece.getCentre(); y++) {
+        for (int x = -piece.getCentre(); x < grid.getCols() + piece.getCentre(); x++) {
+          if (grid.canPlayPiece(rotated, x, y)) {
+            moves.add(rotation, x, y);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Check the placement map of every rotation of a piece against canPlayPiece
+   * @param grid the grid
+   * @param piece the piece
+   * @param map the map to fill
+   */
+  private static void checkMap(Grid grid, GamePiece piece, long[] map) {
+    int words = grid.getPlacementWords();
+    for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+      GamePiece rotated = piece.rotated(rotation);
+      int count = grid.legalPlacements(rotated, map), found = 0;
+      int border = Grid.PLACEMENT_BORDER;
+      for (int y = -border; y < grid.getRows() + border; y++) {
+        for (int x = -border; x < grid.getCols() + border; x++) {
+          boolean set = (map[(y + border) * words + ((x + border) >>> 6)] & (1L << (x + border))) != 0;
+          if (set != grid.canPlayPiece(rotated, x, y)) {
+            throw new IllegalStateException("Map differs for " + rotated + " at " + x + "," + y);
+          }
+          found += set ? 1 : 0;
+        }
+      }
+      if (found != count) {
+        throw new IllegalStateException("Map of " + rotated + " counts " + count + " places, not " + found);
+      }
+    }
+  }
+
+  /**
+   * Time a task
+   * @param task the task
+   * @return the best time of one run in microseconds
+   */
+  private static double time(Runnable task) {
+    double best = Double.MAX_VALUE;
+    for (int round = 0; round < 10; round++) {
+      int runs = 0;
+      long start = System.nanoTime(), elapsed;
+      do {
+        task.run();
+        runs++;
+        elapsed = System.nanoTime() - start;
+      } while (elapsed < 50_000_000);
+      best = Math.min(best, elapsed / 1e3 / runs);
+    }
+    return best;
+  }
+}
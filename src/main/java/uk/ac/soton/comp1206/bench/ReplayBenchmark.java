@@ -0,0 +1,229 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+import uk.ac.soton.comp1206.bot.AutoPlayer;
+import uk.ac.soton.comp1206.bot.Decision;
+import uk.ac.soton.comp1206.engine.DeadBoardAction;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.PieceSet;
+import uk.ac.soton.comp1206.engine.PieceSource;
+import uk.ac.soton.comp1206.replay.ReplayFile;
+import uk.ac.soton.comp1206.replay.ReplayFormat;
+import uk.ac.soton.comp1206.replay.ReplayRecorder;
+import uk.ac.soton.comp1206.replay.ReplayWriter;
+import uk.ac.soton.comp1206.replay.Replayer;
+
+/**
+ * Checks and times replays.
+ * Games played by the AutoPlayer, with the odd swap, skip and timeout thrown in, are recorded to a temporary
+ * directory and replayed headless to the end, and the state after every move is kept. Then random seeks are checked
+ * against those states, and the moves replayed per second and the average time of a seek are reported, once with
+ * keyframes and once without. Both are run for WARMUP rounds first so the JIT has compiled them, then for ROUNDS
+ * rounds, taking turns at going first, and only those rounds are reported.
+ * Given a directory, every replay in it is played to the end instead, so recorded games can be checked against a
+ * change to the rules.
+ * Usage: ReplayBenchmark [games] or ReplayBenchmark directory
+ */
+public class ReplayBenchmark {
+
+  /**
+   * Rounds of both kinds of replay run before any are timed
+   */
+  private static final int WARMUP = 3;
+
+  /**
+   * Rounds of both kinds of replay timed
+   */
+  private static final int ROUNDS = 5;
+
+  /**
+   * Run the check and the benchmark
+   * @param args number of games to record (default 8), or a directory of replays to check
+   * @throws IOException if a replay can't be written or read
+   * @throws InterruptedException if interrupted waiting for a replay to be written
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length > 0 && Files.isDirectory(Path.of(args[0]))) {
+      checkDirectory(Path.of(args[0]));
+      return;
+    }
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    Path directory = Files.createTempDirectory("replays");
+    int[] intervals = {ReplayRecorder.KEYFRAME_INTERVAL, 0};
+    List<List<Path>> files = new ArrayList<>();
+    for (int interval : intervals) {
+      List<Path> recorded = new ArrayList<>();
+      for (int game = 0; game < games; game++) {
+        recorded.add(record(directory.resolve("game-" + interval + "-" + game + ReplayFormat.EXTENSION), 16, 16,
+            PieceSet.standard(), 1206 + game, interval));
+      }
+      files.add(recorded);
+    }
+
+    long[][] totals = new long[intervals.length][5];
+    for (int round = 0; round < WARMUP + ROUNDS; round++) {
+      //Take turns at going first, so neither always runs on a colder JIT or cache
+      for (int turn = 0; turn < intervals.length; turn++) {
+        int kind = (round + turn) % intervals.length;
+        long[] measured = benchmark(files.get(kind), 1206 + round);
+        if (round >= WARMUP) {
+          for (int stat = 0; stat < measured.length; stat++) {
+            totals[kind][stat] += measured[stat];
+          }
+        }
+      }
+    }
+    for (int kind = 0; kind < intervals.length; kind++) {
+      report(totals[kind], intervals[kind], files.get(kind).size());
+    }
+  }
+
+  /**
+   * Record a game played by the AutoPlayer
+   * @param file the file to record it in
+   * @param cols number of columns
+   * @param rows number of rows
+   * @param set the set the pieces come from
+   * @param seed seed of the pieces and the other moves
+   * @param interval pieces played between keyframes
+   * @return the file
+   * @throws InterruptedException if interrupted waiting for the file to be written
+   */
+  private static Path record(Path file, int cols, int rows, PieceSet set, long seed, int interval)
+      throws InterruptedException {
+    GameEngine engine = new GameEngine(cols, rows, PieceSource.random(seed, set));
+    engine.setDeadBoardAction(DeadBoardAction.SKIP_PIECE);
+    long[] time = {0};
+    ReplayRecorder recorder = new ReplayRecorder(new ReplayWriter(file), () -> time[0] += 250, interval);
+    engine.setRecorder(recorder);
+    engine.start();
+    AutoPlayer bot = new AutoPlayer();
+    SplittableRandom random = new SplittableRandom(seed);
+    while (!engine.isOver()) {
+      int roll = random.nextInt(50);
+      if (roll == 0) {
+        engine.timeout();
+      } else if (roll == 1) {
+        engine.nextPiece();
+      } else if (roll == 2) {
+        engine.swap();
+      } else {
+        Decision decision = bot.decide(engine);
+        if (decision == null) {
+          engine.timeout();
+        } else {
+          AutoPlayer.apply(engine, decision);
+        }
+      }
+    }
+    if (!recorder.getWriter().await(10_000) || recorder.isFailed()) {
+      throw new IllegalStateException("Couldn't write " + file);
+    }
+    return file;
+  }
+
+  /**
+   * Replay recorded games to the end and at random moves, checking every seek and timing both
+   * @param files the replays
+   * @param seed seed of the moves sought
+   * @return the moves, bytes, nanoseconds replaying, seeks and nanoseconds seeking
+   * @throws IOException if a replay can't be read
+   */
+  private static long[] benchmark(List<Path> files, long seed) throws IOException {
+    SplittableRandom random = new SplittableRandom(seed);
+    long moves = 0, bytes = 0, replayNanos = 0, seeks = 0, seekNanos = 0;
+    for (Path file : files) {
+      ReplayFile replay = ReplayFile.open(file);
+      bytes += Files.size(file);
+
+      //Every move played from the start, keeping the state after each
+      Replayer full = replay.replay();
+      List<String> states = new ArrayList<>();
+      states.add(state(full.getEngine()));
+      long start = System.nanoTime();
+      for (int type = full.step(); type >= 0; type = full.step()) {
+        if (type == ReplayFormat.PLAY) {
+          states.add(state(full.getEngine()));
+        }
+      }
+      replayNanos += System.nanoTime() - start;
+      moves += full.getMoves();
+
+      Replayer seeker = replay.replay();
+      for (int seek = 0; seek < 500; seek++) {
+        int move = random.nextInt(full.getMoves() + 1);
+        start = System.nanoTime();
+        seeker.seek(move);
+        seekNanos += System.nanoTime() - start;
+        seeks++;
+        if (!state(seeker.getEngine()).equals(states.get(move))) {
+          throw new IllegalStateException("Seeking " + replay + " to move " + move + " differs from playing it");
+        }
+      }
+    }
+    return new long[] {moves, bytes, replayNanos, seeks, seekNanos};
+  }
+
+  /**
+   * Print the speed of the timed rounds of one kind of replay
+   * @param totals the moves, bytes, nanoseconds replaying, seeks and nanoseconds seeking of every timed round
+   * @param interval pieces played between keyframes in the replays
+   * @param games the number of replays
+   */
+  private static void report(long[] totals, int interval, int games) {
+    long moves = totals[0], bytes = totals[1], replayNanos = totals[2], seeks = totals[3], seekNanos = totals[4];
+    System.out.printf("%s: %d games, %d moves, %.1f bytes a move (%d rounds after %d warm-up)%n",
+        interval > 0 ? "Keyframes every " + interval + " moves" : "No keyframes", games, moves / ROUNDS,
+        (double) bytes / moves, ROUNDS, WARMUP);
+    System.out.printf("  replayed %.0f moves a second (including copying out every state)%n",
+        moves * 1e9 / replayNanos);
+    System.out.printf("  %d seeks matched, %.1f us each%n", seeks, seekNanos / 1e3 / seeks);
+  }
+
+  /**
+   * Play every replay in a directory to the end, which checks it still matches the recording
+   * @param directory the directory
+   * @throws IOException if the directory can't be listed
+   */
+  private static void checkDirectory(Path directory) throws IOException {
+    List<Path> files;
+    try (Stream<Path> listed = Files.list(directory)) {
+      files = listed.filter(path -> path.toString().endsWith(ReplayFormat.EXTENSION)).sorted().toList();
+    }
+    int failed = 0;
+    for (Path file : files) {
+      try {
+        Replayer replayer = ReplayFile.open(file).replay();
+        GameEngine engine = replayer.playToEnd();
+        System.out.printf("%s: %d moves, %d points%n", file.getFileName(), replayer.getMoves(), engine.getScore());
+      } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+        System.out.printf("%s: %s%n", file.getFileName(), e.getMessage());
+        failed++;
+      }
+    }
+    System.out.printf("%d of %d replays matched%n", files.size() - failed, files.size());
+  }
+
+  /**
+   * Describe everything about a game that a replay must get right
+   * @param engine the engine
+   * @return the blocks, counters and pieces
+   */
+  private static String state(GameEngine engine) {
+    StringBuilder state = new StringBuilder();
+    for (int y = 0; y < engine.getGrid().getRows(); y++) {
+      for (int x = 0; x < engine.getGrid().getCols(); x++) {
+        state.append(engine.getGrid().get(x, y)).append(',');
+      }
+    }
+    return state.append(engine.getScore()).append(' ').append(engine.getLevel()).append(' ')
+        .append(engine.getLives()).append(' ').append(engine.getMultiplier()).append(' ')
+        .append(engine.getCurrentPiece()).append(' ').append(engine.getFollowingPiece()).toString();
+  }
+}
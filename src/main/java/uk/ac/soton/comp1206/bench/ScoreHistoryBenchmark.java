@@ -0,0 +1,186 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import uk.ac.soton.comp1206.scores.ScoreEntry;
+import uk.ac.soton.comp1206.scores.ScoreHistory;
+
+/**
+ * Checks a ScoreHistory against a brute force search and times its queries.
+ * Years of random scores by a few hundred players, with the clock going back now and then, are added to a history in
+ * a temporary directory, which is closed and reopened part way. A newcomer has just two low scores, one in the middle
+ * and the last, so finding their best must not walk past everyone's better scores. Then the best scores overall and
+ * of random players and the newcomer, the best of every day and random percentiles are compared with sorting and
+ * scanning every score, and the time of each query is reported.
+ * Usage: ScoreHistoryBenchmark [scores]
+ */
+public class ScoreHistoryBenchmark {
+
+  /**
+   * Run the check and the benchmark
+   * @param args number of scores to add (default 1000000)
+   * @throws IOException if the history can't be written or read
+   */
+  public static void main(String[] args) throws IOException {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    SplittableRandom random = new SplittableRandom(1206);
+    String[] names = new String[301];
+    for (int name = 0; name < names.length; name++) {
+      names[name] = "player" + name;
+    }
+    int newcomer = names.length - 1;
+    names[newcomer] = "newcomer";
+    long[] times = new long[count];
+    int[] scores = new int[count];
+    int[] players = new int[count];
+    long time = Instant.parse("2023-01-01T00:00:00Z").toEpochMilli();
+    long step = 3 * 365 * 86_400_000L / Math.max(count, 1);
+    for (int score = 0; score < count; score++) {
+      time += random.nextInt(1000) == 0 ? -2 * 86_400_000L : random.nextLong(2 * step + 1);
+      times[score] = time;
+      scores[score] = random.nextInt(20_000) * 10;
+      //A few players play far more than the rest
+      players[score] = random.nextInt(4) == 0 ? random.nextInt(10) : random.nextInt(newcomer);
+    }
+    for (int score : new int[] {count / 2, count - 1}) {
+      players[score] = newcomer;
+      scores[score] = 10;
+    }
+
+    Path directory = Files.createTempDirectory("history");
+    ScoreHistory history = ScoreHistory.open(directory, ZoneOffset.UTC);
+    long start = System.nanoTime();
+    for (int score = 0; score < count; score++) {
+      if (score == count / 3) {
+        history.close();
+        history = ScoreHistory.open(directory, ZoneOffset.UTC);
+      }
+      history.add(names[players[score]], scores[score], times[score]);
+    }
+    history.close();
+    System.out.printf("Added %d scores, %.0f a second%n", count, count * 1e9 / (System.nanoTime() - start));
+
+    start = System.nanoTime();
+    history = ScoreHistory.open(directory, ZoneOffset.UTC);
+    System.out.printf("Opened in %.2f ms: %d scores, %d players, %d segments%n", (System.nanoTime() - start) / 1e6,
+        history.getCount(), history.getPlayerCount(), history.getSegmentCount());
+
+    //The reference: every score sorted, best first and then the first added
+    start = System.nanoTime();
+    Integer[] order = IntStream.range(0, count).boxed().toArray(Integer[]::new);
+    Arrays.sort(order, Comparator.comparingInt((Integer score) -> -scores[score]).thenComparingInt(score -> score));
+    long sortNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    List<ScoreEntry> top = history.top(10);
+    long topNanos = System.nanoTime() - start;
+    check("top 10", top, expected(order, names, times, scores, players, -1, 10));
+
+    long playerNanos = 0;
+    long newcomerNanos = 0;
+    for (int check = 0; check < 20; check++) {
+      int player = check < 5 ? check : check == 5 ? newcomer : random.nextInt(newcomer);
+      start = System.nanoTime();
+      List<ScoreEntry> found = history.top(names[player], 5);
+      playerNanos += System.nanoTime() - start;
+      if (player == newcomer) {
+        newcomerNanos = System.nanoTime() - start;
+      }
+      check("top 5 of " + names[player], found, expected(order, names, times, scores, players, player, 5));
+    }
+
+    long percentileNanos = 0;
+    for (int check = 0; check < 100; check++) {
+      int score = random.nextInt(200_001);
+      start = System.nanoTime();
+      double percentile = history.percentile(score);
+      percentileNanos += System.nanoTime() - start;
+      long noBetter = Arrays.stream(scores).filter(other -> other <= score).count();
+      if (Math.abs(percentile - 100.0 * noBetter / count) > 1e-9) {
+        throw new IllegalStateException("Percentile of " + score + " is " + percentile);
+      }
+    }
+
+    TreeMap<Long, Integer> bestOfDay = new TreeMap<>();
+    for (int score = 0; score < count; score++) {
+      long day = Math.floorDiv(times[score], 86_400_000L);
+      Integer best = bestOfDay.get(day);
+      if (best == null || scores[score] > scores[best]) {
+        bestOfDay.put(day, score);
+      }
+    }
+    List<String> expected = new ArrayList<>();
+    bestOfDay.values().forEach(score -> expected.add(describe(names[players[score]], scores[score], times[score])));
+    start = System.nanoTime();
+    List<ScoreEntry> days = history.bestPerDay(LocalDate.ofEpochDay(bestOfDay.firstKey()),
+        LocalDate.ofEpochDay(bestOfDay.lastKey()));
+    long dayNanos = System.nanoTime() - start;
+    check("best of each day", days, expected);
+    history.close();
+
+    System.out.printf("Sorting every score: %.2f ms%n", sortNanos / 1e6);
+    System.out.printf("top 10: %.3f ms, top 5 of a player: %.3f ms, percentile: %.3f ms, %d days: %.3f ms%n",
+        topNanos / 1e6, playerNanos / 20 / 1e6, percentileNanos / 100 / 1e6, days.size(), dayNanos / 1e6);
+    System.out.printf("The newcomer's best: %.3f ms%n", newcomerNanos / 1e6);
+    System.out.println("Every query matched");
+  }
+
+  /**
+   * Find the best scores from every score sorted
+   * @param order every score, best first
+   * @param names the name of each player
+   * @param times the time of each score
+   * @param scores the points of each score
+   * @param players the player of each score
+   * @param player the player wanted, -1 for anyone
+   * @param k the number wanted
+   * @return the scores, described
+   */
+  private static List<String> expected(Integer[] order, String[] names, long[] times, int[] scores, int[] players,
+      int player, int k) {
+    List<String> best = new ArrayList<>();
+    for (int at = 0; at < order.length && best.size() < k; at++) {
+      int score = order[at];
+      if (player < 0 || players[score] == player) {
+        best.add(describe(names[players[score]], scores[score], times[score]));
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Compare scores from the history with what was expected
+   * @param query what was asked
+   * @param found the scores from the history
+   * @param expected the scores expected, described
+   */
+  private static void check(String query, List<ScoreEntry> found, List<String> expected) {
+    List<String> described = found.stream()
+        .map(entry -> describe(entry.getName(), entry.getScore(), entry.getTime())).toList();
+    if (!described.equals(expected)) {
+      throw new IllegalStateException(query + " gave " + described + ", not " + expected);
+    }
+  }
+
+  /**
+   * Describe a score, so it can be compared
+   * @param name the name
+   * @param score the points
+   * @param time the time
+   * @return the description
+   */
+  private static String describe(String name, int score, long time) {
+    return name + ":" + score + "@" + time;
+  }
+}
@@ -0,0 +1,83 @@
+package uk.ac.soton.comp1206.bench;
+
+import uk.ac.soton.comp1206.bot.AutoPlayer;
+import uk.ac.soton.comp1206.bot.Decision;
+import uk.ac.soton.comp1206.bot.ExpectimaxSearch;
+import uk.ac.soton.comp1206.bot.Player;
+import uk.ac.soton.comp1206.engine.DeadBoardAction;
+import uk.ac.soton.comp1206.engine.EngineListener;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.PieceSource;
+
+/**
+ * Measures how much the scoring formula rewards searching deeper. The same seeded games are played by the greedy
+ * AutoPlayer and by expectimax searches of increasing depth, without a clock, for a fixed number of pieces each.
+ * For each player the benchmark reports the average score, the points per piece, the highest multiplier reached, how
+ * deep the searches got within the budget and how long the decisions took.
+ * Usage: SearchBenchmark [games] [pieces] [budget ms] [max depth]
+ */
+public class SearchBenchmark {
+
+  /**
+   * Run the benchmark
+   * @param args games (default 20), pieces per game (default 100), budget per move (default 1000) and deepest search
+   *             (default 3)
+   */
+  public static void main(String[] args) {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int pieces = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    long budget = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+    int maxDepth = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+    System.out.printf("%d games of %d pieces on 5x5, %d ms per move%n", games, pieces, budget);
+    run("greedy", games, pieces, new AutoPlayer(), null);
+    for (int depth = 1; depth <= maxDepth; depth++) {
+      ExpectimaxSearch search = new ExpectimaxSearch(budget, depth);
+      run("expectimax " + depth, games, pieces, search, search);
+    }
+  }
+
+  /**
+   * Play the games with one player and print the results
+   * @param name the name of the player
+   * @param games number of games
+   * @param pieces pieces per game
+   * @param player chooses the moves
+   * @param search the search behind the player, null for the greedy player
+   */
+  private static void run(String name, int games, int pieces, Player player, ExpectimaxSearch search) {
+    long score = 0, played = 0, nanos = 0, depths = 0, decisions = 0;
+    int bestMultiplier = 0;
+    for (int game = 0; game < games; game++) {
+      GameEngine engine = new GameEngine(5, 5, PieceSource.random(game));
+      engine.setDeadBoardAction(DeadBoardAction.SKIP_PIECE);
+      int[] multiplier = {1};
+      engine.setListener(new EngineListener() {
+        @Override
+        public void multiplierChanged(int value) {
+          multiplier[0] = Math.max(multiplier[0], value);
+        }
+      });
+      engine.start();
+      for (int piece = 0; piece < pieces && !engine.isOver(); piece++) {
+        long start = System.nanoTime();
+        Decision decision = player.decide(engine);
+        nanos += System.nanoTime() - start;
+        decisions++;
+        if (search != null) {
+          depths += search.getLastDepth();
+        }
+        if (decision == null) {
+          engine.timeout();
+        } else if (AutoPlayer.apply(engine, decision)) {
+          played++;
+        }
+      }
+      score += engine.getScore();
+      bestMultiplier = Math.max(bestMultiplier, multiplier[0]);
+    }
+    System.out.printf("%-13s score %7.0f  points/piece %6.1f  best multiplier %2d  depth %.2f  %8.2f ms/move%n",
+        name, score / (double) games, score / (double) Math.max(1, played), bestMultiplier,
+        search == null ? 1.0 : depths / (double) decisions, nanos / 1e6 / decisions);
+  }
+}
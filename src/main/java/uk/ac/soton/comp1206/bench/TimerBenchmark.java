@@ -0,0 +1,139 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import uk.ac.soton.comp1206.engine.EngineListener;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.GameLoop;
+import uk.ac.soton.comp1206.engine.HashedWheelTimer;
+import uk.ac.soton.comp1206.engine.PieceSource;
+
+/**
+ * Benchmark of many game loops sharing one HashedWheelTimer.
+ * Every game has a simulated player that thinks for a random time and then plays a piece, resetting the loop, so the
+ * timer sees a steady stream of reschedules as well as real timeouts. The engine of every game is only used from the
+ * timer thread. At the end the benchmark reports how late the timer ran tasks and how many threads were used.
+ * Usage: TimerBenchmark [games] [seconds]
+ */
+public class TimerBenchmark {
+
+  /**
+   * The shortest and longest time a simulated player thinks before playing, in milliseconds
+   */
+  private static final int MIN_THINK = 500, MAX_THINK = 4000;
+
+  /**
+   * Run the benchmark
+   * @param args number of games (default 10000) and seconds to run for (default 20)
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public static void main(String[] args) throws InterruptedException {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+    HashedWheelTimer timer = new HashedWheelTimer(10, 512);
+    Random random = new Random(1206);
+    int threadsBefore = Thread.activeCount();
+
+    //Lateness of every player task, in milliseconds, bucketed up to one second
+    long[] lateness = new long[1001];
+    long[] counts = new long[3];
+    int plays = 0, timeouts = 1, gameOvers = 2;
+
+    CountDownLatch started = new CountDownLatch(games);
+    for (int i = 0; i < games; i++) {
+      GameEngine engine = new GameEngine(5, 5, PieceSource.random(random.nextLong()));
+      GameLoop loop = new GameLoop(engine, timer, Runnable::run);
+      engine.setListener(new EngineListener() {
+        @Override
+        public void livesChanged(int lives) {
+          counts[timeouts]++;
+        }
+
+        @Override
+        public void gameOver() {
+          counts[gameOvers]++;
+        }
+      });
+      Random think = new Random(random.nextLong());
+
+      //The player and the loop both run on the timer thread, so the engine only sees one thread
+      Runnable[] player = new Runnable[1];
+      long[] due = new long[1];
+      player[0] = () -> {
+        long late = Math.max(0, timer.now() - due[0]);
+        lateness[(int) Math.min(late, lateness.length - 1)]++;
+        if (engine.isOver()) {
+          return;
+        }
+        for (int attempt = 0; attempt < 25; attempt++) {
+          if (engine.play(think.nextInt(5), think.nextInt(5))) {
+            counts[plays]++;
+            loop.reset();
+            break;
+          }
+        }
+        int delay = MIN_THINK + think.nextInt(MAX_THINK - MIN_THINK);
+        due[0] = timer.now() + delay;
+        timer.schedule(player[0], delay);
+      };
+      timer.schedule(() -> {
+        engine.start();
+        loop.start();
+        due[0] = timer.now();
+        player[0].run();
+        started.countDown();
+      }, 0);
+    }
+
+    started.await();
+    int threadsDuring = Thread.activeCount();
+    long startNanos = System.nanoTime();
+    TimeUnit.SECONDS.sleep(seconds);
+    double elapsed = (System.nanoTime() - startNanos) / 1e9;
+
+    //Read the results on the timer thread, where they were written
+    CountDownLatch finished = new CountDownLatch(1);
+    long[][] results = new long[2][];
+    timer.schedule(() -> {
+      results[0] = counts.clone();
+      results[1] = lateness.clone();
+      finished.countDown();
+    }, 0);
+    finished.await();
+    timer.shutdown();
+
+    long[] latenessCopy = results[1];
+    long samples = Arrays.stream(latenessCopy).sum();
+    System.out.printf("Games: %d on one timer thread (%d threads before, %d while running)%n", games,
+        threadsBefore, threadsDuring);
+    System.out.printf("Ran for %.1f s: %d plays, %d timeouts, %d games over%n", elapsed, results[0][plays],
+        results[0][timeouts], results[0][gameOvers]);
+    System.out.printf("Timer tasks: %.0f per second (player moves, loop resets and timeouts)%n",
+        (samples + results[0][plays] + results[0][timeouts]) / elapsed);
+    System.out.printf("Lateness of %d player tasks: p50 %d ms, p99 %d ms, p99.9 %d ms, max %d ms%n", samples,
+        percentile(latenessCopy, samples, 0.5), percentile(latenessCopy, samples, 0.99),
+        percentile(latenessCopy, samples, 0.999), percentile(latenessCopy, samples, 1.0));
+  }
+
+  /**
+   * Find a percentile of a histogram
+   * @param histogram count of samples for every value
+   * @param samples total number of samples
+   * @param fraction the percentile as a fraction
+   * @return the smallest value with at least the fraction of samples at or below it
+   */
+  private static int percentile(long[] histogram, long samples, double fraction) {
+    long target = (long) Math.ceil(samples * fraction);
+    long seen = 0;
+    for (int value = 0; value < histogram.length; value++) {
+      seen += histogram[value];
+      if (seen >= target && seen > 0) {
+        return value;
+      }
+    }
+    return histogram.length - 1;
+  }
+}
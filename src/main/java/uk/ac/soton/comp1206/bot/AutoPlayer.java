@@ -0,0 +1,326 @@
+package uk.ac.soton.comp1206.bot;
+
+import java.util.concurrent.CancellationException;
+import uk.ac.soton.comp1206.engine.ClearResult;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.Grid;
+import uk.ac.soton.comp1206.engine.MoveList;
+
+/**
+ * A bot that plays TetrECS. For every legal move of the current piece, and of the following piece after a swap, the
+ * move is tried out on a scratch grid and the result is judged by an evaluation that weighs the points scored, keeping
+ * the multiplier streak going, holes that only a single block could fill, how close the lines are to being full, using
+ * a swap, and whether the other piece could still be played afterwards. The best move wins.
+ * Moves are tried in place on one scratch grid and taken back afterwards, and holes and line fill are only counted
+ * again around the piece, so a decision stays quick on big boards.
+ * The AutoPlayer does not depend on JavaFX, so it can play a GameEngine headless. An AutoPlayer keeps scratch state
+ * between decisions and should only be used by one thread at a time. Interrupting the thread deciding makes the
+ * decision give up with a CancellationException, so a search running in the background can be abandoned.
+ */
+public class AutoPlayer implements Player {
+
+  /**
+   * The weights of the default evaluation
+   */
+  public static final double POINTS = 1, STREAK = 15, HOLES = 12, LINES = 20, SWAP = 1, DEAD = 10_000;
+
+  /**
+   * How many moves are tried between checks for an interrupt, a power of two
+   */
+  private static final int CHECK_EVERY = 64;
+
+  /**
+   * How much each part of the evaluation counts
+   */
+  private final double points, streak, holes, lines, swap, dead;
+
+  /**
+   * Grid that moves are tried out on, made when the size of the grid is known
+   */
+  private Grid scratch;
+
+  /**
+   * The legal moves of the piece being tried
+   */
+  private final MoveList moves = new MoveList();
+
+  /**
+   * The number of holes in the grid being decided on
+   */
+  private int holeCount;
+
+  /**
+   * The sums of the squares of the filled blocks of every row and of every column of the grid being decided on
+   */
+  private long rowSquares, colSquares;
+
+  /**
+   * Create a new bot with the default evaluation
+   */
+  public AutoPlayer() {
+    this(POINTS, STREAK, HOLES, LINES, SWAP, DEAD);
+  }
+
+  /**
+   * Create a new bot with a custom evaluation
+   * @param points weight of the points a move scores
+   * @param streak weight of keeping the multiplier streak going, or of losing it
+   * @param holes weight of every empty block that only a single block could fill
+   * @param lines weight of how full the rows and columns are
+   * @param swap cost of swapping the pieces
+   * @param dead cost of leaving a grid the other piece can't be played on
+   */
+  public AutoPlayer(double points, double streak, double holes, double lines, double swap, double dead) {
+    this.points = points;
+    this.streak = streak;
+    this.holes = holes;
+    this.lines = lines;
+    this.swap = swap;
+    this.dead = dead;
+  }
+
+  /**
+   * Choose the move to make in a game
+   * @param engine the game, only read
+   * @return the best move, null if neither piece can be played
+   */
+  @Override
+  public Decision decide(GameEngine engine) {
+    return decide(engine.getGrid(), engine.getCurrentPiece(), engine.getFollowingPiece(), engine.getMultiplier());
+  }
+
+  /**
+   * Choose the move to make on a grid
+   * @param grid the grid, only read
+   * @param current the current piece
+   * @param following the following piece, may be null if unknown
+   * @param multiplier the current multiplier
+   * @return the best move, null if neither piece can be played
+   */
+  public Decision decide(Grid grid, GamePiece current, GamePiece following, int multiplier) {
+    if (scratch == null || scratch.getCols() != grid.getCols() || scratch.getRows() != grid.getRows()) {
+      scratch = new Grid(grid.getCols(), grid.getRows());
+    }
+    scratch.copyFrom(grid);
+    holeCount = countHoles(grid);
+    rowSquares = rowSquares(grid, 0, grid.getRows() - 1);
+    colSquares = colSquares(grid, 0, grid.getCols() - 1);
+    Decision best = null;
+    best = bestMove(grid, current, following, multiplier, false, best);
+    if (following != null && following.getMask() != current.getMask()) {
+      best = bestMove(grid, following, current, multiplier, true, best);
+    }
+    return best;
+  }
+
+  /**
+   * Make a move in a game
+   * @param engine the game
+   * @return the move made, null if neither piece could be played
+   */
+  public Decision play(GameEngine engine) {
+    Decision decision = decide(engine);
+    if (decision != null) {
+      apply(engine, decision);
+    }
+    return decision;
+  }
+
+  /**
+   * Play a game without a clock until it is over. When neither piece can be played the game times out straight away.
+   * @param engine the game, already started
+   * @param maxMoves the most moves to make
+   * @return the number of pieces played
+   */
+  public int playOut(GameEngine engine, int maxMoves) {
+    int played = 0;
+    while (!engine.isOver() && played < maxMoves) {
+      if (play(engine) != null) {
+        played++;
+      } else {
+        engine.timeout();
+      }
+    }
+    return played;
+  }
+
+  /**
+   * Make a chosen move in a game
+   * @param engine the game
+   * @param decision the move
+   * @return whether the piece was played
+   */
+  public static boolean apply(GameEngine engine, Decision decision) {
+    if (decision.isSwap()) {
+      engine.swap();
+    }
+    if (decision.getRotation() != 0) {
+      engine.rotate(decision.getRotation());
+    }
+    return engine.play(decision.getX(), decision.getY());
+  }
+
+  /**
+   * Try every legal move of a piece and keep the best. The scratch grid must be a copy of the grid, and is left as one.
+   * @param grid the grid
+   * @param piece the piece to play
+   * @param other the piece left to play afterwards, may be null
+   * @param multiplier the current multiplier
+   * @param swapped whether the pieces were swapped to play this piece
+   * @param best the best move so far, may be null
+   * @return the best move, including this piece's moves
+   */
+  private Decision bestMove(Grid grid, GamePiece piece, GamePiece other, int multiplier, boolean swapped,
+      Decision best) {
+    int count = grid.legalMoves(piece, moves);
+    for (int move = 0; move < count; move++) {
+      if ((move & (CHECK_EVERY - 1)) == 0 && Thread.currentThread().isInterrupted()) {
+        //Give up on a search nobody wants any more
+        throw new CancellationException("Search interrupted");
+      }
+      int x = moves.getX(move), y = moves.getY(move), rotation = moves.getRotation(move);
+      GamePiece rotated = piece.rotated(rotation);
+      scratch.playPiece(rotated, x, y);
+      ClearResult cleared = scratch.clearLines();
+
+      //Without a clear only the blocks and lines around the piece changed
+      int holesAfter;
+      double fillAfter;
+      if (cleared.isEmpty()) {
+        int reach = piece.getCentre();
+        holesAfter = holeCount - countHoles(grid, x - reach - 1, y - reach - 1, x + reach + 1, y + reach + 1)
+            + countHoles(scratch, x - reach - 1, y - reach - 1, x + reach + 1, y + reach + 1);
+        fillAfter = lineFill(grid.getCols(), grid.getRows(),
+            rowSquares - rowSquares(grid, y - reach, y + reach) + rowSquares(scratch, y - reach, y + reach),
+            colSquares - colSquares(grid, x - reach, x + reach) + colSquares(scratch, x - reach, x + reach));
+      } else {
+        holesAfter = countHoles(scratch);
+        fillAfter = lineFill(scratch);
+      }
+      double value = evaluate(scratch, cleared, multiplier, other, holesAfter, fillAfter) - (swapped ? swap : 0);
+      if (best == null || value > best.getValue()) {
+        best = new Decision(swapped, rotation, x, y, value);
+      }
+
+      //Take the move back
+      if (cleared.isEmpty()) {
+        int size = rotated.getSize(), left = x - rotated.getCentre(), top = y - rotated.getCentre();
+        for (int blocks = rotated.getMask(); blocks != 0; blocks &= blocks - 1) {
+          int block = Integer.numberOfTrailingZeros(blocks);
+          scratch.set(left + block % size, top + block / size, 0);
+        }
+      } else {
+        scratch.copyFrom(grid);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Judge a grid after a move
+   * @param grid the grid after the move and any clear
+   * @param cleared the lines the move cleared
+   * @param multiplier the multiplier before the move
+   * @param other the piece left to play, may be null
+   * @param holeCount the number of holes in the grid, from countHoles
+   * @param fill how full the lines of the grid are, from lineFill
+   * @return the value of the move, higher is better
+   */
+  protected double evaluate(Grid grid, ClearResult cleared, int multiplier, GamePiece other, int holeCount,
+      double fill) {
+    double value = points * cleared.getLines() * cleared.getBlocks() * multiplier * 10;
+    //Clearing keeps the multiplier growing, not clearing throws it away
+    value += cleared.isEmpty() ? -streak * (multiplier - 1) : streak * multiplier;
+    value -= holes * holeCount;
+    value += lines * fill;
+    if (other != null && !grid.hasLegalMove(other)) {
+      value -= dead;
+    }
+    return value;
+  }
+
+  /**
+   * Count the empty blocks that are walled in on every side, so only a single block could fill them
+   * @param grid the grid
+   * @return the number of holes
+   */
+  static int countHoles(Grid grid) {
+    return countHoles(grid, 0, 0, grid.getCols() - 1, grid.getRows() - 1);
+  }
+
+  /**
+   * Count the holes in part of a grid
+   * @param grid the grid
+   * @param fromX the first column, may be outside the grid
+   * @param fromY the first row, may be outside the grid
+   * @param toX the last column, may be outside the grid
+   * @param toY the last row, may be outside the grid
+   * @return the number of holes in the part inside the grid
+   */
+  static int countHoles(Grid grid, int fromX, int fromY, int toX, int toY) {
+    int holes = 0;
+    for (int y = Math.max(0, fromY); y <= Math.min(grid.getRows() - 1, toY); y++) {
+      for (int x = Math.max(0, fromX); x <= Math.min(grid.getCols() - 1, toX); x++) {
+        if (grid.get(x, y) == 0 && grid.get(x - 1, y) != 0 && grid.get(x + 1, y) != 0 && grid.get(x, y - 1) != 0
+            && grid.get(x, y + 1) != 0) {
+          holes++;
+        }
+      }
+    }
+    return holes;
+  }
+
+  /**
+   * Measure how close the rows and columns are to being full. Lines count the square of how full they are, so
+   * nearly full lines count far more than many half full ones.
+   * @param grid the grid
+   * @return between 0 for an empty grid and 2 for a full one
+   */
+  static double lineFill(Grid grid) {
+    return lineFill(grid.getCols(), grid.getRows(), rowSquares(grid, 0, grid.getRows() - 1),
+        colSquares(grid, 0, grid.getCols() - 1));
+  }
+
+  /**
+   * Measure how close the rows and columns are to being full from the sums of the squares of their filled blocks
+   * @param cols number of columns
+   * @param rows number of rows
+   * @param rowSquares the sum of the squares of the filled blocks of every row
+   * @param colSquares the sum of the squares of the filled blocks of every column
+   * @return between 0 for an empty grid and 2 for a full one
+   */
+  private static double lineFill(int cols, int rows, long rowSquares, long colSquares) {
+    return rowSquares / ((double) cols * cols * rows) + colSquares / ((double) rows * rows * cols);
+  }
+
+  /**
+   * Add up the squares of the filled blocks of some rows
+   * @param grid the grid
+   * @param from the first row, may be outside the grid
+   * @param to the last row, may be outside the grid
+   * @return the sum over the rows inside the grid
+   */
+  private static long rowSquares(Grid grid, int from, int to) {
+    long sum = 0;
+    for (int y = Math.max(0, from); y <= Math.min(grid.getRows() - 1, to); y++) {
+      sum += (long) grid.getRowFill(y) * grid.getRowFill(y);
+    }
+    return sum;
+  }
+
+  /**
+   * Add up the squares of the filled blocks of some columns
+   * @param grid the grid
+   * @param from the first column, may be outside the grid
+   * @param to the last column, may be outside the grid
+   * @return the sum over the columns inside the grid
+   */
+  private static long colSquares(Grid grid, int from, int to) {
+    long sum = 0;
+    for (int x = Math.max(0, from); x <= Math.min(grid.getCols() - 1, to); x++) {
+      sum += (long) grid.getColumnFill(x) * grid.getColumnFill(x);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,84 @@
+package uk.ac.soton.comp1206.bot;
+
+/**
+ * A move chosen by the AutoPlayer: whether to swap the current and following piece first, how many times to rotate
+ * the piece to play, and where to play it
+ */
+public final class Decision {
+
+  /**
+   * Whether to swap the pieces before playing
+   */
+  private final boolean swap;
+
+  /**
+   * The number of rotations of the piece to play
+   */
+  private final int rotation;
+
+  /**
+   * The centre of the piece on the grid
+   */
+  private final int x, y;
+
+  /**
+   * How good the move was judged to be
+   */
+  private final double value;
+
+  /**
+   * Create a new decision
+   * @param swap whether to swap the pieces before playing
+   * @param rotation number of rotations of the piece to play
+   * @param x the x coordinate to play at
+   * @param y the y coordinate to play at
+   * @param value how good the move was judged to be
+   */
+  public Decision(boolean swap, int rotation, int x, int y, double value) {
+    this.swap = swap;
+    this.rotation = rotation;
+    this.x = x;
+    this.y = y;
+    this.value = value;
+  }
+
+  /**
+   * @return whether to swap the current and following piece before playing
+   */
+  public boolean isSwap() {
+    return swap;
+  }
+
+  /**
+   * @return the number of rotations of the piece to play, after any swap
+   */
+  public int getRotation() {
+    return rotation;
+  }
+
+  /**
+   * @return the x coordinate to play the piece at
+   */
+  public int getX() {
+    return x;
+  }
+
+  /**
+   * @return the y coordinate to play the piece at
+   */
+  public int getY() {
+    return y;
+  }
+
+  /**
+   * @return how good the move was judged to be, higher is better
+   */
+  public double getValue() {
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return (swap ? "swap, " : "") + "rotate " + rotation + ", play at (" + x + "," + y + ")";
+  }
+}
@@ -0,0 +1,484 @@
+package uk.ac.soton.comp1206.bot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import uk.ac.soton.comp1206.engine.ClearResult;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.Grid;
+import uk.ac.soton.comp1206.engine.MoveList;
+import uk.ac.soton.comp1206.engine.PieceSet;
+import uk.ac.soton.comp1206.engine.TranspositionTable;
+
+/**
+ * A depth-N expectimax search for the best move. The player chooses the move, with or without a swap, that gives the
+ * most points in the long run; after every move a new following piece is dealt, and the search averages over every
+ * piece it could be, weighted by the chance of it being dealt. Points are counted with the real scoring formula
+ * (lines x blocks x multiplier x 10) along the way, so deeper searches see how clearing several times in a row grows
+ * the multiplier. The grids at the end of the search are judged like the AutoPlayer judges them.
+ * The search deepens one piece at a time until the time budget runs out and uses the deepest search that finished.
+ * The moves at the top of the search are searched in parallel on a ForkJoinPool, sharing a lock-free transposition
+ * table of the values of positions already searched, keyed by the Zobrist hash of the grid.
+ */
+public class ExpectimaxSearch implements Player {
+
+  /**
+   * The number of positions the transposition table holds
+   */
+  public static final int TABLE_SIZE = 1 << 18;
+
+  /**
+   * Thrown to unwind a search that ran out of time, without a stack trace
+   */
+  private static final RuntimeException OUT_OF_TIME = new RuntimeException("Out of time", null, false, false) {
+  };
+
+  /**
+   * The time budget of one decision in milliseconds
+   */
+  private final long budget;
+
+  /**
+   * The deepest the search goes, in pieces played
+   */
+  private final int maxDepth;
+
+  /**
+   * The chance of each piece being dealt, by piece number, null for equal chances of every piece of the set played
+   */
+  private final double[] probabilities;
+
+  /**
+   * The pool the search runs on
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Weights of the evaluation at the end of the search
+   */
+  private final double holes, lines, dead;
+
+  /**
+   * The values of positions already searched, shared by every thread
+   */
+  private final TranspositionTable table = new TranspositionTable(TABLE_SIZE);
+
+  /**
+   * The depth of the last search that finished
+   */
+  private volatile int lastDepth;
+
+  /**
+   * Create a new search with uniformly random pieces, from whichever set the game is played with, on the common pool
+   * @param budget time budget of one decision in milliseconds
+   * @param maxDepth deepest search in pieces played, at least 1
+   */
+  public ExpectimaxSearch(long budget, int maxDepth) {
+    this(budget, maxDepth, null, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create a new search
+   * @param budget time budget of one decision in milliseconds
+   * @param maxDepth deepest search in pieces played, at least 1
+   * @param probabilities the chance of each piece of the set played being dealt, by piece number, or null for equal
+   *     chances
+   * @param pool the pool to search on
+   */
+  public ExpectimaxSearch(long budget, int maxDepth, double[] probabilities, ForkJoinPool pool) {
+    if (maxDepth < 1) {
+      throw new IllegalArgumentException("Depth must be at least 1: " + maxDepth);
+    }
+    this.budget = budget;
+    this.maxDepth = maxDepth;
+    this.probabilities = probabilities == null ? null : probabilities.clone();
+    this.pool = pool;
+    this.holes = AutoPlayer.HOLES;
+    this.lines = AutoPlayer.LINES;
+    this.dead = AutoPlayer.DEAD;
+  }
+
+  /**
+   * The chance of each piece of a set being dealt by a uniformly random source
+   * @param set the piece set
+   * @return equal chances
+   */
+  public static double[] uniform(PieceSet set) {
+    double[] probabilities = new double[set.getCount()];
+    Arrays.fill(probabilities, 1.0 / set.getCount());
+    return probabilities;
+  }
+
+  /**
+   * Choose the move to make in a game
+   * @param engine the game, only read
+   * @return the best move, null if neither piece can be played
+   */
+  @Override
+  public Decision decide(GameEngine engine) {
+    return decide(engine.getGrid(), engine.getCurrentPiece(), engine.getFollowingPiece(), engine.getMultiplier());
+  }
+
+  /**
+   * Choose the move to make on a grid, searching deeper until the time budget runs out
+   * @param grid the grid, only read
+   * @param current the current piece
+   * @param following the following piece
+   * @param multiplier the current multiplier
+   * @return the best move, null if neither piece can be played
+   */
+  public Decision decide(Grid grid, GamePiece current, GamePiece following, int multiplier) {
+    if (probabilities != null && probabilities.length != current.getSet().getCount()) {
+      throw new IllegalArgumentException("Need a probability for each of the " + current.getSet().getCount()
+          + " pieces of " + current.getSet());
+    }
+    long deadline = System.nanoTime() + budget * 1_000_000;
+    Grid start = new Grid(grid.getCols(), grid.getRows());
+    start.copyFrom(grid);
+
+    Decision best = null;
+    lastDepth = 0;
+    for (int depth = 1; depth <= maxDepth; depth++) {
+      //A search one piece deep always finishes, so there is always a move
+      Decision found = searchRoot(start, current, following, multiplier, depth,
+          depth == 1 ? Long.MAX_VALUE : deadline);
+      if (found == null && depth > 1) {
+        break;
+      }
+      best = found;
+      lastDepth = depth;
+      if (best == null || System.nanoTime() > deadline) {
+        break;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Get how deep the last decision searched
+   * @return the depth in pieces played
+   */
+  public int getLastDepth() {
+    return lastDepth;
+  }
+
+  /**
+   * Search every move at the top in parallel
+   * @param grid the grid
+   * @param current the current piece
+   * @param following the following piece
+   * @param multiplier the multiplier
+   * @param depth the number of pieces to play
+   * @param deadline System.nanoTime() to give up at
+   * @return the best move, null if there are none or the search ran out of time
+   */
+  private Decision searchRoot(Grid grid, GamePiece current, GamePiece following, int multiplier, int depth,
+      long deadline) {
+    List<RootMove> moves = new ArrayList<>();
+    MoveList list = new MoveList();
+    addRootMoves(moves, grid, current, following, false, list);
+    if (following != null && following.getMask() != current.getMask()) {
+      addRootMoves(moves, grid, following, current, true, list);
+    }
+    if (moves.isEmpty()) {
+      return null;
+    }
+
+    for (RootMove move : moves) {
+      move.search = new Search(grid, move.piece, move.other, multiplier, depth, deadline);
+    }
+    try {
+      pool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          invokeAll(moves);
+        }
+      });
+    } catch (RuntimeException e) {
+      if (e == OUT_OF_TIME || e.getCause() == OUT_OF_TIME) {
+        return null;
+      }
+      throw e;
+    }
+
+    RootMove best = moves.get(0);
+    for (RootMove move : moves) {
+      if (move.value > best.value) {
+        best = move;
+      }
+    }
+    return new Decision(best.swap, best.rotation, best.x, best.y, best.value);
+  }
+
+  /**
+   * Add the legal moves of a piece to the moves to search at the top
+   * @param moves the moves to search
+   * @param grid the grid
+   * @param piece the piece to play
+   * @param other the piece left afterwards
+   * @param swap whether the pieces were swapped to play this piece
+   * @param list scratch list of legal moves
+   */
+  private static void addRootMoves(List<RootMove> moves, Grid grid, GamePiece piece, GamePiece other, boolean swap,
+      MoveList list) {
+    int count = grid.legalMoves(piece, list);
+    for (int move = 0; move < count; move++) {
+      int rotation = list.getRotation(move);
+      moves.add(new RootMove(piece.rotated(rotation), other, swap, rotation, list.getX(move), list.getY(move)));
+    }
+  }
+
+  /**
+   * A move at the top of the search, searched as its own task
+   */
+  private static class RootMove extends RecursiveAction {
+
+    /**
+     * Tasks are never serialised, but ForkJoinTask is Serializable
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The piece played, already rotated, and the piece left afterwards
+     */
+    private final GamePiece piece, other;
+
+    /**
+     * Whether the pieces were swapped
+     */
+    private final boolean swap;
+
+    /**
+     * The rotation and position of the move
+     */
+    private final int rotation, x, y;
+
+    /**
+     * The search of what follows the move
+     */
+    private Search search;
+
+    /**
+     * The value found for the move
+     */
+    private double value;
+
+    /**
+     * Create a new move to search
+     * @param piece the piece played, already rotated
+     * @param other the piece left afterwards
+     * @param swap whether the pieces were swapped
+     * @param rotation the rotation of the piece
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    private RootMove(GamePiece piece, GamePiece other, boolean swap, int rotation, int x, int y) {
+      this.piece = piece;
+      this.other = other;
+      this.swap = swap;
+      this.rotation = rotation;
+      this.x = x;
+      this.y = y;
+    }
+
+    @Override
+    protected void compute() {
+      value = search.searchMove(x, y);
+    }
+  }
+
+  /**
+   * The search below one move at the top. Each search has its own scratch grids, one per level, so it can run on any
+   * thread; only the transposition table is shared.
+   */
+  private class Search {
+
+    /**
+     * The grid before the move
+     */
+    private final Grid start;
+
+    /**
+     * The piece played at the top, already rotated, and the piece left afterwards
+     */
+    private final GamePiece piece, other;
+
+    /**
+     * The multiplier before the move
+     */
+    private final int multiplier;
+
+    /**
+     * The number of pieces to play, including the move at the top
+     */
+    private final int depth;
+
+    /**
+     * System.nanoTime() to give up at
+     */
+    private final long deadline;
+
+    /**
+     * Scratch grids, one per level
+     */
+    private final Grid[] grids;
+
+    /**
+     * Scratch lists of legal moves, one per level
+     */
+    private final MoveList[] moves;
+
+    /**
+     * Create a new search
+     * @param start the grid before the move
+     * @param piece the piece played, already rotated
+     * @param other the piece left afterwards
+     * @param multiplier the multiplier before the move
+     * @param depth the number of pieces to play
+     * @param deadline System.nanoTime() to give up at
+     */
+    private Search(Grid start, GamePiece piece, GamePiece other, int multiplier, int depth, long deadline) {
+      this.start = start;
+      this.piece = piece;
+      this.other = other;
+      this.multiplier = multiplier;
+      this.depth = depth;
+      this.deadline = deadline;
+      this.grids = new Grid[depth];
+      this.moves = new MoveList[depth];
+      for (int level = 0; level < depth; level++) {
+        grids[level] = new Grid(start.getCols(), start.getRows());
+        moves[level] = new MoveList();
+      }
+    }
+
+    /**
+     * Find the value of playing the piece at a position
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return points scored by the move plus the expected value of what follows
+     */
+    private double searchMove(int x, int y) {
+      return play(0, start, piece, x, y, other, multiplier, depth);
+    }
+
+    /**
+     * Play a piece onto a scratch grid and find the value of the move
+     * @param level the level of the search
+     * @param grid the grid before the move
+     * @param piece the piece, already rotated
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param other the piece left afterwards, may be null
+     * @param multiplier the multiplier before the move
+     * @param depth the pieces left to play, including this one
+     * @return points scored by the move plus the expected value of what follows
+     */
+    private double play(int level, Grid grid, GamePiece piece, int x, int y, GamePiece other, int multiplier,
+        int depth) {
+      Grid after = grids[level];
+      after.copyFrom(grid);
+      after.playPiece(piece, x, y);
+      ClearResult cleared = after.clearLines();
+      double points = cleared.getLines() * cleared.getBlocks() * multiplier * 10;
+      int nextMultiplier = cleared.isEmpty() ? 1 : multiplier + 1;
+      if (depth == 1 || other == null) {
+        return points + judge(after, other);
+      }
+      return points + chance(level + 1, after, other, nextMultiplier, depth - 1);
+    }
+
+    /**
+     * Find the expected value of a position where the current piece is known and the following piece is still to
+     * be dealt
+     * @param level the level of the search
+     * @param grid the grid
+     * @param current the current piece
+     * @param multiplier the multiplier
+     * @param depth the pieces left to play
+     * @return the expected value
+     */
+    private double chance(int level, Grid grid, GamePiece current, int multiplier, int depth) {
+      if (System.nanoTime() > deadline) {
+        throw OUT_OF_TIME;
+      }
+      //Every rotation of the current piece is searched, so only the piece matters
+      long key = TranspositionTable.combine(grid.getHash(),
+          (long) current.getPiece() << 40 | (long) multiplier << 8 | depth);
+      double known = table.get(key);
+      if (!Double.isNaN(known)) {
+        return known;
+      }
+
+      PieceSet set = current.getSet();
+      double value = 0;
+      for (int following = 0; following < set.getCount(); following++) {
+        double chance = probabilities == null ? 1.0 / set.getCount() : probabilities[following];
+        if (chance > 0) {
+          value += chance * choose(level, grid, current, set.createPiece(following), multiplier, depth);
+        }
+      }
+      table.put(key, value);
+      return value;
+    }
+
+    /**
+     * Find the value of the best move when both pieces are known
+     * @param level the level of the search
+     * @param grid the grid
+     * @param current the current piece
+     * @param following the following piece
+     * @param multiplier the multiplier
+     * @param depth the pieces left to play
+     * @return the value of the best move, or the cost of a dead board if neither piece fits
+     */
+    private double choose(int level, Grid grid, GamePiece current, GamePiece following, int multiplier, int depth) {
+      double best = Double.NEGATIVE_INFINITY;
+      best = Math.max(best, bestOf(level, grid, current, following, multiplier, depth));
+      if (following.getMask() != current.getMask()) {
+        best = Math.max(best, bestOf(level, grid, following, current, multiplier, depth));
+      }
+      return best == Double.NEGATIVE_INFINITY ? -dead : best;
+    }
+
+    /**
+     * Find the value of the best move of one piece
+     * @param level the level of the search
+     * @param grid the grid
+     * @param piece the piece to play
+     * @param other the piece left afterwards
+     * @param multiplier the multiplier
+     * @param depth the pieces left to play
+     * @return the value of the best move, negative infinity if the piece doesn't fit
+     */
+    private double bestOf(int level, Grid grid, GamePiece piece, GamePiece other, int multiplier, int depth) {
+      MoveList list = moves[level];
+      int count = grid.legalMoves(piece, list);
+      double best = Double.NEGATIVE_INFINITY;
+      for (int move = 0; move < count; move++) {
+        //The list is read before searching deeper, which uses the lists of the levels below
+        GamePiece rotated = piece.rotated(list.getRotation(move));
+        best = Math.max(best, play(level, grid, rotated, list.getX(move), list.getY(move), other, multiplier,
+            depth));
+      }
+      return best;
+    }
+
+    /**
+     * Judge a grid at the end of the search
+     * @param grid the grid
+     * @param other the piece left to play, may be null
+     * @return the value of the grid
+     */
+    private double judge(Grid grid, GamePiece other) {
+      double value = lines * AutoPlayer.lineFill(grid) - holes * AutoPlayer.countHoles(grid);
+      if (other != null && !grid.hasLegalMove(other)) {
+        value -= dead;
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package uk.ac.soton.comp1206.bot;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.Grid;
+
+/**
+ * Finds the best move of a game on a worker thread, so a hint can be shown without the thread running the game ever
+ * waiting for the search, which takes hundreds of milliseconds on the biggest boards.
+ * Each request copies the grid, which is quick, and hands the copy to a single worker. A new request supersedes the
+ * one before it: if the old search hasn't started it never runs, and if it has it is interrupted and the AutoPlayer
+ * gives up at its next check. Every request gets a ticket, and a result is only handed over while its ticket is still
+ * the latest, so a hint for a piece that is no longer current is never shown.
+ * Requests should all come from one thread, such as the JavaFX thread; results are handed over through the executor
+ * given, normally back onto that thread.
+ */
+public class HintFinder implements AutoCloseable {
+
+  private static final Logger logger = LogManager.getLogger(HintFinder.class);
+
+  /**
+   * The bot searching for moves, only used on the worker
+   */
+  private final AutoPlayer bot = new AutoPlayer();
+
+  /**
+   * The thread searching
+   */
+  private final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+    Thread thread = new Thread(task, "hint-finder");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Hands results over to the thread that wants them
+   */
+  private final Executor results;
+
+  /**
+   * The ticket of the latest request, results of older tickets are dropped
+   */
+  private final AtomicLong latest = new AtomicLong();
+
+  /**
+   * The search of the latest request, null if there was none
+   */
+  private Future<?> pending;
+
+  /**
+   * Create a new finder with its own worker thread
+   * @param results runs the callbacks with the moves found, for example Platform::runLater
+   */
+  public HintFinder(Executor results) {
+    this.results = results;
+  }
+
+  /**
+   * Start looking for the best move on a grid, cancelling any search still going
+   * @param grid the grid, copied before this returns so it can change straight away
+   * @param current the current piece
+   * @param following the following piece
+   * @param multiplier the current multiplier
+   * @param found called with the best move, or null if neither piece can be played, unless superseded first
+   */
+  public void request(Grid grid, GamePiece current, GamePiece following, int multiplier, Consumer<Decision> found) {
+    long ticket = latest.incrementAndGet();
+    if (pending != null) {
+      pending.cancel(true);
+    }
+    Grid copy = new Grid(grid.getCols(), grid.getRows());
+    copy.copyFrom(grid);
+
+    pending = worker.submit(() -> {
+      long start = System.nanoTime();
+      Decision decision;
+      try {
+        decision = bot.decide(copy, current, following, multiplier);
+      } catch (CancellationException e) {
+        logger.debug("Hint search {} cancelled", ticket);
+        return;
+      }
+      logger.debug("Hint search {} took {} ms", ticket, (System.nanoTime() - start) / 1_000_000);
+      if (latest.get() == ticket) {
+        //Checked again on the way in, another request may have come in since
+        results.execute(() -> {
+          if (latest.get() == ticket) {
+            found.accept(decision);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Cancel the search going, if any, so no result is handed over
+   */
+  public void cancel() {
+    latest.incrementAndGet();
+    if (pending != null) {
+      pending.cancel(true);
+      pending = null;
+    }
+  }
+
+  /**
+   * Cancel any search and stop the worker thread
+   */
+  @Override
+  public void close() {
+    cancel();
+    worker.shutdownNow();
+  }
+}
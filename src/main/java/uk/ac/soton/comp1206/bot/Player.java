@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.bot;
+
+import uk.ac.soton.comp1206.engine.GameEngine;
+
+/**
+ * Something that chooses the moves in a game, such as the AutoPlayer or an ExpectimaxSearch
+ */
+public interface Player {
+
+  /**
+   * Choose the move to make in a game
+   * @param engine the game, only read
+   * @return the move, null if neither piece can be played
+   */
+  Decision decide(GameEngine engine);
+}
@@ -0,0 +1,41 @@
+package uk.ac.soton.comp1206.bot;
+
+import java.util.SplittableRandom;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.MoveList;
+
+/**
+ * A player that makes a uniformly random legal move with the current piece, swapping only when the current piece
+ * doesn't fit. Used as a baseline for the other players.
+ */
+public class RandomPlayer implements Player {
+
+  /**
+   * Chooses the moves
+   */
+  private final SplittableRandom random;
+
+  /**
+   * The legal moves of the piece being played
+   */
+  private final MoveList moves = new MoveList();
+
+  /**
+   * Create a new random player
+   * @param seed the seed, the same seed makes the same choices
+   */
+  public RandomPlayer(long seed) {
+    this.random = new SplittableRandom(seed);
+  }
+
+  @Override
+  public Decision decide(GameEngine engine) {
+    boolean swap = engine.getGrid().legalMoves(engine.getCurrentPiece(), moves) == 0;
+    if (swap && (engine.getFollowingPiece() == null
+        || engine.getGrid().legalMoves(engine.getFollowingPiece(), moves) == 0)) {
+      return null;
+    }
+    int move = random.nextInt(moves.size());
+    return new Decision(swap, moves.getRotation(move), moves.getX(move), moves.getY(move), 0);
+  }
+}
@@ -0,0 +1,373 @@
+package uk.ac.soton.comp1206.component;
+
+import java.util.Arrays;
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.CycleMethod;
+import javafx.scene.paint.ImagePattern;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.Paint;
+import javafx.scene.paint.Stop;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.engine.ClearResult;
+import uk.ac.soton.comp1206.engine.Grid;
+import uk.ac.soton.comp1206.engine.PieceSet;
+
+/**
+ * Draws a whole grid on a single Canvas, used by a GameBoard for boards too big for one GameBlock per block.
+ * Blocks look the same as GameBlocks. Changed blocks are only marked, and are painted together once per frame by an
+ * AnimationTimer that runs while there is something to paint, so a piece or a cleared line costs a few blocks of
+ * drawing however big the board is.
+ */
+public class BoardCanvas extends Canvas {
+
+    private static final Logger logger = LogManager.getLogger(BoardCanvas.class);
+
+    /**
+     * How long the fade out of a cleared block lasts, in nanoseconds
+     */
+    private static final long FADE_TIME = 300_000_000L;
+
+    /**
+     * The fill of an empty block
+     */
+    private static final Color EMPTY = new Color(0.5, 0.78, 1, 0.2);
+
+    /**
+     * The fills of the default colours, shared by every canvas drawn in them
+     */
+    private static final Paint[] DEFAULT_FILLS = fills(GameBlock.COLOURS);
+
+    /**
+     * The fill of a block of each value, the same shading as a GameBlock
+     */
+    private Paint[] fills = DEFAULT_FILLS;
+
+    /**
+     * The hover effect, loaded when the first board is drawn
+     */
+    private static Paint hoverFill;
+
+    /**
+     * The grid drawn
+     */
+    private final Grid grid;
+
+    /**
+     * Number of columns and rows of the grid
+     */
+    private final int cols, rows;
+
+    /**
+     * The size of one block on the canvas
+     */
+    private final double blockWidth, blockHeight;
+
+    /**
+     * Whether each block needs painting, by y * cols + x
+     */
+    private final boolean[] dirty;
+
+    /**
+     * The blocks that need painting, the first dirtyCount are used
+     */
+    private final int[] dirtyBlocks;
+
+    /**
+     * The number of blocks that need painting
+     */
+    private int dirtyCount = 0;
+
+    /**
+     * When each block started fading out, 0 if it isn't fading
+     */
+    private final long[] fadeStart;
+
+    /**
+     * The blocks fading out, the first fadingCount are used
+     */
+    private final int[] fadingBlocks;
+
+    /**
+     * The number of blocks fading out
+     */
+    private int fadingCount = 0;
+
+    /**
+     * The block being hovered, -1 for none
+     */
+    private int hover = -1;
+
+    /**
+     * Whether each block is part of the ghost of a suggested move, by y * cols + x
+     */
+    private final boolean[] ghosted;
+
+    /**
+     * The blocks of the ghost, the first ghostCount are used
+     */
+    private final int[] ghostBlocks = new int[PieceSet.MAX_SIZE * PieceSet.MAX_SIZE];
+
+    /**
+     * The number of blocks in the ghost
+     */
+    private int ghostCount = 0;
+
+    /**
+     * The fill of the ghost
+     */
+    private Paint ghostFill;
+
+    /**
+     * Paints the marked blocks once per frame
+     */
+    private final AnimationTimer painter = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            paintFrame(now);
+        }
+    };
+
+    /**
+     * Whether the painter is running
+     */
+    private boolean painting = false;
+
+    /**
+     * Create a canvas showing a grid
+     * @param grid the grid
+     * @param width the visual width
+     * @param height the visual height
+     * @param colours the colour of blocks of each value
+     */
+    public BoardCanvas(Grid grid, double width, double height, Color[] colours) {
+        super(width, height);
+        this.grid = grid;
+        this.cols = grid.getCols();
+        this.rows = grid.getRows();
+        this.blockWidth = width / cols;
+        this.blockHeight = height / rows;
+        this.dirty = new boolean[cols * rows];
+        this.dirtyBlocks = new int[cols * rows];
+        this.fadeStart = new long[cols * rows];
+        this.fadingBlocks = new int[cols * rows];
+        this.ghosted = new boolean[cols * rows];
+        if (hoverFill == null) {
+            hoverFill = new ImagePattern(new Image(getClass().getResource("/images/rocket.png").toExternalForm()));
+        }
+        if (colours != GameBlock.COLOURS) {
+            fills = fills(colours);
+        }
+        logger.info("Drawing a {} x {} grid on one canvas", cols, rows);
+        refresh();
+    }
+
+    /**
+     * Make the shaded fill of every colour
+     * @param colours the colour of blocks of each value
+     * @return the fill of each value, null for 0
+     */
+    private static Paint[] fills(Color[] colours) {
+        Paint[] fills = new Paint[colours.length];
+        for (int value = 1; value < fills.length; value++) {
+            Color colour = colours[value];
+            fills[value] = new LinearGradient(0, 0, 1, 1, true, CycleMethod.NO_CYCLE,
+                new Stop(0, colour.darker()), new Stop(0.5, colour.brighter()), new Stop(1, colour.darker()));
+        }
+        return fills;
+    }
+
+    /**
+     * Draw blocks in new colours, painting every block again
+     * @param colours the colour of blocks of each value
+     */
+    public void setColours(Color[] colours) {
+        fills = fills(colours);
+        refresh();
+    }
+
+    /**
+     * Find the column at a position on the canvas
+     * @param x the x position
+     * @return the column, kept inside the grid
+     */
+    public int getColumnAt(double x) {
+        return Math.max(0, Math.min(cols - 1, (int) (x / blockWidth)));
+    }
+
+    /**
+     * Find the row at a position on the canvas
+     * @param y the y position
+     * @return the row, kept inside the grid
+     */
+    public int getRowAt(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) (y / blockHeight)));
+    }
+
+    /**
+     * Mark a block to be painted on the next frame
+     * @param x column
+     * @param y row
+     */
+    public void blockChanged(int x, int y) {
+        markDirty(y * cols + x);
+    }
+
+    /**
+     * Mark every block to be painted on the next frame
+     */
+    public void refresh() {
+        for (int index = 0; index < dirty.length; index++) {
+            markDirty(index);
+        }
+    }
+
+    /**
+     * Move the hover effect to a block
+     * @param x column, -1 to remove the effect
+     * @param y row
+     */
+    public void setHover(int x, int y) {
+        int index = x < 0 ? -1 : y * cols + x;
+        if (index == hover) {
+            return;
+        }
+        if (hover >= 0) {
+            markDirty(hover);
+        }
+        hover = index;
+        if (hover >= 0) {
+            markDirty(hover);
+        }
+    }
+
+    /**
+     * Show the ghost of a suggested move over the empty blocks it would fill, replacing any ghost shown before
+     * @param cells the blocks of the ghost, y * cols + x, all inside the grid
+     * @param count the number of blocks used from cells, 0 to remove the ghost
+     * @param fill the fill of the ghost, drawn over the empty block
+     */
+    public void setGhost(int[] cells, int count, Paint fill) {
+        for (int i = 0; i < ghostCount; i++) {
+            ghosted[ghostBlocks[i]] = false;
+            markDirty(ghostBlocks[i]);
+        }
+        ghostCount = count;
+        ghostFill = fill;
+        for (int i = 0; i < count; i++) {
+            ghostBlocks[i] = cells[i];
+            ghosted[cells[i]] = true;
+            markDirty(cells[i]);
+        }
+    }
+
+    /**
+     * Fade out the blocks of cleared lines
+     * @param cleared the lines cleared
+     */
+    public void fadeOut(ClearResult cleared) {
+        long now = System.nanoTime();
+        cleared.forEach((x, y) -> {
+            int index = y * cols + x;
+            if (fadeStart[index] == 0) {
+                fadingBlocks[fadingCount++] = index;
+            }
+            fadeStart[index] = now;
+        });
+        startPainting();
+    }
+
+    /**
+     * Mark a block to be painted on the next frame
+     * @param index the block, y * cols + x
+     */
+    private void markDirty(int index) {
+        if (!dirty[index]) {
+            dirty[index] = true;
+            dirtyBlocks[dirtyCount++] = index;
+        }
+        startPainting();
+    }
+
+    /**
+     * Start the painter if it isn't running
+     */
+    private void startPainting() {
+        if (!painting) {
+            painting = true;
+            painter.start();
+        }
+    }
+
+    /**
+     * Paint every marked block and the fading blocks, then stop if nothing is left to do
+     * @param now the time of the frame in nanoseconds
+     */
+    private void paintFrame(long now) {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(Math.min(1, Math.min(blockWidth, blockHeight) / 8));
+        for (int i = 0; i < dirtyCount; i++) {
+            int index = dirtyBlocks[i];
+            dirty[index] = false;
+            if (fadeStart[index] == 0) {
+                paintBlock(gc, index);
+            }
+        }
+        dirtyCount = 0;
+
+        //Fading blocks grow a yellow bar from the middle, like a GameBlock
+        int still = 0;
+        for (int i = 0; i < fadingCount; i++) {
+            int index = fadingBlocks[i];
+            double progress = (double) (now - fadeStart[index]) / FADE_TIME;
+            if (progress >= 1) {
+                fadeStart[index] = 0;
+                paintBlock(gc, index);
+                continue;
+            }
+            fadingBlocks[still++] = index;
+            double x = index % cols * blockWidth, y = index / cols * blockHeight;
+            double width = blockWidth * Math.max(0, progress);
+            gc.clearRect(x, y, blockWidth, blockHeight);
+            gc.setFill(EMPTY);
+            gc.fillRect(x, y, blockWidth, blockHeight);
+            gc.setFill(Color.rgb(255, 255, 0, 0.5));
+            gc.fillRect(x + (blockWidth - width) / 2, y, width, blockHeight);
+            gc.strokeRect(x, y, blockWidth, blockHeight);
+        }
+        fadingCount = still;
+
+        if (dirtyCount == 0 && fadingCount == 0) {
+            painting = false;
+            painter.stop();
+        }
+    }
+
+    /**
+     * Paint one block as it is in the grid
+     * @param gc the graphics context of the canvas
+     * @param index the block, y * cols + x
+     */
+    private void paintBlock(GraphicsContext gc, int index) {
+        int bx = index % cols, by = index / cols;
+        double x = bx * blockWidth, y = by * blockHeight;
+        int value = grid.get(bx, by);
+        gc.clearRect(x, y, blockWidth, blockHeight);
+        gc.setFill(value > 0 && value < fills.length ? fills[value] : EMPTY);
+        gc.fillRect(x, y, blockWidth, blockHeight);
+        if (value == 0 && ghosted[index]) {
+            gc.setFill(ghostFill);
+            gc.fillRect(x, y, blockWidth, blockHeight);
+        }
+        gc.strokeRect(x, y, blockWidth, blockHeight);
+        if (index == hover) {
+            gc.setFill(hoverFill);
+            gc.fillRect(x, y, blockWidth, blockHeight);
+        }
+    }
+}
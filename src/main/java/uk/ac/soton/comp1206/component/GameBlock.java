@@ -21,7 +21,7 @@ import org.apache.logging.log4j.Logger;
  *
  * Displays an empty square (when the value is 0) or a coloured square depending on value.
  *
- * The GameBlock value should be bound to a corresponding block in the Grid model.
+ * The GameBlock value should follow a corresponding block in the Grid model.
  */
 public class GameBlock extends Canvas {
 
@@ -82,6 +82,11 @@ public class GameBlock extends Canvas {
       */
     private Boolean hover = false;
 
+    /**
+     * The colour of the ghost of a suggested move shown on this block, null for none
+     */
+    private Color ghost;
+
     /**
      * the hovering effect to be covered with an image
      */
@@ -150,9 +155,12 @@ public class GameBlock extends Canvas {
         //If the block is empty, paint as empty
         if(value.get() == 0) {
             paintEmpty();
+            if (ghost != null) {
+                paintGhost();
+            }
         } else {
             //If the block is not empty, paint with the colour represented by the value
-            paintColor(COLOURS[value.get()]);
+            paintColor(gameBoard.getColour(value.get()));
         }
         //if a block is being hovered
         if (this.hover){
@@ -179,6 +187,17 @@ public class GameBlock extends Canvas {
         gc.strokeRect(0,0,width,height);
     }
 
+    /**
+     * Paint the ghost of a suggested move over this empty block
+     */
+    private void paintGhost() {
+        var gc = getGraphicsContext2D();
+        gc.setFill(ghost);
+        gc.fillRect(0, 0, width, height);
+        gc.setStroke(Color.BLACK);
+        gc.strokeRect(0, 0, width, height);
+    }
+
     /**
      * Draws a hover effect on a block
      */
@@ -240,6 +259,14 @@ public class GameBlock extends Canvas {
         return this.value.get();
     }
 
+    /**
+     * Set the value of this block, repainting it if it changed
+     * @param value the new value
+     */
+    public void setValue(int value) {
+        this.value.set(value);
+    }
+
     /**
      * Bind the value of this block to another property. Used to link the visual block to a corresponding block in the Grid.
      * @param input property to bind the value to
@@ -257,6 +284,17 @@ public class GameBlock extends Canvas {
         paint();
    }
 
+    /**
+     * Show or hide the ghost of a suggested move on this block, only seen while the block is empty
+     * @param ghost the colour of the ghost, already see-through, null to hide it
+     */
+    public void setGhost(Color ghost) {
+        if (this.ghost != ghost) {
+            this.ghost = ghost;
+            paint();
+        }
+    }
+
     /**
      * Fade out animation for the cleared lines
      */
@@ -1,14 +1,18 @@
 package uk.ac.soton.comp1206.component;
 
-import java.util.HashSet;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
+import javafx.scene.paint.Color;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.engine.ClearResult;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.Grid;
+import uk.ac.soton.comp1206.engine.GridListener;
+import uk.ac.soton.comp1206.engine.PieceSet;
 import uk.ac.soton.comp1206.event.BlockClickedListener;
 import uk.ac.soton.comp1206.event.RightClickListener;
-import uk.ac.soton.comp1206.game.Grid;
 
 /**
  * A GameBoard is a visual component to represent the visual GameBoard.
@@ -19,11 +23,19 @@ import uk.ac.soton.comp1206.game.Grid;
  *
  * The GameBoard is only a visual representation and should not contain game logic or model logic in it, which should
  * take place in the Grid.
+ *
+ * Boards with more than MAX_BLOCKS blocks are drawn on a single BoardCanvas instead, as thousands of GameBlocks are too
+ * slow to build and lay out. Such boards have no GameBlocks; use the coordinate methods, which work for both.
  */
 public class GameBoard extends GridPane {
 
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
 
+    /**
+     * The most blocks a board has one GameBlock for each of, bigger boards are drawn on one canvas
+     */
+    public static final int MAX_BLOCKS = 20 * 20;
+
     /**
      * Number of columns in the board
      */
@@ -50,10 +62,20 @@ public class GameBoard extends GridPane {
     final Grid grid;
 
     /**
-     * The blocks inside the grid
+     * The blocks inside the grid, null for a board drawn on one canvas
      */
     GameBlock[][] blocks;
 
+    /**
+     * The canvas the board is drawn on, null for a board of GameBlocks
+     */
+    private BoardCanvas canvas;
+
+    /**
+     * The colour of blocks of each value
+     */
+    private Color[] colours = GameBlock.COLOURS;
+
     /**
      * The listener to call when a specific block is clicked
      */
@@ -69,6 +91,21 @@ public class GameBoard extends GridPane {
      */
     private GameBlock hover;
 
+    /**
+     * How see-through the ghost of a suggested move is
+     */
+    private static final double GHOST_OPACITY = 0.45;
+
+    /**
+     * The blocks of the ghost shown, y * cols + x, the first ghostCount are used
+     */
+    private final int[] ghost = new int[PieceSet.MAX_SIZE * PieceSet.MAX_SIZE];
+
+    /**
+     * The number of blocks in the ghost shown
+     */
+    private int ghostCount = 0;
+
 
     /**
      * Create a new GameBoard, based off a given grid, with a visual width and height.
@@ -111,10 +148,18 @@ public class GameBoard extends GridPane {
      * Get a specific block from the GameBoard, specified by it's row and column
      * @param x column
      * @param y row
-     * @return game block at the given column and row
+     * @return game block at the given column and row, null if the board is drawn on one canvas
      */
     public GameBlock getBlock(int x, int y) {
-        return blocks[x][y];
+        return blocks == null ? null : blocks[x][y];
+    }
+
+    /**
+     * Whether the board is drawn on one canvas rather than with a GameBlock per block
+     * @return true for boards with more than MAX_BLOCKS blocks
+     */
+    public boolean isCanvas() {
+        return canvas != null;
     }
 
     /**
@@ -126,6 +171,11 @@ public class GameBoard extends GridPane {
         setMaxWidth(width);
         setMaxHeight(height);
 
+        if (cols * rows > MAX_BLOCKS) {
+            buildCanvas();
+            return;
+        }
+
         setGridLinesVisible(true);
 
         blocks = new GameBlock[cols][rows];
@@ -135,6 +185,100 @@ public class GameBoard extends GridPane {
                 createBlock(x,y);
             }
         }
+
+        //Repaint blocks when the grid they show changes
+        grid.setListener(new GridListener() {
+            @Override
+            public void cellChanged(int x, int y, int value) {
+                blocks[x][y].setValue(value);
+            }
+
+            @Override
+            public void gridChanged() {
+                refresh();
+            }
+        });
+    }
+
+    /**
+     * Build the board as one canvas, for boards too big for a GameBlock per block
+     */
+    private void buildCanvas() {
+        canvas = new BoardCanvas(grid, width, height, colours);
+        add(canvas, 0, 0);
+
+        //The canvas is painted once per frame, so changes only mark blocks
+        grid.setListener(new GridListener() {
+            @Override
+            public void cellChanged(int x, int y, int value) {
+                canvas.blockChanged(x, y);
+            }
+
+            @Override
+            public void gridChanged() {
+                canvas.refresh();
+            }
+        });
+
+        canvas.setOnMouseClicked((e) -> blockClicked(e, canvas.getColumnAt(e.getX()), canvas.getRowAt(e.getY())));
+        canvas.setOnMouseMoved((e) -> hover(canvas.getColumnAt(e.getX()), canvas.getRowAt(e.getY())));
+        canvas.setOnMouseExited((e) -> hover(-1, -1));
+    }
+
+    /**
+     * Draw blocks in the colours of a piece set. Colours the set doesn't give, or that can't be read, are taken from
+     * GameBlock.COLOURS.
+     * @param set the piece set
+     */
+    public void setPieceSet(PieceSet set) {
+        Color[] palette = new Color[Math.max(GameBlock.COLOURS.length, set.getMaxValue() + 1)];
+        for (int value = 0; value < palette.length; value++) {
+            Color fallback = GameBlock.COLOURS[value % GameBlock.COLOURS.length];
+            String colour = set.getColour(value);
+            try {
+                palette[value] = colour == null ? fallback : Color.web(colour);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unknown colour {} in piece set {}", colour, set.getId());
+                palette[value] = fallback;
+            }
+        }
+        palette[0] = GameBlock.COLOURS[0];
+        colours = palette;
+
+        //Paint every block again in the new colours
+        if (canvas != null) {
+            canvas.setColours(palette);
+        } else {
+            for (var y = 0; y < rows; y++) {
+                for (var x = 0; x < cols; x++) {
+                    blocks[x][y].paint();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the colour blocks of a value are drawn in
+     * @param value the value of a block
+     * @return the colour
+     */
+    public Color getColour(int value) {
+        return value >= 0 && value < colours.length ? colours[value] : Color.GRAY;
+    }
+
+    /**
+     * Read every block of the grid again, used when many blocks changed at once
+     */
+    public void refresh() {
+        if (canvas != null) {
+            canvas.refresh();
+            return;
+        }
+        for (var y = 0; y < rows; y++) {
+            for (var x = 0; x < cols; x++) {
+                blocks[x][y].setValue(grid.get(x, y));
+            }
+        }
     }
 
     /**
@@ -155,14 +299,14 @@ public class GameBoard extends GridPane {
         //Add to our block directory
         blocks[x][y] = block;
 
-        //Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x,y));
+        //Show the current value in the Grid, the grid listener keeps it up to date
+        block.setValue(grid.get(x,y));
 
         //Add a mouse click handler to the block to trigger GameBoard blockClicked method
-        block.setOnMouseClicked((e) -> blockClicked(e, block));
+        block.setOnMouseClicked((e) -> blockClicked(e, x, y));
 
         // Create hover effect when cursor is over grid
-        block.setOnMouseEntered((e) -> hover(block));
+        block.setOnMouseEntered((e) -> hover(x, y));
 
         // Remove hover effect when cursor is not on grid
         block.setOnMouseExited((e) -> block.setHovering(false));
@@ -172,14 +316,58 @@ public class GameBoard extends GridPane {
 
     /**
      * Manages the hovering effect on the blocks
-     * @param gameBlock the block to be highlighted
+     * @param x column of the block to be highlighted, -1 to highlight none
+     * @param y row of the block to be highlighted
      */
-    public void hover(GameBlock gameBlock){
+    public void hover(int x, int y){
+        if (canvas != null) {
+            canvas.setHover(x, y);
+            return;
+        }
         if (hover != null) {
             hover.setHovering(false);
+            hover = null;
+        }
+        if (x >= 0) {
+            hover = blocks[x][y];
+            hover.setHovering(true);
+        }
+    }
+
+    /**
+     * Show where a piece would go, as a see-through ghost over the empty blocks it would fill, replacing any ghost
+     * shown before
+     * @param piece the piece, rotated the way it would be played, null to remove the ghost
+     * @param x the column the centre of the piece would go in
+     * @param y the row the centre of the piece would go in
+     */
+    public void showGhost(GamePiece piece, int x, int y) {
+        if (blocks != null) {
+            for (int i = 0; i < ghostCount; i++) {
+                blocks[ghost[i] % cols][ghost[i] / cols].setGhost(null);
+            }
+        }
+        ghostCount = 0;
+        Color colour = null;
+        if (piece != null) {
+            colour = getColour(piece.getValue()).deriveColor(0, 1, 1, GHOST_OPACITY);
+            int size = piece.getSize(), left = x - piece.getCentre(), top = y - piece.getCentre();
+            for (int mask = piece.getMask(); mask != 0; mask &= mask - 1) {
+                int block = Integer.numberOfTrailingZeros(mask);
+                int bx = left + block % size, by = top + block / size;
+                if (bx >= 0 && bx < cols && by >= 0 && by < rows) {
+                    ghost[ghostCount++] = by * cols + bx;
+                }
+            }
+        }
+
+        if (canvas != null) {
+            canvas.setGhost(ghost, ghostCount, colour);
+            return;
+        }
+        for (int i = 0; i < ghostCount; i++) {
+            blocks[ghost[i] % cols][ghost[i] / cols].setGhost(colour);
         }
-        hover = gameBlock;
-        gameBlock.setHovering(true);
     }
 
     /**
@@ -194,13 +382,14 @@ public class GameBoard extends GridPane {
      * Triggered when a block is clicked. Call the attached listener.
      * Left click place piece and right click rotate
      * @param event mouse event
-     * @param block block clicked on
+     * @param x column of the block clicked on
+     * @param y row of the block clicked on
      */
-    private void blockClicked(MouseEvent event, GameBlock block) {
-        logger.info("Block clicked: {}", block);
+    private void blockClicked(MouseEvent event, int x, int y) {
+        logger.info("Block clicked: {},{}", x, y);
         if (event.getButton().equals(MouseButton.PRIMARY)) {
             if (blockClickedListener != null) {
-                blockClickedListener.blockClicked(block);
+                blockClickedListener.blockClicked(new GameBlockCoordinate(x, y));
             }
         }
         if (event.getButton().equals(MouseButton.SECONDARY)){
@@ -220,12 +409,14 @@ public class GameBoard extends GridPane {
 
     /**
      * Triggers the fade out animation for each block
-     * @param blockCoordinates the coordinated to be faded out
+     * @param cleared the lines to be faded out
      */
-    public void fadeOut(HashSet<GameBlockCoordinate> blockCoordinates) {
-        for (GameBlockCoordinate coordinates : blockCoordinates) {
-            getBlock(coordinates.getX(), coordinates.getY()).fadeOut();
+    public void fadeOut(ClearResult cleared) {
+        if (canvas != null) {
+            canvas.fadeOut(cleared);
+            return;
         }
+        cleared.forEach((x, y) -> getBlock(x, y).fadeOut());
     }
 
 
@@ -5,7 +5,8 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.PieceSet;
 
 /**
  * PieceBoard class is responsible for creating and displaying boards of pieces
@@ -14,13 +15,30 @@ public class PieceBoard extends GameBoard{
   private final Logger logger = LogManager.getLogger(PieceBoard.class);
 
   /**
-   * Create a piece board for a piece
+   * The width and height of the grid the pieces are drawn in
+   */
+  private final int size;
+
+  /**
+   * Create a piece board for a piece of the standard set
    * @param width width of the board
    * @param height height of the board
    */
   public PieceBoard(double width, double height){
-    super(3, 3, width , height);
+    this(PieceSet.standard(), width, height);
+  }
+
+  /**
+   * Create a piece board for a piece of a set, as big as the set's pieces and drawn in its colours
+   * @param set the piece set
+   * @param width width of the board
+   * @param height height of the board
+   */
+  public PieceBoard(PieceSet set, double width, double height){
+    super(set.getSize(), set.getSize(), width , height);
+    this.size = set.getSize();
     build();
+    setPieceSet(set);
   }
 
   /**
@@ -28,9 +46,9 @@ public class PieceBoard extends GameBoard{
    * @param gamePiece the piece played
    */
   public void showPiece(GamePiece gamePiece){
-    for (int i = 0; i < 3; i ++){
-      for (int j = 0; j < 3; j++) {
-        this.grid.set(i, j, gamePiece.getBlocks()[i][j]);
+    for (int i = 0; i < size; i ++){
+      for (int j = 0; j < size; j++) {
+        this.grid.set(i, j, gamePiece.getBlock(i, j));
       }
     }
     logger.info("Displayed a piece on the piece board");
@@ -52,11 +70,11 @@ public class PieceBoard extends GameBoard{
     circle.setCenterY(centreY);
     circle.setRadius(radius);
     pane.setCenter(circle);
-    add(pane,1,1);
+    add(pane, size / 2, size / 2);
   }
 
   @Override
-  public void hover(GameBlock gameBlock) {
+  public void hover(int x, int y) {
     // Do nothing to prevent hovering effect
   }
 }
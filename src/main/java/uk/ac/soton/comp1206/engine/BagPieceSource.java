@@ -0,0 +1,79 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deals pieces from a shuffled bag holding every piece once. When the bag is empty it is refilled and shuffled again,
+ * so no piece can be missing for long.
+ */
+public class BagPieceSource extends PieceSource {
+
+  /**
+   * The seed the pieces come from
+   */
+  private final long seed;
+
+  /**
+   * The random number generator
+   */
+  private final SplittableRandom random;
+
+  /**
+   * The pieces in the bag
+   */
+  private final int[] bag;
+
+  /**
+   * The number of pieces already taken from the bag
+   */
+  private int taken;
+
+  /**
+   * Create a new bag source of pieces from the standard set
+   * @param seed the seed, the same seed always gives the same pieces
+   * @param lookahead the number of upcoming pieces that can be looked at
+   */
+  public BagPieceSource(long seed, int lookahead) {
+    this(seed, PieceSet.standard(), lookahead);
+  }
+
+  /**
+   * Create a new bag source
+   * @param seed the seed, the same seed always gives the same pieces
+   * @param set the set to deal pieces from
+   * @param lookahead the number of upcoming pieces that can be looked at
+   */
+  public BagPieceSource(long seed, PieceSet set, int lookahead) {
+    super(set, lookahead);
+    this.seed = seed;
+    this.random = new SplittableRandom(seed);
+    this.bag = new int[set.getCount()];
+    this.taken = bag.length;
+    for (int i = 0; i < bag.length; i++) {
+      bag[i] = i;
+    }
+  }
+
+  @Override
+  protected int generate() {
+    if (taken == bag.length) {
+      //Shuffle the bag in place
+      for (int i = bag.length - 1; i > 0; i--) {
+        int j = random.nextInt(i + 1);
+        int swap = bag[i];
+        bag[i] = bag[j];
+        bag[j] = swap;
+      }
+      taken = 0;
+    }
+    return bag[taken++];
+  }
+
+  /**
+   * Get the seed the pieces come from
+   * @return the seed
+   */
+  public long getSeed() {
+    return seed;
+  }
+}
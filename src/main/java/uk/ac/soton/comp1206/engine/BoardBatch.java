@@ -0,0 +1,413 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.Arrays;
+
+/**
+ * Many boards of the same size stepped in lockstep, for large simulations. Where a GameEngine is one object per game,
+ * a batch keeps every board in primitive arrays: one occupancy long and a colour plane per board, and the score,
+ * multiplier, level and lives of every board side by side. Each operation takes one move per board and goes through
+ * the boards in tight loops over these arrays; line clearing loops over the boards inside each row and column so the
+ * JIT can unroll and vectorize it.
+ * The rules are the rules of GameEngine: playing and then clearing a board gives the same blocks, score, multiplier
+ * and level as GameEngine.play, and losing a life matches a timeout. Dealing pieces is left to the caller, from the
+ * batch's PieceSet. Boards have at most 64 blocks.
+ */
+public class BoardBatch {
+
+  /**
+   * The number of boards
+   */
+  private final int size;
+
+  /**
+   * The number of columns and rows of every board
+   */
+  private final int cols, rows;
+
+  /**
+   * The number of centres outside each edge of the board a piece can still fit with, the centre of the set's pieces
+   */
+  private final int border;
+
+  /**
+   * The number of centre positions tried for a piece, the board and a border around it
+   */
+  private final int positions;
+
+  /**
+   * The blocks covered by every piece, rotation and centre, 0 where the piece would leave the board. Indexed by
+   * piece code * positions + (y + border) * (cols + 2 * border) + x + border.
+   */
+  private final long[] placements;
+
+  /**
+   * The value every piece code leaves in the blocks it covers
+   */
+  private final byte[] values;
+
+  /**
+   * The blocks of every row and every column
+   */
+  private final long[] rowMasks, colMasks;
+
+  /**
+   * The occupancy bits of every board, bit y * cols + x set if the block is filled
+   */
+  private final long[] occupancy;
+
+  /**
+   * The value held in every block of every board, cols * rows per board
+   */
+  private final byte[] colours;
+
+  /**
+   * The score, multiplier, level and lives of every board
+   */
+  private final int[] scores, multipliers, levels, lives;
+
+  /**
+   * Whether each board's game is over
+   */
+  private final boolean[] over;
+
+  /**
+   * The blocks of the full lines of every board, used while clearing
+   */
+  private final long[] full;
+
+  /**
+   * The number of full rows and full columns of every board, used while clearing
+   */
+  private final int[] fullRows, fullCols;
+
+  /**
+   * The lines and blocks cleared on every board by the last clear
+   */
+  private final int[] lastLines, lastBlocks;
+
+  /**
+   * Create a batch of empty boards played with the standard pieces
+   * @param size the number of boards
+   * @param cols number of columns of every board
+   * @param rows number of rows of every board
+   */
+  public BoardBatch(int size, int cols, int rows) {
+    this(size, cols, rows, PieceSet.standard());
+  }
+
+  /**
+   * Create a batch of empty boards
+   * @param size the number of boards
+   * @param cols number of columns of every board
+   * @param rows number of rows of every board
+   * @param set the set the pieces played come from
+   */
+  public BoardBatch(int size, int cols, int rows, PieceSet set) {
+    if (cols < 1 || rows < 1 || cols * rows > Long.SIZE) {
+      throw new IllegalArgumentException("Boards in a batch have at most 64 blocks, not " + cols + "x" + rows);
+    }
+    this.size = size;
+    this.cols = cols;
+    this.rows = rows;
+    this.border = set.getCentre();
+    this.positions = (cols + 2 * border) * (rows + 2 * border);
+
+    this.rowMasks = new long[rows];
+    for (int y = 0; y < rows; y++) {
+      rowMasks[y] = (-1L >>> (Long.SIZE - cols)) << (y * cols);
+    }
+    this.colMasks = new long[cols];
+    for (int x = 0; x < cols; x++) {
+      for (int y = 0; y < rows; y++) {
+        colMasks[x] |= 1L << (y * cols + x);
+      }
+    }
+
+    //Work out the blocks of every placement once, so placing a piece is a lookup
+    int codes = set.getCount() * GamePiece.ROTATIONS;
+    this.placements = new long[codes * positions];
+    this.values = new byte[codes];
+    for (int code = 0; code < codes; code++) {
+      GamePiece piece = set.createPiece(code / GamePiece.ROTATIONS, code % GamePiece.ROTATIONS);
+      values[code] = (byte) piece.getValue();
+      for (int y = -border; y < rows + border; y++) {
+        for (int x = -border; x < cols + border; x++) {
+          placements[code * positions + (y + border) * (cols + 2 * border) + x + border] = placement(piece, x, y);
+        }
+      }
+    }
+
+    this.occupancy = new long[size];
+    this.colours = new byte[size * cols * rows];
+    this.scores = new int[size];
+    this.multipliers = new int[size];
+    this.levels = new int[size];
+    this.lives = new int[size];
+    this.over = new boolean[size];
+    this.full = new long[size];
+    this.fullRows = new int[size];
+    this.fullCols = new int[size];
+    this.lastLines = new int[size];
+    this.lastBlocks = new int[size];
+    reset();
+  }
+
+  /**
+   * Empty every board and put every game back to the start
+   */
+  public void reset() {
+    Arrays.fill(occupancy, 0);
+    Arrays.fill(colours, (byte) 0);
+    Arrays.fill(scores, 0);
+    Arrays.fill(multipliers, 1);
+    Arrays.fill(levels, 0);
+    Arrays.fill(lives, GameEngine.STARTING_LIVES);
+    Arrays.fill(over, false);
+    Arrays.fill(lastLines, 0);
+    Arrays.fill(lastBlocks, 0);
+  }
+
+  /**
+   * Pack a piece and its rotation into the code the batch operations take
+   * @param piece the piece
+   * @return piece number * ROTATIONS + rotation
+   */
+  public static int pieceCode(GamePiece piece) {
+    return piece.getPiece() * GamePiece.ROTATIONS + piece.getRotation();
+  }
+
+  /**
+   * Check which boards a move can be played on, the same check as GameEngine.canPlay
+   * @param pieces the piece code of the move on every board, see pieceCode
+   * @param xs the x coordinate of the centre on every board
+   * @param ys the y coordinate of the centre on every board
+   * @param result set to whether each board's move fits, false for boards whose game is over
+   */
+  public void canPlay(int[] pieces, int[] xs, int[] ys, boolean[] result) {
+    for (int board = 0; board < size; board++) {
+      long blocks = lookup(pieces[board], xs[board], ys[board]);
+      result[board] = !over[board] && blocks != 0 && (occupancy[board] & blocks) == 0;
+    }
+  }
+
+  /**
+   * Place a move on every board it fits on. Full lines are left for clear.
+   * @param pieces the piece code of the move on every board, see pieceCode
+   * @param xs the x coordinate of the centre on every board
+   * @param ys the y coordinate of the centre on every board
+   * @param played set to whether each board's move was placed
+   */
+  public void play(int[] pieces, int[] xs, int[] ys, boolean[] played) {
+    canPlay(pieces, xs, ys, played);
+    int cells = cols * rows;
+    for (int board = 0; board < size; board++) {
+      if (!played[board]) {
+        continue;
+      }
+      long blocks = lookup(pieces[board], xs[board], ys[board]);
+      occupancy[board] |= blocks;
+      byte value = values[pieces[board]];
+      for (; blocks != 0; blocks &= blocks - 1) {
+        colours[board * cells + Long.numberOfTrailingZeros(blocks)] = value;
+      }
+    }
+  }
+
+  /**
+   * Clear the full lines of every board that was just played on and update its score, level and multiplier, as
+   * GameEngine.afterPiece does
+   * @param played whether each board was played on, boards that weren't are left alone
+   */
+  public void clear(boolean[] played) {
+    Arrays.fill(full, 0);
+    Arrays.fill(fullRows, 0);
+    Arrays.fill(fullCols, 0);
+    //One line at a time across every board, so the inner loops are straight runs over the arrays
+    for (long mask : rowMasks) {
+      for (int board = 0; board < size; board++) {
+        boolean line = (occupancy[board] & mask) == mask;
+        full[board] |= line ? mask : 0;
+        fullRows[board] += line ? 1 : 0;
+      }
+    }
+    for (long mask : colMasks) {
+      for (int board = 0; board < size; board++) {
+        boolean line = (occupancy[board] & mask) == mask;
+        full[board] |= line ? mask : 0;
+        fullCols[board] += line ? 1 : 0;
+      }
+    }
+
+    int cells = cols * rows;
+    for (int board = 0; board < size; board++) {
+      if (!played[board]) {
+        continue;
+      }
+      int lines = fullRows[board] + fullCols[board];
+      //Blocks where a cleared row crosses a cleared column are only counted once
+      int blocks = fullRows[board] * cols + fullCols[board] * rows - fullRows[board] * fullCols[board];
+      lastLines[board] = lines;
+      lastBlocks[board] = blocks;
+      scores[board] += lines * blocks * multipliers[board] * 10;
+      levels[board] = Math.max(levels[board], scores[board] / 1000);
+      multipliers[board] = lines > 0 ? multipliers[board] + 1 : 1;
+
+      occupancy[board] &= ~full[board];
+      for (long cleared = full[board]; cleared != 0; cleared &= cleared - 1) {
+        colours[board * cells + Long.numberOfTrailingZeros(cleared)] = 0;
+      }
+    }
+  }
+
+  /**
+   * Lose a life on every chosen board, as a timeout does: the multiplier resets, and a board with no lives left is
+   * over. Dealing the next piece is left to the caller.
+   * @param boards whether to lose a life on each board
+   */
+  public void loseLife(boolean[] boards) {
+    for (int board = 0; board < size; board++) {
+      if (!boards[board] || over[board]) {
+        continue;
+      }
+      if (lives[board] > 0) {
+        lives[board]--;
+        multipliers[board] = 1;
+      } else {
+        over[board] = true;
+      }
+    }
+  }
+
+  /**
+   * @return the number of boards
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of columns of every board
+   */
+  public int getCols() {
+    return cols;
+  }
+
+  /**
+   * @return the number of rows of every board
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Get the occupancy bits of a board
+   * @param board the board
+   * @return one bit per block, bit y * cols + x set if the block is filled
+   */
+  public long getOccupancy(int board) {
+    return occupancy[board];
+  }
+
+  /**
+   * Get the value of a block of a board
+   * @param board the board
+   * @param x column
+   * @param y row
+   * @return the value, 0 if the block is empty
+   */
+  public int get(int board, int x, int y) {
+    return colours[board * cols * rows + y * cols + x];
+  }
+
+  /**
+   * @param board the board
+   * @return the score of the board
+   */
+  public int getScore(int board) {
+    return scores[board];
+  }
+
+  /**
+   * @param board the board
+   * @return the multiplier of the board
+   */
+  public int getMultiplier(int board) {
+    return multipliers[board];
+  }
+
+  /**
+   * @param board the board
+   * @return the level of the board
+   */
+  public int getLevel(int board) {
+    return levels[board];
+  }
+
+  /**
+   * @param board the board
+   * @return the lives left on the board
+   */
+  public int getLives(int board) {
+    return lives[board];
+  }
+
+  /**
+   * @param board the board
+   * @return whether the game on the board is over
+   */
+  public boolean isOver(int board) {
+    return over[board];
+  }
+
+  /**
+   * @param board the board
+   * @return the number of lines the last clear cleared on the board
+   */
+  public int getLastLines(int board) {
+    return lastLines[board];
+  }
+
+  /**
+   * @param board the board
+   * @return the number of distinct blocks the last clear cleared on the board
+   */
+  public int getLastBlocks(int board) {
+    return lastBlocks[board];
+  }
+
+  /**
+   * Find the blocks a move covers
+   * @param code the piece code
+   * @param x the x coordinate of the centre
+   * @param y the y coordinate of the centre
+   * @return the blocks, 0 if the move leaves the board
+   */
+  private long lookup(int code, int x, int y) {
+    if (x < -border || x >= cols + border || y < -border || y >= rows + border) {
+      return 0;
+    }
+    return placements[code * positions + (y + border) * (cols + 2 * border) + x + border];
+  }
+
+  /**
+   * Work out the blocks a piece covers with its centre at a position
+   * @param piece the piece
+   * @param x the x coordinate of the centre
+   * @param y the y coordinate of the centre
+   * @return the blocks, 0 if any block is off the board
+   */
+  private long placement(GamePiece piece, int x, int y) {
+    int size = piece.getSize();
+    long blocks = 0;
+    for (int mask = piece.getMask(); mask != 0; mask &= mask - 1) {
+      int block = Integer.numberOfTrailingZeros(mask);
+      int gridX = x - piece.getCentre() + block % size;
+      int gridY = y - piece.getCentre() + block / size;
+      if (gridX < 0 || gridX >= cols || gridY < 0 || gridY >= rows) {
+        return 0;
+      }
+      blocks |= 1L << (gridY * cols + gridX);
+    }
+    return blocks;
+  }
+}
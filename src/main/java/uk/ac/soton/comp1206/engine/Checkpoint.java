@@ -0,0 +1,286 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import uk.ac.soton.comp1206.util.AtomicFiles;
+
+/**
+ * A saved game in progress, so it can be resumed later: the blocks of the grid, the current and following piece with
+ * their rotation, the score, level, lives and multiplier, and the time that was left to play the current piece.
+ * A checkpoint is a small binary file: the MAGIC bytes, the VERSION, the columns and rows, the id of the piece set,
+ * whether moves could be undone, the pieces as piece number and rotation (-1 for none), the counters, the milliseconds
+ * left, one byte per block, and a CRC32 of everything before it. It is written with AtomicFiles, so a crash or a
+ * power cut while saving leaves the last save as it was.
+ */
+public class Checkpoint {
+
+  /**
+   * The bytes every checkpoint starts with
+   */
+  public static final byte[] MAGIC = {'T', 'S', 'A', 'V'};
+
+  /**
+   * The version of the format written
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * Number of columns and rows of the grid
+   */
+  private final int cols, rows;
+
+  /**
+   * The set the pieces come from
+   */
+  private final PieceSet pieceSet;
+
+  /**
+   * Whether moves could be undone, as in a practice game
+   */
+  private final boolean undoable;
+
+  /**
+   * The current and following piece, null for none
+   */
+  private final GamePiece current, following;
+
+  /**
+   * The counters of the game
+   */
+  private final int score, level, lives, multiplier;
+
+  /**
+   * The milliseconds that were left to play the current piece
+   */
+  private final long remaining;
+
+  /**
+   * The blocks of the grid, row by row
+   */
+  private final byte[] blocks;
+
+  /**
+   * Create a checkpoint
+   * @param cols number of columns
+   * @param rows number of rows
+   * @param pieceSet the set the pieces come from
+   * @param undoable whether moves could be undone
+   * @param current the current piece
+   * @param following the following piece
+   * @param score the score
+   * @param level the level
+   * @param lives the lives left
+   * @param multiplier the multiplier
+   * @param remaining milliseconds left to play the current piece
+   * @param blocks the blocks of the grid, row by row
+   */
+  private Checkpoint(int cols, int rows, PieceSet pieceSet, boolean undoable, GamePiece current,
+      GamePiece following, int score, int level, int lives, int multiplier, long remaining, byte[] blocks) {
+    this.cols = cols;
+    this.rows = rows;
+    this.pieceSet = pieceSet;
+    this.undoable = undoable;
+    this.current = current;
+    this.following = following;
+    this.score = score;
+    this.level = level;
+    this.lives = lives;
+    this.multiplier = multiplier;
+    this.remaining = remaining;
+    this.blocks = blocks;
+  }
+
+  /**
+   * Save the state of a game
+   * @param engine the engine of the game
+   * @param remaining milliseconds left to play the current piece, from the game loop
+   * @return the checkpoint
+   */
+  public static Checkpoint capture(GameEngine engine, long remaining) {
+    Grid grid = engine.getGrid();
+    byte[] blocks = new byte[grid.getCols() * grid.getRows()];
+    grid.saveValues(blocks, 0);
+    return new Checkpoint(grid.getCols(), grid.getRows(), engine.getPieceSet(), engine.getHistory() != null,
+        engine.getCurrentPiece(), engine.getFollowingPiece(), engine.getScore(), engine.getLevel(),
+        engine.getLives(), engine.getMultiplier(), remaining, blocks);
+  }
+
+  /**
+   * Put a game back in the saved state. The grid listener is told once that the whole grid changed.
+   * @param engine an engine with a grid of the same size, dealing from the same set of pieces
+   */
+  public void restore(GameEngine engine) {
+    Grid grid = engine.getGrid();
+    if (grid.getCols() != cols || grid.getRows() != rows) {
+      throw new IllegalArgumentException("The checkpoint is " + cols + "x" + rows + ", not " + grid.getCols() + "x"
+          + grid.getRows());
+    }
+    if (!engine.getPieceSet().getId().equals(pieceSet.getId())) {
+      throw new IllegalArgumentException("The checkpoint is played with " + pieceSet + ", not "
+          + engine.getPieceSet());
+    }
+    grid.loadValues(blocks, 0);
+    engine.restore(current, following, score, multiplier, level, lives);
+  }
+
+  /**
+   * Write the checkpoint, replacing the file only once it is all written
+   * @param file the file
+   * @throws IOException if the file can't be written
+   */
+  public void write(Path file) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + blocks.length);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.write(MAGIC);
+    out.writeByte(VERSION);
+    out.writeShort(cols);
+    out.writeShort(rows);
+    out.writeUTF(pieceSet.getId());
+    out.writeBoolean(undoable);
+    writePiece(out, current);
+    writePiece(out, following);
+    out.writeInt(score);
+    out.writeInt(level);
+    out.writeInt(lives);
+    out.writeInt(multiplier);
+    out.writeLong(remaining);
+    out.write(blocks);
+    CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray());
+    out.writeInt((int) crc.getValue());
+    AtomicFiles.write(file, bytes.toByteArray());
+  }
+
+  /**
+   * Read a checkpoint
+   * @param file the file
+   * @return the checkpoint
+   * @throws IOException if the file can't be read
+   * @throws IllegalArgumentException if the file isn't a checkpoint or is damaged
+   */
+  public static Checkpoint read(Path file) throws IOException {
+    byte[] data = Files.readAllBytes(file);
+    if (data.length < Integer.BYTES) {
+      throw new IllegalArgumentException("Checkpoint " + file + " is cut short");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length - Integer.BYTES);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    try {
+      in.skipBytes(data.length - Integer.BYTES);
+      if (in.readInt() != (int) crc.getValue()) {
+        throw new IllegalArgumentException("Checkpoint " + file + " is damaged");
+      }
+      in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - Integer.BYTES));
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new IllegalArgumentException(file + " is not a checkpoint");
+      }
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Checkpoint " + file + " has unknown version " + version);
+      }
+      int cols = in.readUnsignedShort();
+      int rows = in.readUnsignedShort();
+      if (cols < 1 || rows < 1 || cols > Grid.MAX_SIZE || rows > Grid.MAX_SIZE) {
+        throw new IllegalArgumentException("Checkpoint " + file + " has a " + cols + "x" + rows + " grid");
+      }
+      PieceSet set = PieceSet.load(in.readUTF());
+      boolean undoable = in.readBoolean();
+      GamePiece current = readPiece(in, set);
+      GamePiece following = readPiece(in, set);
+      int score = in.readInt();
+      int level = in.readInt();
+      int lives = in.readInt();
+      int multiplier = in.readInt();
+      long remaining = in.readLong();
+      byte[] blocks = new byte[cols * rows];
+      in.readFully(blocks);
+      return new Checkpoint(cols, rows, set, undoable, current, following, score, level, lives, multiplier,
+          remaining, blocks);
+    } catch (EOFException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Checkpoint " + file + " is damaged", e);
+    }
+  }
+
+  /**
+   * Write a piece and its rotation
+   * @param out where to write it
+   * @param piece the piece, may be null
+   * @throws IOException never, for a stream in memory
+   */
+  private static void writePiece(DataOutputStream out, GamePiece piece) throws IOException {
+    out.writeShort(piece == null ? -1 : piece.getPiece());
+    out.writeByte(piece == null ? 0 : piece.getRotation());
+  }
+
+  /**
+   * Read a piece and its rotation
+   * @param in where to read it from
+   * @param set the set the piece comes from
+   * @return the piece, null for none
+   * @throws IOException if the data runs out
+   */
+  private static GamePiece readPiece(DataInputStream in, PieceSet set) throws IOException {
+    int piece = in.readShort();
+    int rotation = in.readUnsignedByte();
+    return piece < 0 ? null : set.createPiece(piece, rotation);
+  }
+
+  /**
+   * Get the number of columns of the grid
+   * @return the columns
+   */
+  public int getCols() {
+    return cols;
+  }
+
+  /**
+   * Get the number of rows of the grid
+   * @return the rows
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Get the set the pieces come from
+   * @return the piece set
+   */
+  public PieceSet getPieceSet() {
+    return pieceSet;
+  }
+
+  /**
+   * Whether moves could be undone in the saved game
+   * @return true for a practice game
+   */
+  public boolean isUndoable() {
+    return undoable;
+  }
+
+  /**
+   * Get the score
+   * @return the score
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Get the milliseconds that were left to play the current piece
+   * @return the time left, 0 if the game loop wasn't running
+   */
+  public long getRemaining() {
+    return remaining;
+  }
+}
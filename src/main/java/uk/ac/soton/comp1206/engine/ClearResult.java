@@ -0,0 +1,164 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * The rows and columns cleared from a Grid after a piece was played. The cleared lines are kept as bitmasks, so the
+ * cleared blocks can be walked through without creating a coordinate object for each of them.
+ */
+public class ClearResult {
+
+    /**
+     * Receives the blocks of a ClearResult one at a time
+     */
+    public interface BlockConsumer {
+
+        /**
+         * Handle one cleared block
+         * @param x column
+         * @param y row
+         */
+        void accept(int x, int y);
+    }
+
+    /**
+     * The number of columns in the grid that was cleared
+     */
+    private final int cols;
+
+    /**
+     * The number of rows in the grid that was cleared
+     */
+    private final int rows;
+
+    /**
+     * One bit for every cleared row
+     */
+    private final long[] clearedRows;
+
+    /**
+     * One bit for every cleared column
+     */
+    private final long[] clearedCols;
+
+    /**
+     * Number of lines cleared
+     */
+    private final int lines;
+
+    /**
+     * Number of distinct blocks cleared
+     */
+    private final int blocks;
+
+    /**
+     * Create a new ClearResult from the cleared row and column bits. The arrays are kept, not copied.
+     * @param cols number of columns in the grid
+     * @param rows number of rows in the grid
+     * @param clearedRows one bit for every cleared row
+     * @param clearedCols one bit for every cleared column
+     */
+    public ClearResult(int cols, int rows, long[] clearedRows, long[] clearedCols) {
+        this.cols = cols;
+        this.rows = rows;
+        this.clearedRows = clearedRows;
+        this.clearedCols = clearedCols;
+
+        int rowLines = 0;
+        for (long word : clearedRows) {
+            rowLines += Long.bitCount(word);
+        }
+        int colLines = 0;
+        for (long word : clearedCols) {
+            colLines += Long.bitCount(word);
+        }
+        this.lines = rowLines + colLines;
+        //Blocks where a cleared row crosses a cleared column are only counted once
+        this.blocks = rowLines * cols + colLines * rows - rowLines * colLines;
+    }
+
+    /**
+     * Get the number of lines cleared
+     * @return lines cleared
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Get the number of distinct blocks cleared
+     * @return blocks cleared
+     */
+    public int getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Whether anything was cleared
+     * @return true if at least one line was cleared
+     */
+    public boolean isEmpty() {
+        return lines == 0;
+    }
+
+    /**
+     * Whether a row was cleared
+     * @param y row
+     * @return true if the row was cleared
+     */
+    public boolean isRowCleared(int y) {
+        return (clearedRows[y >>> 6] & (1L << y)) != 0;
+    }
+
+    /**
+     * Whether a column was cleared
+     * @param x column
+     * @return true if the column was cleared
+     */
+    public boolean isColumnCleared(int x) {
+        return (clearedCols[x >>> 6] & (1L << x)) != 0;
+    }
+
+    /**
+     * Whether a block was cleared
+     * @param x column
+     * @param y row
+     * @return true if the block was part of a cleared line
+     */
+    public boolean contains(int x, int y) {
+        return isRowCleared(y) || isColumnCleared(x);
+    }
+
+    /**
+     * Pass every cleared block to the consumer exactly once
+     * @param consumer receives the column and row of each cleared block
+     */
+    public void forEach(BlockConsumer consumer) {
+        for (int word = 0; word < clearedRows.length; word++) {
+            for (long bits = clearedRows[word]; bits != 0; bits &= bits - 1) {
+                int y = (word << 6) + Long.numberOfTrailingZeros(bits);
+                for (int x = 0; x < cols; x++) {
+                    consumer.accept(x, y);
+                }
+            }
+        }
+        for (int word = 0; word < clearedCols.length; word++) {
+            for (long bits = clearedCols[word]; bits != 0; bits &= bits - 1) {
+                int x = (word << 6) + Long.numberOfTrailingZeros(bits);
+                for (int y = 0; y < rows; y++) {
+                    //Skip blocks already given as part of a cleared row
+                    if (!isRowCleared(y)) {
+                        consumer.accept(x, y);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the string representation of this result
+     * @return the lines and blocks cleared
+     */
+    @Override
+    public String toString() {
+        return "ClearResult [lines = " + lines + ", blocks = " + blocks + "]";
+    }
+}
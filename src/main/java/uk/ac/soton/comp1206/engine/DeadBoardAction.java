@@ -0,0 +1,22 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * What a GameEngine does when neither the current nor the following piece can be played anywhere, in any rotation
+ */
+public enum DeadBoardAction {
+
+  /**
+   * Do nothing, the player loses a life when the game loop runs out as usual
+   */
+  WAIT,
+
+  /**
+   * End the game straight away
+   */
+  END_GAME,
+
+  /**
+   * Skip straight to the next piece, losing a life as if the game loop had run out
+   */
+  SKIP_PIECE
+}
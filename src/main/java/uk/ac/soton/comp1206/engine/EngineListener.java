@@ -0,0 +1,88 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * Listener for the events of a GameEngine. Every method does nothing by default, so a listener only needs to handle
+ * the events it cares about.
+ */
+public interface EngineListener {
+
+  /**
+   * Handles the event when a piece is played on the grid
+   * @param piece the piece played
+   * @param x the x coordinate it was played at
+   * @param y the y coordinate it was played at
+   */
+  default void piecePlayed(GamePiece piece, int x, int y) {
+  }
+
+  /**
+   * Handles the event when a new piece is dealt
+   * @param piece played now
+   * @param following played after
+   */
+  default void nextPiece(GamePiece piece, GamePiece following) {
+  }
+
+  /**
+   * Handles the event when the current piece is rotated
+   * @param piece the rotated current piece
+   */
+  default void pieceRotated(GamePiece piece) {
+  }
+
+  /**
+   * Handles the event when the current and following piece are swapped
+   * @param piece played now
+   * @param following played after
+   */
+  default void piecesSwapped(GamePiece piece, GamePiece following) {
+  }
+
+  /**
+   * Handles the event when lines are cleared
+   * @param cleared the lines cleared
+   */
+  default void linesCleared(ClearResult cleared) {
+  }
+
+  /**
+   * Handles the event when the score changes
+   * @param score the new score
+   */
+  default void scoreChanged(int score) {
+  }
+
+  /**
+   * Handles the event when the level changes
+   * @param level the new level
+   */
+  default void levelChanged(int level) {
+  }
+
+  /**
+   * Handles the event when the number of lives changes
+   * @param lives the lives left
+   */
+  default void livesChanged(int lives) {
+  }
+
+  /**
+   * Handles the event when the multiplier changes
+   * @param multiplier the new multiplier
+   */
+  default void multiplierChanged(int multiplier) {
+  }
+
+  /**
+   * Handles the event when neither the current nor the following piece can be played anywhere
+   * @param action what the engine is about to do about it
+   */
+  default void deadBoard(DeadBoardAction action) {
+  }
+
+  /**
+   * Handles the event when the game is over
+   */
+  default void gameOver() {
+  }
+}
@@ -0,0 +1,118 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Makes a GameEngine a single-writer actor. Every change to the engine is sent as a command to a lock-free mailbox,
+ * from any thread: moves by the player, timeouts of the game loop, pieces from the server. Commands run one at a time,
+ * in the order they were sent, on the thread given by the drainer, so the engine never needs a lock.
+ * After each batch of commands an immutable GameState is published that any thread can read.
+ * The actor is an Executor, so it can be handed to a GameLoop as its dispatcher.
+ */
+public class GameActor implements Executor {
+
+  private static final Logger logger = LogManager.getLogger(GameActor.class);
+
+  /**
+   * The engine only this actor changes
+   */
+  private final GameEngine engine;
+
+  /**
+   * Commands waiting to run, added to by many threads and taken by one
+   */
+  private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+
+  /**
+   * The number of commands sent but not yet run. The sender that raises it from 0 starts a drain.
+   */
+  private final AtomicInteger pending = new AtomicInteger();
+
+  /**
+   * Runs the drain of the mailbox on the thread that owns the engine
+   */
+  private final Executor drainer;
+
+  /**
+   * The state after the last batch of commands
+   */
+  private volatile GameState state;
+
+  /**
+   * Told the new state after every batch of commands
+   */
+  private Consumer<GameState> stateListener;
+
+  /**
+   * Create a new actor
+   * @param engine the engine to own
+   * @param drainer runs the commands on the thread that owns the engine, Runnable::run to run them on the sender
+   */
+  public GameActor(GameEngine engine, Executor drainer) {
+    this.engine = engine;
+    this.drainer = drainer;
+    this.state = new GameState(engine);
+  }
+
+  /**
+   * Send a command to run on the engine's thread
+   * @param command the command
+   */
+  @Override
+  public void execute(Runnable command) {
+    mailbox.add(command);
+    if (pending.getAndIncrement() == 0) {
+      drainer.execute(this::drain);
+    }
+  }
+
+  /**
+   * Send a command that is given the engine
+   * @param command the command
+   */
+  public void send(Consumer<GameEngine> command) {
+    execute(() -> command.accept(engine));
+  }
+
+  /**
+   * Get the state published after the last batch of commands, from any thread
+   * @return the state
+   */
+  public GameState getState() {
+    return state;
+  }
+
+  /**
+   * Set the listener told the new state after every batch of commands, on the engine's thread
+   * @param listener the listener
+   */
+  public void setOnState(Consumer<GameState> listener) {
+    this.stateListener = listener;
+  }
+
+  /**
+   * Run commands until the mailbox is empty, then publish the state. Commands sent while draining, including by the
+   * commands themselves, join this drain rather than starting another.
+   */
+  private void drain() {
+    do {
+      Runnable command = mailbox.poll();
+      try {
+        command.run();
+      } catch (RuntimeException e) {
+        logger.error("Game command failed", e);
+      }
+    } while (pending.decrementAndGet() != 0);
+
+    state = new GameState(engine);
+    if (stateListener != null) {
+      stateListener.accept(state);
+    }
+  }
+}
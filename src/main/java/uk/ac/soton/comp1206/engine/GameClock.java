@@ -0,0 +1,45 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * A source of time for the game loop. The clock tells the time and runs tasks after a delay, so the same game can be
+ * driven by the wall clock when it is played or by virtual time when it is simulated.
+ */
+public interface GameClock {
+
+  /**
+   * A task that was scheduled on a GameClock
+   */
+  interface Task {
+
+    /**
+     * Stop the task from running, if it has not run yet
+     */
+    void cancel();
+
+    /**
+     * Get the time left before the task runs
+     * @return milliseconds left, 0 if the task is due or has run
+     */
+    long getRemaining();
+  }
+
+  /**
+   * Get the current time of this clock
+   * @return the time in milliseconds
+   */
+  long now();
+
+  /**
+   * Run a task once after a delay
+   * @param task the task to run
+   * @param delay the delay in milliseconds
+   * @return the scheduled task, which can be cancelled
+   */
+  Task schedule(Runnable task, long delay);
+
+  /**
+   * Stop this clock and release anything it holds, such as a thread. Tasks still waiting will not run.
+   */
+  default void shutdown() {
+  }
+}
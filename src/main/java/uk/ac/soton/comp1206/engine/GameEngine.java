@@ -0,0 +1,556 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * The GameEngine holds the rules and state of a game of TetrECS: the grid, the current and following piece, the score,
+ * multiplier, level and lives. It does not depend on JavaFX, sound or threads, so it can run in a plain JVM, a test or
+ * a server process. Everything that happens is reported to an EngineListener.
+ */
+public class GameEngine {
+
+    /**
+     * The number of lives at the start of a game
+     */
+    public static final int STARTING_LIVES = 3;
+
+    /**
+     * The grid model linked to the game
+     */
+    private final Grid grid;
+
+    /**
+     * Decides every new piece
+     */
+    private final PieceSource pieces;
+
+    /**
+     * The listener to call on every event, does nothing until one is set
+     */
+    private EngineListener listener = new EngineListener() {};
+
+    /**
+     * The current GamePiece in play
+     */
+    private GamePiece currentPiece;
+
+    /**
+     * The piece that is coming next
+     */
+    private GamePiece followingPiece;
+
+    /**
+     * Score of the game
+     */
+    private int score = 0;
+
+    /**
+     * Level of the game
+     */
+    private int level = 0;
+
+    /**
+     * Lives remaining in the game
+     */
+    private int lives = STARTING_LIVES;
+
+    /**
+     * Multiplier for scoring
+     */
+    private int multiplier = 1;
+
+    /**
+     * Whether the game is over
+     */
+    private boolean over = false;
+
+    /**
+     * The lines cleared by the last piece played
+     */
+    private ClearResult lastCleared;
+
+    /**
+     * What to do when no piece can be played
+     */
+    private DeadBoardAction deadBoardAction = DeadBoardAction.WAIT;
+
+    /**
+     * Snapshots for undo and redo, null if the game can't be undone
+     */
+    private GameHistory history;
+
+    /**
+     * Told about every move, does nothing until one is set
+     */
+    private MoveRecorder recorder = new MoveRecorder() {};
+
+    /**
+     * Create a new engine with the specified columns and rows, dealing random pieces
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public GameEngine(int cols, int rows) {
+        this(cols, rows, PieceSource.random(System.nanoTime()));
+    }
+
+    /**
+     * Create a new engine with the specified columns and rows
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param pieces decides every new piece
+     */
+    public GameEngine(int cols, int rows, PieceSource pieces) {
+        this.grid = new Grid(cols, rows);
+        this.pieces = pieces;
+        this.lastCleared = grid.clearLines();
+    }
+
+    /**
+     * Set the listener to handle the events of this engine
+     * @param listener listener to set
+     */
+    public void setListener(EngineListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set the recorder told about every move of this engine, before the game starts
+     * @param recorder the recorder, null to stop recording
+     */
+    public void setRecorder(MoveRecorder recorder) {
+        this.recorder = recorder == null ? new MoveRecorder() {} : recorder;
+    }
+
+    /**
+     * Deal the first current and following piece
+     */
+    public void start() {
+        recorder.started(this);
+        followingPiece = deal();
+        dealNextPiece();
+        if (history != null) {
+            history.clear();
+            history.record(this);
+        }
+    }
+
+    /**
+     * Replaces the current piece with the following piece and spawns a new following piece
+     */
+    public void nextPiece() {
+        recorder.skipped();
+        dealNextPiece();
+    }
+
+    /**
+     * Move the following piece up to be the current piece and deal a new following piece
+     */
+    private void dealNextPiece() {
+        currentPiece = followingPiece;
+        followingPiece = deal();
+        listener.nextPiece(currentPiece, followingPiece);
+    }
+
+    /**
+     * Take a new piece from the piece source
+     * @return the piece, in its starting rotation
+     */
+    private GamePiece deal() {
+        GamePiece piece = pieces.nextPiece();
+        recorder.pieceDealt(piece.getPiece());
+        return piece;
+    }
+
+    /**
+     * Whether the current piece can be played at a position
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return whether the piece fits
+     */
+    public boolean canPlay(int x, int y) {
+        return currentPiece != null && grid.canPlayPiece(currentPiece, x, y);
+    }
+
+    /**
+     * Play the current piece at a position, deal the next piece and clear any full lines
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return whether the piece was played
+     */
+    public boolean play(int x, int y) {
+        if (over || !canPlay(x, y)) {
+            return false;
+        }
+        GamePiece played = currentPiece;
+        recorder.played(played, x, y);
+        grid.playPiece(played, x, y);
+        listener.piecePlayed(played, x, y);
+        dealNextPiece();
+        afterPiece();
+        checkDeadBoard();
+        if (history != null && !over) {
+            history.record(this);
+        }
+        return true;
+    }
+
+    /**
+     * Clears full lines and updates the score and multiplier
+     */
+    public void afterPiece() {
+        lastCleared = grid.clearLines();
+        boolean clearedLines = !lastCleared.isEmpty();
+        if (clearedLines) {
+            listener.linesCleared(lastCleared);
+        }
+        score(lastCleared.getLines(), lastCleared.getBlocks());
+        multiplier(clearedLines);
+    }
+
+    /**
+     * Calculates and updates the score and level
+     * @param lines number of lines cleared
+     * @param blocks number of blocks
+     */
+    public void score(int lines, int blocks) {
+        int points = lines * blocks * multiplier * 10;
+        if (points == 0) {
+            return;
+        }
+        setScore(score + points);
+        //Calculate the level
+        int newLevel = score / 1000;
+        if (newLevel > level) {
+            setLevel(newLevel);
+        }
+    }
+
+    /**
+     * Updates the multiplier
+     * @param clearedLines if any lines were cleared
+     */
+    public void multiplier(boolean clearedLines) {
+        setMultiplier(clearedLines ? multiplier + 1 : 1);
+    }
+
+    /**
+     * Rotates the current piece a number of times, 3 turns rotate it left
+     * @param turns number of 90 degree rotations
+     */
+    public void rotate(int turns) {
+        if (currentPiece != null) {
+            recorder.rotated(turns);
+            currentPiece = currentPiece.rotated(turns);
+            listener.pieceRotated(currentPiece);
+        }
+    }
+
+    /**
+     * Swaps the current piece with the following piece
+     */
+    public void swap() {
+        recorder.swapped();
+        GamePiece temp = currentPiece;
+        currentPiece = followingPiece;
+        followingPiece = temp;
+        listener.piecesSwapped(currentPiece, followingPiece);
+    }
+
+    /**
+     * Handles the timer running out before a piece was played: a life is lost, the multiplier resets and the next
+     * piece is dealt. Losing a life with none left ends the game.
+     */
+    public void timeout() {
+        if (!over) {
+            recorder.timedOut();
+        }
+        loseLife();
+        checkDeadBoard();
+        if (history != null && !over) {
+            history.record(this);
+        }
+    }
+
+    /**
+     * Whether neither the current nor the following piece can be played anywhere, in any rotation. Swapping the pieces
+     * would not help either.
+     * @return true if the board is dead
+     */
+    public boolean isDeadBoard() {
+        if (currentPiece == null || grid.hasLegalMove(currentPiece)) {
+            return false;
+        }
+        return followingPiece == null || !grid.hasLegalMove(followingPiece);
+    }
+
+    /**
+     * Set what to do as soon as no piece can be played
+     * @param action the action, WAIT to leave it to the game loop
+     */
+    public void setDeadBoardAction(DeadBoardAction action) {
+        this.deadBoardAction = action;
+    }
+
+    /**
+     * Get what is done as soon as no piece can be played
+     * @return the action
+     */
+    public DeadBoardAction getDeadBoardAction() {
+        return deadBoardAction;
+    }
+
+    /**
+     * Keep snapshots of the game after every move so moves can be undone and redone
+     * @param history the history to record into, null to stop recording
+     */
+    public void setHistory(GameHistory history) {
+        this.history = history;
+        if (history != null && currentPiece != null) {
+            history.clear();
+            history.record(this);
+        }
+    }
+
+    /**
+     * Get the undo and redo history
+     * @return the history, null if the game can't be undone
+     */
+    public GameHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Go back to the state before the last move
+     * @return whether a move was undone
+     */
+    public boolean undo() {
+        if (!over && history != null && history.undo(this)) {
+            recorder.undone();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Play the last undone move again
+     * @return whether a move was redone
+     */
+    public boolean redo() {
+        if (!over && history != null && history.redo(this)) {
+            recorder.redone();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Put the pieces and counters back to a snapshot, telling the listener about each of them. The grid is restored
+     * separately. A game that was over is carried on.
+     * @param current the current piece
+     * @param following the following piece
+     * @param score the score
+     * @param multiplier the multiplier
+     * @param level the level
+     * @param lives the lives left
+     */
+    public void restore(GamePiece current, GamePiece following, int score, int multiplier, int level, int lives) {
+        over = false;
+        currentPiece = current;
+        followingPiece = following;
+        lastCleared = grid.clearLines();
+        setScore(score);
+        setMultiplier(multiplier);
+        setLevel(level);
+        setLives(lives);
+        listener.nextPiece(currentPiece, followingPiece);
+    }
+
+    /**
+     * Lose a life and deal the next piece, or end the game if there are no lives left
+     */
+    private void loseLife() {
+        if (over) {
+            return;
+        }
+        if (lives > 0) {
+            setLives(lives - 1);
+        } else {
+            endGame();
+            return;
+        }
+        setMultiplier(1);
+        dealNextPiece();
+        if (history != null) {
+            //A lost life can't be undone, so nothing before it can be either
+            history.clear();
+        }
+    }
+
+    /**
+     * Act on a dead board straight away rather than waiting for the game loop. Skipping deals new pieces, which may
+     * leave the board dead again, so keep going until a piece fits or the game is over.
+     */
+    private void checkDeadBoard() {
+        while (!over && deadBoardAction != DeadBoardAction.WAIT && isDeadBoard()) {
+            listener.deadBoard(deadBoardAction);
+            if (deadBoardAction == DeadBoardAction.END_GAME) {
+                endGame();
+            } else {
+                loseLife();
+            }
+        }
+    }
+
+    /**
+     * End the game
+     */
+    private void endGame() {
+        over = true;
+        recorder.gameOver(score);
+        listener.gameOver();
+    }
+
+    /**
+     * Calculates the time delay for the timer at the current level
+     * @return the time to delay in milliseconds
+     */
+    public int getTimerDelay() {
+        return Math.max(2500, (12000 - (500 * level)));
+    }
+
+    /**
+     * Get the source deciding the pieces of this game
+     * @return the piece source
+     */
+    public PieceSource getPieceSource() {
+        return pieces;
+    }
+
+    /**
+     * Get the set the pieces of this game come from
+     * @return the piece set
+     */
+    public PieceSet getPieceSet() {
+        return pieces.getPieceSet();
+    }
+
+    /**
+     * Get the grid model representing the game state of the board
+     * @return game grid model
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return returns the current piece being played
+     */
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * sets to the current piece the passed piece
+     * @param currentPiece the piece being played
+     */
+    public void setCurrentPiece(GamePiece currentPiece) {
+        this.currentPiece = currentPiece;
+    }
+
+    /**
+     * @return returns the following piece
+     */
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * sets to the followingPiece the passed piece
+     * @param followingPiece the piece to be played next
+     */
+    public void setFollowingPiece(GamePiece followingPiece) {
+        this.followingPiece = followingPiece;
+    }
+
+    /**
+     * Get the lines cleared by the last piece played
+     * @return the lines cleared, empty if none were
+     */
+    public ClearResult getLastCleared() {
+        return lastCleared;
+    }
+
+    /**
+     * Whether the game is over
+     * @return true once a life was lost with none left
+     */
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Returns the score
+     * @return score number
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Sets the score
+     * @param score score to set
+     */
+    public void setScore(int score) {
+        this.score = score;
+        listener.scoreChanged(score);
+    }
+
+    /**
+     * Get the level
+     * @return level number
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Assign the level
+     * @param level level number
+     */
+    public void setLevel(int level) {
+        this.level = level;
+        listener.levelChanged(level);
+    }
+
+    /**
+     * Get the number of lives
+     * @return number of lives
+     */
+    public int getLives() {
+        return lives;
+    }
+
+    /**
+     * Assign the number of lives
+     * @param lives lives left
+     */
+    public void setLives(int lives) {
+        this.lives = lives;
+        listener.livesChanged(lives);
+    }
+
+    /**
+     * Get the multiplier
+     * @return multiplier number
+     */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Assign the multiplier
+     * @param multiplier multiplier number
+     */
+    public void setMultiplier(int multiplier) {
+        this.multiplier = multiplier;
+        listener.multiplierChanged(multiplier);
+    }
+}
@@ -0,0 +1,256 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * The undo and redo history of a GameEngine, used in practice games. After every move the engine records a snapshot:
+ * the occupancy bits and colour plane of the grid, the current and following piece with their rotation, and the score,
+ * multiplier, level and lives. Snapshots live in flat arrays allocated once, used as a ring buffer; when it is full the
+ * oldest snapshot is dropped. Restoring a snapshot copies it back in O(cells) and tells the grid listener once.
+ * A snapshot the same as the one the game is at is not recorded again; the Zobrist hash of the grid makes that check
+ * cheap.
+ * Losing a life, when the timer runs out or a dead board is skipped, forgets every snapshot, so undo never gives a life
+ * back.
+ */
+public class GameHistory {
+
+  /**
+   * The memory used for snapshots when no budget is given, in bytes
+   */
+  public static final long DEFAULT_BUDGET = 64 * 1024;
+
+  /**
+   * The number of ints in a snapshot: current piece, following piece, score, multiplier, level and lives
+   */
+  private static final int STATS = 6;
+
+  /**
+   * The number of longs holding the occupancy bits of one snapshot
+   */
+  private final int words;
+
+  /**
+   * The number of blocks in one snapshot
+   */
+  private final int cells;
+
+  /**
+   * The number of snapshots that can be kept
+   */
+  private final int capacity;
+
+  /**
+   * The occupancy bits of every snapshot
+   */
+  private final long[] bits;
+
+  /**
+   * The colour plane of every snapshot
+   */
+  private final byte[] values;
+
+  /**
+   * The pieces and counters of every snapshot
+   */
+  private final int[] stats;
+
+  /**
+   * The Zobrist hash of the grid of every snapshot
+   */
+  private final long[] hashes;
+
+  /**
+   * The slot of the oldest snapshot
+   */
+  private int oldest = 0;
+
+  /**
+   * The number of snapshots kept
+   */
+  private int size = 0;
+
+  /**
+   * The snapshot the game is at, counted from the oldest. Snapshots after it can be redone.
+   */
+  private int position = -1;
+
+  /**
+   * Create a new history for a grid, keeping as many snapshots as fit in a memory budget
+   * @param cols number of columns
+   * @param rows number of rows
+   * @param budget the memory to use for snapshots in bytes, at least two snapshots are always kept
+   */
+  public GameHistory(int cols, int rows, long budget) {
+    this.cells = cols * rows;
+    this.words = cells > Long.SIZE ? (cells + Long.SIZE - 1) / Long.SIZE : 1;
+    this.capacity = (int) Math.min(Integer.MAX_VALUE / Math.max(cells, STATS),
+        Math.max(2, budget / getSnapshotBytes(cols, rows)));
+    this.bits = new long[capacity * words];
+    this.values = new byte[capacity * cells];
+    this.stats = new int[capacity * STATS];
+    this.hashes = new long[capacity];
+  }
+
+  /**
+   * Get the memory one snapshot of a grid takes
+   * @param cols number of columns
+   * @param rows number of rows
+   * @return bytes per snapshot
+   */
+  public static long getSnapshotBytes(int cols, int rows) {
+    int cells = cols * rows;
+    int words = cells > Long.SIZE ? (cells + Long.SIZE - 1) / Long.SIZE : 1;
+    return (words + 1) * (long) Long.BYTES + cells + STATS * (long) Integer.BYTES;
+  }
+
+  /**
+   * Get the number of snapshots that can be kept
+   * @return the capacity
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Whether there is an earlier snapshot to go back to
+   * @return true if undo would do something
+   */
+  public boolean canUndo() {
+    return position > 0;
+  }
+
+  /**
+   * Whether there is a later snapshot to go forward to
+   * @return true if redo would do something
+   */
+  public boolean canRedo() {
+    return position < size - 1;
+  }
+
+  /**
+   * Forget every snapshot
+   */
+  public void clear() {
+    oldest = 0;
+    size = 0;
+    position = -1;
+  }
+
+  /**
+   * Record the state of an engine after a move. Anything that could be redone is forgotten.
+   * @param engine the engine
+   */
+  public void record(GameEngine engine) {
+    if (isCurrent(engine)) {
+      return;
+    }
+    size = position + 1;
+    if (size == capacity) {
+      //Drop the oldest snapshot to make room
+      oldest = (oldest + 1) % capacity;
+      size--;
+    }
+    int slot = (oldest + size) % capacity;
+    size++;
+    position = size - 1;
+
+    engine.getGrid().copyState(bits, slot * words, values, slot * cells);
+    hashes[slot] = engine.getGrid().getHash();
+    int offset = slot * STATS;
+    stats[offset] = pieceCode(engine.getCurrentPiece());
+    stats[offset + 1] = pieceCode(engine.getFollowingPiece());
+    stats[offset + 2] = engine.getScore();
+    stats[offset + 3] = engine.getMultiplier();
+    stats[offset + 4] = engine.getLevel();
+    stats[offset + 5] = engine.getLives();
+  }
+
+  /**
+   * Put an engine back to the snapshot before the current one
+   * @param engine the engine
+   * @return whether there was a snapshot to go back to
+   */
+  public boolean undo(GameEngine engine) {
+    if (!canUndo()) {
+      return false;
+    }
+    restore(engine, --position);
+    return true;
+  }
+
+  /**
+   * Put an engine forward to the snapshot after the current one
+   * @param engine the engine
+   * @return whether there was a snapshot to go forward to
+   */
+  public boolean redo(GameEngine engine) {
+    if (!canRedo()) {
+      return false;
+    }
+    restore(engine, ++position);
+    return true;
+  }
+
+  /**
+   * Whether the engine is in the same state as the snapshot the game is at. The hash is checked first, then the
+   * blocks, pieces and counters.
+   * @param engine the engine
+   * @return true if recording would store the same snapshot again
+   */
+  private boolean isCurrent(GameEngine engine) {
+    if (position < 0) {
+      return false;
+    }
+    int slot = (oldest + position) % capacity;
+    Grid grid = engine.getGrid();
+    if (hashes[slot] != grid.getHash()) {
+      return false;
+    }
+    int offset = slot * STATS;
+    if (stats[offset] != pieceCode(engine.getCurrentPiece())
+        || stats[offset + 1] != pieceCode(engine.getFollowingPiece()) || stats[offset + 2] != engine.getScore()
+        || stats[offset + 3] != engine.getMultiplier() || stats[offset + 4] != engine.getLevel()
+        || stats[offset + 5] != engine.getLives()) {
+      return false;
+    }
+    for (int y = 0, index = slot * cells; y < grid.getRows(); y++) {
+      for (int x = 0; x < grid.getCols(); x++, index++) {
+        if (values[index] != grid.get(x, y)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Copy a snapshot back into an engine
+   * @param engine the engine
+   * @param index the snapshot, counted from the oldest
+   */
+  private void restore(GameEngine engine, int index) {
+    int slot = (oldest + index) % capacity;
+    engine.getGrid().restoreState(bits, slot * words, values, slot * cells);
+    int offset = slot * STATS;
+    PieceSet set = engine.getPieceSet();
+    engine.restore(pieceOf(set, stats[offset]), pieceOf(set, stats[offset + 1]), stats[offset + 2],
+        stats[offset + 3], stats[offset + 4], stats[offset + 5]);
+  }
+
+  /**
+   * Pack a piece and its rotation into an int
+   * @param piece the piece, may be null
+   * @return the packed piece, -1 for null
+   */
+  private static int pieceCode(GamePiece piece) {
+    return piece == null ? -1 : piece.getPiece() * GamePiece.ROTATIONS + piece.getRotation();
+  }
+
+  /**
+   * Unpack a piece packed by pieceCode
+   * @param set the set the game's pieces come from
+   * @param code the packed piece
+   * @return the piece, null for -1
+   */
+  private static GamePiece pieceOf(PieceSet set, int code) {
+    return code < 0 ? null : set.createPiece(code / GamePiece.ROTATIONS, code % GamePiece.ROTATIONS);
+  }
+}
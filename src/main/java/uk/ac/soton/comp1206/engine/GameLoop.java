@@ -0,0 +1,165 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+
+/**
+ * The game loop gives the player getTimerDelay() milliseconds to play each piece. If the time runs out the engine is
+ * told about the timeout and the loop starts again. Playing a piece resets the loop.
+ * Time comes from a GameClock. Timeouts are handed to a dispatcher, which applies them to the engine on the thread the
+ * engine is used from; every other method should be called from that thread too.
+ */
+public class GameLoop {
+
+    /**
+     * The engine the loop is timing
+     */
+    private final GameEngine engine;
+
+    /**
+     * The clock that measures the time
+     */
+    private final GameClock clock;
+
+    /**
+     * Applies timeouts to the engine on the right thread
+     */
+    private final Executor dispatcher;
+
+    /**
+     * Told the delay every time the loop starts again
+     */
+    private IntConsumer loopListener;
+
+    /**
+     * The timeout currently waiting on the clock
+     */
+    private GameClock.Task pending;
+
+    /**
+     * Counts restarts of the loop, so a timeout that fired just before a reset can be ignored
+     */
+    private int generation = 0;
+
+    /**
+     * Whether the loop was stopped
+     */
+    private boolean stopped = true;
+
+    /**
+     * Create a new game loop
+     * @param engine the engine to time
+     * @param clock the clock measuring time
+     * @param dispatcher applies timeouts to the engine, Runnable::run to apply them on the clock's thread
+     */
+    public GameLoop(GameEngine engine, GameClock clock, Executor dispatcher) {
+        this.engine = engine;
+        this.clock = clock;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Set the listener told the delay every time the loop starts again
+     * @param listener the listener
+     */
+    public void setOnLoop(IntConsumer listener) {
+        this.loopListener = listener;
+    }
+
+    /**
+     * Start the loop
+     */
+    public void start() {
+        stopped = false;
+        schedule(engine.getTimerDelay());
+    }
+
+    /**
+     * Start the loop again with a full delay, after a piece was played
+     */
+    public void reset() {
+        if (stopped) {
+            return;
+        }
+        if (engine.isOver()) {
+            //The piece that was played ended the game
+            stop();
+            return;
+        }
+        cancel();
+        schedule(engine.getTimerDelay());
+    }
+
+    /**
+     * Start the loop again with a given delay, for example when a saved game is resumed
+     * @param delay milliseconds until the next timeout
+     */
+    public void resume(long delay) {
+        stopped = false;
+        cancel();
+        schedule(delay);
+    }
+
+    /**
+     * Stop the loop
+     */
+    public void stop() {
+        stopped = true;
+        cancel();
+    }
+
+    /**
+     * Get the time left before the next timeout
+     * @return milliseconds left, 0 if the loop is stopped
+     */
+    public long getRemaining() {
+        return pending == null || stopped ? 0 : pending.getRemaining();
+    }
+
+    /**
+     * Whether the loop is running
+     * @return false before start and after stop
+     */
+    public boolean isRunning() {
+        return !stopped;
+    }
+
+    /**
+     * Wait for a timeout on the clock
+     * @param delay milliseconds until the timeout
+     */
+    private void schedule(long delay) {
+        int scheduled = ++generation;
+        pending = clock.schedule(() -> dispatcher.execute(() -> timeout(scheduled)), delay);
+        if (loopListener != null) {
+            loopListener.accept((int) delay);
+        }
+    }
+
+    /**
+     * Apply a timeout to the engine, unless the loop was reset or stopped since it was scheduled
+     * @param scheduled the generation of the loop the timeout belongs to
+     */
+    private void timeout(int scheduled) {
+        if (stopped || scheduled != generation) {
+            return;
+        }
+        engine.timeout();
+        if (engine.isOver()) {
+            stopped = true;
+        } else {
+            schedule(engine.getTimerDelay());
+        }
+    }
+
+    /**
+     * Cancel the waiting timeout
+     */
+    private void cancel() {
+        generation++;
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+    }
+}
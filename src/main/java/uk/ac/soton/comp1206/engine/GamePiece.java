@@ -0,0 +1,198 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * Instances of GamePiece Represents the model of a specific Game Piece with its block makeup in one rotation.
+ * The GamePiece class also contains a factory for producing a GamePiece of the standard set, as specified by its
+ * number. Pieces belong to a PieceSet, which builds every piece in every rotation once when it is loaded; pieces are
+ * immutable, so spawning and rotating a piece only looks up the set's table.
+ */
+public class GamePiece {
+
+    /**
+     * The number of distinct rotations of a piece
+     */
+    public static final int ROTATIONS = 4;
+
+    /**
+     * The set this piece belongs to
+     */
+    private final PieceSet set;
+
+    /**
+     * The occupied blocks of this piece, one bit per block at y * getSize() + x
+     */
+    private final int mask;
+
+    /**
+     * The value of this piece
+     */
+    private final int value;
+
+    /**
+     * The name of this piece
+     */
+    private final String name;
+
+    /**
+     * The piece number of this piece
+     */
+    private final int piece;
+
+    /**
+     * How many times this piece has been rotated from its starting rotation
+     */
+    private final int rotation;
+
+    /**
+     * Create a new GamePiece of the specified piece number from the standard set
+     * @param piece piece number
+     * @return the created GamePiece
+     */
+    public static GamePiece createPiece(int piece) {
+        return createPiece(piece, 0);
+    }
+
+    /**
+     * Create a new GamePiece of the specified piece number from the standard set, already rotated
+     * @param piece piece number
+     * @param rotation number of rotations from the starting rotation
+     * @return the created GamePiece
+     */
+    public static GamePiece createPiece(int piece, int rotation) {
+        return PieceSet.standard().createPiece(piece, rotation);
+    }
+
+    /**
+     * Create a new GamePiece with the given name, block makeup and value. Should not be called directly, only by the
+     * PieceSet compiling its table.
+     * @param set the set the piece belongs to
+     * @param name name of the piece
+     * @param piece piece number
+     * @param rotation rotation of this instance
+     * @param mask block makeup of the piece
+     * @param value the value of this piece
+     */
+    GamePiece(PieceSet set, String name, int piece, int rotation, int mask, int value) {
+        this.set = set;
+        this.name = name;
+        this.piece = piece;
+        this.rotation = rotation;
+        this.mask = mask;
+        this.value = value;
+    }
+
+    /**
+     * Get the value of this piece
+     * @return piece value
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Get the piece number of this piece
+     * @return piece number
+     */
+    public int getPiece() {
+        return piece;
+    }
+
+    /**
+     * Get how many times this piece has been rotated
+     * @return rotation, from 0 to 3
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the block mask of this piece, one bit per block at y * getSize() + x
+     * @return block mask
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Get the value of a single block of this piece
+     * @param x column
+     * @param y row
+     * @return the piece value, or 0 if the block is empty or outside the piece's grid
+     */
+    public int getBlock(int x, int y) {
+        int size = set.getSize();
+        if (x < 0 || x >= size || y < 0 || y >= size) {
+            return 0;
+        }
+        return (mask & (1 << (y * size + x))) != 0 ? value : 0;
+    }
+
+    /**
+     * Get the block makeup of this piece. The returned grid is a copy and changing it does not change the piece.
+     * @return 2D grid of the blocks representing the piece shape
+     */
+    public int[][] getBlocks() {
+        int size = set.getSize();
+        int[][] blocks = new int[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                blocks[x][y] = getBlock(x, y);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Get this piece rotated exactly once
+     * @return the rotated piece
+     */
+    public GamePiece rotated() {
+        return rotated(1);
+    }
+
+    /**
+     * Get this piece rotated a number of times, negative turns rotate the other way
+     * @param turns number of rotations
+     * @return the rotated piece
+     */
+    public GamePiece rotated(int turns) {
+        return set.createPiece(piece, rotation + turns);
+    }
+
+    /**
+     * Get the set this piece belongs to
+     * @return the piece set
+     */
+    public PieceSet getSet() {
+        return set;
+    }
+
+    /**
+     * Get the width and height of the grid this piece is drawn in
+     * @return the size of the piece's set
+     */
+    public int getSize() {
+        return set.getSize();
+    }
+
+    /**
+     * Get the position of the block this piece is played by, in both directions of its grid. A piece played at (x, y)
+     * has the block at (getCentre(), getCentre()) of its grid on (x, y).
+     * @return the centre
+     */
+    public int getCentre() {
+        return set.getCentre();
+    }
+
+
+    /**
+     * Return the string representation of this piece
+     * @return the name of this piece
+     */
+    public String toString() {
+        return this.name;
+    }
+
+
+
+}
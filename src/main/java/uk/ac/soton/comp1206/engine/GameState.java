@@ -0,0 +1,97 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * An immutable snapshot of the state of a GameEngine that other threads can read safely, published by a GameActor
+ * after it has run a batch of commands
+ */
+public final class GameState {
+
+  /**
+   * The piece being played
+   */
+  private final GamePiece currentPiece;
+
+  /**
+   * The piece played next
+   */
+  private final GamePiece followingPiece;
+
+  /**
+   * The score, level, lives and multiplier
+   */
+  private final int score, level, lives, multiplier;
+
+  /**
+   * Whether the game is over
+   */
+  private final boolean over;
+
+  /**
+   * Take a snapshot of an engine
+   * @param engine the engine, only read from the thread using it
+   */
+  public GameState(GameEngine engine) {
+    this.currentPiece = engine.getCurrentPiece();
+    this.followingPiece = engine.getFollowingPiece();
+    this.score = engine.getScore();
+    this.level = engine.getLevel();
+    this.lives = engine.getLives();
+    this.multiplier = engine.getMultiplier();
+    this.over = engine.isOver();
+  }
+
+  /**
+   * @return the piece being played, null before the game starts
+   */
+  public GamePiece getCurrentPiece() {
+    return currentPiece;
+  }
+
+  /**
+   * @return the piece played next, null before the game starts
+   */
+  public GamePiece getFollowingPiece() {
+    return followingPiece;
+  }
+
+  /**
+   * @return the score
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * @return the level
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * @return the lives left
+   */
+  public int getLives() {
+    return lives;
+  }
+
+  /**
+   * @return the multiplier
+   */
+  public int getMultiplier() {
+    return multiplier;
+  }
+
+  /**
+   * @return whether the game is over
+   */
+  public boolean isOver() {
+    return over;
+  }
+
+  @Override
+  public String toString() {
+    return "score " + score + ", level " + level + ", lives " + lives + ", multiplier " + multiplier
+        + (over ? ", over" : "");
+  }
+}
@@ -0,0 +1,782 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.Arrays;
+
+
+/**
+ * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
+ * arrow, with rows and columns.
+ * Occupancy is kept as a bitmask (one bit per block, indexed by y * cols + x) and the value of each block is kept in a
+ * compact colour plane. The number of filled blocks in every row and column is counted as blocks are set, so full
+ * lines are known without scanning the grid. A Zobrist hash of the filled blocks is kept up to date the same way, so
+ * positions can be looked up in a TranspositionTable without hashing the whole grid.
+ * The Grid does not depend on JavaFX. A display of the grid registers a GridListener to hear about changed blocks.
+ * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
+ * The Grid should be linked to a GameBoard for its display.
+ */
+public class Grid {
+
+    /**
+     * The most columns or rows of a board the game offers. Bigger grids work, but are slower to hash.
+     */
+    public static final int MAX_SIZE = 128;
+
+    /**
+     * The Zobrist keys of the blocks of a grid up to MAX_SIZE square, shared by every grid so equal positions hash
+     * equally across grids
+     */
+    private static final long[] ZOBRIST = new long[MAX_SIZE * MAX_SIZE];
+
+    /**
+     * The number of centres outside each edge of the grid a map filled by legalPlacements covers, enough for the
+     * centre of the widest piece
+     */
+    public static final int PLACEMENT_BORDER = PieceSet.MAX_SIZE / 2;
+
+    static {
+        for (int index = 0; index < ZOBRIST.length; index++) {
+            ZOBRIST[index] = zobristKey(index);
+        }
+    }
+
+    /**
+     * The number of columns in this grid
+     */
+    private final int cols;
+
+    /**
+     * The number of rows in this grid
+     */
+    private final int rows;
+
+    /**
+     * The occupancy bits of a grid with up to 64 blocks
+     */
+    private long occupancy;
+
+    /**
+     * The occupancy bits of a grid with more than 64 blocks, null for smaller grids
+     */
+    private final long[] occupancyWords;
+
+    /**
+     * The value held in every block of the grid
+     */
+    private final byte[] colours;
+
+    /**
+     * The number of filled blocks in each row
+     */
+    private final int[] rowFill;
+
+    /**
+     * The number of filled blocks in each column
+     */
+    private final int[] colFill;
+
+    /**
+     * One bit for every row that is currently full
+     */
+    private final long[] fullRows;
+
+    /**
+     * One bit for every column that is currently full
+     */
+    private final long[] fullCols;
+
+    /**
+     * The Zobrist hash of the filled blocks
+     */
+    private long hash;
+
+    /**
+     * The number of longs holding one row of the grid, one bit per column
+     */
+    private final int rowWords;
+
+    /**
+     * The occupancy bits of every row, rowWords longs per row, rebuilt by legalMoves
+     */
+    private final long[] rowBits;
+
+    /**
+     * The number of rows of rowBits taken out of the occupancy bits so far in the current scan. Rows are taken out as
+     * a scan reaches them, so a scan that stops at the first legal move only reads the rows it needed.
+     */
+    private int loadedRows;
+
+    /**
+     * The left edges of a piece blocked in one row, used by legalMoves on grids wider than a long
+     */
+    private final long[] blocked;
+
+    /**
+     * The result handed back when there are no full lines, shared to avoid creating one per piece
+     */
+    private final ClearResult nothingCleared;
+
+    /**
+     * The listener to call when blocks change
+     */
+    private GridListener listener;
+
+    /**
+     * Create a new Grid with the specified number of columns and rows and initialise them
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public Grid(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+
+        //Create the grid itself, every block starts empty
+        int cells = cols * rows;
+        this.occupancyWords = cells > Long.SIZE ? new long[(cells + Long.SIZE - 1) / Long.SIZE] : null;
+        this.colours = new byte[cells];
+        this.rowFill = new int[rows];
+        this.colFill = new int[cols];
+        this.fullRows = new long[(rows + Long.SIZE - 1) / Long.SIZE];
+        this.fullCols = new long[(cols + Long.SIZE - 1) / Long.SIZE];
+        this.rowWords = (cols + Long.SIZE - 1) / Long.SIZE;
+        this.rowBits = new long[rows * rowWords];
+        this.blocked = new long[rowWords];
+        this.nothingCleared = new ClearResult(cols, rows, new long[fullRows.length], new long[fullCols.length]);
+    }
+
+    /**
+     * Returns whether a piece can be played at a given position
+     * @param piece A given piece
+     * @param x The x coordinate
+     * @param y Yhe y coordinate
+     * @return Whether a piece can be played
+     */
+    public boolean canPlayPiece(GamePiece piece, int x, int y) {
+        int size = piece.getSize();
+        x -= piece.getCentre();
+        y -= piece.getCentre();
+        //iterate through the blocks of the GamePiece
+        for (int blocks = piece.getMask(); blocks != 0; blocks &= blocks - 1) {
+            int block = Integer.numberOfTrailingZeros(blocks);
+            int gridX = x + block % size;
+            int gridY = y + block / size;
+            if (gridX < 0 || gridX >= cols || gridY < 0 || gridY >= rows)
+                return false;
+            if (isOccupied(gridY * cols + gridX))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writing to the grid the value of the piece
+     * @param piece the GamePiece to play
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    public void playPiece(GamePiece piece, int x, int y){
+        int size = piece.getSize();
+        x -= piece.getCentre();
+        y -= piece.getCentre();
+        int value = piece.getValue();
+
+        for (int blocks = piece.getMask(); blocks != 0; blocks &= blocks - 1) {
+            //calculates the grid value to place the piece
+            int block = Integer.numberOfTrailingZeros(blocks);
+            set(x + block % size, y + block / size, value);
+        }
+    }
+
+    /**
+     * Find every position and rotation a piece can be played in. Rotations that give the same shape are only listed
+     * once, with the fewest rotations.
+     * @param piece the piece to place
+     * @return the legal moves
+     */
+    public MoveList legalMoves(GamePiece piece) {
+        MoveList moves = new MoveList();
+        legalMoves(piece, moves);
+        return moves;
+    }
+
+    /**
+     * Find every position and rotation a piece can be played in, reusing a list
+     * @param piece the piece to place
+     * @param moves the list to clear and fill with the legal moves
+     * @return the number of legal moves
+     */
+    public int legalMoves(GamePiece piece, MoveList moves) {
+        moves.clear();
+        findMoves(piece, moves);
+        return moves.size();
+    }
+
+    /**
+     * Whether a piece can be played anywhere in any rotation
+     * @param piece the piece to place
+     * @return true if there is at least one legal move
+     */
+    public boolean hasLegalMove(GamePiece piece) {
+        return findMoves(piece, null);
+    }
+
+    /**
+     * Find every centre a piece can be played at in the rotation it is in, as a bitmap. This is the same check as
+     * legalMoves without listing the moves one by one, so it is the fastest way to get every placement on a big board.
+     * The map has a row for every centre y from -PLACEMENT_BORDER to rows - 1 + PLACEMENT_BORDER, each
+     * getPlacementWords() longs long, with bit x + PLACEMENT_BORDER set if the piece fits with its centre at x.
+     * @param piece the piece to place, already rotated
+     * @param map the map to clear and fill, at least getPlacementRows() * getPlacementWords() longs
+     * @return the number of places the piece fits
+     */
+    public int legalPlacements(GamePiece piece, long[] map) {
+        int mapWords = getPlacementWords();
+        Arrays.fill(map, 0, getPlacementRows() * mapWords, 0L);
+        loadedRows = 0;
+        int mask = piece.getMask();
+        int centre = piece.getCentre();
+        int extent = pieceExtent(mask, piece.getSize());
+        int minRow = extent & 0xF, maxRow = (extent >>> 4) & 0xF, minCol = (extent >>> 8) & 0xF;
+        //Bits of the map are centres plus the border, the legal bits are left edges
+        int shift = centre + PLACEMENT_BORDER - minCol;
+
+        int count = 0;
+        for (int y = centre - minRow; y <= rows - 1 + centre - maxRow; y++) {
+            findBlocked(mask, extent, y);
+            int row = (y + PLACEMENT_BORDER) * mapWords;
+            for (int word = 0; word < rowWords; word++) {
+                long legal = ~blocked[word] & inside(extent, word);
+                count += Long.bitCount(legal);
+                map[row + word] |= legal << shift;
+                if (shift > 0 && word + 1 < mapWords) {
+                    map[row + word + 1] |= legal >>> (Long.SIZE - shift);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of longs in each row of a map filled by legalPlacements
+     * @return longs per row
+     */
+    public int getPlacementWords() {
+        return (cols + 2 * PLACEMENT_BORDER + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Get the number of rows of a map filled by legalPlacements
+     * @return rows of the map
+     */
+    public int getPlacementRows() {
+        return rows + 2 * PLACEMENT_BORDER;
+    }
+
+    /**
+     * Look for the legal moves of a piece. Every row of the grid is taken out of the occupancy bits once, then for each
+     * row the piece could cover, the rows of the piece are shifted over it to find all the blocked positions at once.
+     * Grids wider than a long are handled by findMovesWide.
+     * @param piece the piece to place
+     * @param moves the list to add the moves to, or null to stop at the first one
+     * @return whether any legal move was found
+     */
+    private boolean findMoves(GamePiece piece, MoveList moves) {
+        if (rowWords > 1) {
+            return findMovesWide(piece, moves);
+        }
+        loadedRows = 0;
+        int size = piece.getSize(), centre = piece.getCentre();
+
+        boolean found = false;
+        for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            int mask = piece.rotated(rotation).getMask();
+            if (isRepeatedRotation(piece, rotation, mask)) {
+                continue;
+            }
+            int extent = pieceExtent(mask, size);
+            int minRow = extent & 0xF, maxRow = (extent >>> 4) & 0xF, minCol = (extent >>> 8) & 0xF;
+            long inside = inside(extent, 0);
+
+            for (int y = centre - minRow; y <= rows - 1 + centre - maxRow; y++) {
+                loadRows(y - centre + maxRow);
+                //Collect every left edge where a block of the piece lands on a filled block
+                long blocked = 0;
+                for (int py = minRow; py <= maxRow; py++) {
+                    long row = rowBits[y - centre + py];
+                    for (int pieceRow = (mask >>> (py * size)) & ((1 << size) - 1);
+                         pieceRow != 0; pieceRow &= pieceRow - 1) {
+                        blocked |= row >>> (Integer.numberOfTrailingZeros(pieceRow) - minCol);
+                    }
+                }
+                long legal = ~blocked & inside;
+                if (legal == 0) {
+                    continue;
+                }
+                if (moves == null) {
+                    return true;
+                }
+                found = true;
+                for (; legal != 0; legal &= legal - 1) {
+                    moves.add(rotation, Long.numberOfTrailingZeros(legal) + centre - minCol, y);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Look for the legal moves of a piece on a grid wider than a long. This works like findMoves, with each row held
+     * in several longs: shifting a row shifts every long, carrying bits over from the next one, so 64 columns are
+     * still checked at once.
+     * @param piece the piece to place
+     * @param moves the list to add the moves to, or null to stop at the first one
+     * @return whether any legal move was found
+     */
+    private boolean findMovesWide(GamePiece piece, MoveList moves) {
+        loadedRows = 0;
+        int size = piece.getSize(), centre = piece.getCentre();
+        boolean found = false;
+        for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            int mask = piece.rotated(rotation).getMask();
+            if (isRepeatedRotation(piece, rotation, mask)) {
+                continue;
+            }
+            int extent = pieceExtent(mask, size);
+            int minRow = extent & 0xF, maxRow = (extent >>> 4) & 0xF, minCol = (extent >>> 8) & 0xF;
+
+            for (int y = centre - minRow; y <= rows - 1 + centre - maxRow; y++) {
+                findBlocked(mask, extent, y);
+                for (int word = 0; word < rowWords; word++) {
+                    long legal = ~blocked[word] & inside(extent, word);
+                    if (legal == 0) {
+                        continue;
+                    }
+                    if (moves == null) {
+                        return true;
+                    }
+                    found = true;
+                    for (; legal != 0; legal &= legal - 1) {
+                        moves.add(rotation, word * Long.SIZE + Long.numberOfTrailingZeros(legal) + centre - minCol, y);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find every left edge where a piece would land on a filled block, with its centre on row y.
+     * Each row of the piece is shifted over the rows of the grid it covers, one long of the row at a time.
+     * @param mask the blocks of the piece
+     * @param extent the extent of the piece, from pieceExtent
+     * @param y the y coordinate of the centre
+     */
+    private void findBlocked(int mask, int extent, int y) {
+        int minRow = extent & 0xF, maxRow = (extent >>> 4) & 0xF, minCol = (extent >>> 8) & 0xF;
+        int size = extent >>> 16, centre = size / 2;
+        loadRows(y - centre + maxRow);
+        Arrays.fill(blocked, 0L);
+        for (int py = minRow; py <= maxRow; py++) {
+            int row = (y - centre + py) * rowWords;
+            for (int pieceRow = (mask >>> (py * size)) & ((1 << size) - 1);
+                 pieceRow != 0; pieceRow &= pieceRow - 1) {
+                int shift = Integer.numberOfTrailingZeros(pieceRow) - minCol;
+                for (int word = 0; word < rowWords; word++) {
+                    long bits = rowBits[row + word] >>> shift;
+                    if (shift > 0 && word + 1 < rowWords) {
+                        bits |= rowBits[row + word + 1] << (Long.SIZE - shift);
+                    }
+                    blocked[word] |= bits;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the left edges a piece can be in without leaving the grid, one long of them
+     * @param extent the extent of the piece, from pieceExtent
+     * @param word which long, the first covers left edges 0 to 63
+     * @return one bit for every left edge inside the grid
+     */
+    private long inside(int extent, int word) {
+        int edges = cols - ((extent >>> 12) & 0xF) + 1 - word * Long.SIZE;
+        return edges >= Long.SIZE ? -1L : edges <= 0 ? 0L : (1L << edges) - 1;
+    }
+
+    /**
+     * Find the rows and columns a piece covers inside its grid
+     * @param mask the blocks of the piece
+     * @param size the width and height of the piece's grid
+     * @return the first row, last row, first column, width and size packed into 4 bits each, lowest first
+     */
+    private static int pieceExtent(int mask, int size) {
+        int pieceCols = 0, minRow = size, maxRow = -1;
+        for (int py = 0; py < size; py++) {
+            int pieceRow = (mask >>> (py * size)) & ((1 << size) - 1);
+            if (pieceRow != 0) {
+                pieceCols |= pieceRow;
+                minRow = Math.min(minRow, py);
+                maxRow = py;
+            }
+        }
+        int minCol = Integer.numberOfTrailingZeros(pieceCols);
+        int width = 32 - Integer.numberOfLeadingZeros(pieceCols) - minCol;
+        return minRow | maxRow << 4 | minCol << 8 | width << 12 | size << 16;
+    }
+
+    /**
+     * Take the rows of the grid up to a row out of the occupancy bits into rowBits, if the current scan hasn't already
+     * @param last the last row needed
+     */
+    private void loadRows(int last) {
+        for (; loadedRows <= last; loadedRows++) {
+            int y = loadedRows;
+            for (int word = 0; word < rowWords; word++) {
+                int start = word * Long.SIZE;
+                rowBits[y * rowWords + word] = getBits(y * cols + start, Math.min(Long.SIZE, cols - start));
+            }
+        }
+    }
+
+    /**
+     * Whether a fewer rotations of a piece already give the same shape
+     * @param piece the piece
+     * @param rotation the rotation to check
+     * @param mask the shape of the piece in that rotation
+     * @return true if an earlier rotation has the same shape
+     */
+    private static boolean isRepeatedRotation(GamePiece piece, int rotation, int mask) {
+        for (int earlier = 0; earlier < rotation; earlier++) {
+            if (piece.rotated(earlier).getMask() == mask) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Take a run of up to 64 occupancy bits out of the grid, such as one row of a grid narrower than 64 columns
+     * @param start the first block index, y * cols + x
+     * @param length the number of blocks, from 1 to 64
+     * @return one bit per block, bit i set if block start + i is filled
+     */
+    private long getBits(int start, int length) {
+        long run = -1L >>> (Long.SIZE - length);
+        if (occupancyWords == null) {
+            return (occupancy >>> start) & run;
+        }
+        int word = start >>> 6;
+        int offset = start & 63;
+        long bits = occupancyWords[word] >>> offset;
+        if (offset + length > Long.SIZE) {
+            bits |= occupancyWords[word + 1] << (Long.SIZE - offset);
+        }
+        return bits & run;
+    }
+
+    /**
+     * Set the listener to handle an event when blocks of the grid change
+     * @param listener listener to set
+     */
+    public void setListener(GridListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Update the value at the given x and y index within the grid
+     * @param x column
+     * @param y row
+     * @param value the new value
+     */
+    public void set(int x, int y, int value) {
+        int index = y * cols + x;
+        boolean filled = value != 0;
+        if (filled != isOccupied(index)) {
+            setOccupied(index, filled);
+            hash ^= index < ZOBRIST.length ? ZOBRIST[index] : zobristKey(index);
+            //Keep the line counts up to date
+            int change = filled ? 1 : -1;
+            rowFill[y] += change;
+            colFill[x] += change;
+            setBit(fullRows, y, rowFill[y] == cols);
+            setBit(fullCols, x, colFill[x] == rows);
+        }
+        colours[index] = (byte) value;
+
+        if (listener != null) {
+            listener.cellChanged(x, y, value);
+        }
+    }
+
+    /**
+     * Get the value represented at the given x and y index within the grid
+     * @param x column
+     * @param y row
+     * @return the value
+     */
+    public int get(int x, int y) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            //No such index
+            return -1;
+        }
+        return colours[y * cols + x];
+    }
+
+    /**
+     * Get the number of filled blocks in a row
+     * @param y row
+     * @return filled blocks
+     */
+    public int getRowFill(int y) {
+        return rowFill[y];
+    }
+
+    /**
+     * Get the number of filled blocks in a column
+     * @param x column
+     * @return filled blocks
+     */
+    public int getColumnFill(int x) {
+        return colFill[x];
+    }
+
+    /**
+     * Clear every full row and column. Only lines that became full as blocks were set are looked at.
+     * @return the lines that were cleared
+     */
+    public ClearResult clearLines() {
+        if (isEmpty(fullRows) && isEmpty(fullCols)) {
+            return nothingCleared;
+        }
+        ClearResult cleared = new ClearResult(cols, rows, fullRows.clone(), fullCols.clone());
+
+        //Empty every cleared block, the line counts follow
+        cleared.forEach((x, y) -> set(x, y, 0));
+        return cleared;
+    }
+
+    /**
+     * Get the number of columns in this game
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in this game
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * cleans the grid
+     */
+    public void clean(){
+        occupancy = 0L;
+        hash = 0L;
+        if (occupancyWords != null) {
+            Arrays.fill(occupancyWords, 0L);
+        }
+        Arrays.fill(colours, (byte) 0);
+        Arrays.fill(rowFill, 0);
+        Arrays.fill(colFill, 0);
+        Arrays.fill(fullRows, 0L);
+        Arrays.fill(fullCols, 0L);
+
+        //Tell the display once, rather than once per block
+        if (listener != null) {
+            listener.gridChanged();
+        }
+    }
+
+    /**
+     * Get the Zobrist hash of which blocks are filled, ignoring their values. It is updated as blocks are set, so
+     * reading it is free.
+     * @return the hash, 0 for an empty grid
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Make this grid a copy of another grid of the same size, without telling the listener. Used to try out moves on
+     * a scratch grid.
+     * @param other the grid to copy
+     */
+    public void copyFrom(Grid other) {
+        if (other.cols != cols || other.rows != rows) {
+            throw new IllegalArgumentException("Can't copy a " + other.cols + "x" + other.rows + " grid into a "
+                + cols + "x" + rows + " grid");
+        }
+        occupancy = other.occupancy;
+        hash = other.hash;
+        if (occupancyWords != null) {
+            System.arraycopy(other.occupancyWords, 0, occupancyWords, 0, occupancyWords.length);
+        }
+        System.arraycopy(other.colours, 0, colours, 0, colours.length);
+        System.arraycopy(other.rowFill, 0, rowFill, 0, rows);
+        System.arraycopy(other.colFill, 0, colFill, 0, cols);
+        System.arraycopy(other.fullRows, 0, fullRows, 0, fullRows.length);
+        System.arraycopy(other.fullCols, 0, fullCols, 0, fullCols.length);
+    }
+
+    /**
+     * Copy the occupancy bits and colour plane of the grid into a snapshot
+     * @param bits where to copy the occupancy bits
+     * @param bitsOffset the first long to copy them to
+     * @param values where to copy the colour plane
+     * @param valuesOffset the first byte to copy it to
+     */
+    void copyState(long[] bits, int bitsOffset, byte[] values, int valuesOffset) {
+        if (occupancyWords == null) {
+            bits[bitsOffset] = occupancy;
+        } else {
+            System.arraycopy(occupancyWords, 0, bits, bitsOffset, occupancyWords.length);
+        }
+        System.arraycopy(colours, 0, values, valuesOffset, colours.length);
+    }
+
+    /**
+     * Put the grid back to a snapshot made by copyState. The line counts are counted again from the colour plane and
+     * the listener is told once that the whole grid changed.
+     * @param bits the occupancy bits
+     * @param bitsOffset the first long of the snapshot
+     * @param values the colour plane
+     * @param valuesOffset the first byte of the snapshot
+     */
+    void restoreState(long[] bits, int bitsOffset, byte[] values, int valuesOffset) {
+        if (occupancyWords == null) {
+            occupancy = bits[bitsOffset];
+        } else {
+            System.arraycopy(bits, bitsOffset, occupancyWords, 0, occupancyWords.length);
+        }
+        System.arraycopy(values, valuesOffset, colours, 0, colours.length);
+        recount();
+    }
+
+    /**
+     * Copy the value of every block into an array, row by row
+     * @param values where to copy the values, cols * rows bytes from the offset
+     * @param offset the first byte to copy them to
+     */
+    public void saveValues(byte[] values, int offset) {
+        System.arraycopy(colours, 0, values, offset, colours.length);
+    }
+
+    /**
+     * Set every block to values saved by saveValues. The listener is told once that the whole grid changed, rather
+     * than about every block.
+     * @param values the values, cols * rows bytes from the offset
+     * @param offset the first byte of the values
+     */
+    public void loadValues(byte[] values, int offset) {
+        System.arraycopy(values, offset, colours, 0, colours.length);
+        occupancy = 0;
+        if (occupancyWords != null) {
+            Arrays.fill(occupancyWords, 0);
+        }
+        for (int index = 0; index < colours.length; index++) {
+            if (colours[index] != 0) {
+                setOccupied(index, true);
+            }
+        }
+        recount();
+    }
+
+    /**
+     * Count the lines and hash the filled blocks again from the colour plane, then tell the listener the whole grid
+     * changed
+     */
+    private void recount() {
+        Arrays.fill(rowFill, 0);
+        Arrays.fill(colFill, 0);
+        hash = 0;
+        for (int y = 0, index = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++, index++) {
+                if (colours[index] != 0) {
+                    rowFill[y]++;
+                    colFill[x]++;
+                    hash ^= index < ZOBRIST.length ? ZOBRIST[index] : zobristKey(index);
+                }
+            }
+        }
+        for (int y = 0; y < rows; y++) {
+            setBit(fullRows, y, rowFill[y] == cols);
+        }
+        for (int x = 0; x < cols; x++) {
+            setBit(fullCols, x, colFill[x] == rows);
+        }
+
+        if (listener != null) {
+            listener.gridChanged();
+        }
+    }
+
+    /**
+     * Make the Zobrist key of a block. Keys come from a fixed sequence, so they are the same on every run.
+     * @param index block index, y * cols + x
+     * @return the key
+     */
+    private static long zobristKey(int index) {
+        //SplitMix64 of the index
+        long z = (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Check the occupancy bit of a block
+     * @param index block index, y * cols + x
+     * @return whether the block is filled
+     */
+    private boolean isOccupied(int index) {
+        if (occupancyWords == null) {
+            return (occupancy & (1L << index)) != 0;
+        }
+        return (occupancyWords[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Whether no bit of a line bitmask is set
+     * @param bits the line bitmask
+     * @return true if no line is set
+     */
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Set or clear one bit of a line bitmask
+     * @param bits the line bitmask
+     * @param index the line
+     * @param value whether the bit is set
+     */
+    private static void setBit(long[] bits, int index, boolean value) {
+        int word = index >>> 6;
+        bits[word] = value ? bits[word] | (1L << index) : bits[word] & ~(1L << index);
+    }
+
+    /**
+     * Update the occupancy bit of a block
+     * @param index block index, y * cols + x
+     * @param filled whether the block is filled
+     */
+    private void setOccupied(int index, boolean filled) {
+        long bit = 1L << index;
+        if (occupancyWords == null) {
+            occupancy = filled ? occupancy | bit : occupancy & ~bit;
+        } else {
+            int word = index >>> 6;
+            occupancyWords[word] = filled ? occupancyWords[word] | bit : occupancyWords[word] & ~bit;
+        }
+    }
+
+}
@@ -0,0 +1,21 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * Listener for changes to the blocks of a Grid, used to keep a display of the grid up to date
+ */
+public interface GridListener {
+
+  /**
+   * Handles the event when a single block changes
+   * @param x column
+   * @param y row
+   * @param value the new value of the block
+   */
+  void cellChanged(int x, int y, int value);
+
+  /**
+   * Handles the event when many blocks changed at once and the whole grid should be read again
+   */
+  default void gridChanged() {
+  }
+}
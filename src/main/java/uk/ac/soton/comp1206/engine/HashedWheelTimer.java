@@ -0,0 +1,334 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A GameClock that runs the tasks of any number of games on one thread, using a hashed wheel. The wheel is a ring of
+ * buckets, one per tick; a task goes into the bucket of the tick it is due in, so scheduling and cancelling a task are
+ * O(1) however many games are waiting. Tasks run on the timer thread up to one tick late and should be short, for
+ * example handing the timeout on to another thread.
+ * Every game loop can share the one timer returned by shared().
+ */
+public class HashedWheelTimer implements GameClock {
+
+  private static final Logger logger = LogManager.getLogger(HashedWheelTimer.class);
+
+  /**
+   * The state of a task that is waiting to run
+   */
+  private static final int WAITING = 0;
+
+  /**
+   * The state of a task that was cancelled
+   */
+  private static final int CANCELLED = 1;
+
+  /**
+   * The state of a task that has run
+   */
+  private static final int EXPIRED = 2;
+
+  /**
+   * Updates the state of a task atomically
+   */
+  private static final AtomicIntegerFieldUpdater<WheelTask> STATE =
+      AtomicIntegerFieldUpdater.newUpdater(WheelTask.class, "state");
+
+  /**
+   * Holds the shared timer, so it is only created when first used
+   */
+  private static class Shared {
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(10, 512);
+  }
+
+  /**
+   * The length of one tick in milliseconds
+   */
+  private final long tickMillis;
+
+  /**
+   * The buckets of the wheel, one per tick
+   */
+  private final Bucket[] wheel;
+
+  /**
+   * Used to find the bucket of a tick, the wheel size is a power of two
+   */
+  private final int mask;
+
+  /**
+   * Tasks scheduled since the last tick, moved onto the wheel by the timer thread
+   */
+  private final Queue<WheelTask> added = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Tasks cancelled since the last tick, taken off the wheel by the timer thread
+   */
+  private final Queue<WheelTask> cancelled = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Whether the timer thread was started
+   */
+  private final AtomicBoolean started = new AtomicBoolean(false);
+
+  /**
+   * Whether the timer was shut down
+   */
+  private volatile boolean shutdown = false;
+
+  /**
+   * The time the timer was created, all deadlines are measured from here
+   */
+  private final long startNanos = System.nanoTime();
+
+  /**
+   * The thread that turns the wheel
+   */
+  private final Thread worker;
+
+  /**
+   * The number of ticks the wheel has turned, only used by the timer thread
+   */
+  private long tick = 0;
+
+  /**
+   * Create a new timer
+   * @param tickMillis length of one tick in milliseconds
+   * @param buckets number of buckets in the wheel, rounded up to a power of two
+   */
+  public HashedWheelTimer(long tickMillis, int buckets) {
+    this.tickMillis = tickMillis;
+    int size = Integer.highestOneBit(Math.max(1, buckets - 1)) << 1;
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+
+    worker = new Thread(this::run, "game-timer");
+    worker.setDaemon(true);
+  }
+
+  /**
+   * Get the timer shared by every game
+   * @return the shared timer
+   */
+  public static HashedWheelTimer shared() {
+    return Shared.TIMER;
+  }
+
+  @Override
+  public long now() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+
+  @Override
+  public Task schedule(Runnable task, long delay) {
+    WheelTask scheduled = new WheelTask(task, now() + Math.max(0, delay));
+    added.add(scheduled);
+    if (!started.get() && started.compareAndSet(false, true)) {
+      worker.start();
+    }
+    return scheduled;
+  }
+
+  /**
+   * Stop the timer thread. The shared timer can not be shut down.
+   */
+  @Override
+  public void shutdown() {
+    if (this == Shared.TIMER) {
+      logger.warn("Ignoring shutdown of the shared timer");
+      return;
+    }
+    shutdown = true;
+    worker.interrupt();
+  }
+
+  /**
+   * Turn the wheel one tick at a time until shut down
+   */
+  private void run() {
+    logger.info("Timer thread started");
+    while (!shutdown) {
+      //Wait for the end of the current tick
+      long sleep = (tick + 1) * tickMillis - now();
+      if (sleep > 0) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sleep));
+        continue;
+      }
+      removeCancelled();
+      addScheduled();
+      expire(wheel[(int) (tick & mask)]);
+      tick++;
+    }
+    logger.info("Timer thread stopped");
+  }
+
+  /**
+   * Take the cancelled tasks off the wheel
+   */
+  private void removeCancelled() {
+    WheelTask task;
+    while ((task = cancelled.poll()) != null) {
+      if (task.bucket != null) {
+        task.bucket.remove(task);
+      }
+    }
+  }
+
+  /**
+   * Put the newly scheduled tasks on the wheel, in the bucket of the tick they are due in
+   */
+  private void addScheduled() {
+    WheelTask task;
+    while ((task = added.poll()) != null) {
+      if (task.state != WAITING) {
+        continue;
+      }
+      long due = task.deadline / tickMillis;
+      task.rounds = (due - tick) / wheel.length;
+      //A task that is already late goes in the current bucket
+      wheel[(int) (Math.max(due, tick) & mask)].add(task);
+    }
+  }
+
+  /**
+   * Run the tasks of a bucket that are due this time round the wheel
+   * @param bucket the bucket of the current tick
+   */
+  private void expire(Bucket bucket) {
+    WheelTask task = bucket.head;
+    while (task != null) {
+      WheelTask next = task.next;
+      if (task.rounds <= 0) {
+        bucket.remove(task);
+        if (STATE.compareAndSet(task, WAITING, EXPIRED)) {
+          try {
+            task.task.run();
+          } catch (Throwable e) {
+            logger.error("Timer task failed", e);
+          }
+        }
+      } else {
+        task.rounds--;
+      }
+      task = next;
+    }
+  }
+
+  /**
+   * A task waiting on the wheel, linked to the other tasks of its bucket
+   */
+  private class WheelTask implements Task {
+
+    /**
+     * The task to run
+     */
+    private final Runnable task;
+
+    /**
+     * When the task is due, in milliseconds since the timer was created
+     */
+    private final long deadline;
+
+    /**
+     * Whether the task is waiting, cancelled or has run
+     */
+    private volatile int state = WAITING;
+
+    /**
+     * The number of times the wheel still has to go round before the task is due
+     */
+    private long rounds;
+
+    /**
+     * The bucket holding this task, null if it is not on the wheel
+     */
+    private Bucket bucket;
+
+    /**
+     * The neighbours of this task in its bucket
+     */
+    private WheelTask previous, next;
+
+    /**
+     * Create a new task
+     * @param task the task to run
+     * @param deadline when the task is due
+     */
+    private WheelTask(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void cancel() {
+      if (STATE.compareAndSet(this, WAITING, CANCELLED)) {
+        cancelled.add(this);
+      }
+    }
+
+    @Override
+    public long getRemaining() {
+      return state == WAITING ? Math.max(0, deadline - now()) : 0;
+    }
+  }
+
+  /**
+   * A doubly linked list of the tasks due in one tick of the wheel
+   */
+  private static class Bucket {
+
+    /**
+     * The first and last task in the bucket
+     */
+    private WheelTask head, tail;
+
+    /**
+     * Add a task to the end of the bucket
+     * @param task the task
+     */
+    private void add(WheelTask task) {
+      task.bucket = this;
+      task.previous = tail;
+      task.next = null;
+      if (tail == null) {
+        head = task;
+      } else {
+        tail.next = task;
+      }
+      tail = task;
+    }
+
+    /**
+     * Remove a task from the bucket
+     * @param task the task
+     */
+    private void remove(WheelTask task) {
+      if (task.bucket != this) {
+        return;
+      }
+      if (task.previous == null) {
+        head = task.next;
+      } else {
+        task.previous.next = task.next;
+      }
+      if (task.next == null) {
+        tail = task.previous;
+      } else {
+        task.next.previous = task.previous;
+      }
+      task.previous = null;
+      task.next = null;
+      task.bucket = null;
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.Arrays;
+
+/**
+ * A list of legal placements of a piece, filled by Grid.legalMoves. Each move is a rotation of the piece and the x and
+ * y of its centre, the same position blockClicked would play it at. The moves are kept in one int array, so a list can
+ * be cleared and filled again without creating any objects.
+ */
+public class MoveList {
+
+  /**
+   * The rotation, x and y of every move, three ints per move
+   */
+  private int[] moves;
+
+  /**
+   * The number of moves in the list
+   */
+  private int size = 0;
+
+  /**
+   * Create a new, empty list
+   */
+  public MoveList() {
+    this(32);
+  }
+
+  /**
+   * Create a new, empty list with room for a number of moves before it has to grow
+   * @param capacity the number of moves
+   */
+  public MoveList(int capacity) {
+    this.moves = new int[Math.max(1, capacity) * 3];
+  }
+
+  /**
+   * Add a move to the end of the list
+   * @param rotation rotation of the piece
+   * @param x the x coordinate of the centre
+   * @param y the y coordinate of the centre
+   */
+  public void add(int rotation, int x, int y) {
+    if (size * 3 == moves.length) {
+      moves = Arrays.copyOf(moves, moves.length * 2);
+    }
+    int index = size * 3;
+    moves[index] = rotation;
+    moves[index + 1] = x;
+    moves[index + 2] = y;
+    size++;
+  }
+
+  /**
+   * Remove every move
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Get the number of moves
+   * @return the number of moves
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Whether there are no moves
+   * @return true if the list is empty
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Get the rotation of a move
+   * @param move the index of the move
+   * @return number of rotations from the rotation the moves were generated for
+   */
+  public int getRotation(int move) {
+    return moves[check(move) * 3];
+  }
+
+  /**
+   * Get the x coordinate of a move
+   * @param move the index of the move
+   * @return the x coordinate of the centre of the piece
+   */
+  public int getX(int move) {
+    return moves[check(move) * 3 + 1];
+  }
+
+  /**
+   * Get the y coordinate of a move
+   * @param move the index of the move
+   * @return the y coordinate of the centre of the piece
+   */
+  public int getY(int move) {
+    return moves[check(move) * 3 + 2];
+  }
+
+  /**
+   * Get the piece rotated the way a move plays it
+   * @param piece the piece the moves were generated for
+   * @param move the index of the move
+   * @return the rotated piece
+   */
+  public GamePiece getPiece(GamePiece piece, int move) {
+    return piece.rotated(getRotation(move));
+  }
+
+  /**
+   * Check a move index is in the list
+   * @param move the index of the move
+   * @return the index
+   */
+  private int check(int move) {
+    if (move < 0 || move >= size) {
+      throw new IndexOutOfBoundsException("No such move: " + move);
+    }
+    return move;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("[");
+    for (int move = 0; move < size; move++) {
+      if (move > 0) {
+        builder.append(", ");
+      }
+      builder.append('r').append(getRotation(move)).append(" (").append(getX(move)).append(',')
+          .append(getY(move)).append(')');
+    }
+    return builder.append(']').toString();
+  }
+}
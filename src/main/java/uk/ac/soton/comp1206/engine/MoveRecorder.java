@@ -0,0 +1,76 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * Told about every move made on a GameEngine, in the order they were made, so a game can be recorded and played
+ * again. Only moves are reported, not their consequences: given the same moves and the same pieces an engine always
+ * ends up in the same state. Every method does nothing by default.
+ */
+public interface MoveRecorder {
+
+  /**
+   * Handles the start of the game, before the first pieces are dealt
+   * @param engine the engine, to read the size of the grid and the rules from
+   */
+  default void started(GameEngine engine) {
+  }
+
+  /**
+   * Handles a new piece being taken from the piece source
+   * @param piece the piece number
+   */
+  default void pieceDealt(int piece) {
+  }
+
+  /**
+   * Handles the current piece being played
+   * @param piece the piece played, in the rotation it was played in
+   * @param x the x coordinate it was played at
+   * @param y the y coordinate it was played at
+   */
+  default void played(GamePiece piece, int x, int y) {
+  }
+
+  /**
+   * Handles the current piece being rotated
+   * @param turns number of 90 degree rotations
+   */
+  default void rotated(int turns) {
+  }
+
+  /**
+   * Handles the current and following piece being swapped
+   */
+  default void swapped() {
+  }
+
+  /**
+   * Handles the current piece being thrown away for the following piece without being played
+   */
+  default void skipped() {
+  }
+
+  /**
+   * Handles the timer running out before a piece was played
+   */
+  default void timedOut() {
+  }
+
+  /**
+   * Handles the last move being undone
+   */
+  default void undone() {
+  }
+
+  /**
+   * Handles the last undone move being redone
+   */
+  default void redone() {
+  }
+
+  /**
+   * Handles the end of the game
+   * @param score the final score
+   */
+  default void gameOver(int score) {
+  }
+}
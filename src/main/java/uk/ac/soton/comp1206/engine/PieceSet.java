@@ -0,0 +1,409 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of pieces to play with, loaded from a text file in the /pieces resources. The file gives the name, value,
+ * colour and shape of every piece, and is compiled once into a table of every piece in every rotation, so spawning
+ * and rotating a piece only looks up the table.
+ * Shapes are square, an odd number of blocks wide so they have a centre block, and up to MAX_SIZE blocks wide. All the
+ * pieces of a set are drawn in one grid the size of its biggest shape, smaller shapes are padded around their centre,
+ * and every piece is played by the block at the centre of that grid.
+ * Sets are cached by name, so a set is only compiled once and its pieces can be compared by identity.
+ */
+public class PieceSet {
+
+  /**
+   * The widest shape a piece can have
+   */
+  public static final int MAX_SIZE = 5;
+
+  /**
+   * The name of the set the game is normally played with
+   */
+  public static final String STANDARD = "standard";
+
+  /**
+   * The resource listing the names of the sets that can be chosen, one per line
+   */
+  private static final String INDEX = "/pieces/sets.txt";
+
+  /**
+   * The highest value a piece can have, values are kept in a byte per block of the grid
+   */
+  private static final int MAX_VALUE = Byte.MAX_VALUE;
+
+  /**
+   * Every set loaded so far, by name
+   */
+  private static final Map<String, PieceSet> LOADED = new ConcurrentHashMap<>();
+
+  /**
+   * The name of the resource the set was loaded from
+   */
+  private final String id;
+
+  /**
+   * The name of the set to show the player
+   */
+  private final String name;
+
+  /**
+   * The width and height of the grid the pieces are drawn in
+   */
+  private final int size;
+
+  /**
+   * Every piece in every rotation, indexed by piece number then rotation
+   */
+  private final GamePiece[][] table;
+
+  /**
+   * The colour of every value, as a colour name or #rrggbb, null for values no piece has
+   */
+  private final String[] colours;
+
+  /**
+   * The standard set, loaded the first time it is needed
+   */
+  private static class Standard {
+    private static final PieceSet SET = load(STANDARD);
+  }
+
+  /**
+   * Compile a set from its parsed pieces
+   * @param id the name of the resource
+   * @param name the name to show the player
+   * @param names the name of every piece
+   * @param values the value of every piece
+   * @param pieceColours the colour of every piece
+   * @param shapes the shape of every piece, one string per row with # for a block
+   */
+  private PieceSet(String id, String name, List<String> names, List<Integer> values, List<String> pieceColours,
+      List<List<String>> shapes) {
+    this.id = id;
+    this.name = name;
+    int largest = 1;
+    for (List<String> shape : shapes) {
+      largest = Math.max(largest, shape.size());
+    }
+    this.size = largest;
+    this.table = new GamePiece[shapes.size()][GamePiece.ROTATIONS];
+    int maxValue = 0;
+    for (int value : values) {
+      maxValue = Math.max(maxValue, value);
+    }
+    this.colours = new String[maxValue + 1];
+
+    for (int piece = 0; piece < shapes.size(); piece++) {
+      int mask = toMask(shapes.get(piece));
+      for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+        table[piece][rotation] = new GamePiece(this, names.get(piece), piece, rotation, mask, values.get(piece));
+        mask = rotateMask(mask);
+      }
+      colours[values.get(piece)] = pieceColours.get(piece);
+    }
+  }
+
+  /**
+   * Get the set the game is normally played with
+   * @return the standard set
+   */
+  public static PieceSet standard() {
+    return Standard.SET;
+  }
+
+  /**
+   * Get a set by name, loading it from /pieces/name.txt the first time
+   * @param id the name of the set
+   * @return the set
+   * @throws IllegalArgumentException if there is no such set or its file is malformed
+   */
+  public static PieceSet load(String id) {
+    return LOADED.computeIfAbsent(id, PieceSet::read);
+  }
+
+  /**
+   * Get the names of the sets that can be chosen, in the order they should be offered
+   * @return the names, the standard set first
+   */
+  public static List<String> available() {
+    List<String> ids = new ArrayList<>();
+    ids.add(STANDARD);
+    try (BufferedReader reader = open(INDEX)) {
+      if (reader == null) {
+        return ids;
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.strip();
+        if (!line.isEmpty() && !line.startsWith("#") && !ids.contains(line)) {
+          ids.add(line);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Couldn't read " + INDEX, e);
+    }
+    return ids;
+  }
+
+  /**
+   * Read and compile a set from its resource
+   * @param id the name of the set
+   * @return the set
+   */
+  private static PieceSet read(String id) {
+    if (!id.matches("[A-Za-z0-9_-]+")) {
+      throw new IllegalArgumentException("Bad piece set name: " + id);
+    }
+    String resource = "/pieces/" + id + ".txt";
+    try (BufferedReader reader = open(resource)) {
+      if (reader == null) {
+        throw new IllegalArgumentException("No such piece set: " + id);
+      }
+      return parse(id, reader);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Couldn't read " + resource, e);
+    }
+  }
+
+  /**
+   * Open a resource as text
+   * @param resource the path of the resource
+   * @return a reader, null if there is no such resource
+   */
+  private static BufferedReader open(String resource) {
+    InputStream stream = PieceSet.class.getResourceAsStream(resource);
+    return stream == null ? null : new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Compile a set from the text of a piece set file. A line "name Some Name" names the set, then each piece is a line
+   * "piece value colour name" followed by the rows of its shape, with # for a block and . for an empty one. Blank lines
+   * and lines starting with # outside a shape are ignored.
+   * @param id the name the set is cached under
+   * @param reader the text of the file
+   * @return the set
+   * @throws IOException if the text can't be read
+   * @throws IllegalArgumentException if the text is malformed
+   */
+  public static PieceSet parse(String id, BufferedReader reader) throws IOException {
+    String name = id;
+    List<String> names = new ArrayList<>();
+    List<Integer> values = new ArrayList<>();
+    List<String> pieceColours = new ArrayList<>();
+    List<List<String>> shapes = new ArrayList<>();
+    List<String> shape = null;
+
+    String line;
+    for (int number = 1; (line = reader.readLine()) != null; number++) {
+      line = line.strip();
+      if (shape != null && line.matches("[#.]+")) {
+        //Another row of the shape being read
+        shape.add(line);
+        continue;
+      }
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      if (shape != null) {
+        checkShape(id, number, names.get(names.size() - 1), shape);
+        shape = null;
+      }
+
+      String[] parts = line.split("\\s+", 4);
+      if (parts[0].equals("name") && parts.length > 1) {
+        name = line.substring(4).strip();
+      } else if (parts[0].equals("piece") && parts.length == 4) {
+        int value;
+        try {
+          value = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+          throw malformed(id, number, "value is not a number: " + parts[1]);
+        }
+        if (value < 1 || value > MAX_VALUE) {
+          throw malformed(id, number, "value must be from 1 to " + MAX_VALUE + ": " + value);
+        }
+        if (values.contains(value)) {
+          throw malformed(id, number, "two pieces have the value " + value);
+        }
+        values.add(value);
+        pieceColours.add(parts[2]);
+        names.add(parts[3]);
+        shape = new ArrayList<>();
+        shapes.add(shape);
+      } else {
+        throw malformed(id, number, "expected \"piece value colour name\": " + line);
+      }
+    }
+    if (shape != null) {
+      checkShape(id, -1, names.get(names.size() - 1), shape);
+    }
+    if (shapes.isEmpty()) {
+      throw new IllegalArgumentException("Piece set " + id + " has no pieces");
+    }
+    return new PieceSet(id, name, names, values, pieceColours, shapes);
+  }
+
+  /**
+   * Check the shape of a piece can be compiled
+   * @param id the name of the set
+   * @param number the line after the shape, -1 at the end of the file
+   * @param piece the name of the piece
+   * @param shape the rows of the shape
+   */
+  private static void checkShape(String id, int number, String piece, List<String> shape) {
+    int side = shape.size();
+    if (side == 0 || side > MAX_SIZE || side % 2 == 0) {
+      throw malformed(id, number, piece + " must be an odd number of rows high, up to " + MAX_SIZE + ": " + side);
+    }
+    for (String row : shape) {
+      if (row.length() != side) {
+        throw malformed(id, number, piece + " is not square: " + row);
+      }
+    }
+    if (String.join("", shape).indexOf('#') < 0) {
+      throw malformed(id, number, piece + " has no blocks");
+    }
+  }
+
+  /**
+   * Make the exception thrown for a malformed file
+   * @param id the name of the set
+   * @param number the line of the problem, -1 at the end of the file
+   * @param problem what is wrong
+   * @return the exception
+   */
+  private static IllegalArgumentException malformed(String id, int number, String problem) {
+    return new IllegalArgumentException("Piece set " + id + (number < 0 ? "" : " line " + number) + ": " + problem);
+  }
+
+  /**
+   * Turn the rows of a shape into a block mask of this set's size, padding it around its centre
+   * @param shape the rows of the shape
+   * @return the block mask
+   */
+  private int toMask(List<String> shape) {
+    int offset = (size - shape.size()) / 2;
+    int mask = 0;
+    for (int y = 0; y < shape.size(); y++) {
+      for (int x = 0; x < shape.size(); x++) {
+        if (shape.get(y).charAt(x) == '#') {
+          mask |= 1 << ((y + offset) * size + x + offset);
+        }
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Rotate a block mask exactly once, the block at (x, y) moves to (size - 1 - y, x)
+   * @param mask the block mask
+   * @return the rotated block mask
+   */
+  private int rotateMask(int mask) {
+    int rotated = 0;
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        if ((mask & (1 << (y * size + x))) != 0) {
+          rotated |= 1 << (x * size + (size - 1 - y));
+        }
+      }
+    }
+    return rotated;
+  }
+
+  /**
+   * Create a piece of this set
+   * @param piece piece number
+   * @return the piece, in its starting rotation
+   */
+  public GamePiece createPiece(int piece) {
+    return createPiece(piece, 0);
+  }
+
+  /**
+   * Create a piece of this set, already rotated
+   * @param piece piece number
+   * @param rotation number of rotations from the starting rotation
+   * @return the piece
+   */
+  public GamePiece createPiece(int piece, int rotation) {
+    if (piece < 0 || piece >= table.length) {
+      //Not a valid piece number
+      throw new IndexOutOfBoundsException("No such piece: " + piece);
+    }
+    return table[piece][rotation & (GamePiece.ROTATIONS - 1)];
+  }
+
+  /**
+   * Get the name of the resource the set was loaded from, which load takes
+   * @return the id
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Get the name of the set to show the player
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Get the number of pieces in the set
+   * @return the number of pieces, piece numbers go from 0 to one less
+   */
+  public int getCount() {
+    return table.length;
+  }
+
+  /**
+   * Get the width and height of the grid the pieces are drawn in
+   * @return the size, odd and at most MAX_SIZE
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Get the position of the block pieces are played by, in both directions of the grid they are drawn in
+   * @return the centre
+   */
+  public int getCentre() {
+    return size / 2;
+  }
+
+  /**
+   * Get the highest value a piece of the set has
+   * @return the highest value
+   */
+  public int getMaxValue() {
+    return colours.length - 1;
+  }
+
+  /**
+   * Get the colour blocks of a value are drawn in
+   * @param value the value of a block
+   * @return a colour name or #rrggbb, null if no piece has the value
+   */
+  public String getColour(int value) {
+    return value > 0 && value < colours.length ? colours[value] : null;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
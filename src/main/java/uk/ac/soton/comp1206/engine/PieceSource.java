@@ -0,0 +1,201 @@
+package uk.ac.soton.comp1206.engine;
+
+/**
+ * A PieceSource decides which pieces a game is dealt. It keeps a ring buffer of the upcoming piece numbers, so the
+ * next few pieces can be looked at before they are dealt. Piece numbers are plain ints and pieces come from the table
+ * of the source's PieceSet, so dealing a piece allocates nothing.
+ * The factories create the different strategies: seeded random, bag randomizer and a scripted sequence.
+ */
+public abstract class PieceSource {
+
+  /**
+   * The number of upcoming pieces kept by the factories
+   */
+  public static final int DEFAULT_LOOKAHEAD = 8;
+
+  /**
+   * The set the pieces are dealt from
+   */
+  private final PieceSet set;
+
+  /**
+   * The ring buffer of upcoming piece numbers
+   */
+  private final int[] upcoming;
+
+  /**
+   * The position of the next piece in the ring buffer
+   */
+  private int head = 0;
+
+  /**
+   * The number of upcoming pieces already decided
+   */
+  private int count = 0;
+
+  /**
+   * Create a new source of pieces from the standard set
+   * @param lookahead the number of upcoming pieces that can be looked at
+   */
+  protected PieceSource(int lookahead) {
+    this(PieceSet.standard(), lookahead);
+  }
+
+  /**
+   * Create a new source
+   * @param set the set to deal pieces from
+   * @param lookahead the number of upcoming pieces that can be looked at
+   */
+  protected PieceSource(PieceSet set, int lookahead) {
+    if (lookahead < 1) {
+      throw new IllegalArgumentException("Lookahead must be at least 1: " + lookahead);
+    }
+    this.set = set;
+    this.upcoming = new int[lookahead];
+  }
+
+  /**
+   * Create a source of uniformly random pieces from the standard set
+   * @param seed the seed, the same seed always gives the same pieces
+   * @return the source
+   */
+  public static RandomPieceSource random(long seed) {
+    return random(seed, PieceSet.standard());
+  }
+
+  /**
+   * Create a source of uniformly random pieces
+   * @param seed the seed, the same seed always gives the same pieces
+   * @param set the set to deal pieces from
+   * @return the source
+   */
+  public static RandomPieceSource random(long seed, PieceSet set) {
+    return new RandomPieceSource(seed, set, DEFAULT_LOOKAHEAD);
+  }
+
+  /**
+   * Create a source that deals every piece of the standard set once, in a random order, before starting again
+   * @param seed the seed, the same seed always gives the same pieces
+   * @return the source
+   */
+  public static BagPieceSource bag(long seed) {
+    return bag(seed, PieceSet.standard());
+  }
+
+  /**
+   * Create a source that deals every piece of a set once, in a random order, before starting again
+   * @param seed the seed, the same seed always gives the same pieces
+   * @param set the set to deal pieces from
+   * @return the source
+   */
+  public static BagPieceSource bag(long seed, PieceSet set) {
+    return new BagPieceSource(seed, set, DEFAULT_LOOKAHEAD);
+  }
+
+  /**
+   * Create a source that deals the given pieces of the standard set in order. More pieces can be added later.
+   * @param pieces the piece numbers to deal
+   * @return the source
+   */
+  public static ScriptedPieceSource scripted(int... pieces) {
+    ScriptedPieceSource source = new ScriptedPieceSource(DEFAULT_LOOKAHEAD);
+    for (int piece : pieces) {
+      source.add(piece);
+    }
+    return source;
+  }
+
+  /**
+   * Decide the piece after the last one decided
+   * @return a piece number
+   */
+  protected abstract int generate();
+
+  /**
+   * Whether another piece can be decided right now
+   * @return true if generate can be called
+   */
+  protected boolean canGenerate() {
+    return true;
+  }
+
+  /**
+   * Take the next piece number
+   * @return the piece number
+   */
+  public int next() {
+    fill(1);
+    int piece = upcoming[head];
+    head = (head + 1) % upcoming.length;
+    count--;
+    return piece;
+  }
+
+  /**
+   * Take the next piece
+   * @return the piece, in its starting rotation
+   */
+  public GamePiece nextPiece() {
+    return set.createPiece(next());
+  }
+
+  /**
+   * Get the set the pieces are dealt from
+   * @return the piece set
+   */
+  public PieceSet getPieceSet() {
+    return set;
+  }
+
+  /**
+   * Look at an upcoming piece number without taking it
+   * @param ahead how far ahead to look, 0 is the piece next() will return
+   * @return the piece number
+   */
+  public int peek(int ahead) {
+    if (ahead < 0 || ahead >= upcoming.length) {
+      throw new IndexOutOfBoundsException("Can only look " + upcoming.length + " pieces ahead: " + ahead);
+    }
+    fill(ahead + 1);
+    return upcoming[(head + ahead) % upcoming.length];
+  }
+
+  /**
+   * Get the number of upcoming pieces that can be looked at
+   * @return the lookahead
+   */
+  public int getLookahead() {
+    return upcoming.length;
+  }
+
+  /**
+   * Get the number of upcoming pieces that could be dealt right now, up to the lookahead
+   * @return pieces available
+   */
+  public int available() {
+    while (count < upcoming.length && canGenerate()) {
+      fill(count + 1);
+    }
+    return count;
+  }
+
+  /**
+   * Forget the upcoming pieces already decided, so the next piece is decided again. Used by sources that can move
+   * to another point of their sequence.
+   */
+  protected void discardUpcoming() {
+    head = 0;
+    count = 0;
+  }
+
+  /**
+   * Decide upcoming pieces until enough are in the ring buffer
+   * @param wanted the number of upcoming pieces wanted
+   */
+  private void fill(int wanted) {
+    while (count < wanted) {
+      upcoming[(head + count) % upcoming.length] = generate();
+      count++;
+    }
+  }
+}
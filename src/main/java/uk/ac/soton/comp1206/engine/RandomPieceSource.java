@@ -0,0 +1,53 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deals uniformly random pieces from a seeded SplittableRandom
+ */
+public class RandomPieceSource extends PieceSource {
+
+  /**
+   * The seed the pieces come from
+   */
+  private final long seed;
+
+  /**
+   * The random number generator
+   */
+  private final SplittableRandom random;
+
+  /**
+   * Create a new random source of pieces from the standard set
+   * @param seed the seed, the same seed always gives the same pieces
+   * @param lookahead the number of upcoming pieces that can be looked at
+   */
+  public RandomPieceSource(long seed, int lookahead) {
+    this(seed, PieceSet.standard(), lookahead);
+  }
+
+  /**
+   * Create a new random source
+   * @param seed the seed, the same seed always gives the same pieces
+   * @param set the set to deal pieces from
+   * @param lookahead the number of upcoming pieces that can be looked at
+   */
+  public RandomPieceSource(long seed, PieceSet set, int lookahead) {
+    super(set, lookahead);
+    this.seed = seed;
+    this.random = new SplittableRandom(seed);
+  }
+
+  @Override
+  protected int generate() {
+    return random.nextInt(getPieceSet().getCount());
+  }
+
+  /**
+   * Get the seed the pieces come from
+   * @return the seed
+   */
+  public long getSeed() {
+    return seed;
+  }
+}
@@ -0,0 +1,77 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.Arrays;
+
+/**
+ * Deals a given sequence of pieces in order, for example the pieces sent by the server in a multiplayer game or the
+ * pieces of a recorded game. More pieces can be added while the game is running.
+ */
+public class ScriptedPieceSource extends PieceSource {
+
+  /**
+   * The piece numbers to deal
+   */
+  private int[] script = new int[16];
+
+  /**
+   * The number of pieces in the script
+   */
+  private int length = 0;
+
+  /**
+   * The position of the next piece in the script
+   */
+  private int position = 0;
+
+  /**
+   * Create a new, empty scripted source of pieces from the standard set
+   * @param lookahead the number of upcoming pieces that can be looked at
+   */
+  public ScriptedPieceSource(int lookahead) {
+    super(lookahead);
+  }
+
+  /**
+   * Create a new, empty scripted source
+   * @param set the set to deal pieces from
+   * @param lookahead the number of upcoming pieces that can be looked at
+   */
+  public ScriptedPieceSource(PieceSet set, int lookahead) {
+    super(set, lookahead);
+  }
+
+  /**
+   * Add a piece to the end of the script
+   * @param piece the piece number
+   */
+  public void add(int piece) {
+    if (piece < 0 || piece >= getPieceSet().getCount()) {
+      throw new IndexOutOfBoundsException("No such piece: " + piece);
+    }
+    if (length == script.length) {
+      script = Arrays.copyOf(script, length * 2);
+    }
+    script[length++] = piece;
+  }
+
+  /**
+   * Get the number of pieces added so far
+   * @return the length of the script
+   */
+  public int size() {
+    return length;
+  }
+
+  @Override
+  protected int generate() {
+    if (position == length) {
+      throw new IllegalStateException("No more pieces in the script after " + length);
+    }
+    return script[position++];
+  }
+
+  @Override
+  protected boolean canGenerate() {
+    return position < length;
+  }
+}
@@ -0,0 +1,53 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A GameClock that follows the wall clock. Tasks run on a single daemon thread, which is stopped by shutdown.
+ */
+public class SystemGameClock implements GameClock {
+
+  /**
+   * Runs the scheduled tasks
+   */
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "game-clock");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Create a clock; its thread starts with the first task
+   */
+  public SystemGameClock() {
+  }
+
+  @Override
+  public long now() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  @Override
+  public Task schedule(Runnable task, long delay) {
+    ScheduledFuture<?> future = executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+    return new Task() {
+      @Override
+      public void cancel() {
+        future.cancel(false);
+      }
+
+      @Override
+      public long getRemaining() {
+        return Math.max(0, future.getDelay(TimeUnit.MILLISECONDS));
+      }
+    };
+  }
+
+  @Override
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
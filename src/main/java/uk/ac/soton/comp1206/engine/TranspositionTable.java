@@ -0,0 +1,109 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size table of values of positions, keyed by a 64-bit hash such as Grid.getHash() combined with whatever
+ * else makes up the position. It is used to remember positions that were already evaluated.
+ * The table never grows: each key has one slot and a new entry replaces whatever was there. Any number of threads can
+ * use it without locks. Each slot holds the value and the key XORed with the value, so an entry half written by
+ * another thread does not match its key and reads as missing.
+ */
+public class TranspositionTable {
+
+  /**
+   * The key and value of every slot, two longs per slot
+   */
+  private final AtomicLongArray slots;
+
+  /**
+   * Used to find the slot of a key, the number of slots is a power of two
+   */
+  private final int mask;
+
+  /**
+   * Create a new table
+   * @param entries the number of entries, rounded up to a power of two
+   */
+  public TranspositionTable(int entries) {
+    int size = Integer.highestOneBit(Math.max(1, entries - 1)) << 1;
+    this.slots = new AtomicLongArray(size * 2);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Mix more parts of a position into a key, for example the current piece or the depth of a search
+   * @param key the key so far, such as a grid hash
+   * @param part the part to add
+   * @return the new key
+   */
+  public static long combine(long key, long part) {
+    long z = part * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return key ^ z ^ (z >>> 31);
+  }
+
+  /**
+   * Look up the value of a position
+   * @param key the key of the position
+   * @return the value, NaN if the position isn't in the table
+   */
+  public double get(long key) {
+    key = nonZero(key);
+    int slot = slot(key);
+    long value = slots.get(slot + 1);
+    if ((slots.get(slot) ^ value) != key) {
+      return Double.NaN;
+    }
+    return Double.longBitsToDouble(value);
+  }
+
+  /**
+   * Store the value of a position, replacing whatever was in its slot
+   * @param key the key of the position
+   * @param value the value, not NaN
+   */
+  public void put(long key, double value) {
+    key = nonZero(key);
+    int slot = slot(key);
+    long bits = Double.doubleToRawLongBits(value);
+    slots.set(slot + 1, bits);
+    slots.set(slot, key ^ bits);
+  }
+
+  /**
+   * Forget every position
+   */
+  public void clear() {
+    for (int i = 0; i < slots.length(); i++) {
+      slots.set(i, 0);
+    }
+  }
+
+  /**
+   * Get the number of entries the table holds
+   * @return the capacity
+   */
+  public int getCapacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Move the key 0 elsewhere, as an empty slot would match it
+   * @param key the key
+   * @return the key to store
+   */
+  private static long nonZero(long key) {
+    return key == 0 ? 0x5DEECE66DL : key;
+  }
+
+  /**
+   * Find the first of the two longs of a key's slot
+   * @param key the key
+   * @return the index into the slots
+   */
+  private int slot(long key) {
+    return (int) ((key ^ (key >>> 32)) & mask) << 1;
+  }
+}
@@ -0,0 +1,162 @@
+package uk.ac.soton.comp1206.engine;
+
+import java.util.PriorityQueue;
+
+/**
+ * A GameClock whose time only moves when it is told to. Tasks run on the thread that advances the clock, in the order
+ * they are due, so a headless game can fast-forward through its timeouts at CPU speed.
+ * A VirtualGameClock is not thread safe and should be used from one thread.
+ */
+public class VirtualGameClock implements GameClock {
+
+  /**
+   * The current virtual time in milliseconds
+   */
+  private long now = 0;
+
+  /**
+   * Counts scheduled tasks, so tasks due at the same time run in the order they were scheduled
+   */
+  private long sequence = 0;
+
+  /**
+   * Tasks waiting to run, the next one due first
+   */
+  private final PriorityQueue<VirtualTask> queue = new PriorityQueue<>();
+
+  /**
+   * Create a clock at time 0
+   */
+  public VirtualGameClock() {
+  }
+
+  @Override
+  public long now() {
+    return now;
+  }
+
+  @Override
+  public Task schedule(Runnable task, long delay) {
+    VirtualTask scheduled = new VirtualTask(task, now + Math.max(0, delay), sequence++);
+    queue.add(scheduled);
+    return scheduled;
+  }
+
+  /**
+   * Move time forward, running every task that becomes due on the way
+   * @param millis milliseconds to move forward
+   */
+  public void advance(long millis) {
+    long target = now + millis;
+    while (!queue.isEmpty() && queue.peek().due <= target) {
+      runNext();
+    }
+    now = target;
+  }
+
+  /**
+   * Jump straight to the next task that is due and run it
+   * @return false if no task was waiting
+   */
+  public boolean advanceToNext() {
+    //Cancelled tasks are left in the queue and skipped here
+    while (!queue.isEmpty()) {
+      if (runNext()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Whether any task is waiting to run
+   * @return true if a task is waiting
+   */
+  public boolean hasPending() {
+    for (VirtualTask task : queue) {
+      if (!task.cancelled) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void shutdown() {
+    queue.clear();
+  }
+
+  /**
+   * Take the next task off the queue and run it, unless it was cancelled
+   * @return whether the task ran
+   */
+  private boolean runNext() {
+    VirtualTask task = queue.poll();
+    now = Math.max(now, task.due);
+    if (task.cancelled) {
+      return false;
+    }
+    task.done = true;
+    task.task.run();
+    return true;
+  }
+
+  /**
+   * A task waiting on the virtual clock
+   */
+  private class VirtualTask implements Task, Comparable<VirtualTask> {
+
+    /**
+     * The task to run
+     */
+    private final Runnable task;
+
+    /**
+     * The virtual time the task is due
+     */
+    private final long due;
+
+    /**
+     * The order the task was scheduled in
+     */
+    private final long order;
+
+    /**
+     * Whether the task was cancelled
+     */
+    private boolean cancelled = false;
+
+    /**
+     * Whether the task has run
+     */
+    private boolean done = false;
+
+    /**
+     * Create a new task
+     * @param task the task to run
+     * @param due the virtual time it is due
+     * @param order the order it was scheduled in
+     */
+    private VirtualTask(Runnable task, long due, long order) {
+      this.task = task;
+      this.due = due;
+      this.order = order;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+
+    @Override
+    public long getRemaining() {
+      return cancelled || done ? 0 : Math.max(0, due - now);
+    }
+
+    @Override
+    public int compareTo(VirtualTask other) {
+      int compare = Long.compare(due, other.due);
+      return compare != 0 ? compare : Long.compare(order, other.order);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.engine.GamePiece;
+
+/**
+ * Listener for the move suggested to the player
+ */
+public interface HintListener {
+
+  /**
+   * Handles a new hint, or the old one going out of date
+   * @param piece the piece to play, already rotated the way to play it, null to clear the hint
+   * @param x the column to play the centre of the piece in
+   * @param y the row to play the centre of the piece in
+   */
+  void hint(GamePiece piece, int x, int y);
+
+}
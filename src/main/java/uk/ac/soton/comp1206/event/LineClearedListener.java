@@ -1,10 +1,9 @@
 package uk.ac.soton.comp1206.event;
 
-import java.util.HashSet;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.engine.ClearResult;
 
 /**
- * Takes a set of GameBlock coordinates and adds it the Game class
+ * Takes the lines cleared from the grid and passes them on from the Game class
  */
 public interface LineClearedListener {
 
@@ -12,5 +11,5 @@ public interface LineClearedListener {
    * Handles the event when the line is cleared
    * @param lineCleared th line cleared
    */
-  void lineCleared(HashSet<GameBlockCoordinate> lineCleared);
+  void lineCleared(ClearResult lineCleared);
 }
@@ -1,32 +1,71 @@
 package uk.ac.soton.comp1206.game;
 
-import java.util.HashSet;
-import java.util.Random;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.nio.file.Path;
 import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.component.GameBlock;
+import uk.ac.soton.comp1206.bot.Decision;
+import uk.ac.soton.comp1206.bot.HintFinder;
+import uk.ac.soton.comp1206.bot.Player;
 import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.engine.Checkpoint;
+import uk.ac.soton.comp1206.engine.ClearResult;
+import uk.ac.soton.comp1206.engine.DeadBoardAction;
+import uk.ac.soton.comp1206.engine.EngineListener;
+import uk.ac.soton.comp1206.engine.GameActor;
+import uk.ac.soton.comp1206.engine.GameClock;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.GameHistory;
+import uk.ac.soton.comp1206.engine.GameLoop;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.GameState;
+import uk.ac.soton.comp1206.engine.Grid;
+import uk.ac.soton.comp1206.engine.HashedWheelTimer;
+import uk.ac.soton.comp1206.engine.PieceSet;
+import uk.ac.soton.comp1206.engine.PieceSource;
 import uk.ac.soton.comp1206.event.GameLoopListener;
 import uk.ac.soton.comp1206.event.GameOverListener;
+import uk.ac.soton.comp1206.event.HintListener;
 import uk.ac.soton.comp1206.event.LineClearedListener;
 import uk.ac.soton.comp1206.event.NextPieceListener;
 import uk.ac.soton.comp1206.media.Multimedia;
+import uk.ac.soton.comp1206.replay.ReplayRecorder;
 
 /**
- * The Game class handles the main logic, state and properties of the TetrECS game. Methods to manipulate the game state
- * and to handle actions made by the player should take place inside this class.
+ * The Game class connects a GameEngine to the JavaFX user interface. The rules of TetrECS live in the engine; the Game
+ * runs the game loop timer, plays the sounds and mirrors the engine state into properties that the UI can bind to.
+ * Actions made by the player are passed on to the engine from here.
+ * The engine is only ever changed by its GameActor: actions by the player and timeouts of the loop are sent to it as
+ * commands and run one at a time on the JavaFX thread, so the listeners are always called on the JavaFX thread too.
+ * Other threads can read the latest GameState.
  */
 public class Game {
 
     protected static final Logger logger = LogManager.getLogger(Game.class);
 
+    /**
+     * The directory every game is recorded in unless told otherwise
+     */
+    public static final Path REPLAY_DIRECTORY = Path.of("replays");
+
+    /**
+     * The file a single player game is saved in when the player leaves it
+     */
+    public static final Path SAVE_FILE = Path.of("saved-game.tsav");
+
+    /**
+     * The log of the local scores
+     */
+    public static final Path SCORES_FILE = Path.of("scores.log");
+
+    /**
+     * The directory of every local score ever played, kept for statistics
+     */
+    public static final Path HISTORY_DIRECTORY = Path.of("score-history");
+
     /**
      * Number of rows
      */
@@ -38,14 +77,14 @@ public class Game {
     protected final int cols;
 
     /**
-     * The grid model linked to the game
+     * The engine holding the rules and state of the game
      */
-    protected final Grid grid;
+    protected final GameEngine engine;
 
     /**
-     * The current GamePiece in play
+     * The grid model linked to the game
      */
-    protected GamePiece currentPiece;
+    protected final Grid grid;
 
     /**
      * Score of the game
@@ -88,36 +127,97 @@ public class Game {
     protected GameOverListener gameOverListener;
 
     /**
-     * The piece that is coming next
+     * Listener for the move suggested to the player
+     */
+    protected HintListener hintListener;
+
+    /**
+     * Searches for hints in the background, made the first time hints are turned on
+     */
+    protected HintFinder hintFinder;
+
+    /**
+     * Whether the best move is searched for and shown every time the pieces change
      */
-    protected GamePiece followingPiece;
+    protected boolean hintsEnabled;
+
+    /**
+     * The directory the game is recorded in, null to not record it
+     */
+    protected Path replayDirectory = REPLAY_DIRECTORY;
+
+    /**
+     * Records the moves of the game once it starts, null if it isn't recorded
+     */
+    protected ReplayRecorder recorder;
+
+    /**
+     * The saved game this game carries on from, null for a new game
+     */
+    protected Checkpoint resumed;
+
+    /**
+     * Runs every change to the engine on the JavaFX thread, one at a time
+     */
+    protected final GameActor actor;
 
     /**
      * Responsible for looping the game
      */
-    protected ScheduledFuture<?> loop;
+    protected final GameLoop loop;
     /**
      * Responsible for timing the looper
      */
-    protected ScheduledExecutorService timer;
+    protected final GameClock clock;
 
 
     /**
-     * Create a new game with the specified rows and columns. Creates a corresponding grid model.
+     * Create a new game with the specified rows and columns, dealing random pieces and timed by the timer shared by
+     * every game. Creates a corresponding engine and grid model.
      * @param cols number of columns
      * @param rows number of rows
      */
     public Game(int cols, int rows) {
+        this(cols, rows, PieceSet.standard());
+    }
+
+    /**
+     * Create a new game with the specified rows and columns, dealing random pieces from a set and timed by the timer
+     * shared by every game
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param set the set the pieces are dealt from
+     */
+    public Game(int cols, int rows, PieceSet set) {
+        this(cols, rows, PieceSource.random(System.nanoTime(), set), HashedWheelTimer.shared());
+    }
+
+    /**
+     * Create a new game with the specified rows and columns. Creates a corresponding engine and grid model.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param pieces decides the pieces dealt
+     * @param clock the clock timing the game loop
+     */
+    public Game(int cols, int rows, PieceSource pieces, GameClock clock) {
         this.cols = cols;
         this.rows = rows;
-        //Create a new grid model to represent the game state
-        this.grid = new Grid(cols,rows);
+        //Create a new engine to hold the game state
+        this.engine = new GameEngine(cols, rows, pieces);
+        this.grid = engine.getGrid();
+
+        this.score = new SimpleIntegerProperty(engine.getScore());
+        this.level = new SimpleIntegerProperty(engine.getLevel());
+        this.lives = new SimpleIntegerProperty(engine.getLives());
+        this.multiplier = new SimpleIntegerProperty(engine.getMultiplier());
+        this.clock = clock;
 
-        this.score = new SimpleIntegerProperty(0);
-        this.level = new SimpleIntegerProperty(0);
-        this.lives = new SimpleIntegerProperty(3);
-        this.multiplier = new SimpleIntegerProperty(1);
-        this.timer = Executors.newSingleThreadScheduledExecutor();
+        //Timeouts are sent to the actor, like everything else the player does
+        this.actor = new GameActor(engine, Game::runOnFxThread);
+        this.loop = new GameLoop(engine, clock, actor);
+        loop.setOnLoop(delay -> gameLoopListener());
+
+        engine.setListener(new EngineEvents());
     }
 
     /**
@@ -125,10 +225,50 @@ public class Game {
      */
     public void start() {
         logger.info("Starting game");
-        initialiseGame();
-        followingPiece = spawnPiece();
-        loop = timer.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
-        gameLoopListener();
+        actor.execute(() -> {
+            if (resumed != null) {
+                if (startRecording()) {
+                    recorder.resumed(engine);
+                }
+                //Carry on with the time the player had left, or a full delay if the loop wasn't running
+                long remaining = resumed.getRemaining();
+                loop.resume(remaining > 0 ? remaining : engine.getTimerDelay());
+                return;
+            }
+            initialiseGame();
+            loop.start();
+        });
+    }
+
+    /**
+     * Carry on from a saved game instead of starting a new one, before the game starts. The grid changes all at once,
+     * so a board built afterwards is built once with the saved blocks. The recording of a resumed game starts from the
+     * saved game.
+     * @param checkpoint the saved game, played on a grid of the same size with the same pieces
+     */
+    public void resume(Checkpoint checkpoint) {
+        actor.execute(() -> {
+            checkpoint.restore(engine);
+            resumed = checkpoint;
+        });
+    }
+
+    /**
+     * Save the game as it is now, unless it is over. Call before endLoop, which stops the time left being measured.
+     * @param file the file to save it in, replaced only once the save is written
+     */
+    public void save(Path file) {
+        actor.execute(() -> {
+            if (engine.isOver() || engine.getCurrentPiece() == null) {
+                return;
+            }
+            try {
+                Checkpoint.capture(engine, loop.getRemaining()).write(file);
+                logger.info("Saved the game to {}", file);
+            } catch (IOException e) {
+                logger.error("Couldn't save the game to {}", file, e);
+            }
+        });
     }
 
     /**
@@ -136,70 +276,105 @@ public class Game {
      */
     public void initialiseGame() {
         logger.info("Initialising game");
-        setFollowingPiece(spawnPiece());
-        nextPiece();
+        startRecording();
+        engine.start();
+    }
+
+    /**
+     * Start recording the game, unless it isn't recorded or already is
+     * @return true if a new recording was started
+     */
+    protected boolean startRecording() {
+        if (replayDirectory == null || recorder != null) {
+            return false;
+        }
+        recorder = ReplayRecorder.create(replayDirectory, clock::now);
+        engine.setRecorder(recorder);
+        logger.info("Recording the game to {}", recorder.getWriter().getFile());
+        return true;
+    }
+
+    /**
+     * Set where the game is recorded, before it starts
+     * @param directory the directory to write the replay file in, null to not record the game
+     */
+    public void setReplayDirectory(Path directory) {
+        this.replayDirectory = directory;
+    }
+
+    /**
+     * Get the recorder of the game
+     * @return the recorder, null if the game isn't recorded or hasn't started
+     */
+    public ReplayRecorder getRecorder() {
+        return recorder;
     }
 
     /**
      * Handle what should happen when a particular block is clicked
      *
-     * @param gameBlock the block that was clicked
+     * @param gameBlock the column and row of the block that was clicked
      */
-    public void blockClicked(GameBlock gameBlock) {
+    public void blockClicked(GameBlockCoordinate gameBlock) {
         int x = gameBlock.getX();
         int y = gameBlock.getY();
 
-        boolean piecePlacedSuccessfully = grid.canPlayPiece(currentPiece, x, y);
-        if (piecePlacedSuccessfully) {
-            grid.playPiece(currentPiece, x, y);
-            nextPiece();
-            afterPiece();
+        actor.execute(() -> place(x, y));
+    }
+
+    /**
+     * Let a bot choose and make the next move
+     * @param bot the bot
+     */
+    public void playBotMove(Player bot) {
+        actor.execute(() -> {
+            if (engine.isOver()) {
+                return;
+            }
+            Decision decision = bot.decide(engine);
+            if (decision == null) {
+                //Nothing fits, leave it to the game loop
+                return;
+            }
+            logger.info("Bot chose to {}", decision);
+            if (decision.isSwap()) {
+                engine.swap();
+            }
+            if (decision.getRotation() != 0) {
+                engine.rotate(decision.getRotation());
+            }
+            place(decision.getX(), decision.getY());
+        });
+    }
+
+    /**
+     * Play the current piece, on the actor's thread
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    private void place(int x, int y) {
+        if (engine.play(x, y)) {
             Multimedia.playSound("place.wav");
-            loop.cancel(false);
-            loop = timer.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
-            gameLoopListener();
+            loop.reset();
             logger.info("Timer was reset");
         }else {
             Multimedia.playSound("fail.wav");
         }
     }
-    
-    /**
-     * Randomly spawns a GamePiece
-     * @return returns the spawned GamePiece
-     */
-    public GamePiece spawnPiece(){
-        logger.info("Spawning a new random piece");
-
-        Random random = new Random();
-        int randomPieceNumber = random.nextInt(GamePiece.PIECES);
-        return GamePiece.createPiece(randomPieceNumber);
-
-    }
 
     /**
      * Replaces the current piece with a new piece
      */
     public void nextPiece(){
-        logger.info("Getting next random piece");
-
-        setCurrentPiece(getFollowingPiece());
-        setFollowingPiece(spawnPiece());
-        if (nextPieceListener != null) {
-            nextPieceListener.nextPiece(getCurrentPiece(), getFollowingPiece());
-        }
+        logger.info("Getting next piece");
+        actor.execute(engine::nextPiece);
     }
 
     /**
      * swaps the current piece with the following piece
      */
     public void swapCurrentPiece(){
-        GamePiece temp = getCurrentPiece();
-        setCurrentPiece(getFollowingPiece());
-        setFollowingPiece(temp);
-        Multimedia.playSound("transition.wav");
-        logger.info("Swapped current piece with following piece");
-
+        actor.execute(engine::swap);
     }
 
     /**
@@ -210,161 +385,119 @@ public class Game {
         this.nextPieceListener = listener;
     }
 
+    /**
+     * rotates the current piece
+     */
+    public void rotateCurrentPiece(){
+        rotateCurrentPiece(1);
+    }
 
     /**
-     * Clears full lines
+     * rotates the current piece a number of times, 3 turns rotate it left
+     * @param turns number of 90 degree rotations
      */
-    public void afterPiece() {
-        logger.info("Handling actions after playing a piece");
-        HashSet<GameBlockCoordinate> blocksToClear = new HashSet<>();
-        int linesToClear = 0;
-        boolean clearedLines = false; //track if lines were cleared
-        //Search for horizontal lines
-        for (int y = 0; y < rows; y++){
-            boolean fullLine = true;
-            for (int x = 0; x < cols; x++){
-                if (grid.get(x,y) == 0){
-                    fullLine = false;
-                    break;
-                }
-            }
-            if (fullLine){
-                linesToClear++;
-                clearedLines = true;
-                for (int x = 0; x < cols; x++){
-                    blocksToClear.add(new GameBlockCoordinate(x,y));
-                }
-            }
-        }
-        //Search for vertical lines
-        for (int x =0; x< cols; x++) {
-            boolean fullLine = true;
-            for (int y = 0; y < rows; y++){
-                if (grid.get(x,y) == 0){
-                    fullLine = false;
-                    break;
-                }
-            }
-            if (fullLine){
-                linesToClear++;
-                clearedLines = true;
-                for (int y = 0; y< rows; y++){
-                    blocksToClear.add(new GameBlockCoordinate(x, y));
-                }
-            }
-        }
-        //Clear the marked blocks from the grid
-        for(GameBlockCoordinate coordinate : blocksToClear){
-            grid.set(coordinate.getX(), coordinate.getY(), 0);
-        }
-        //effects for clearing a line
-        if (clearedLines){
-            Multimedia.playSound("clear.wav");
-            if (lineClearedListener != null){
-                lineClearedListener.lineCleared(blocksToClear);
-            }
-        }
-        //Calculate and update the score
-        score(linesToClear, blocksToClear.size());
-        //Update the multiplier
-        multiplier(clearedLines);
-    }
-
-    /**
-     * Calculates and updates the score level
-     * @param lines number of lines cleared
-     * @param blocks number of blocks
-     */
-    public void score(int lines, int blocks){
-        int points = lines * blocks * multiplier.get() * 10;
-        int newScore = getScore() + points;
-        setScore(newScore);
-        logger.info("Score added, Score: " + score.get());
-        // Calculate the level
-        int newLevel = newScore / 1000;
-        if (newLevel > getLevel()) {
-            setLevel(newLevel);
-            Multimedia.playSound("level.wav");
-            logger.info("Level up! Level: " + newLevel);
-        }
+    public void rotateCurrentPiece(int turns){
+        actor.execute(() -> engine.rotate(turns));
     }
 
     /**
-     * updates the multiplier
-     * @param clearedLines if any lines were cleared
+     * Calculates the time delay for the timer at a certain level
+     * @return the time to delay
      */
-    public void multiplier(boolean clearedLines){
-        if (clearedLines){
-            multiplier.set(multiplier.get()+1);
-        } else {
-            resetMultiplier();
-        }
-        logger.info("Updated the multiplier to: " + multiplier.get());
+    public int getTimerDelay(){
+        return engine.getTimerDelay();
     }
 
     /**
-     * rotates the current piece
+     * Stops the loop from running, cancelling its timeout on the clock
      */
-    public void rotateCurrentPiece(){
-        if (currentPiece != null){
-            currentPiece.rotate();
-            Multimedia.playSound("rotate.wav");
-            logger.info("Rotating current piece 90 degrees");
-            if (nextPieceListener != null){
-                nextPieceListener.nextPiece(getCurrentPiece(), getFollowingPiece());
+    public void endLoop(){
+        actor.execute(() -> {
+            loop.stop();
+            stopHints();
+            if (recorder != null) {
+                //Ends the recording, unless the game being over already did
+                recorder.close();
             }
-        }
+        });
+        logger.info("Timer was shut down");
     }
 
     /**
-     * Calculates the time delay for the timer at a certain level
-     * @return the time to delay
+     * Sets the listener told about the move suggested to the player
+     * @param listener the hint listener
      */
-    public int getTimerDelay(){
-        return Math.max(2500, (12000-(500*getLevel())));
+    public void setOnHint(HintListener listener) {
+        hintListener = listener;
     }
 
     /**
-     * Handles the looping of the game, in designated threads
-      */
-    public void gameLoop(){
-        logger.info("Game loop fired");
-        Platform.runLater(this::lostLive);
-        Platform.runLater(this:: resetMultiplier);
-        nextPiece();
-        gameLoopListener();
-        loop = timer.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
+     * Turn hints on or off. While on, the best move is searched for in the background whenever the pieces change, and
+     * the hint listener told about it once found.
+     * @param enabled whether to show hints
+     */
+    public void setHintsEnabled(boolean enabled) {
+        actor.execute(() -> {
+            hintsEnabled = enabled;
+            if (enabled) {
+                requestHint();
+            } else {
+                clearHint();
+            }
+        });
     }
 
     /**
-     * Handles when the user loses a life
+     * Whether hints are shown
+     * @return true if the best move is searched for whenever the pieces change
      */
-    public void lostLive(){
-        if (getLives() > 0){
-            setLives(getLives()-1);
-            Multimedia.playSound("lifelose.wav");
-            logger.info("Lost a life");
-        }else {
-            logger.info("Game over");
-            if (gameOverListener != null){
-                Platform.runLater(()-> gameOverListener.gameOver());
-            }
+    public boolean isHintsEnabled() {
+        return hintsEnabled;
+    }
+
+    /**
+     * Clear the hint shown and, if hints are on, start searching for the best move with the pieces now, on the actor's
+     * thread. Any search still going for the old pieces is cancelled.
+     */
+    private void requestHint() {
+        clearHint();
+        if (!hintsEnabled || engine.isOver() || engine.getCurrentPiece() == null) {
+            return;
         }
+        if (hintFinder == null) {
+            hintFinder = new HintFinder(Platform::runLater);
+        }
+        GamePiece current = engine.getCurrentPiece();
+        GamePiece following = engine.getFollowingPiece();
+        hintFinder.request(grid, current, following, engine.getMultiplier(), decision -> {
+            if (decision != null && hintListener != null) {
+                GamePiece piece = (decision.isSwap() ? following : current).rotated(decision.getRotation());
+                hintListener.hint(piece, decision.getX(), decision.getY());
+            }
+        });
     }
 
     /**
-     * Sets the multiplier to 1
+     * Cancel any search for a hint and clear the hint shown
      */
-    public void resetMultiplier(){
-        setMultiplier(1);
+    private void clearHint() {
+        if (hintFinder != null) {
+            hintFinder.cancel();
+        }
+        if (hintListener != null) {
+            hintListener.hint(null, 0, 0);
+        }
     }
 
     /**
-     * Stops the loop from running
+     * Clear the hint shown and stop the thread searching for hints, for when the game ends
      */
-    public void endLoop(){
-        this.loop.cancel(true);
-        logger.info("Timer was shut down");
+    private void stopHints() {
+        clearHint();
+        if (hintFinder != null) {
+            hintFinder.close();
+            hintFinder = null;
+        }
     }
 
     /**
@@ -396,14 +529,14 @@ public class Game {
      * @return returns the following piece
      */
     public GamePiece getFollowingPiece(){
-        return followingPiece;
+        return engine.getFollowingPiece();
     }
 
     /**
      * @return returns the current piece being played
      */
     public GamePiece getCurrentPiece() {
-        return currentPiece;
+        return engine.getCurrentPiece();
     }
 
     /**
@@ -411,7 +544,7 @@ public class Game {
      * @param currentPiece the piece being playing
      */
     public void setCurrentPiece(GamePiece currentPiece){
-        this.currentPiece = currentPiece;
+        actor.execute(() -> engine.setCurrentPiece(currentPiece));
     }
 
     /**
@@ -419,7 +552,67 @@ public class Game {
      * @param followingPiece the piece to be played next
      */
     public void setFollowingPiece(GamePiece followingPiece) {
-        this.followingPiece = followingPiece;
+        actor.execute(() -> engine.setFollowingPiece(followingPiece));
+    }
+
+    /**
+     * Set what to do as soon as neither the current nor the following piece can be played: skip to the next piece,
+     * end the game, or wait for the timer (the default)
+     * @param action the action
+     */
+    public void setDeadBoardAction(DeadBoardAction action) {
+        actor.execute(() -> engine.setDeadBoardAction(action));
+    }
+
+    /**
+     * Get what is done as soon as no piece can be played
+     * @return the action
+     */
+    public DeadBoardAction getDeadBoardAction() {
+        return engine.getDeadBoardAction();
+    }
+
+    /**
+     * Let moves be undone and redone, for a practice game. Moves before a lost life can't be undone.
+     * @param budget the memory to keep snapshots of moves in, in bytes
+     */
+    public void enableUndo(long budget) {
+        GameHistory history = new GameHistory(cols, rows, budget);
+        actor.execute(() -> engine.setHistory(history));
+    }
+
+    /**
+     * Whether moves can be undone in this game
+     * @return true for a practice game
+     */
+    public boolean isUndoEnabled() {
+        return engine.getHistory() != null;
+    }
+
+    /**
+     * Undo the last move and give the player a full delay again
+     */
+    public void undo() {
+        actor.execute(() -> {
+            if (engine.undo()) {
+                Multimedia.playSound("rotate.wav");
+                loop.reset();
+                logger.info("Undid a move");
+            }
+        });
+    }
+
+    /**
+     * Redo the last undone move and give the player a full delay again
+     */
+    public void redo() {
+        actor.execute(() -> {
+            if (engine.redo()) {
+                Multimedia.playSound("rotate.wav");
+                loop.reset();
+                logger.info("Redid a move");
+            }
+        });
     }
 
     /**
@@ -430,6 +623,46 @@ public class Game {
         lineClearedListener = listener;
     }
 
+    /**
+     * Get the source deciding the pieces of this game
+     * @return the piece source
+     */
+    public PieceSource getPieceSource() {
+        return engine.getPieceSource();
+    }
+
+    /**
+     * Get the set the pieces of this game come from
+     * @return the piece set
+     */
+    public PieceSet getPieceSet() {
+        return engine.getPieceSet();
+    }
+
+    /**
+     * Get the state of the game after the last command, safe to read from any thread
+     * @return the latest state
+     */
+    public GameState getState() {
+        return actor.getState();
+    }
+
+    /**
+     * Get the actor every change to the engine goes through
+     * @return the game actor
+     */
+    public GameActor getActor() {
+        return actor;
+    }
+
+    /**
+     * Get the engine holding the rules and state of this game. It should only be used from the JavaFX thread.
+     * @return game engine
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
     /**
      * Get the grid model inside this game representing the game state of the board
      * @return game grid model
@@ -459,7 +692,7 @@ public class Game {
      * @return score number
      */
     public int getScore(){
-        return score.get();
+        return engine.getScore();
     }
 
     /**
@@ -475,7 +708,7 @@ public class Game {
      * @param score score to set
      */
     public void setScore(int score) {
-        this.score.set(score);
+        actor.execute(() -> engine.setScore(score));
     }
 
     /**
@@ -483,7 +716,7 @@ public class Game {
       * @return level number
      */
     public int getLevel() {
-        return level.get();
+        return engine.getLevel();
     }
 
     /**
@@ -499,7 +732,7 @@ public class Game {
      * @param level level lumber
      */
     public void setLevel(int level) {
-        this.level.set(level);
+        actor.execute(() -> engine.setLevel(level));
     }
 
     /**
@@ -507,7 +740,7 @@ public class Game {
       * @return number of lives
      */
     public int getLives() {
-        return lives.get();
+        return engine.getLives();
     }
 
     /**
@@ -523,7 +756,7 @@ public class Game {
      * @param lives lives left
      */
     public void setLives(int lives) {
-        this.lives.set(lives);
+        actor.execute(() -> engine.setLives(lives));
     }
 
     /**
@@ -531,7 +764,7 @@ public class Game {
      * @return multiplayer number
      */
     public int getMultiplier() {
-        return multiplier.get();
+        return engine.getMultiplier();
     }
 
     /**
@@ -547,7 +780,101 @@ public class Game {
      * @param multiplier multiplayer number
      */
     public void setMultiplier(int multiplier) {
-        this.multiplier.set(multiplier);
+        actor.execute(() -> engine.setMultiplier(multiplier));
+    }
+
+    /**
+     * Run a drain of the actor on the JavaFX thread, straight away if already on it so actions by the player take
+     * effect before the call returns
+     * @param drain the drain to run
+     */
+    private static void runOnFxThread(Runnable drain) {
+        if (Platform.isFxApplicationThread()) {
+            drain.run();
+        } else {
+            Platform.runLater(drain);
+        }
+    }
+
+    /**
+     * Passes the events of the engine on to the properties, sounds and listeners of this game
+     */
+    private class EngineEvents implements EngineListener {
+
+        @Override
+        public void nextPiece(GamePiece piece, GamePiece following) {
+            if (nextPieceListener != null) {
+                nextPieceListener.nextPiece(piece, following);
+            }
+            requestHint();
+        }
+
+        @Override
+        public void pieceRotated(GamePiece piece) {
+            Multimedia.playSound("rotate.wav");
+            logger.info("Rotating current piece");
+            nextPiece(piece, engine.getFollowingPiece());
+        }
+
+        @Override
+        public void piecesSwapped(GamePiece piece, GamePiece following) {
+            Multimedia.playSound("transition.wav");
+            logger.info("Swapped current piece with following piece");
+            requestHint();
+        }
+
+        @Override
+        public void linesCleared(ClearResult cleared) {
+            logger.info("Cleared {}", cleared);
+            Multimedia.playSound("clear.wav");
+            if (lineClearedListener != null) {
+                lineClearedListener.lineCleared(cleared);
+            }
+        }
+
+        @Override
+        public void scoreChanged(int newScore) {
+            score.set(newScore);
+            logger.info("Score added, Score: " + newScore);
+        }
+
+        @Override
+        public void levelChanged(int newLevel) {
+            if (newLevel > level.get()) {
+                Multimedia.playSound("level.wav");
+                logger.info("Level up! Level: " + newLevel);
+            }
+            level.set(newLevel);
+        }
+
+        @Override
+        public void livesChanged(int newLives) {
+            if (newLives < lives.get()) {
+                Multimedia.playSound("lifelose.wav");
+                logger.info("Lost a life");
+            }
+            lives.set(newLives);
+        }
+
+        @Override
+        public void multiplierChanged(int newMultiplier) {
+            multiplier.set(newMultiplier);
+            logger.info("Updated the multiplier to: " + newMultiplier);
+        }
+
+        @Override
+        public void deadBoard(DeadBoardAction action) {
+            logger.info("No piece can be played, {}", action);
+        }
+
+        @Override
+        public void gameOver() {
+            logger.info("Game over");
+            stopHints();
+            if (gameOverListener != null) {
+                Platform.runLater(() -> gameOverListener.gameOver());
+            }
+        }
     }
 
 
@@ -1,10 +1,12 @@
 package uk.ac.soton.comp1206.game;
 
-import java.util.concurrent.TimeUnit;
 import javafx.beans.property.ListProperty;
 import javafx.beans.property.SimpleListProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.engine.HashedWheelTimer;
+import uk.ac.soton.comp1206.engine.PieceSource;
+import uk.ac.soton.comp1206.engine.ScriptedPieceSource;
 
 /**
  * Responsible for the game logic of the multiplayer
@@ -19,9 +21,19 @@ public class MultiplayerGame extends Game {
   public final ListProperty<Integer> pieces = new SimpleListProperty<>();
 
   /**
-   * The specifi number of the piece in order to be created
+   * Deals the pieces sent by the server, in the order they arrived
    */
-  private static int pieceNum = 0;
+  private final ScriptedPieceSource serverPieces;
+
+  /**
+   * The number of pieces from the list already added to the source
+   */
+  private int fed = 0;
+
+  /**
+   * Whether the first pieces were dealt
+   */
+  private boolean dealt = false;
 
   /**
    * Create a new game with the specified rows and columns. Creates a corresponding grid model.
@@ -30,18 +42,19 @@ public class MultiplayerGame extends Game {
    * @param rows number of rows
    */
   public MultiplayerGame(int cols, int rows) {
-    super(cols, rows);
+    this(cols, rows, PieceSource.scripted());
   }
 
-  @Override
   /**
-   * Generates a GamePiece based on the order of the server
+   * Create a new game dealing the pieces of a scripted source
+   *
+   * @param cols number of columns
+   * @param rows number of rows
+   * @param serverPieces the source the server pieces are added to
    */
-  public GamePiece spawnPiece(){
-    int pieceNo = pieces.get(pieceNum);
-    GamePiece play = GamePiece.createPiece(pieceNo);
-    pieceNum ++;
-    return play;
+  private MultiplayerGame(int cols, int rows, ScriptedPieceSource serverPieces) {
+    super(cols, rows, serverPieces, HashedWheelTimer.shared());
+    this.serverPieces = serverPieces;
   }
 
   @Override
@@ -50,15 +63,18 @@ public class MultiplayerGame extends Game {
    */
   public void start(){
     logger.info("Starting game");
-    loop = timer.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
-    gameLoopListener();
+    actor.execute(loop::start);
 
-    pieces.addListener((observableValue, integers, t1) -> {
-      if (pieces.size() == 5){
-        followingPiece = spawnPiece();
-        nextPiece();
+    pieces.addListener((observableValue, integers, t1) -> actor.execute(() -> {
+      //Add the newly arrived pieces to the end of the script
+      while (fed < pieces.size()) {
+        serverPieces.add(pieces.get(fed++));
+      }
+      if (!dealt && fed >= 5){
+        dealt = true;
+        initialiseGame();
       }
-    });
+    }));
   }
 
   /**
@@ -0,0 +1,107 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.engine.GameClock;
+import uk.ac.soton.comp1206.engine.HashedWheelTimer;
+import uk.ac.soton.comp1206.media.Multimedia;
+import uk.ac.soton.comp1206.replay.ReplayFile;
+import uk.ac.soton.comp1206.replay.ReplayFormat;
+import uk.ac.soton.comp1206.replay.Replayer;
+
+/**
+ * A recorded game played back in real time. The moves come from the replay file at the times they were made, instead
+ * of from the player or the game loop, and the game isn't recorded again.
+ */
+public class ReplayGame extends Game {
+
+  private static final Logger logger = LogManager.getLogger(ReplayGame.class);
+
+  /**
+   * Plays the recorded events on the engine
+   */
+  private final Replayer replayer;
+
+  /**
+   * The next event waiting on the clock, null if none
+   */
+  private GameClock.Task next;
+
+  /**
+   * Create a game playing back a replay
+   * @param replay the replay
+   */
+  public ReplayGame(ReplayFile replay) {
+    super(replay.getCols(), replay.getRows(), replay.newPieceSource(), HashedWheelTimer.shared());
+    replay.configure(engine);
+    setReplayDirectory(null);
+    this.replayer = new Replayer(replay, engine);
+  }
+
+  /**
+   * Starts playing back the game from the beginning
+   */
+  @Override
+  public void start() {
+    logger.info("Replaying {}", replayer.getReplay());
+    actor.execute(() -> {
+      replayer.seek(0);
+      scheduleNext();
+    });
+  }
+
+  /**
+   * Stops playing back the game
+   */
+  @Override
+  public void endLoop() {
+    actor.execute(() -> {
+      if (next != null) {
+        next.cancel();
+        next = null;
+      }
+    });
+    super.endLoop();
+  }
+
+  /**
+   * Get the replayer playing back the game
+   * @return the replayer
+   */
+  public Replayer getReplayer() {
+    return replayer;
+  }
+
+  /**
+   * Wait on the clock for the next event, then play it on the actor's thread
+   */
+  private void scheduleNext() {
+    long delay = replayer.getNextDelay();
+    if (delay < 0) {
+      next = null;
+      logger.info("Replay finished after {} moves", replayer.getMoves());
+      return;
+    }
+    next = clock.schedule(() -> actor.execute(() -> {
+      if (next == null) {
+        //Stopped while waiting
+        return;
+      }
+      try {
+        int type = replayer.step();
+        if (type == ReplayFormat.PLAY) {
+          Multimedia.playSound("place.wav");
+        }
+        if (type == ReplayFormat.PLAY || type == ReplayFormat.TIMEOUT) {
+          //The timer bar starts again wherever the recorded game's loop did
+          gameLoopListener();
+        }
+      } catch (IllegalStateException | IllegalArgumentException e) {
+        logger.error("Couldn't replay {}", replayer.getReplay(), e);
+        next = null;
+        return;
+      }
+      scheduleNext();
+    }), delay);
+  }
+}
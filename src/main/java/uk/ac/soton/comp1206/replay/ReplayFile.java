@@ -0,0 +1,498 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import uk.ac.soton.comp1206.engine.DeadBoardAction;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.GameHistory;
+import uk.ac.soton.comp1206.engine.PieceSet;
+
+/**
+ * A replay file opened for reading. The file is mapped into memory through its FileChannel, so reading events is
+ * reading memory: nothing is copied, and jumping to a keyframe is only moving a position.
+ * Opening reads the header and the index of keyframes from the end of the file. A file without an index, from a game
+ * that never ended, is read through once to find its keyframes instead.
+ * A ReplayFile can be shared by many Replayers; each reads through its own view of the mapped file.
+ */
+public class ReplayFile {
+
+  /**
+   * The file
+   */
+  private final Path file;
+
+  /**
+   * The whole file, mapped into memory. Only read through duplicates, so its position never moves.
+   */
+  private final ByteBuffer data;
+
+  /**
+   * The version of the format the file was written in
+   */
+  private final int version;
+
+  /**
+   * The wall clock time the game started, in milliseconds
+   */
+  private final long startTime;
+
+  /**
+   * Number of columns and rows of the grid
+   */
+  private final int cols, rows;
+
+  /**
+   * The id of the piece set played with
+   */
+  private final String pieceSetId;
+
+  /**
+   * Whether the pieces were dealt at random from a seed
+   */
+  private final boolean seeded;
+
+  /**
+   * The seed of the pieces, 0 if they weren't random
+   */
+  private final long seed;
+
+  /**
+   * What the game did when no piece could be played
+   */
+  private final DeadBoardAction deadBoardAction;
+
+  /**
+   * The number of undo snapshots the game kept, 0 if moves couldn't be undone
+   */
+  private final int historyCapacity;
+
+  /**
+   * The offset of the first event
+   */
+  private final int eventsStart;
+
+  /**
+   * The offset just past the last event, where the index starts
+   */
+  private final int eventsEnd;
+
+  /**
+   * Whether the file was finished, with an index
+   */
+  private final boolean indexed;
+
+  /**
+   * The number of pieces played at each keyframe, in order
+   */
+  private final int[] keyframeMoves;
+
+  /**
+   * The offset of each keyframe
+   */
+  private final int[] keyframeOffsets;
+
+  /**
+   * Read the header and keyframes of a mapped file
+   * @param file the file
+   * @param data the whole file
+   */
+  private ReplayFile(Path file, ByteBuffer data) {
+    this.file = file;
+    this.data = data;
+    ByteBuffer in = data.duplicate();
+    try {
+      byte[] magic = new byte[ReplayFormat.MAGIC.length];
+      in.get(magic);
+      if (!Arrays.equals(magic, ReplayFormat.MAGIC)) {
+        throw malformed("not a replay file");
+      }
+      version = (int) readVarint(in);
+      if (version < 1 || version > ReplayFormat.VERSION) {
+        throw malformed("unknown version " + version);
+      }
+      startTime = readVarint(in);
+      cols = (int) readVarint(in);
+      rows = (int) readVarint(in);
+      byte[] id = new byte[(int) readVarint(in)];
+      in.get(id);
+      pieceSetId = new String(id, StandardCharsets.UTF_8);
+      seeded = readVarint(in) != 0;
+      seed = seeded ? ReplayFormat.unzigzag(readVarint(in)) : 0;
+      int action = (int) readVarint(in);
+      if (action >= DeadBoardAction.values().length) {
+        throw malformed("unknown dead board action " + action);
+      }
+      deadBoardAction = DeadBoardAction.values()[action];
+      historyCapacity = (int) readVarint(in);
+      eventsStart = in.position();
+
+      //Finished files end with the offset of the index, anything else has to be read through
+      int size = data.limit();
+      boolean trailer = size - ReplayFormat.TRAILER >= eventsStart && Arrays.equals(ReplayFormat.INDEX_MAGIC,
+          bytes(size - ReplayFormat.INDEX_MAGIC.length, ReplayFormat.INDEX_MAGIC.length));
+      if (trailer) {
+        ByteBuffer index = data.duplicate();
+        int offset = (int) index.getLong(size - ReplayFormat.TRAILER);
+        index.position(offset);
+        int count = (int) readVarint(index);
+        keyframeMoves = new int[count];
+        keyframeOffsets = new int[count];
+        for (int keyframe = 0; keyframe < count; keyframe++) {
+          keyframeMoves[keyframe] = (int) readVarint(index);
+          keyframeOffsets[keyframe] = (int) readVarint(index);
+        }
+        eventsEnd = offset;
+        indexed = true;
+      } else {
+        int[][] found = scan(in);
+        keyframeMoves = found[0];
+        keyframeOffsets = found[1];
+        eventsEnd = in.position();
+        indexed = false;
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw malformed("cut short");
+    }
+  }
+
+  /**
+   * Open a replay file, mapping it into memory
+   * @param file the file
+   * @return the replay
+   * @throws IOException if the file can't be read
+   * @throws IllegalArgumentException if the file isn't a replay or is damaged
+   */
+  public static ReplayFile open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      //The mapping stays valid after the channel is closed
+      return new ReplayFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Find the newest replay in a directory. Recordings are named after the time they started, so the newest has the
+   * last name.
+   * @param directory the directory
+   * @return the newest replay file, null if there are none or the directory doesn't exist
+   * @throws IOException if the directory can't be listed
+   */
+  public static Path latest(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return null;
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(path -> path.getFileName().toString().endsWith(ReplayFormat.EXTENSION))
+          .max(Comparator.comparing(path -> path.getFileName().toString()))
+          .orElse(null);
+    }
+  }
+
+  /**
+   * Read an unsigned varint
+   * @param in where to read it from, moved past it
+   * @return the number
+   */
+  public static long readVarint(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+      if (shift > 56) {
+        throw new IllegalArgumentException("Varint too long");
+      }
+    }
+  }
+
+  /**
+   * Read a zigzag encoded signed varint
+   * @param in where to read it from, moved past it
+   * @return the number
+   */
+  public static long readSigned(ByteBuffer in) {
+    return ReplayFormat.unzigzag(readVarint(in));
+  }
+
+  /**
+   * Skip the rest of an event after its first varint
+   * @param in positioned after the first varint of the event, moved past the event
+   * @param type the type of event
+   * @param cells the number of blocks in the grid
+   */
+  static void skip(ByteBuffer in, int type, int cells) {
+    switch (type) {
+      case ReplayFormat.PIECE:
+      case ReplayFormat.ROTATE:
+        readVarint(in);
+        break;
+      case ReplayFormat.PLAY:
+        readVarint(in);
+        readVarint(in);
+        readVarint(in);
+        break;
+      case ReplayFormat.END:
+        readVarint(in);
+        readVarint(in);
+        break;
+      case ReplayFormat.KEYFRAME:
+        for (int field = 0; field < 8; field++) {
+          readVarint(in);
+        }
+        in.position(in.position() + cells);
+        break;
+      default:
+        //The other events have nothing after the first varint
+        if (type > ReplayFormat.ROTATE) {
+          throw new IllegalArgumentException("Unknown replay event " + type);
+        }
+    }
+  }
+
+  /**
+   * Read through the events of a file without an index to find its keyframes
+   * @param in positioned at the first event, left after the last whole event
+   * @return the pieces played at and offsets of the keyframes
+   */
+  private int[][] scan(ByteBuffer in) {
+    int[] moves = new int[16], offsets = new int[16];
+    int count = 0;
+    int cells = cols * rows;
+    int start = in.position();
+    try {
+      while (in.hasRemaining()) {
+        int type = (int) (readVarint(in) & ((1 << ReplayFormat.TYPE_BITS) - 1));
+        if (type == ReplayFormat.KEYFRAME) {
+          if (count == moves.length) {
+            moves = Arrays.copyOf(moves, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+          }
+          ByteBuffer keyframe = in.duplicate();
+          readVarint(keyframe);
+          moves[count] = (int) readVarint(keyframe);
+          offsets[count++] = start;
+        }
+        skip(in, type, cells);
+        start = in.position();
+        if (type == ReplayFormat.END) {
+          break;
+        }
+      }
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      //The recording was cut off part way through an event
+    }
+    in.position(start);
+    return new int[][] {Arrays.copyOf(moves, count), Arrays.copyOf(offsets, count)};
+  }
+
+  /**
+   * Copy bytes out of the file
+   * @param offset the first byte
+   * @param length the number of bytes
+   * @return the bytes
+   */
+  private byte[] bytes(int offset, int length) {
+    byte[] bytes = new byte[length];
+    data.get(offset, bytes);
+    return bytes;
+  }
+
+  /**
+   * Make the exception thrown for a damaged file
+   * @param problem what is wrong
+   * @return the exception
+   */
+  private IllegalArgumentException malformed(String problem) {
+    return new IllegalArgumentException("Replay " + file + ": " + problem);
+  }
+
+  /**
+   * Get a view of the events of the file, for reading through them
+   * @return a buffer over the events, positioned at the first
+   */
+  public ByteBuffer events() {
+    ByteBuffer events = data.duplicate();
+    events.limit(eventsEnd);
+    events.position(eventsStart);
+    return events;
+  }
+
+  /**
+   * Create a source dealing the pieces of the recording
+   * @return the source, positioned at the first piece
+   */
+  public ReplayPieceSource newPieceSource() {
+    return new ReplayPieceSource(this);
+  }
+
+  /**
+   * Create an engine set up with the size, pieces and rules of the recording, ready for a Replayer
+   * @return the engine, not started
+   */
+  public GameEngine newEngine() {
+    GameEngine engine = new GameEngine(cols, rows, newPieceSource());
+    configure(engine);
+    return engine;
+  }
+
+  /**
+   * Set an engine to the rules of the recording: the dead board action and the number of moves that can be undone
+   * @param engine the engine, created with a piece source from newPieceSource
+   */
+  public void configure(GameEngine engine) {
+    engine.setDeadBoardAction(deadBoardAction);
+    if (historyCapacity > 0) {
+      engine.setHistory(new GameHistory(cols, rows, historyCapacity * GameHistory.getSnapshotBytes(cols, rows)));
+    }
+  }
+
+  /**
+   * Create a Replayer with its own engine, to play the recording headless as fast as possible
+   * @return the replayer, at the start of the game
+   */
+  public Replayer replay() {
+    Replayer replayer = new Replayer(this, newEngine());
+    replayer.seek(0);
+    return replayer;
+  }
+
+  /**
+   * Find the last keyframe at or before a move
+   * @param move the number of pieces played
+   * @return the index of the keyframe, -1 if there is none that early
+   */
+  public int findKeyframe(int move) {
+    int found = Arrays.binarySearch(keyframeMoves, move);
+    return found >= 0 ? found : -found - 2;
+  }
+
+  /**
+   * Get the file
+   * @return the path of the file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Get the version of the format the file was written in
+   * @return the version
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Get the wall clock time the game started
+   * @return milliseconds since the epoch
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Get the number of columns of the grid
+   * @return columns
+   */
+  public int getCols() {
+    return cols;
+  }
+
+  /**
+   * Get the number of rows of the grid
+   * @return rows
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Get the piece set the game was played with
+   * @return the piece set
+   * @throws IllegalArgumentException if there is no such set any more
+   */
+  public PieceSet getPieceSet() {
+    return PieceSet.load(pieceSetId);
+  }
+
+  /**
+   * Whether the pieces were dealt at random from a seed
+   * @return true if getSeed gives the seed
+   */
+  public boolean isSeeded() {
+    return seeded;
+  }
+
+  /**
+   * Get the seed of the pieces
+   * @return the seed, 0 if they weren't random
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Get what the game did when no piece could be played
+   * @return the dead board action
+   */
+  public DeadBoardAction getDeadBoardAction() {
+    return deadBoardAction;
+  }
+
+  /**
+   * Get the number of undo snapshots the game kept
+   * @return the capacity, 0 if moves couldn't be undone
+   */
+  public int getHistoryCapacity() {
+    return historyCapacity;
+  }
+
+  /**
+   * Whether the recording was finished and has an index of its keyframes
+   * @return false if the game never ended, for example because it crashed
+   */
+  public boolean isIndexed() {
+    return indexed;
+  }
+
+  /**
+   * Get the number of keyframes
+   * @return keyframes
+   */
+  public int getKeyframeCount() {
+    return keyframeMoves.length;
+  }
+
+  /**
+   * Get the number of pieces played when a keyframe was written
+   * @param keyframe the index of the keyframe
+   * @return the pieces played
+   */
+  public int getKeyframeMove(int keyframe) {
+    return keyframeMoves[keyframe];
+  }
+
+  /**
+   * Get the offset of a keyframe in the file
+   * @param keyframe the index of the keyframe
+   * @return the offset of its first varint
+   */
+  public int getKeyframeOffset(int keyframe) {
+    return keyframeOffsets[keyframe];
+  }
+
+  @Override
+  public String toString() {
+    return file.getFileName() + " (" + cols + "x" + rows + " " + pieceSetId + ")";
+  }
+}
@@ -0,0 +1,128 @@
+package uk.ac.soton.comp1206.replay;
+
+/**
+ * The layout of a replay file. Every number is an unsigned LEB128 varint, seven bits per byte with the top bit set on
+ * all but the last byte, so the small numbers a game is made of take one or two bytes each. Signed numbers are zigzag
+ * encoded first, so small negative numbers stay small too.
+ * A file starts with a header: the MAGIC bytes, the VERSION, the wall clock time the game started in milliseconds,
+ * the columns and rows of the grid, the id of the piece set as a length and UTF-8 bytes, 1 and the zigzag seed if
+ * the pieces were random or 0 if not, the ordinal of the DeadBoardAction, and the number of undo snapshots kept, 0
+ * if moves can't be undone.
+ * Events follow, each starting with (ticks &lt;&lt; TYPE_BITS | type), ticks being the milliseconds since the
+ * event before. Every piece taken from the piece source is recorded, so a game can be played again with a scripted
+ * source whatever source dealt it. Moves are written before they are made, apart from undo and redo which are only
+ * written once they worked, so the state of the game when a move is reached is the state it was made in. Rotations
+ * are recorded too, from version 2, so the pieces held are the same as well as the blocks.
+ * Every so many pieces played a KEYFRAME holds the whole state of the game, so a replay can start from the nearest one
+ * rather than from the beginning. The recording of a game carried on from a saved game starts with a keyframe instead
+ * of the first pieces being dealt, and its moves are counted from there. After the END event comes the index of the
+ * keyframes: their number, then the number of pieces played and the offset in the file of each, and last of all a fixed
+ * size trailer of the offset of the index as 8 bytes and the INDEX_MAGIC bytes. A file without a trailer, because the
+ * game never ended, is still readable; its keyframes are found by reading through it.
+ */
+public final class ReplayFormat {
+
+  /**
+   * The bytes every replay file starts with
+   */
+  public static final byte[] MAGIC = {'T', 'R', 'P', 'L'};
+
+  /**
+   * The version of the format written
+   */
+  public static final int VERSION = 2;
+
+  /**
+   * The extension of replay files
+   */
+  public static final String EXTENSION = ".trpl";
+
+  /**
+   * The number of low bits of an event's first varint holding its type
+   */
+  public static final int TYPE_BITS = 4;
+
+  /**
+   * A piece was taken from the piece source: the piece number follows
+   */
+  public static final int PIECE = 0;
+
+  /**
+   * The current piece was played: its rotation, then the zigzag x and y follow. Version 1 files have no ROTATE events,
+   * so the rotation is all they say about rotating.
+   */
+  public static final int PLAY = 1;
+
+  /**
+   * The current and following piece were swapped
+   */
+  public static final int SWAP = 2;
+
+  /**
+   * The timer ran out
+   */
+  public static final int TIMEOUT = 3;
+
+  /**
+   * The current piece was thrown away for the following piece
+   */
+  public static final int SKIP = 4;
+
+  /**
+   * The last move was undone
+   */
+  public static final int UNDO = 5;
+
+  /**
+   * The last undone move was redone
+   */
+  public static final int REDO = 6;
+
+  /**
+   * The recording ended: 1 if the game was over or 0 if it was left, then the score follow. Always the last event.
+   */
+  public static final int END = 7;
+
+  /**
+   * The whole state of the game: milliseconds since the game started, pieces played so far, score, level, lives and
+   * multiplier, the current and following piece each as (piece * 4 + rotation + 1) or 0 for none, then the value of
+   * every block as a byte, row by row
+   */
+  public static final int KEYFRAME = 8;
+
+  /**
+   * The current piece was rotated: the number of turns, from 0 to 3, follows
+   */
+  public static final int ROTATE = 9;
+
+  /**
+   * The bytes the file ends with when it has an index of its keyframes
+   */
+  public static final byte[] INDEX_MAGIC = {'T', 'I', 'D', 'X'};
+
+  /**
+   * The size of the trailer after the index: its offset and the INDEX_MAGIC
+   */
+  public static final int TRAILER = 8 + 4;
+
+  private ReplayFormat() {
+  }
+
+  /**
+   * Zigzag encode a signed number, so numbers near zero either side become small unsigned numbers
+   * @param value the number
+   * @return the encoded number
+   */
+  public static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * Decode a zigzag encoded number
+   * @param value the encoded number
+   * @return the signed number
+   */
+  public static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
@@ -0,0 +1,67 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.nio.ByteBuffer;
+import uk.ac.soton.comp1206.engine.PieceSource;
+
+/**
+ * Deals the pieces of a recorded game, reading them from the PIECE events of its replay file as they are needed.
+ * The source reads through its own view of the file, apart from the Replayer's, and can be moved to any event.
+ */
+public class ReplayPieceSource extends PieceSource {
+
+  /**
+   * The replay the pieces come from
+   */
+  private final ReplayFile replay;
+
+  /**
+   * The events still to be read for pieces
+   */
+  private final ByteBuffer events;
+
+  /**
+   * The number of blocks in the grid, to skip keyframes
+   */
+  private final int cells;
+
+  /**
+   * Create a source positioned at the first piece of a replay
+   * @param replay the replay
+   */
+  public ReplayPieceSource(ReplayFile replay) {
+    super(replay.getPieceSet(), 1);
+    this.replay = replay;
+    this.events = replay.events();
+    this.cells = replay.getCols() * replay.getRows();
+  }
+
+  /**
+   * Deal the pieces recorded after an event from now on
+   * @param offset the offset of the event in the file
+   */
+  public void seek(int offset) {
+    events.position(offset);
+    discardUpcoming();
+  }
+
+  @Override
+  protected int generate() {
+    while (events.hasRemaining()) {
+      int type = (int) (ReplayFile.readVarint(events) & ((1 << ReplayFormat.TYPE_BITS) - 1));
+      if (type == ReplayFormat.PIECE) {
+        return (int) ReplayFile.readVarint(events);
+      }
+      if (type == ReplayFormat.END) {
+        break;
+      }
+      ReplayFile.skip(events, type, cells);
+    }
+    throw new IllegalStateException("No more pieces in " + replay);
+  }
+
+  @Override
+  protected boolean canGenerate() {
+    //Pieces are only read when dealt, so the file position always matches the engine
+    return false;
+  }
+}
@@ -0,0 +1,349 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.function.LongSupplier;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.GameHistory;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.MoveRecorder;
+import uk.ac.soton.comp1206.engine.PieceSource;
+import uk.ac.soton.comp1206.engine.RandomPieceSource;
+
+/**
+ * Records the moves of a GameEngine into a replay file, in the ReplayFormat. Set it as the engine's MoveRecorder
+ * before the game starts. Recording a move only encodes a few varints into memory; the file is written by the
+ * ReplayWriter's own thread, so recording never makes the game wait.
+ * Every KEYFRAME_INTERVAL pieces played the whole state of the game is written as a keyframe, and an index of the
+ * keyframes is written when the recording ends, so a replay can jump to any move. Games where moves can be undone
+ * have no keyframes, as an undo can go back past one. A game carried on from a saved game is recorded by calling
+ * resumed instead of letting the engine call started, and its recording starts with a keyframe of the saved game.
+ * The recording ends when the game is over or the recorder is closed, whichever comes first.
+ */
+public class ReplayRecorder implements MoveRecorder, AutoCloseable {
+
+  /**
+   * The most milliseconds of the game kept in memory before they are handed to the writer's thread
+   */
+  public static final long FLUSH_INTERVAL = 1000;
+
+  /**
+   * The number of pieces played between keyframes when no interval is given
+   */
+  public static final int KEYFRAME_INTERVAL = 32;
+
+  /**
+   * Where the recording is written
+   */
+  private final ReplayWriter out;
+
+  /**
+   * Tells the time in milliseconds
+   */
+  private final LongSupplier clock;
+
+  /**
+   * The number of pieces played between keyframes, 0 for none
+   */
+  private int keyframeInterval;
+
+  /**
+   * The number of pieces played so far
+   */
+  private int plays = 0;
+
+  /**
+   * The number of pieces played when the next keyframe is due
+   */
+  private int nextKeyframe;
+
+  /**
+   * The number of pieces played at each keyframe, the first keyframes are used
+   */
+  private int[] keyframeMoves = new int[16];
+
+  /**
+   * The offset in the file of each keyframe
+   */
+  private long[] keyframeOffsets = new long[16];
+
+  /**
+   * The number of keyframes written
+   */
+  private int keyframes = 0;
+
+  /**
+   * The blocks of the grid, copied out for a keyframe
+   */
+  private byte[] blocks;
+
+  /**
+   * The engine recorded, known once the game starts
+   */
+  private GameEngine engine;
+
+  /**
+   * The time the game started
+   */
+  private long begin;
+
+  /**
+   * The time of the last event
+   */
+  private long last;
+
+  /**
+   * The time the recording was last handed to the writer's thread
+   */
+  private long flushed;
+
+  /**
+   * Whether the recording has ended
+   */
+  private boolean ended = false;
+
+  /**
+   * Create a recorder
+   * @param out where to write the recording
+   * @param clock tells the time in milliseconds, for example the game clock
+   */
+  public ReplayRecorder(ReplayWriter out, LongSupplier clock) {
+    this(out, clock, KEYFRAME_INTERVAL);
+  }
+
+  /**
+   * Create a recorder
+   * @param out where to write the recording
+   * @param clock tells the time in milliseconds, for example the game clock
+   * @param keyframeInterval the number of pieces played between keyframes, 0 for no keyframes
+   */
+  public ReplayRecorder(ReplayWriter out, LongSupplier clock, int keyframeInterval) {
+    this.out = out;
+    this.clock = clock;
+    this.keyframeInterval = keyframeInterval;
+  }
+
+  /**
+   * Create a recorder writing a new file in a directory, named after the time
+   * @param directory the directory, created if it doesn't exist
+   * @param clock tells the time in milliseconds, for example the game clock
+   * @return the recorder
+   */
+  public static ReplayRecorder create(Path directory, LongSupplier clock) {
+    String name = "replay-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+    return new ReplayRecorder(new ReplayWriter(directory.resolve(name + ReplayFormat.EXTENSION)), clock);
+  }
+
+  @Override
+  public void started(GameEngine engine) {
+    this.engine = engine;
+    begin = clock.getAsLong();
+    last = begin;
+    flushed = begin;
+    out.writeBytes(ReplayFormat.MAGIC);
+    out.writeVarint(ReplayFormat.VERSION);
+    out.writeVarint(System.currentTimeMillis());
+    out.writeVarint(engine.getGrid().getCols());
+    out.writeVarint(engine.getGrid().getRows());
+    byte[] set = engine.getPieceSet().getId().getBytes(StandardCharsets.UTF_8);
+    out.writeVarint(set.length);
+    out.writeBytes(set);
+    PieceSource source = engine.getPieceSource();
+    if (source instanceof RandomPieceSource) {
+      out.writeVarint(1);
+      out.writeSigned(((RandomPieceSource) source).getSeed());
+    } else {
+      out.writeVarint(0);
+    }
+    out.writeVarint(engine.getDeadBoardAction().ordinal());
+    GameHistory history = engine.getHistory();
+    out.writeVarint(history == null ? 0 : history.getCapacity());
+    if (history != null) {
+      keyframeInterval = 0;
+    }
+    nextKeyframe = keyframeInterval;
+    blocks = new byte[engine.getGrid().getCols() * engine.getGrid().getRows()];
+  }
+
+  /**
+   * Start recording a game carried on from a saved game, in place of started. The recording starts with a keyframe of
+   * the game as it is, which a replay starts from instead of an empty grid.
+   * @param engine the engine, already in the saved state
+   */
+  public void resumed(GameEngine engine) {
+    started(engine);
+    keyframe();
+  }
+
+  @Override
+  public void pieceDealt(int piece) {
+    if (event(ReplayFormat.PIECE)) {
+      out.writeVarint(piece);
+    }
+  }
+
+  @Override
+  public void played(GamePiece piece, int x, int y) {
+    if (event(ReplayFormat.PLAY)) {
+      out.writeVarint(piece.getRotation());
+      out.writeSigned(x);
+      out.writeSigned(y);
+      plays++;
+    }
+  }
+
+  @Override
+  public void rotated(int turns) {
+    if (event(ReplayFormat.ROTATE)) {
+      out.writeVarint(turns & (GamePiece.ROTATIONS - 1));
+    }
+  }
+
+  @Override
+  public void swapped() {
+    event(ReplayFormat.SWAP);
+  }
+
+  @Override
+  public void skipped() {
+    event(ReplayFormat.SKIP);
+  }
+
+  @Override
+  public void timedOut() {
+    event(ReplayFormat.TIMEOUT);
+  }
+
+  @Override
+  public void undone() {
+    event(ReplayFormat.UNDO);
+  }
+
+  @Override
+  public void redone() {
+    event(ReplayFormat.REDO);
+  }
+
+  @Override
+  public void gameOver(int score) {
+    end(true, score);
+  }
+
+  /**
+   * End the recording of a game that wasn't over, if it hasn't ended already
+   */
+  @Override
+  public void close() {
+    end(false, engine == null ? 0 : engine.getScore());
+  }
+
+  /**
+   * Whether part of the recording was lost
+   * @return true if the file is incomplete
+   */
+  public boolean isFailed() {
+    return out.isFailed();
+  }
+
+  /**
+   * Get the writer the recording goes to
+   * @return the writer
+   */
+  public ReplayWriter getWriter() {
+    return out;
+  }
+
+  /**
+   * Write the end of the recording and close the file
+   * @param over whether the game was over
+   * @param score the score
+   */
+  private void end(boolean over, int score) {
+    if (engine != null && event(ReplayFormat.END)) {
+      out.writeVarint(over ? 1 : 0);
+      out.writeVarint(score);
+
+      //The index of the keyframes, found from the trailer at the end of the file
+      long index = out.getOffset();
+      out.writeVarint(keyframes);
+      for (int keyframe = 0; keyframe < keyframes; keyframe++) {
+        out.writeVarint(keyframeMoves[keyframe]);
+        out.writeVarint(keyframeOffsets[keyframe]);
+      }
+      out.writeLong(index);
+      out.writeBytes(ReplayFormat.INDEX_MAGIC);
+    }
+    ended = true;
+    out.close();
+  }
+
+  /**
+   * Start an event, writing a keyframe first if one is due and handing the recording to the writer's thread every
+   * FLUSH_INTERVAL so little is lost in a crash
+   * @param type the type of event
+   * @return false if the recording has ended, so nothing more should be written
+   */
+  private boolean event(int type) {
+    if (ended) {
+      return false;
+    }
+    if (type != ReplayFormat.PIECE && type != ReplayFormat.END && keyframeInterval > 0 && plays >= nextKeyframe) {
+      //Moves are recorded before they are made, so the game is still as the last move left it
+      keyframe();
+      nextKeyframe += keyframeInterval;
+    }
+    header(type);
+    return true;
+  }
+
+  /**
+   * Write the whole state of the game as a keyframe, remembering where it is for the index
+   */
+  private void keyframe() {
+    if (keyframes == keyframeMoves.length) {
+      keyframeMoves = Arrays.copyOf(keyframeMoves, keyframes * 2);
+      keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+    }
+    keyframeMoves[keyframes] = plays;
+    keyframeOffsets[keyframes] = out.getOffset();
+    keyframes++;
+
+    header(ReplayFormat.KEYFRAME);
+    out.writeVarint(last - begin);
+    out.writeVarint(plays);
+    out.writeVarint(engine.getScore());
+    out.writeVarint(engine.getLevel());
+    out.writeVarint(engine.getLives());
+    out.writeVarint(engine.getMultiplier());
+    out.writeVarint(pieceCode(engine.getCurrentPiece()));
+    out.writeVarint(pieceCode(engine.getFollowingPiece()));
+    engine.getGrid().saveValues(blocks, 0);
+    out.writeBytes(blocks);
+  }
+
+  /**
+   * Pack a piece and its rotation for a keyframe
+   * @param piece the piece, may be null
+   * @return piece * 4 + rotation + 1, 0 for null
+   */
+  static int pieceCode(GamePiece piece) {
+    return piece == null ? 0 : piece.getPiece() * GamePiece.ROTATIONS + piece.getRotation() + 1;
+  }
+
+  /**
+   * Write the first varint of an event
+   * @param type the type of event
+   */
+  private void header(int type) {
+    long now = clock.getAsLong();
+    out.writeVarint(Math.max(0, now - last) << ReplayFormat.TYPE_BITS | type);
+    last = now;
+    if (now - flushed >= FLUSH_INTERVAL) {
+      out.flush();
+      flushed = now;
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes varints to a file without the thread writing them ever waiting for the disk. Numbers are encoded into a
+ * chunk in memory; a full chunk, or one handed over by flush, goes into a bounded queue that a thread of the writer's
+ * own takes from and writes to the file, opening it the first time.
+ * Nothing ever waits for room in the queue. If the disk falls so far behind that the queue is full, the rest of the
+ * recording is dropped instead, as a replay with a hole in it can't be played anyway. Writing stops for good after a
+ * chunk is dropped or the file fails, which isFailed reports.
+ * One thread writes numbers; the file is only touched by the writer's thread.
+ */
+public class ReplayWriter implements AutoCloseable {
+
+  private static final Logger logger = LogManager.getLogger(ReplayWriter.class);
+
+  /**
+   * The size of a chunk handed to the writer's thread, in bytes
+   */
+  public static final int CHUNK = 4096;
+
+  /**
+   * The number of chunks that can wait for the disk
+   */
+  public static final int QUEUE = 64;
+
+  /**
+   * The file written
+   */
+  private final Path file;
+
+  /**
+   * Chunks waiting to be written, in order
+   */
+  private final BlockingQueue<byte[]> queue;
+
+  /**
+   * The thread writing chunks to the file
+   */
+  private final Thread thread;
+
+  /**
+   * The chunk being filled
+   */
+  private byte[] chunk = new byte[CHUNK];
+
+  /**
+   * The number of bytes used in the chunk being filled
+   */
+  private int position = 0;
+
+  /**
+   * The number of bytes handed to the writer's thread so far
+   */
+  private long handed = 0;
+
+  /**
+   * Whether close was called, the writer's thread finishes once the queue is empty
+   */
+  private volatile boolean closed = false;
+
+  /**
+   * Whether part of the recording was lost
+   */
+  private volatile boolean failed = false;
+
+  /**
+   * Start a writer, the file is created or replaced on the writer's thread along with any missing directories
+   * @param file the file to write
+   */
+  public ReplayWriter(Path file) {
+    this(file, QUEUE);
+  }
+
+  /**
+   * Start a writer
+   * @param file the file to write
+   * @param queue the number of chunks that can wait for the disk before the recording is dropped
+   */
+  public ReplayWriter(Path file, int queue) {
+    this.file = file;
+    this.queue = new ArrayBlockingQueue<>(queue);
+    this.thread = new Thread(this::run, "replay-writer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Write an unsigned varint
+   * @param value the number, treated as unsigned
+   */
+  public void writeVarint(long value) {
+    if (position > CHUNK - 10) {
+      flush();
+    }
+    while ((value & ~0x7FL) != 0) {
+      chunk[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    chunk[position++] = (byte) value;
+  }
+
+  /**
+   * Write a signed varint, zigzag encoded
+   * @param value the number
+   */
+  public void writeSigned(long value) {
+    writeVarint(ReplayFormat.zigzag(value));
+  }
+
+  /**
+   * Write raw bytes
+   * @param bytes the bytes
+   */
+  public void writeBytes(byte[] bytes) {
+    for (byte b : bytes) {
+      if (position == CHUNK) {
+        flush();
+      }
+      chunk[position++] = b;
+    }
+  }
+
+  /**
+   * Hand what has been written so far to the writer's thread. Never waits: if the queue is full the recording is
+   * dropped.
+   */
+  public void flush() {
+    if (position == 0 || failed) {
+      handed += position;
+      position = 0;
+      return;
+    }
+    if (!queue.offer(Arrays.copyOf(chunk, position))) {
+      logger.warn("Replay {} can't keep up with the game, dropping the recording", file);
+      failed = true;
+    }
+    handed += position;
+    position = 0;
+  }
+
+  /**
+   * Write a long as 8 bytes, most significant first, for numbers that must be found at a fixed place
+   * @param value the number
+   */
+  public void writeLong(long value) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      if (position == CHUNK) {
+        flush();
+      }
+      chunk[position++] = (byte) (value >>> shift);
+    }
+  }
+
+  /**
+   * Get the number of bytes written so far, which is where the next byte will be in the file
+   * @return the offset
+   */
+  public long getOffset() {
+    return handed + position;
+  }
+
+  /**
+   * Hand everything written to the writer's thread, which closes the file once it is written. Doesn't wait.
+   */
+  @Override
+  public void close() {
+    if (!closed) {
+      flush();
+      closed = true;
+    }
+  }
+
+  /**
+   * Wait for everything handed over to be written and the file closed
+   * @param millis the most milliseconds to wait
+   * @return whether the file was finished in time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean await(long millis) throws InterruptedException {
+    thread.join(millis);
+    return !thread.isAlive();
+  }
+
+  /**
+   * Whether part of the recording was lost, because the disk fell behind or the file couldn't be written
+   * @return true if the file is incomplete
+   */
+  public boolean isFailed() {
+    return failed;
+  }
+
+  /**
+   * Get the file written
+   * @return the file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Write chunks to the file as they come in, until closed and everything is written
+   */
+  private void run() {
+    FileChannel channel = null;
+    try {
+      while (true) {
+        byte[] next = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (next == null) {
+          if (closed && queue.isEmpty()) {
+            break;
+          }
+          continue;
+        }
+        if (channel == null) {
+          if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+          }
+          channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(next);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+    } catch (IOException e) {
+      logger.error("Couldn't write replay {}", file, e);
+      failed = true;
+      queue.clear();
+    } catch (InterruptedException e) {
+      failed = true;
+    } finally {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          logger.error("Couldn't close replay {}", file, e);
+          failed = true;
+        }
+      }
+    }
+  }
+}
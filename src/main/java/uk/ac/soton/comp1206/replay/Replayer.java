@@ -0,0 +1,354 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.nio.ByteBuffer;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.Grid;
+import uk.ac.soton.comp1206.engine.PieceSet;
+
+/**
+ * Plays a recorded game on a GameEngine, one event at a time. Headless, step or playToEnd run the game as fast as the
+ * engine goes; a game in the UI can step at the times getNextDelay gives to replay it in real time.
+ * Seeking to a move starts from the nearest keyframe at or before it, so it costs at most KEYFRAME_INTERVAL moves
+ * however long the game is. Games where moves could be undone have no keyframes and are replayed from the start.
+ * The engine is checked against the recording as it goes: every keyframe passed and the final score must match, and
+ * every recorded move must still be legal. A replay that doesn't match throws an IllegalStateException, so a change
+ * to the rules can be checked against recorded games.
+ */
+public class Replayer {
+
+  /**
+   * The replay
+   */
+  private final ReplayFile replay;
+
+  /**
+   * The engine the game is played on
+   */
+  private final GameEngine engine;
+
+  /**
+   * Deals the recorded pieces to the engine
+   */
+  private final ReplayPieceSource pieces;
+
+  /**
+   * The events still to be played
+   */
+  private final ByteBuffer events;
+
+  /**
+   * The blocks of a keyframe, read out of the file
+   */
+  private final byte[] blocks;
+
+  /**
+   * The number of pieces played so far
+   */
+  private int moves;
+
+  /**
+   * The milliseconds since the start of the game of the last event played
+   */
+  private long time;
+
+  /**
+   * Whether the END event was reached
+   */
+  private boolean finished;
+
+  /**
+   * Whether the game has been started by a seek
+   */
+  private boolean started;
+
+  /**
+   * Create a replayer for an engine. Call seek(0) to start the game.
+   * @param replay the replay
+   * @param engine an engine made by the replay's newEngine, or with a piece source from newPieceSource and set up by
+   *     configure
+   */
+  public Replayer(ReplayFile replay, GameEngine engine) {
+    if (!(engine.getPieceSource() instanceof ReplayPieceSource)) {
+      throw new IllegalArgumentException("The engine must deal the pieces of the replay");
+    }
+    Grid grid = engine.getGrid();
+    if (grid.getCols() != replay.getCols() || grid.getRows() != replay.getRows()) {
+      throw new IllegalArgumentException("The replay is " + replay.getCols() + "x" + replay.getRows()
+          + ", not " + grid.getCols() + "x" + grid.getRows());
+    }
+    this.replay = replay;
+    this.engine = engine;
+    this.pieces = (ReplayPieceSource) engine.getPieceSource();
+    this.events = replay.events();
+    this.blocks = new byte[replay.getCols() * replay.getRows()];
+  }
+
+  /**
+   * Put the game at a move: after that many pieces were played, before anything else happened
+   * @param move the number of pieces played
+   * @return whether the game got that far, if not it is left at the end
+   */
+  public boolean seek(int move) {
+    int keyframe = replay.getHistoryCapacity() > 0 ? -1 : replay.findKeyframe(move);
+    boolean behind = !started || move < moves;
+    if (keyframe >= 0 && (behind || replay.getKeyframeMove(keyframe) > moves)) {
+      loadKeyframe(replay.getKeyframeOffset(keyframe));
+    } else if (behind) {
+      restart();
+    }
+    while (moves < move) {
+      if (step() < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Play the rest of the game
+   * @return the engine, at the end of the game
+   */
+  public GameEngine playToEnd() {
+    while (step() >= 0) {
+      //Keep going
+    }
+    return engine;
+  }
+
+  /**
+   * Play the next event
+   * @return the type of the event played, from ReplayFormat, -1 if there are no more
+   * @throws IllegalStateException if the game no longer matches the recording
+   */
+  public int step() {
+    if (!started) {
+      throw new IllegalStateException("The replay hasn't been started with seek");
+    }
+    if (finished || !events.hasRemaining()) {
+      return -1;
+    }
+    long first = ReplayFile.readVarint(events);
+    int type = (int) (first & ((1 << ReplayFormat.TYPE_BITS) - 1));
+    time += first >>> ReplayFormat.TYPE_BITS;
+    switch (type) {
+      case ReplayFormat.PIECE:
+        //Read by the piece source when the engine deals it
+        ReplayFile.readVarint(events);
+        break;
+      case ReplayFormat.PLAY:
+        int rotation = (int) ReplayFile.readVarint(events);
+        int x = (int) ReplayFile.readSigned(events);
+        int y = (int) ReplayFile.readSigned(events);
+        GamePiece current = engine.getCurrentPiece();
+        if (current != null && current.getRotation() != rotation) {
+          //Only needed for version 1 files, which don't record rotations
+          engine.rotate(rotation - current.getRotation());
+        }
+        if (!engine.play(x, y)) {
+          throw diverged("the recorded " + engine.getCurrentPiece() + " can't be played at " + x + "," + y);
+        }
+        moves++;
+        break;
+      case ReplayFormat.ROTATE:
+        engine.rotate((int) ReplayFile.readVarint(events));
+        break;
+      case ReplayFormat.SWAP:
+        engine.swap();
+        break;
+      case ReplayFormat.TIMEOUT:
+        engine.timeout();
+        break;
+      case ReplayFormat.SKIP:
+        engine.nextPiece();
+        break;
+      case ReplayFormat.UNDO:
+        if (!engine.undo()) {
+          throw diverged("there was nothing to undo");
+        }
+        break;
+      case ReplayFormat.REDO:
+        if (!engine.redo()) {
+          throw diverged("there was nothing to redo");
+        }
+        break;
+      case ReplayFormat.KEYFRAME:
+        checkKeyframe();
+        break;
+      case ReplayFormat.END:
+        boolean over = ReplayFile.readVarint(events) != 0;
+        int score = (int) ReplayFile.readVarint(events);
+        if (over != engine.isOver() || score != engine.getScore()) {
+          throw diverged("the recording ended with " + (over ? "the game over" : "the game running") + " and "
+              + score + " points, the replay with " + (engine.isOver() ? "the game over" : "the game running")
+              + " and " + engine.getScore());
+        }
+        finished = true;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown event " + type + " in " + replay);
+    }
+    return type;
+  }
+
+  /**
+   * Get the time until the next event should be played, to replay the game in real time
+   * @return milliseconds after the last event, -1 if there are no more events
+   */
+  public long getNextDelay() {
+    if (finished || !events.hasRemaining()) {
+      return -1;
+    }
+    return ReplayFile.readVarint(events.duplicate()) >>> ReplayFormat.TYPE_BITS;
+  }
+
+  /**
+   * Get the engine the game is played on
+   * @return the engine
+   */
+  public GameEngine getEngine() {
+    return engine;
+  }
+
+  /**
+   * Get the replay played
+   * @return the replay
+   */
+  public ReplayFile getReplay() {
+    return replay;
+  }
+
+  /**
+   * Get the number of pieces played so far
+   * @return the move the game is at
+   */
+  public int getMoves() {
+    return moves;
+  }
+
+  /**
+   * Get the time into the game of the last event played
+   * @return milliseconds since the game started
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Whether the whole recording has been played
+   * @return true at the end
+   */
+  public boolean isFinished() {
+    return finished || !events.hasRemaining();
+  }
+
+  /**
+   * Go back to the start of the game and deal the first pieces, as starting the engine does, or load the keyframe the
+   * recording of a resumed game starts with
+   */
+  private void restart() {
+    int start = replay.events().position();
+    events.position(start);
+    if (startsWithKeyframe()) {
+      loadKeyframe(start);
+    } else {
+      pieces.seek(events.position());
+      engine.getGrid().loadValues(new byte[blocks.length], 0);
+      GamePiece current = pieces.nextPiece();
+      GamePiece following = pieces.nextPiece();
+      engine.restore(current, following, 0, 1, 0, GameEngine.STARTING_LIVES);
+    }
+    if (engine.getHistory() != null) {
+      //Start the undo history again from the first pieces
+      engine.setHistory(engine.getHistory());
+    }
+    moves = 0;
+    time = 0;
+    finished = false;
+    started = true;
+  }
+
+  /**
+   * Whether the recording starts with a keyframe, as the recording of a resumed game does
+   * @return true if the first event is a keyframe
+   */
+  private boolean startsWithKeyframe() {
+    ByteBuffer first = replay.events();
+    return first.hasRemaining()
+        && (ReplayFile.readVarint(first) & ((1 << ReplayFormat.TYPE_BITS) - 1)) == ReplayFormat.KEYFRAME;
+  }
+
+  /**
+   * Put the game in the state of a keyframe and carry on from just after it
+   * @param offset the offset of the keyframe in the file
+   */
+  private void loadKeyframe(int offset) {
+    events.position(offset);
+    long first = ReplayFile.readVarint(events);
+    if ((first & ((1 << ReplayFormat.TYPE_BITS) - 1)) != ReplayFormat.KEYFRAME) {
+      throw new IllegalArgumentException("No keyframe at " + offset + " in " + replay);
+    }
+    time = ReplayFile.readVarint(events);
+    moves = (int) ReplayFile.readVarint(events);
+    int score = (int) ReplayFile.readVarint(events);
+    int level = (int) ReplayFile.readVarint(events);
+    int lives = (int) ReplayFile.readVarint(events);
+    int multiplier = (int) ReplayFile.readVarint(events);
+    PieceSet set = engine.getPieceSet();
+    GamePiece current = pieceOf(set, (int) ReplayFile.readVarint(events));
+    GamePiece following = pieceOf(set, (int) ReplayFile.readVarint(events));
+    events.get(blocks);
+
+    pieces.seek(events.position());
+    engine.getGrid().loadValues(blocks, 0);
+    engine.restore(current, following, score, multiplier, level, lives);
+    finished = false;
+    started = true;
+  }
+
+  /**
+   * Check the engine against the keyframe being read
+   */
+  private void checkKeyframe() {
+    ReplayFile.readVarint(events);
+    int recordedMoves = (int) ReplayFile.readVarint(events);
+    int score = (int) ReplayFile.readVarint(events);
+    int level = (int) ReplayFile.readVarint(events);
+    int lives = (int) ReplayFile.readVarint(events);
+    int multiplier = (int) ReplayFile.readVarint(events);
+    int current = (int) ReplayFile.readVarint(events);
+    int following = (int) ReplayFile.readVarint(events);
+    events.get(blocks);
+    if (recordedMoves != moves || score != engine.getScore() || level != engine.getLevel()
+        || lives != engine.getLives() || multiplier != engine.getMultiplier()
+        || current != ReplayRecorder.pieceCode(engine.getCurrentPiece())
+        || following != ReplayRecorder.pieceCode(engine.getFollowingPiece())) {
+      throw diverged("the score, level, lives, multiplier or pieces differ from the keyframe");
+    }
+    Grid grid = engine.getGrid();
+    for (int index = 0; index < blocks.length; index++) {
+      if (grid.get(index % grid.getCols(), index / grid.getCols()) != blocks[index]) {
+        throw diverged("the blocks differ from the keyframe");
+      }
+    }
+  }
+
+  /**
+   * Unpack a piece of a keyframe
+   * @param set the set the pieces come from
+   * @param code the packed piece from ReplayRecorder.pieceCode
+   * @return the piece, null for 0
+   */
+  private static GamePiece pieceOf(PieceSet set, int code) {
+    return code == 0 ? null : set.createPiece((code - 1) / GamePiece.ROTATIONS, (code - 1) % GamePiece.ROTATIONS);
+  }
+
+  /**
+   * Make the exception thrown when the game no longer matches the recording
+   * @param problem what doesn't match
+   * @return the exception
+   */
+  private IllegalStateException diverged(String problem) {
+    return new IllegalStateException("Replay " + replay + " went wrong after " + moves + " moves: " + problem);
+  }
+}
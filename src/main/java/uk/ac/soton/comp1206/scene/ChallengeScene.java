@@ -1,9 +1,7 @@
 package uk.ac.soton.comp1206.scene;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashSet;
+import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
@@ -22,13 +20,23 @@ import javafx.scene.shape.Rectangle;
 import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.component.GameBlock;
+import uk.ac.soton.comp1206.bot.AutoPlayer;
 import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.engine.Checkpoint;
+import uk.ac.soton.comp1206.engine.ClearResult;
+import uk.ac.soton.comp1206.engine.DeadBoardAction;
+import uk.ac.soton.comp1206.engine.GameHistory;
+import uk.ac.soton.comp1206.engine.GamePiece;
+import uk.ac.soton.comp1206.engine.Grid;
+import uk.ac.soton.comp1206.engine.PieceSet;
 import uk.ac.soton.comp1206.game.Game;
-import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.ReplayGame;
 import uk.ac.soton.comp1206.media.Multimedia;
+import uk.ac.soton.comp1206.replay.ReplayFile;
+import uk.ac.soton.comp1206.scores.ScoreEntry;
+import uk.ac.soton.comp1206.scores.ScoreLog;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -103,15 +111,138 @@ public class ChallengeScene extends BaseScene {
      */
     protected Label titleLabel;
 
+    /**
+     * The ways a single player challenge can be played
+     */
+    public enum Mode {
+        /**
+         * A normal game
+         */
+        CHALLENGE,
+        /**
+         * A game where moves can be undone and redone, with the best move shown as a hint
+         */
+        PRACTICE,
+        /**
+         * A game played by the AutoPlayer while the player watches
+         */
+        AUTOPLAY,
+        /**
+         * A recorded game played back in real time while the player watches
+         */
+        REPLAY
+    }
+
+    /**
+     * The time the AutoPlayer takes over each move when watched, in milliseconds
+     */
+    public static final int AUTOPLAY_DELAY = 600;
+
+    /**
+     * The number of columns and rows of a standard board
+     */
+    public static final int DEFAULT_SIZE = 5;
+
+    /**
+     * How this challenge is played
+     */
+    protected final Mode mode;
+
+    /**
+     * The number of columns and rows of the board
+     */
+    protected final int cols, rows;
+
+    /**
+     * The set of pieces the game is played with
+     */
+    protected final PieceSet pieceSet;
+
+    /**
+     * Makes the moves of the AutoPlayer when it is being watched
+     */
+    protected Timeline autoplay;
+
+    /**
+     * The recorded game played back, null unless in REPLAY mode
+     */
+    protected ReplayFile replay;
+
+    /**
+     * The saved game carried on from, null for a new game
+     */
+    protected Checkpoint checkpoint;
+
     /**
      * Create a new Single Player challenge scene
      * @param gameWindow the Game Window
      */
     public ChallengeScene(GameWindow gameWindow) {
+        this(gameWindow, Mode.CHALLENGE);
+    }
+
+    /**
+     * Create a new Single Player challenge scene
+     * @param gameWindow the Game Window
+     * @param mode how the challenge is played
+     */
+    public ChallengeScene(GameWindow gameWindow, Mode mode) {
+        this(gameWindow, mode, DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    /**
+     * Create a new Single Player challenge scene on a board of any size
+     * @param gameWindow the Game Window
+     * @param mode how the challenge is played
+     * @param cols number of columns, up to Grid.MAX_SIZE
+     * @param rows number of rows, up to Grid.MAX_SIZE
+     */
+    public ChallengeScene(GameWindow gameWindow, Mode mode, int cols, int rows) {
+        this(gameWindow, mode, cols, rows, PieceSet.standard());
+    }
+
+    /**
+     * Create a new Single Player challenge scene on a board of any size, played with any set of pieces
+     * @param gameWindow the Game Window
+     * @param mode how the challenge is played
+     * @param cols number of columns, up to Grid.MAX_SIZE
+     * @param rows number of rows, up to Grid.MAX_SIZE
+     * @param pieceSet the set of pieces to play with
+     */
+    public ChallengeScene(GameWindow gameWindow, Mode mode, int cols, int rows, PieceSet pieceSet) {
         super(gameWindow);
+        if (cols < 1 || rows < 1 || cols > Grid.MAX_SIZE || rows > Grid.MAX_SIZE) {
+            throw new IllegalArgumentException("Boards are 1 to " + Grid.MAX_SIZE + " blocks a side, not " + cols
+                + "x" + rows);
+        }
+        this.mode = mode;
+        this.cols = cols;
+        this.rows = rows;
+        this.pieceSet = pieceSet;
         logger.info("Creating Challenge Scene");
     }
 
+    /**
+     * Create a scene playing back a recorded game, on the board and with the pieces it was played with
+     * @param gameWindow the Game Window
+     * @param replay the replay
+     */
+    public ChallengeScene(GameWindow gameWindow, ReplayFile replay) {
+        this(gameWindow, Mode.REPLAY, replay.getCols(), replay.getRows(), replay.getPieceSet());
+        this.replay = replay;
+    }
+
+    /**
+     * Create a scene carrying on from a saved game, as a practice game if moves could be undone in it
+     * @param gameWindow the Game Window
+     * @param checkpoint the saved game
+     */
+    public ChallengeScene(GameWindow gameWindow, Checkpoint checkpoint) {
+        this(gameWindow, checkpoint.isUndoable() ? Mode.PRACTICE : Mode.CHALLENGE, checkpoint.getCols(),
+            checkpoint.getRows(), checkpoint.getPieceSet());
+        this.checkpoint = checkpoint;
+    }
+
     /**
      * Build the Challenge window
      */
@@ -138,8 +269,11 @@ public class ChallengeScene extends BaseScene {
         mainPane.setTop(titleLabel);
         BorderPane.setAlignment(titleLabel, Pos.CENTER);
 
+        //The longer side of the board takes half the window, so blocks stay square
+        double size = (double) gameWindow.getWidth() / 2;
         board = new GameBoard(game.getGrid(),
-            (double) gameWindow.getWidth() /2, (double) gameWindow.getWidth() /2);
+            size * cols / Math.max(cols, rows), size * rows / Math.max(cols, rows));
+        board.setPieceSet(game.getPieceSet());
         mainPane.setCenter(board);
 
         //Handle block on game board grid being clicked
@@ -166,10 +300,10 @@ public class ChallengeScene extends BaseScene {
 
         //Shows the current piece
         VBox pieces = new VBox();
-        currentPiece = new PieceBoard(100, 100);
+        currentPiece = new PieceBoard(game.getPieceSet(), 100, 100);
         pieces.setAlignment(Pos.CENTER);
         //Shows the next piece
-        nextPiece = new PieceBoard(75,75);
+        nextPiece = new PieceBoard(game.getPieceSet(), 75, 75);
         pieces.getChildren().addAll(currentPiece, nextPiece);
         pieces.setSpacing(40);
         infoBox.getChildren().addAll(scoreLabel, levelLabel, multiplierLabel, livesLabel, highScoreLabel, pieces); //adds the pieces in the info vBox
@@ -197,9 +331,12 @@ public class ChallengeScene extends BaseScene {
 
     /**
      * Handle when a block is clicked
-     * @param gameBlock the Game Block that was clocked
+     * @param gameBlock the column and row of the Game Block that was clicked
      */
-    protected void blockClicked(GameBlock gameBlock) {
+    protected void blockClicked(GameBlockCoordinate gameBlock) {
+        if (isWatching()) {
+            return;
+        }
         game.blockClicked(gameBlock);
     }
 
@@ -207,6 +344,9 @@ public class ChallengeScene extends BaseScene {
      * Swaps the current piece with the following piece
      */
     public void swapPieces(){
+        if (isWatching()) {
+            return;
+        }
         game.swapCurrentPiece();
         currentPiece.showPiece(game.getCurrentPiece());
         nextPiece.showPiece(game.getFollowingPiece());
@@ -216,6 +356,9 @@ public class ChallengeScene extends BaseScene {
      * Rotates the current piece and displays it
       */
     public void rotateCurrentPiece(){
+        if (isWatching()) {
+            return;
+        }
         game.rotateCurrentPiece();
     }
 
@@ -225,18 +368,67 @@ public class ChallengeScene extends BaseScene {
     public void setupGame() {
         logger.info("Starting a new challenge");
         //Start new game
-        game = new Game(5, 5);
+        game = mode == Mode.REPLAY ? new ReplayGame(replay) : new Game(cols, rows, pieceSet);
+        if (mode != Mode.REPLAY) {
+            //Don't make the player wait for the timer when nothing can be played. Only single player games, as a
+            //multiplayer game can't skip past pieces the server hasn't sent yet
+            game.setDeadBoardAction(DeadBoardAction.SKIP_PIECE);
+        }
+        if (checkpoint != null) {
+            //Before the board is built, so it is built with the saved blocks
+            game.resume(checkpoint);
+        }
+        if (mode == Mode.PRACTICE) {
+            game.enableUndo(GameHistory.DEFAULT_BUDGET);
+        }
         //Sets the listeners
         game.setNextPieceListener(this ::nextPiece);
+        game.setOnHint((piece, x, y) -> board.showGhost(piece, x, y));
+        if (mode == Mode.PRACTICE) {
+            game.setHintsEnabled(true);
+        }
         game.setOnClearedLine(this::fadeLine);
         game.setOnGameLoop(this::gameLoop);
         game.setOnGameOver(() -> {
+            stopAutoplay();
             game.endLoop();
             Multimedia.stopBackground();
-            gameWindow.startScoresScene(game);
+            if (isWatching() || mode == Mode.PRACTICE) {
+                //Someone else's score, the AutoPlayer's, or one helped by undo and hints, nothing to save
+                gameWindow.startMenu();
+            } else {
+                gameWindow.startScoresScene(game);
+            }
         });
     }
 
+    /**
+     * Whether the player is only watching, so the game ignores their moves
+     * @return true when the AutoPlayer plays or a replay is played back
+     */
+    protected boolean isWatching() {
+        return mode == Mode.AUTOPLAY || mode == Mode.REPLAY;
+    }
+
+    /**
+     * Let the AutoPlayer make a move every AUTOPLAY_DELAY milliseconds
+     */
+    protected void startAutoplay() {
+        AutoPlayer bot = new AutoPlayer();
+        autoplay = new Timeline(new KeyFrame(Duration.millis(AUTOPLAY_DELAY), event -> game.playBotMove(bot)));
+        autoplay.setCycleCount(Animation.INDEFINITE);
+        autoplay.play();
+    }
+
+    /**
+     * Stop the AutoPlayer, if it is playing
+     */
+    protected void stopAutoplay() {
+        if (autoplay != null) {
+            autoplay.stop();
+        }
+    }
+
     /**
      * Initialise the scene and start the game
      */
@@ -245,7 +437,7 @@ public class ChallengeScene extends BaseScene {
         logger.info("Initialising Challenge");
         game.start();
 
-        getHighScore("Scores.txt");
+        getHighScore();
         // Bind the scoreLabel to the highScoreProperty
         scoreLabel.textProperty().addListener((observable, oldValue, newValue) -> {
             int currentScore = game.getScore();
@@ -259,6 +451,9 @@ public class ChallengeScene extends BaseScene {
         currentPiece.addDot();
         nextPiece.addDot();
         scene.setOnKeyPressed(this:: handleKeyboardInput);
+        if (mode == Mode.AUTOPLAY) {
+            startAutoplay();
+        }
 
         Multimedia.playBackgroundMusic("game_start.wav");
     }
@@ -276,10 +471,10 @@ public class ChallengeScene extends BaseScene {
 
     /**
      * handles the fading of the cleared lines
-     * @param set The coordinates of the block cleared
+     * @param cleared The lines cleared
      */
-    public void fadeLine(HashSet<GameBlockCoordinate> set){
-        board.fadeOut(set);
+    public void fadeLine(ClearResult cleared){
+        board.fadeOut(cleared);
     }
 
     /**
@@ -288,33 +483,37 @@ public class ChallengeScene extends BaseScene {
      */
     public void handleKeyboardInput(KeyEvent event){
         KeyCode keyCode = event.getCode();
+        if (isWatching() && keyCode != KeyCode.ESCAPE) {
+            //The AutoPlayer is playing, the player can only leave
+            return;
+        }
         switch (keyCode){
             case W:
             case UP:
                 if (y > 0){
                     y--;
-                   board.hover(board.getBlock(x,y));
+                   board.hover(x, y);
                 }
                 break;
             case A:
             case LEFT:
                 if (x>0){
                     x--;
-                    board.hover(board.getBlock(x,y));
+                    board.hover(x, y);
                 }
                 break;
             case S:
             case DOWN:
                 if (y < game.getRows() - 1) {
                     y++;
-                    board.hover(board.getBlock(x,y));
+                    board.hover(x, y);
                 }
                 break;
             case D:
             case RIGHT:
                 if (x < game.getCols() - 1) {
                     x++;
-                    board.hover(board.getBlock(x,y));
+                    board.hover(x, y);
                 }
                 break;
             case E:
@@ -326,18 +525,26 @@ public class ChallengeScene extends BaseScene {
             case Z:
             case OPEN_BRACKET:
                 //rotating left
-                for (int i =0; i < 3; i ++){
-                    rotateCurrentPiece();
-                }
+                game.rotateCurrentPiece(3);
                 break;
             case X:
             case ENTER:
-                blockClicked(board.getBlock(x, y));
+                blockClicked(new GameBlockCoordinate(x, y));
                 break;
             case R:
             case SPACE:
                 swapPieces();
                 break;
+            case U:
+            case BACK_SPACE:
+                game.undo();
+                break;
+            case Y:
+                game.redo();
+                break;
+            case H:
+                game.setHintsEnabled(!game.isHintsEnabled());
+                break;
             case ESCAPE:
                 showExitConfirmationDialog();
                 break;
@@ -355,6 +562,11 @@ public class ChallengeScene extends BaseScene {
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 logger.info("User ended the challenge");
+                stopAutoplay();
+                if (mode == Mode.CHALLENGE || mode == Mode.PRACTICE) {
+                    //Left to be carried on from the menu
+                    game.save(Game.SAVE_FILE);
+                }
                 game.endLoop();
                 Multimedia.stopBackground();
                 gameWindow.startMenu();
@@ -378,19 +590,14 @@ public class ChallengeScene extends BaseScene {
     }
 
     /**
-     * Responsible for retrieving the high score from the local file and updating the new scores
-     * @param filename file with the local scores
+     * Responsible for retrieving the high score from the local score log, which only reads its index
      */
-    public void getHighScore(String filename) {
-        try {
-            BufferedReader bufferedReader = new BufferedReader(new FileReader(filename));
-            String score = bufferedReader.readLine();
-            String[] scoring = score.split(":");
-            int currentHighScore = Integer.parseInt(scoring[1]);
-
-          updateHighScore(Math.max(game.getScore(), currentHighScore));
-        } catch (IOException e) {
-            logger.info("File not found");
+    public void getHighScore() {
+        try (ScoreLog log = ScoreLog.open(Game.SCORES_FILE)) {
+            ScoreEntry best = log.best();
+            updateHighScore(Math.max(game.getScore(), best == null ? 0 : best.getScore()));
+        } catch (IOException | IllegalArgumentException e) {
+            logger.info("Couldn't read the local scores", e);
         }
     }
 
@@ -10,7 +10,7 @@ import javafx.scene.layout.VBox;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.PieceBoard;
-import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.engine.PieceSet;
 import uk.ac.soton.comp1206.media.Multimedia;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
@@ -110,7 +110,8 @@ public class InstructionsScene extends BaseScene{
     pieceDiagram.setAlignment(Pos.BOTTOM_CENTER);
     pieceDiagram.setSpacing(20);
 
-    int totalPieces = 15;
+    PieceSet set = PieceSet.standard();
+    int totalPieces = set.getCount();
     int piecesPerRow = 3;
 
     for (int i = 0; i < totalPieces; i += piecesPerRow) {
@@ -119,12 +120,13 @@ public class InstructionsScene extends BaseScene{
       vbox.setSpacing(5);
 
       for (int j = 0; j < piecesPerRow; j++) {
-        PieceBoard piece = new PieceBoard((double) gameWindow.getWidth() / 15, (double) gameWindow.getHeight() / 10);
+        PieceBoard piece = new PieceBoard(set, (double) gameWindow.getWidth() / 15,
+            (double) gameWindow.getHeight() / 10);
         int pieceIndex = i + j;
         if (pieceIndex < totalPieces) {
-          Label label = new Label(GamePiece.createPiece(pieceIndex).toString());
+          Label label = new Label(set.createPiece(pieceIndex).toString());
           label.setStyle("-fx-text-fill: white;");
-          piece.showPiece(GamePiece.createPiece(pieceIndex));
+          piece.showPiece(set.createPiece(pieceIndex));
           vbox.getChildren().addAll(piece, label);
         }
       }
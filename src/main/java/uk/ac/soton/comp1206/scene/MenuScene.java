@@ -1,5 +1,9 @@
 package uk.ac.soton.comp1206.scene;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
 import javafx.animation.ScaleTransition;
 import javafx.event.ActionEvent;
@@ -7,11 +11,16 @@ import javafx.geometry.Pos;
 import javafx.scene.control.Button;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
 import javafx.scene.layout.*;
 import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.engine.Checkpoint;
+import uk.ac.soton.comp1206.engine.PieceSet;
+import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.media.Multimedia;
+import uk.ac.soton.comp1206.replay.ReplayFile;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -22,6 +31,38 @@ public class MenuScene extends BaseScene {
 
     private static final Logger logger = LogManager.getLogger(MenuScene.class);
 
+    /**
+     * The board sizes offered, as columns and rows
+     */
+    private static final int[][] BOARD_SIZES = {
+        {5, 5}, {8, 8}, {10, 6}, {16, 16}, {24, 12}, {32, 32}, {64, 32}, {64, 64}, {128, 64}, {128, 128}
+    };
+
+    /**
+     * The board size chosen, kept while the game is open
+     */
+    private static int boardSize = 0;
+
+    /**
+     * Shows and changes the board size
+     */
+    private Button board;
+
+    /**
+     * The names of the piece sets offered
+     */
+    private static final List<String> PIECE_SETS = PieceSet.available();
+
+    /**
+     * The piece set chosen, kept while the game is open
+     */
+    private static int pieceSet = 0;
+
+    /**
+     * Shows and changes the piece set
+     */
+    private Button pieces;
+
     /**
      * Create a new menu scene
      * @param gameWindow the Game Window this will be displayed in
@@ -58,16 +99,33 @@ public class MenuScene extends BaseScene {
 
         //Buttons and style
         var singlePlayer = new Button("Single Player");
+        var resume = new Button("Resume");
+        resume.setVisible(Files.exists(Game.SAVE_FILE));
+        resume.setManaged(resume.isVisible());
+        var practice = new Button("Practice");
+        var autoplay = new Button("Watch the AI");
+        var replay = new Button("Watch Last Game");
         var instructions = new Button("Instructions");
         var multiplayer = new Button("Multiplayer");
         var settings = new Button("Settings");
+        board = new Button();
+        showBoardSize();
+        pieces = new Button();
+        showPieceSet();
         singlePlayer.getStyleClass().add("menuItem");
+        resume.getStyleClass().add("menuItem");
+        practice.getStyleClass().add("menuItem");
+        autoplay.getStyleClass().add("menuItem");
+        replay.getStyleClass().add("menuItem");
         instructions.getStyleClass().add("menuItem");
         multiplayer.getStyleClass().add("menuItem");
         settings.getStyleClass().add("menuItem");
+        board.getStyleClass().add("menuItem");
+        pieces.getStyleClass().add("menuItem");
 
         //VBox to store the buttons
-        var vbox = new VBox(singlePlayer, instructions, multiplayer, settings);
+        var vbox = new VBox(resume, singlePlayer, practice, autoplay, replay, board, pieces, instructions, multiplayer,
+            settings);
         vbox.setAlignment(Pos.CENTER);
         vbox.setSpacing(20);
         vbox.setTranslateY(150);
@@ -77,9 +135,16 @@ public class MenuScene extends BaseScene {
 
         //Bind the button action to the startGame method in the menu
         singlePlayer.setOnAction(this::startGame);
+        resume.setOnAction(this::resumeGame);
+        practice.setOnAction(this::startPractice);
+        autoplay.setOnAction(this::startAutoplay);
+        replay.setOnAction(this::startReplay);
         instructions.setOnAction(this::showInstructions);
         multiplayer.setOnAction(this::showMultiplayer);
         settings.setOnAction(this::showSettings);
+        //Left click for a bigger board, right click for a smaller one
+        board.setOnMouseClicked(event -> changeBoardSize(event.getButton() == MouseButton.SECONDARY ? -1 : 1));
+        pieces.setOnMouseClicked(event -> changePieceSet(event.getButton() == MouseButton.SECONDARY ? -1 : 1));
     }
 
     /**
@@ -97,7 +162,113 @@ public class MenuScene extends BaseScene {
     private void startGame(ActionEvent event) {
         Multimedia.stopBackground();
         Multimedia.playSound("transition.wav");
-        gameWindow.startChallenge();
+        gameWindow.startChallenge(BOARD_SIZES[boardSize][0], BOARD_SIZES[boardSize][1], getPieceSet());
+    }
+
+    /**
+     * Handle when the Resume button is pressed, carrying on with the game saved when the player last left one. The save
+     * is used up, so the same game can't be carried on twice.
+     * @param event event
+     */
+    private void resumeGame(ActionEvent event) {
+        Checkpoint checkpoint;
+        try {
+            checkpoint = Checkpoint.read(Game.SAVE_FILE);
+            Files.delete(Game.SAVE_FILE);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Couldn't resume the saved game", e);
+            Multimedia.playSound("fail.wav");
+            return;
+        }
+        Multimedia.stopBackground();
+        Multimedia.playSound("transition.wav");
+        gameWindow.startResumed(checkpoint);
+    }
+
+    /**
+     * Handle when the Practice button is pressed
+     * @param event event
+     */
+    private void startPractice(ActionEvent event) {
+        Multimedia.stopBackground();
+        Multimedia.playSound("transition.wav");
+        gameWindow.startPractice(BOARD_SIZES[boardSize][0], BOARD_SIZES[boardSize][1], getPieceSet());
+    }
+
+    /**
+     * Handle when the Watch the AI button is pressed
+     * @param event event
+     */
+    private void startAutoplay(ActionEvent event) {
+        Multimedia.stopBackground();
+        Multimedia.playSound("transition.wav");
+        gameWindow.startAutoplay(BOARD_SIZES[boardSize][0], BOARD_SIZES[boardSize][1], getPieceSet());
+    }
+
+    /**
+     * Handle when the Watch Last Game button is pressed, playing back the newest recorded game
+     * @param event event
+     */
+    private void startReplay(ActionEvent event) {
+        ReplayFile replay;
+        try {
+            Path file = ReplayFile.latest(Game.REPLAY_DIRECTORY);
+            if (file == null) {
+                logger.info("No recorded games to watch");
+                Multimedia.playSound("fail.wav");
+                return;
+            }
+            replay = ReplayFile.open(file);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Couldn't open the last recorded game", e);
+            Multimedia.playSound("fail.wav");
+            return;
+        }
+        Multimedia.stopBackground();
+        Multimedia.playSound("transition.wav");
+        gameWindow.startReplay(replay);
+    }
+
+    /**
+     * Move to the next or previous board size, wrapping around
+     * @param step 1 for the next size, -1 for the previous one
+     */
+    private void changeBoardSize(int step) {
+        boardSize = Math.floorMod(boardSize + step, BOARD_SIZES.length);
+        showBoardSize();
+        Multimedia.playSound("rotate.wav");
+    }
+
+    /**
+     * Show the chosen board size on its button
+     */
+    private void showBoardSize() {
+        board.setText("Board: " + BOARD_SIZES[boardSize][0] + "x" + BOARD_SIZES[boardSize][1]);
+    }
+
+    /**
+     * Move to the next or previous piece set, wrapping around
+     * @param step 1 for the next set, -1 for the previous one
+     */
+    private void changePieceSet(int step) {
+        pieceSet = Math.floorMod(pieceSet + step, PIECE_SETS.size());
+        showPieceSet();
+        Multimedia.playSound("rotate.wav");
+    }
+
+    /**
+     * Show the chosen piece set on its button
+     */
+    private void showPieceSet() {
+        pieces.setText("Pieces: " + getPieceSet().getName());
+    }
+
+    /**
+     * Get the chosen piece set, loading it the first time
+     * @return the piece set
+     */
+    private static PieceSet getPieceSet() {
+        return PieceSet.load(PIECE_SETS.get(pieceSet));
     }
 
     /**
@@ -17,7 +17,7 @@ import javafx.scene.layout.VBox;
 import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.component.GameBlock;
+import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.LeaderBoard;
 import uk.ac.soton.comp1206.game.MultiplayerGame;
 import uk.ac.soton.comp1206.media.Multimedia;
@@ -53,6 +53,7 @@ public class MultiplayerScene extends ChallengeScene{
    * @param gameWindow the Game Window
    */
   public MultiplayerScene(GameWindow gameWindow) {
+    //The server deals pieces for, and shows, the standard board
     super(gameWindow);
   }
   @Override
@@ -67,7 +68,7 @@ public class MultiplayerScene extends ChallengeScene{
         manageScores(multiplayerListener);
      }
     }));
-    super.game = new MultiplayerGame(5,5);
+    super.game = new MultiplayerGame(cols, rows);
     ((MultiplayerGame)super.game).pieceProperty().bind(pieceProperty);
 
 
@@ -119,12 +120,12 @@ public class MultiplayerScene extends ChallengeScene{
   }
 
   @Override
-  protected void blockClicked(GameBlock gameBlock){
+  protected void blockClicked(GameBlockCoordinate gameBlock){
     super.game.blockClicked(gameBlock);
     StringBuilder block = new StringBuilder("BOARD ");
-    for (int i = 0; i < board.getRowCount(); i++) {
-      for (int j = 0; j < board.getColumnCount(); j++) {
-        block.append(board.getBlock(i, j).getValue()).append(" ");
+    for (int x = 0; x < cols; x++) {
+      for (int y = 0; y < rows; y++) {
+        block.append(game.getGrid().get(x, y)).append(" ");
       }
     }
     gameWindow.getCommunicator().send(block.toString());
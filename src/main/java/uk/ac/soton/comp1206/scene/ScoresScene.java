@@ -1,14 +1,13 @@
 package uk.ac.soton.comp1206.scene;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javafx.application.Platform;
 import javafx.beans.property.ListProperty;
 import javafx.beans.property.SimpleListProperty;
@@ -20,8 +19,8 @@ import javafx.scene.control.TextInputDialog;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
@@ -30,6 +29,9 @@ import uk.ac.soton.comp1206.component.LeaderBoard;
 import uk.ac.soton.comp1206.component.ScoresList;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.media.Multimedia;
+import uk.ac.soton.comp1206.scores.ScoreEntry;
+import uk.ac.soton.comp1206.scores.ScoreHistory;
+import uk.ac.soton.comp1206.scores.ScoreLog;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -41,7 +43,21 @@ public class ScoresScene extends BaseScene{
   protected static final Logger logger = LogManager.getLogger(ScoresScene.class);
 
   /**
-   * List property for the local scores
+   * The text file scores were kept in before the score log, moved into the log the first time it is opened
+   */
+  public static final Path LEGACY_SCORES = Path.of("Scores.txt");
+
+  /**
+   * Opens, adds to and asks the score history, one task at a time, so a large history never holds up the scene
+   */
+  private static final ExecutorService historyWorker = Executors.newSingleThreadExecutor(task -> {
+    Thread thread = new Thread(task, "score-history");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * List property for the best local scores
    */
   protected final ListProperty<Pair<String, Integer>> localScores = new SimpleListProperty<>(
       FXCollections.observableArrayList());
@@ -65,6 +81,11 @@ public class ScoresScene extends BaseScene{
    */
   protected BorderPane mainPane;
 
+  /**
+   * How the game's score compares with every game played here
+   */
+  protected Text standing;
+
   /**private LeaderBoard multiplayerList;
    * Leaderboard containing the multiplayer scores
    */
@@ -131,14 +152,16 @@ public class ScoresScene extends BaseScene{
     scoresPane.getChildren().add(mainPane);
 
     //Top
-    var top = new HBox();
+    var top = new VBox();
     top.setAlignment(Pos.CENTER);
     BorderPane.setMargin(top, new Insets(10, 0, 0, 0));
     mainPane.setTop(top);
 
     Text gameOver = new Text("Game Over");
     gameOver.getStyleClass().add("bigtitle");
-    top.getChildren().add(gameOver);
+    standing = new Text();
+    standing.getStyleClass().add("heading");
+    top.getChildren().addAll(gameOver, standing);
 
     //Load local scores
     if (offline) {
@@ -160,62 +183,58 @@ public class ScoresScene extends BaseScene{
   }
 
   /**
-   * Reads the scores in the file and adds the new ones
+   * Reads the best local scores from the score log, then asks for the player's name to add the new one
    */
   public void loadScores(){
-    ArrayList<Pair<String, Integer>> score = new ArrayList<>();
-    File filename = new File("Scores.txt");
-
-    if (!filename.exists()){
-      ArrayList<Pair<String, Integer>> scores = new ArrayList<>();
-      scores.add(new Pair<>("Player1", 450));
-      scores.add(new Pair<>("Player2", 200));
-      scores.add(new Pair<>("Player3", 1500));
-      scores.add(new Pair<>("Player5", 1000));
-      scores.add(new Pair<>("Player4", 500));
-      scores.add(new Pair<>("Player6", 680));
-      scores.add(new Pair<>("Player7", 0));
-      scores.add(new Pair<>("Player8", 450));
-      scores.add(new Pair<>("Player9", 200));
-      scores.add(new Pair<>("Player10", 1500));
-      writeScores(scores);
-      checkHighScore();
-    }
-
-    try{ BufferedReader bufferedReader = new BufferedReader(new FileReader(filename));
-        String line;
-        while ((line = bufferedReader.readLine()) != null){
-          String[] parts = line.split(":");
-          if (parts.length ==2) {
-            score.add(new Pair<>(parts[0], Integer.parseInt(parts[1])));
-          }
-        }
-        //Sort the scores
-        score.sort((s1, s2) -> Integer.compare(s2.getValue(), s1.getValue()));
-        localScores.addAll(score);
-    } catch (IOException e) {
-      e.printStackTrace();
+    try (ScoreLog log = ScoreLog.open(Game.SCORES_FILE)) {
+      if (log.getCount() == 0) {
+        seedScores(log);
+      }
+      showScores(log);
+    } catch (IOException | IllegalArgumentException e) {
+      logger.error("Couldn't read the local scores", e);
     }
     //Check for the high score
     checkHighScore();
   }
 
   /**
-   * Writes the scores in the file
-   * @param scores the list of scores
+   * Fill a new score log with the scores of the old text file, or with some made up scores if there isn't one
+   * @param log the empty log
+   * @throws IOException if the log can't be written
    */
-  public void writeScores(List<Pair<String, Integer>> scores)  {
-    File file = new File("Scores.txt");
-    try(BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file))){
-      for (Pair<String, Integer> score : scores){
-        bufferedWriter.write(score.getKey() + ":" + score.getValue());
-        bufferedWriter.newLine();
+  protected void seedScores(ScoreLog log) throws IOException {
+    long now = System.currentTimeMillis();
+    if (Files.exists(LEGACY_SCORES)) {
+      logger.info("Moving the scores in {} to {}", LEGACY_SCORES, log.getFile());
+      for (String line : Files.readAllLines(LEGACY_SCORES)) {
+        String[] parts = line.split(":");
+        if (parts.length == 2 && parts[1].strip().matches("-?\\d{1,9}")) {
+          log.add(parts[0], Integer.parseInt(parts[1].strip()), now);
+        }
       }
-    } catch (IOException e) {
-      e.printStackTrace();
+      return;
+    }
+    String[] names = {"Player1", "Player2", "Player3", "Player5", "Player4", "Player6", "Player7", "Player8",
+        "Player9", "Player10"};
+    int[] scores = {450, 200, 1500, 1000, 500, 680, 0, 450, 200, 1500};
+    for (int player = 0; player < names.length; player++) {
+      log.add(names[player], scores[player], now);
     }
   }
 
+  /**
+   * Show the best scores of the log in the local scores list
+   * @param log the score log
+   */
+  protected void showScores(ScoreLog log) {
+    List<Pair<String, Integer>> best = new ArrayList<>();
+    for (ScoreEntry entry : log.top(ScoreLog.TOP)) {
+      best.add(new Pair<>(entry.getName(), entry.getScore()));
+    }
+    localScores.setAll(best);
+  }
+
   /**
    * Checks for high scores and sets a name to the player
    */
@@ -231,18 +250,40 @@ public class ScoresScene extends BaseScene{
     if (result.isPresent()) {
       String name = result.get();
 
-      // Add the new score to the local scores list
-      localScores.add(0, new Pair<>(name, gameScore));
-
-      // Sort the scores
-      localScores.sort((s1, s2) -> Integer.compare(s2.getValue(), s1.getValue()));
-      writeScores(new ArrayList<>(localScores));
+      //Only one record is appended, the best scores come from the log's index
+      try (ScoreLog log = ScoreLog.open(Game.SCORES_FILE)) {
+        log.add(name, gameScore, System.currentTimeMillis());
+        showScores(log);
+      } catch (IOException | IllegalArgumentException e) {
+        logger.error("Couldn't add the score to the local scores", e);
+      }
+      addToHistory(name, gameScore);
       writeOnlineScore(name, gameScore);
       scoresList.updateScoresList();
     }
 
   }
 
+  /**
+   * Add the score to the history of every game played here on the history's worker thread, then show how it compares
+   * @param name the player's name
+   * @param score the score
+   */
+  protected void addToHistory(String name, int score) {
+    long time = System.currentTimeMillis();
+    historyWorker.execute(() -> {
+      try (ScoreHistory history = ScoreHistory.open(Game.HISTORY_DIRECTORY)) {
+        ScoreEntry added = history.add(name, score, time);
+        int best = history.top(added.getName(), 1).get(0).getScore();
+        String text = String.format("Better than or equal to %.0f%% of %d games played here - your best is %d",
+            history.percentile(score), history.getCount(), best);
+        Platform.runLater(() -> standing.setText(text));
+      } catch (IOException | IllegalArgumentException e) {
+        logger.error("Couldn't add the score to the score history", e);
+      }
+    });
+  }
+
   /**
    * Presents the top 10 scores
    */
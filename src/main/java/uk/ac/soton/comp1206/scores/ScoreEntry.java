@@ -0,0 +1,63 @@
+package uk.ac.soton.comp1206.scores;
+
+/**
+ * One score in a ScoreLog: who got it, how many points and when
+ */
+public class ScoreEntry {
+
+  /**
+   * The name the player gave
+   */
+  private final String name;
+
+  /**
+   * The points scored
+   */
+  private final int score;
+
+  /**
+   * The wall clock time the score was logged, in milliseconds
+   */
+  private final long time;
+
+  /**
+   * Create a score
+   * @param name the name the player gave
+   * @param score the points scored
+   * @param time the wall clock time in milliseconds
+   */
+  public ScoreEntry(String name, int score, long time) {
+    this.name = name;
+    this.score = score;
+    this.time = time;
+  }
+
+  /**
+   * Get the name the player gave
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Get the points scored
+   * @return the score
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Get the time the score was logged
+   * @return milliseconds since the epoch
+   */
+  public long getTime() {
+    return time;
+  }
+
+  @Override
+  public String toString() {
+    return name + ":" + score;
+  }
+}
@@ -0,0 +1,1089 @@
+package uk.ac.soton.comp1206.scores;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.util.AtomicFiles;
+
+/**
+ * Every score ever played on this machine, kept in memory-mapped files in a directory so years of games can be asked
+ * about without reading them all in.
+ * Scores are fixed-size records in records.dat: the time, the score and the id of the player. Names are kept once
+ * each in names.dat, a dictionary read in when the history is opened; a player's id is their place in it. days.dat
+ * holds the best record of each day, sorted by day. Each of these starts with its magic bytes, the VERSION, the size
+ * of an entry and the number of entries, and is mapped whole and grown as it fills.
+ * The records are indexed by score in sorted segments: segment files each holding a run of records as (score, record)
+ * pairs, best first, and the same records again grouped by player, each player's best first, found through a table of
+ * where each player's run starts. Records after the last segment are the tail; once the tail holds SEGMENT_SIZE records
+ * it is sorted into a new segment, and the newest segments are merged while the one before is no more than twice the
+ * size of the last, so there are only ever a few dozen. A segment is written whole to a temporary file and renamed, and
+ * the old segments are only deleted after a merge is renamed into place; segments left over by a crash are sorted out
+ * on opening.
+ * The best scores are found by merging the segments and the sorted tail with a heap, stopping as soon as enough are
+ * found; the best scores of one player the same way, from that player's run in each segment and their records in the
+ * tail, so a player's best costs the same however many better scores others have. A percentile is a binary search in
+ * each segment and a scan of the tail.
+ * Scores written are only certain to be on the disk after flush or close. One thread uses a history at a time.
+ */
+public class ScoreHistory implements AutoCloseable {
+
+  private static final Logger logger = LogManager.getLogger(ScoreHistory.class);
+
+  /**
+   * The version of the format written
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * The number of records in the tail that are sorted into a segment
+   */
+  public static final int SEGMENT_SIZE = 4096;
+
+  /**
+   * The bytes the records start with
+   */
+  private static final byte[] RECORDS_MAGIC = {'T', 'S', 'H', 'R'};
+
+  /**
+   * The bytes the best scores of each day start with
+   */
+  private static final byte[] DAYS_MAGIC = {'T', 'S', 'H', 'D'};
+
+  /**
+   * The bytes the names start with
+   */
+  private static final byte[] NAMES_MAGIC = {'T', 'S', 'H', 'N'};
+
+  /**
+   * The bytes every segment starts with
+   */
+  private static final byte[] SEGMENT_MAGIC = {'T', 'S', 'H', 'S'};
+
+  /**
+   * The size of a record: time, score and player
+   */
+  private static final int RECORD = Long.BYTES + 2 * Integer.BYTES;
+
+  /**
+   * The size of an entry of the best scores of each day: day and record
+   */
+  private static final int DAY = 2 * Integer.BYTES;
+
+  /**
+   * The size of a segment entry: score and record
+   */
+  private static final int ENTRY = 2 * Integer.BYTES;
+
+  /**
+   * The version of the segments written. Segments of any other version are deleted, and their records sorted again.
+   */
+  private static final int SEGMENT_VERSION = 2;
+
+  /**
+   * The size of a segment's header: magic, version, first record, the record after the last and number of players
+   */
+  private static final int SEGMENT_HEADER = 5 * Integer.BYTES;
+
+  /**
+   * The order of the segments: best score first, then the first logged
+   */
+  private static final Comparator<Cursor> BEST_FIRST =
+      Comparator.comparingInt((Cursor cursor) -> -cursor.score()).thenComparingInt(Cursor::record);
+
+  /**
+   * The directory of the history
+   */
+  private final Path directory;
+
+  /**
+   * The time zone days are counted in
+   */
+  private final ZoneId zone;
+
+  /**
+   * The scores
+   */
+  private final Table records;
+
+  /**
+   * The best record of each day, sorted by day
+   */
+  private final Table days;
+
+  /**
+   * The dictionary of names, appended to
+   */
+  private final FileChannel names;
+
+  /**
+   * The size of the dictionary of names
+   */
+  private long namesEnd;
+
+  /**
+   * The name of each player id
+   */
+  private final List<String> players = new ArrayList<>();
+
+  /**
+   * The id of each name
+   */
+  private final Map<String, Integer> ids = new HashMap<>();
+
+  /**
+   * The segments, in order of the records they index
+   */
+  private final List<Segment> segments = new ArrayList<>();
+
+  /**
+   * The first record not in a segment
+   */
+  private int indexed;
+
+  /**
+   * The records of the tail, best first, null until needed after the tail changes
+   */
+  private int[] sortedTail;
+
+  /**
+   * Open a history, creating it if it doesn't exist
+   * @param directory the directory of the history
+   * @param zone the time zone days are counted in
+   * @throws IOException if the history can't be read or written
+   */
+  private ScoreHistory(Path directory, ZoneId zone) throws IOException {
+    this.directory = directory;
+    this.zone = zone;
+    Files.createDirectories(directory);
+    records = new Table(directory.resolve("records.dat"), RECORDS_MAGIC, RECORD);
+    days = new Table(directory.resolve("days.dat"), DAYS_MAGIC, DAY);
+    names = FileChannel.open(directory.resolve("names.dat"), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Open a history, creating it if it doesn't exist, counting days in the system's time zone
+   * @param directory the directory of the history
+   * @return the history
+   * @throws IOException if the history can't be read or written
+   * @throws IllegalArgumentException if a file of the history is damaged
+   */
+  public static ScoreHistory open(Path directory) throws IOException {
+    return open(directory, ZoneId.systemDefault());
+  }
+
+  /**
+   * Open a history, creating it if it doesn't exist
+   * @param directory the directory of the history
+   * @param zone the time zone days are counted in
+   * @return the history
+   * @throws IOException if the history can't be read or written
+   * @throws IllegalArgumentException if a file of the history is damaged
+   */
+  public static ScoreHistory open(Path directory, ZoneId zone) throws IOException {
+    ScoreHistory history = new ScoreHistory(directory, zone);
+    try {
+      history.readNames();
+      history.readSegments();
+    } catch (IOException | RuntimeException e) {
+      history.close();
+      throw e;
+    }
+    return history;
+  }
+
+  /**
+   * Add a score
+   * @param name the player's name, cut to ScoreLog.MAX_NAME characters
+   * @param score the points scored
+   * @param time the wall clock time in milliseconds
+   * @return the score as added
+   * @throws IOException if the history can't be written
+   */
+  public ScoreEntry add(String name, int score, long time) throws IOException {
+    if (name.length() > ScoreLog.MAX_NAME) {
+      name = name.substring(0, ScoreLog.MAX_NAME);
+    }
+    int player = playerId(name);
+    int record = records.count;
+    records.reserve(record + 1);
+    int at = records.offset(record);
+    records.map.putLong(at, time);
+    records.map.putInt(at + Long.BYTES, score);
+    records.map.putInt(at + Long.BYTES + Integer.BYTES, player);
+    records.setCount(record + 1);
+    sortedTail = null;
+    updateDay(record);
+
+    if (records.count - indexed >= SEGMENT_SIZE) {
+      seal();
+    }
+    return new ScoreEntry(name, score, time);
+  }
+
+  /**
+   * Get the best scores
+   * @param k the number wanted
+   * @return up to k scores, best first; equal scores in the order they were added
+   */
+  public List<ScoreEntry> top(int k) {
+    List<ScoreEntry> best = new ArrayList<>(Math.min(k, records.count));
+    PriorityQueue<Cursor> heap = cursors();
+    while (best.size() < k && !heap.isEmpty()) {
+      best.add(entry(next(heap)));
+    }
+    return best;
+  }
+
+  /**
+   * Get the best scores of one player
+   * @param name the player's name
+   * @param k the number wanted
+   * @return up to k scores, best first; equal scores in the order they were added
+   */
+  public List<ScoreEntry> top(String name, int k) {
+    List<ScoreEntry> best = new ArrayList<>();
+    Integer player = ids.get(name);
+    if (player == null) {
+      return best;
+    }
+    PriorityQueue<Cursor> heap = new PriorityQueue<>(segments.size() + 1, BEST_FIRST);
+    for (Segment segment : segments) {
+      offer(heap, new Cursor(segment.map, segment.grouped(), segment.runStart(player), segment.runStart(player + 1)));
+    }
+    //The tail holds fewer than SEGMENT_SIZE records
+    int[] tail = sortedTail();
+    int[] theirs = new int[tail.length];
+    int count = 0;
+    for (int record : tail) {
+      if (player(record) == player) {
+        theirs[count++] = record;
+      }
+    }
+    offer(heap, new Cursor(Arrays.copyOf(theirs, count)));
+    while (best.size() < k && !heap.isEmpty()) {
+      best.add(entry(next(heap)));
+    }
+    return best;
+  }
+
+  /**
+   * Get the best score of every day something was played, between two days
+   * @param from the first day
+   * @param to the last day
+   * @return the best score of each day, in order of the days; the first logged of equal scores
+   */
+  public List<ScoreEntry> bestPerDay(LocalDate from, LocalDate to) {
+    List<ScoreEntry> best = new ArrayList<>();
+    for (int entry = findDay((int) from.toEpochDay()); entry < days.count; entry++) {
+      int at = days.offset(entry);
+      if (days.map.getInt(at) > to.toEpochDay()) {
+        break;
+      }
+      int record = days.map.getInt(at + Integer.BYTES);
+      //Only after a damaged count was read back
+      if (record < records.count) {
+        best.add(entry(record));
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Find how a score compares with every score added
+   * @param score the score
+   * @return the percentage of scores added that are no better, 100 if none have been added
+   */
+  public double percentile(int score) {
+    if (records.count == 0) {
+      return 100;
+    }
+    long better = 0;
+    for (Segment segment : segments) {
+      better += segment.countAbove(score);
+    }
+    for (int record = indexed; record < records.count; record++) {
+      if (score(record) > score) {
+        better++;
+      }
+    }
+    return 100.0 * (records.count - better) / records.count;
+  }
+
+  /**
+   * Get the number of scores added
+   * @return the number of scores
+   */
+  public int getCount() {
+    return records.count;
+  }
+
+  /**
+   * Get the number of different names scores were added under
+   * @return the number of players
+   */
+  public int getPlayerCount() {
+    return players.size();
+  }
+
+  /**
+   * Get the number of segments the scores are indexed in
+   * @return the number of segments
+   */
+  public int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Make sure everything added is on the disk
+   * @throws IOException if it can't be written
+   */
+  public void flush() throws IOException {
+    names.force(false);
+    records.map.force();
+    days.map.force();
+  }
+
+  /**
+   * Write everything added and close the history
+   * @throws IOException if it can't be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      names.close();
+      records.close();
+      days.close();
+    }
+  }
+
+  /**
+   * Read the dictionary of names, cutting off a name cut short by a crash
+   * @throws IOException if the dictionary can't be read or written
+   */
+  private void readNames() throws IOException {
+    long size = names.size();
+    if (size < NAMES_MAGIC.length) {
+      names.truncate(0);
+      names.write(ByteBuffer.wrap(NAMES_MAGIC), 0);
+      namesEnd = NAMES_MAGIC.length;
+      return;
+    }
+    ByteBuffer in = ByteBuffer.allocate((int) size);
+    while (in.hasRemaining() && names.read(in, in.position()) >= 0) {
+      //Keep reading
+    }
+    in.flip();
+    byte[] magic = new byte[NAMES_MAGIC.length];
+    in.get(magic);
+    if (!Arrays.equals(magic, NAMES_MAGIC)) {
+      throw new IllegalArgumentException(directory + " doesn't hold a score history");
+    }
+    while (in.remaining() >= Short.BYTES) {
+      int length = in.getShort(in.position()) & 0xFFFF;
+      if (in.remaining() < Short.BYTES + length) {
+        break;
+      }
+      byte[] name = new byte[length];
+      in.position(in.position() + Short.BYTES).get(name);
+      String player = new String(name, StandardCharsets.UTF_8);
+      ids.put(player, players.size());
+      players.add(player);
+    }
+    namesEnd = in.position();
+    if (namesEnd < size) {
+      logger.warn("Cutting {} damaged bytes off the names of {}", size - namesEnd, directory);
+      names.truncate(namesEnd);
+    }
+  }
+
+  /**
+   * Find the id of a name, adding it to the dictionary if it is new
+   * @param name the name
+   * @return the player id
+   * @throws IOException if the dictionary can't be written
+   */
+  private int playerId(String name) throws IOException {
+    Integer id = ids.get(name);
+    if (id != null) {
+      return id;
+    }
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer entry = ByteBuffer.allocate(Short.BYTES + bytes.length).putShort((short) bytes.length).put(bytes);
+    entry.flip();
+    while (entry.hasRemaining()) {
+      namesEnd += names.write(entry, namesEnd);
+    }
+    ids.put(name, players.size());
+    players.add(name);
+    return players.size() - 1;
+  }
+
+  /**
+   * Keep a record if it is the best of its day so far
+   * @param record the record
+   * @throws IOException if the best scores of each day can't be grown
+   */
+  private void updateDay(int record) throws IOException {
+    int day = (int) LocalDate.ofInstant(Instant.ofEpochMilli(time(record)), zone).toEpochDay();
+    int entry = findDay(day);
+    if (entry < days.count && days.map.getInt(days.offset(entry)) == day) {
+      int at = days.offset(entry) + Integer.BYTES;
+      if (score(record) > score(days.map.getInt(at))) {
+        days.map.putInt(at, record);
+      }
+      return;
+    }
+    //Nearly always a new last day, unless the clock went back
+    days.reserve(days.count + 1);
+    for (int move = days.count; move > entry; move--) {
+      days.map.putLong(days.offset(move), days.map.getLong(days.offset(move - 1)));
+    }
+    days.map.putInt(days.offset(entry), day);
+    days.map.putInt(days.offset(entry) + Integer.BYTES, record);
+    days.setCount(days.count + 1);
+  }
+
+  /**
+   * Find a day in the best scores of each day
+   * @param day the epoch day
+   * @return the entry of the day, or of the first day after it
+   */
+  private int findDay(int day) {
+    int low = 0;
+    int high = days.count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (days.map.getInt(days.offset(middle)) < day) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Open the segments, keeping a chain of them covering the records from the first and deleting any others, then
+   * sort a tail that is too long
+   * @throws IOException if a segment can't be read, written or deleted
+   */
+  private void readSegments() throws IOException {
+    List<Segment> found = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        String name = file.getFileName().toString();
+        if (name.startsWith("segment-") && name.endsWith(".idx")) {
+          try {
+            found.add(Segment.open(file));
+          } catch (IllegalArgumentException e) {
+            logger.warn("Deleting {}: {}", file, e.getMessage());
+            Files.delete(file);
+          }
+        }
+      }
+    }
+    //From each record the longest segment, as a merge is renamed into place before what it replaced is deleted
+    found.sort(Comparator.comparingInt((Segment segment) -> segment.from)
+        .thenComparingInt(segment -> -segment.to));
+    for (Segment segment : found) {
+      if (segment.from == indexed && segment.to <= records.count) {
+        segments.add(segment);
+        indexed = segment.to;
+      } else {
+        logger.info("Deleting {}, left over or beyond the records", segment.file);
+        Files.delete(segment.file);
+      }
+    }
+    if (records.count - indexed >= SEGMENT_SIZE) {
+      seal();
+    }
+  }
+
+  /**
+   * Sort the tail into a segment, then merge the newest segments while they are a similar size
+   * @throws IOException if a segment can't be written
+   */
+  private void seal() throws IOException {
+    //A segment must never point at records that aren't on the disk
+    records.map.force();
+    int[] tail = sortedTail();
+    int playerCount = players.size();
+    for (int record : tail) {
+      playerCount = Math.max(playerCount, player(record) + 1);
+    }
+    ByteBuffer data = Segment.header(indexed, records.count, playerCount);
+    for (int record : tail) {
+      data.putInt(score(record)).putInt(record);
+    }
+
+    //The same records grouped by player, which keeps each player's best first
+    int[] starts = new int[playerCount + 1];
+    for (int record : tail) {
+      starts[player(record) + 1]++;
+    }
+    for (int player = 0; player < playerCount; player++) {
+      starts[player + 1] += starts[player];
+    }
+    for (int start : starts) {
+      data.putInt(start);
+    }
+    int[] grouped = new int[tail.length];
+    int[] next = Arrays.copyOf(starts, playerCount);
+    for (int record : tail) {
+      grouped[next[player(record)]++] = record;
+    }
+    for (int record : grouped) {
+      data.putInt(score(record)).putInt(record);
+    }
+    segments.add(Segment.write(directory, data));
+    indexed = records.count;
+    sortedTail = null;
+
+    while (segments.size() >= 2
+        && segments.get(segments.size() - 2).size() <= 2 * segments.get(segments.size() - 1).size()) {
+      merge(segments.size() - 2);
+    }
+  }
+
+  /**
+   * Merge two neighbouring segments into one
+   * @param first the index of the first of them
+   * @throws IOException if the merged segment can't be written
+   */
+  private void merge(int first) throws IOException {
+    Segment a = segments.get(first);
+    Segment b = segments.get(first + 1);
+    int playerCount = Math.max(a.players, b.players);
+    ByteBuffer data = Segment.header(a.from, b.to, playerCount);
+    merge(data, new Cursor(a.map, SEGMENT_HEADER, 0, a.size()), new Cursor(b.map, SEGMENT_HEADER, 0, b.size()));
+    int start = 0;
+    for (int player = 0; player <= playerCount; player++) {
+      data.putInt(start);
+      start += a.runSize(player) + b.runSize(player);
+    }
+    for (int player = 0; player < playerCount; player++) {
+      merge(data, new Cursor(a.map, a.grouped(), a.runStart(player), a.runStart(player + 1)),
+          new Cursor(b.map, b.grouped(), b.runStart(player), b.runStart(player + 1)));
+    }
+    Segment merged = Segment.write(directory, data);
+    segments.set(first, merged);
+    segments.remove(first + 1);
+    for (Segment old : new Segment[] {a, b}) {
+      try {
+        Files.delete(old.file);
+      } catch (IOException e) {
+        //Deleted next time it is opened
+        logger.warn("Couldn't delete {}", old.file, e);
+      }
+    }
+  }
+
+  /**
+   * Merge two runs of (score, record) pairs, each best first, into the data of a segment
+   * @param data the data
+   * @param a the first run
+   * @param b the second run
+   */
+  private void merge(ByteBuffer data, Cursor a, Cursor b) {
+    PriorityQueue<Cursor> heap = new PriorityQueue<>(2, BEST_FIRST);
+    offer(heap, a);
+    offer(heap, b);
+    while (!heap.isEmpty()) {
+      Cursor cursor = heap.peek();
+      data.putInt(cursor.score()).putInt(cursor.record());
+      next(heap);
+    }
+  }
+
+  /**
+   * Make a heap of cursors over every segment and the sorted tail
+   * @return the heap, best record at the head
+   */
+  private PriorityQueue<Cursor> cursors() {
+    PriorityQueue<Cursor> heap = new PriorityQueue<>(segments.size() + 1, BEST_FIRST);
+    for (Segment segment : segments) {
+      offer(heap, new Cursor(segment.map, SEGMENT_HEADER, 0, segment.size()));
+    }
+    offer(heap, new Cursor(sortedTail()));
+    return heap;
+  }
+
+  /**
+   * Add a cursor to a heap, unless it has nothing left
+   * @param heap the heap
+   * @param cursor the cursor
+   */
+  private static void offer(PriorityQueue<Cursor> heap, Cursor cursor) {
+    if (cursor.at < cursor.end) {
+      heap.add(cursor);
+    }
+  }
+
+  /**
+   * Take the best record from a heap of cursors
+   * @param heap the heap, not empty
+   * @return the record
+   */
+  private int next(PriorityQueue<Cursor> heap) {
+    Cursor cursor = heap.poll();
+    int record = cursor.record();
+    if (cursor.advance()) {
+      heap.add(cursor);
+    }
+    return record;
+  }
+
+  /**
+   * Get the records of the tail, best first, sorting them if the tail changed
+   * @return the records
+   */
+  private int[] sortedTail() {
+    if (sortedTail == null) {
+      //Sort (score, record) pairs packed into longs, so equal scores stay in the order they were added
+      long[] keys = new long[records.count - indexed];
+      for (int record = indexed; record < records.count; record++) {
+        keys[record - indexed] = (long) ~score(record) << 32 | record;
+      }
+      Arrays.sort(keys);
+      sortedTail = new int[keys.length];
+      for (int key = 0; key < keys.length; key++) {
+        sortedTail[key] = (int) keys[key];
+      }
+    }
+    return sortedTail;
+  }
+
+  /**
+   * Get a record as a score
+   * @param record the record
+   * @return the score
+   */
+  private ScoreEntry entry(int record) {
+    int player = player(record);
+    return new ScoreEntry(player < players.size() ? players.get(player) : "Unknown", score(record), time(record));
+  }
+
+  /**
+   * Get the time of a record
+   * @param record the record
+   * @return the time in milliseconds
+   */
+  private long time(int record) {
+    return records.map.getLong(records.offset(record));
+  }
+
+  /**
+   * Get the score of a record
+   * @param record the record
+   * @return the score
+   */
+  private int score(int record) {
+    return records.map.getInt(records.offset(record) + Long.BYTES);
+  }
+
+  /**
+   * Get the player of a record
+   * @param record the record
+   * @return the player id
+   */
+  private int player(int record) {
+    return records.map.getInt(records.offset(record) + Long.BYTES + Integer.BYTES);
+  }
+
+  /**
+   * A file of fixed-size entries, mapped into memory whole and grown as it fills. It starts with the magic bytes,
+   * the version, the size of an entry and the number of entries.
+   */
+  private static class Table {
+
+    /**
+     * The size of the header
+     */
+    static final int HEADER = 4 * Integer.BYTES;
+
+    /**
+     * The place of the number of entries in the header
+     */
+    static final int COUNT = 3 * Integer.BYTES;
+
+    /**
+     * The fewest entries room is made for
+     */
+    static final int MIN_CAPACITY = 1024;
+
+    /**
+     * The open file
+     */
+    final FileChannel channel;
+
+    /**
+     * The size of an entry
+     */
+    final int entry;
+
+    /**
+     * The file, mapped
+     */
+    MappedByteBuffer map;
+
+    /**
+     * The number of entries
+     */
+    int count;
+
+    /**
+     * Open a table, creating it if it doesn't exist
+     * @param file the file
+     * @param magic the bytes it starts with
+     * @param entry the size of an entry
+     * @throws IOException if the file can't be read or written
+     */
+    Table(Path file, byte[] magic, int entry) throws IOException {
+      this.entry = entry;
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      boolean created = channel.size() < HEADER;
+      map(Math.max(channel.size(), HEADER + (long) MIN_CAPACITY * entry));
+      if (created) {
+        map.put(0, magic).putInt(magic.length, VERSION).putInt(2 * Integer.BYTES, entry).putInt(COUNT, 0);
+        return;
+      }
+      byte[] found = new byte[magic.length];
+      map.get(0, found);
+      if (!Arrays.equals(found, magic) || map.getInt(magic.length) != VERSION
+          || map.getInt(2 * Integer.BYTES) != entry) {
+        channel.close();
+        throw new IllegalArgumentException(file + " is not part of a score history");
+      }
+      count = map.getInt(COUNT);
+      if (count < 0 || offset(count) > map.capacity()) {
+        channel.close();
+        throw new IllegalArgumentException(file + " is damaged");
+      }
+    }
+
+    /**
+     * Get where an entry starts
+     * @param index the entry
+     * @return its offset
+     */
+    int offset(int index) {
+      return HEADER + index * entry;
+    }
+
+    /**
+     * Make room for a number of entries, doubling the size of the file when it is full
+     * @param entries the number of entries
+     * @throws IOException if the file can't be grown
+     */
+    void reserve(int entries) throws IOException {
+      if (offset(entries) > map.capacity()) {
+        map(Math.max(offset(entries), 2L * map.capacity()));
+      }
+    }
+
+    /**
+     * Set the number of entries, after they are written
+     * @param count the number of entries
+     */
+    void setCount(int count) {
+      this.count = count;
+      map.putInt(COUNT, count);
+    }
+
+    /**
+     * Map the file, growing it to a size
+     * @param size the size
+     * @throws IOException if the file can't be mapped
+     */
+    private void map(long size) throws IOException {
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("The score history is full");
+      }
+      map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Write the table and close it
+     * @throws IOException if it can't be written
+     */
+    void close() throws IOException {
+      map.force();
+      channel.close();
+    }
+  }
+
+  /**
+   * A sorted run of records: a file of (score, record) pairs for the records from one record up to another, best score
+   * first, then where each player's run starts, then the same pairs grouped by player, mapped into memory
+   */
+  private static class Segment {
+
+    /**
+     * The file
+     */
+    final Path file;
+
+    /**
+     * The first record
+     */
+    final int from;
+
+    /**
+     * The record after the last
+     */
+    final int to;
+
+    /**
+     * The number of player ids the runs are kept for
+     */
+    final int players;
+
+    /**
+     * The file, mapped
+     */
+    final ByteBuffer map;
+
+    /**
+     * Open a segment
+     * @param file the file
+     * @param map the file, mapped
+     */
+    private Segment(Path file, ByteBuffer map) {
+      this.file = file;
+      this.map = map;
+      this.from = map.getInt(2 * Integer.BYTES);
+      this.to = map.getInt(3 * Integer.BYTES);
+      this.players = map.getInt(4 * Integer.BYTES);
+    }
+
+    /**
+     * Open a segment file
+     * @param file the file
+     * @return the segment
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if the file isn't a whole segment of the current version
+     */
+    static Segment open(Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        byte[] magic = new byte[SEGMENT_MAGIC.length];
+        if (map.capacity() < SEGMENT_HEADER || !Arrays.equals(readMagic(map, magic), SEGMENT_MAGIC)) {
+          throw new IllegalArgumentException("not a segment");
+        }
+        if (map.getInt(SEGMENT_MAGIC.length) != SEGMENT_VERSION) {
+          throw new IllegalArgumentException("version " + map.getInt(SEGMENT_MAGIC.length));
+        }
+        int from = map.getInt(2 * Integer.BYTES);
+        int to = map.getInt(3 * Integer.BYTES);
+        int players = map.getInt(4 * Integer.BYTES);
+        if (from < 0 || to < from || players < 0 || map.capacity() != size(to - from, players)) {
+          throw new IllegalArgumentException("cut short");
+        }
+        return new Segment(file, map);
+      }
+    }
+
+    /**
+     * Read the magic bytes at the start of a file
+     * @param map the file, mapped
+     * @param magic where to read them
+     * @return the bytes read
+     */
+    private static byte[] readMagic(ByteBuffer map, byte[] magic) {
+      map.get(0, magic);
+      return magic;
+    }
+
+    /**
+     * Get the size of a segment file
+     * @param size the number of records
+     * @param players the number of player ids
+     * @return the size in bytes
+     */
+    private static long size(int size, int players) {
+      return SEGMENT_HEADER + 2L * size * ENTRY + (players + 1L) * Integer.BYTES;
+    }
+
+    /**
+     * Start the data of a segment
+     * @param from the first record
+     * @param to the record after the last
+     * @param players the number of player ids
+     * @return the data, with the header written
+     */
+    static ByteBuffer header(int from, int to, int players) {
+      return ByteBuffer.allocate((int) size(to - from, players)).put(SEGMENT_MAGIC).putInt(SEGMENT_VERSION)
+          .putInt(from).putInt(to).putInt(players);
+    }
+
+    /**
+     * Write a segment whole and open it
+     * @param directory the directory of the history
+     * @param data the segment, filled
+     * @return the segment
+     * @throws IOException if it can't be written
+     */
+    static Segment write(Path directory, ByteBuffer data) throws IOException {
+      Path file = directory.resolve("segment-" + data.getInt(2 * Integer.BYTES) + "-"
+          + data.getInt(3 * Integer.BYTES) + ".idx");
+      AtomicFiles.write(file, data.array());
+      return open(file);
+    }
+
+    /**
+     * Get the number of records
+     * @return the number of records indexed
+     */
+    int size() {
+      return to - from;
+    }
+
+    /**
+     * Get where the pairs grouped by player start
+     * @return the offset in the file
+     */
+    int grouped() {
+      return SEGMENT_HEADER + size() * ENTRY + (players + 1) * Integer.BYTES;
+    }
+
+    /**
+     * Get where a player's run starts among the pairs grouped by player
+     * @param player the player id
+     * @return the first entry of the run, or the number of records for ids past the last
+     */
+    int runStart(int player) {
+      return player >= players ? size() : map.getInt(SEGMENT_HEADER + size() * ENTRY + player * Integer.BYTES);
+    }
+
+    /**
+     * Get the number of records of a player
+     * @param player the player id
+     * @return the length of the player's run
+     */
+    int runSize(int player) {
+      return runStart(player + 1) - runStart(player);
+    }
+
+    /**
+     * Count the entries better than a score
+     * @param score the score
+     * @return the number of records with a higher score
+     */
+    int countAbove(int score) {
+      int low = 0;
+      int high = size();
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (map.getInt(SEGMENT_HEADER + middle * ENTRY) > score) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+
+  /**
+   * A position in a run of (score, record) pairs in a segment, or in records of the tail, for merging them with a heap
+   */
+  private class Cursor {
+
+    /**
+     * The segment's file, null for the tail
+     */
+    final ByteBuffer map;
+
+    /**
+     * Where the pairs of the run are counted from in the file
+     */
+    final int base;
+
+    /**
+     * The records of the tail, best first, null for a segment
+     */
+    final int[] tail;
+
+    /**
+     * The entry the cursor is at
+     */
+    int at;
+
+    /**
+     * The entry after the last
+     */
+    final int end;
+
+    /**
+     * Start at the first entry of a run in a segment
+     * @param map the segment's file
+     * @param base where the pairs are counted from
+     * @param from the first entry
+     * @param to the entry after the last
+     */
+    Cursor(ByteBuffer map, int base, int from, int to) {
+      this.map = map;
+      this.base = base;
+      this.tail = null;
+      this.at = from;
+      this.end = to;
+    }
+
+    /**
+     * Start at the best of some records of the tail
+     * @param tail the records, best first
+     */
+    Cursor(int[] tail) {
+      this.map = null;
+      this.base = 0;
+      this.tail = tail;
+      this.at = 0;
+      this.end = tail.length;
+    }
+
+    /**
+     * Get the record the cursor is at
+     * @return the record
+     */
+    int record() {
+      return map != null ? map.getInt(base + at * ENTRY + Integer.BYTES) : tail[at];
+    }
+
+    /**
+     * Get the score of the record the cursor is at
+     * @return the score
+     */
+    int score() {
+      return map != null ? map.getInt(base + at * ENTRY) : ScoreHistory.this.score(tail[at]);
+    }
+
+    /**
+     * Move to the next record
+     * @return false if there are no more
+     */
+    boolean advance() {
+      return ++at < end;
+    }
+  }
+}
@@ -0,0 +1,576 @@
+package uk.ac.soton.comp1206.scores;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.util.AtomicFiles;
+
+/**
+ * The local scores, kept in an append-only log with an index of the best scores beside it.
+ * The log starts with the MAGIC bytes, the VERSION and a random id, then holds one record per score: the length of
+ * the record's data, a CRC32 of it, and the data itself, which is the time, the score and the player's name. Adding a
+ * score only appends one record; nothing already written is touched. A record cut short or damaged by a crash fails
+ * its checksum and is cut off the end of the log when it is next opened.
+ * The index file holds the TOP best scores, the number of scores logged and how much of the log it covers, with the
+ * log's id and a checksum. Opening the log reads the index and only the records after it, so finding the best scores
+ * costs O(TOP) however many games have been logged. The index is rewritten whenever a score makes the top, or once
+ * INDEX_LAG records have been appended since it was written; it is written to a temporary file and renamed over the
+ * old one, so it is always whole. A missing or stale index is rebuilt by reading the whole log.
+ * Once the log holds compactAt scores it is compacted: the best retain scores are written, in the order they were
+ * logged, to a new log with a new id, which is renamed over the old one.
+ */
+public class ScoreLog implements AutoCloseable {
+
+  private static final Logger logger = LogManager.getLogger(ScoreLog.class);
+
+  /**
+   * The bytes every score log starts with
+   */
+  public static final byte[] MAGIC = {'T', 'S', 'C', 'L'};
+
+  /**
+   * The bytes every index starts with
+   */
+  public static final byte[] INDEX_MAGIC = {'T', 'S', 'C', 'I'};
+
+  /**
+   * The version of the format written
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * The extension added to the log's file name for its index
+   */
+  public static final String INDEX_EXTENSION = ".idx";
+
+  /**
+   * The number of best scores kept in the index
+   */
+  public static final int TOP = 10;
+
+  /**
+   * The most records appended after the end of the index before it is written again
+   */
+  public static final int INDEX_LAG = 64;
+
+  /**
+   * The number of scores kept by compaction when no number is given
+   */
+  public static final int RETAIN = 1000;
+
+  /**
+   * The number of scores that starts a compaction when no number is given
+   */
+  public static final int COMPACT_AT = 5000;
+
+  /**
+   * The most characters of a name kept
+   */
+  public static final int MAX_NAME = 64;
+
+  /**
+   * The size of the log's header: magic, version and id
+   */
+  private static final int HEADER = MAGIC.length + 1 + Long.BYTES;
+
+  /**
+   * The size of a record before its data: length and checksum
+   */
+  private static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+  /**
+   * The size of a record's data without the name: time, score and name length
+   */
+  private static final int RECORD_FIXED = Long.BYTES + Integer.BYTES + Short.BYTES;
+
+  /**
+   * The largest record's data
+   */
+  private static final int MAX_RECORD = RECORD_FIXED + MAX_NAME * 3;
+
+  /**
+   * The log
+   */
+  private final Path file;
+
+  /**
+   * The index of the log
+   */
+  private final Path indexFile;
+
+  /**
+   * The number of scores kept by compaction
+   */
+  private final int retain;
+
+  /**
+   * The number of scores that starts a compaction
+   */
+  private final int compactAt;
+
+  /**
+   * The open log
+   */
+  private FileChannel channel;
+
+  /**
+   * The id of the log, written again whenever it is compacted, so an index of an older log is never used
+   */
+  private long id;
+
+  /**
+   * The offset just past the last whole record, where the next is appended
+   */
+  private long end;
+
+  /**
+   * The offset up to which the index covers the log
+   */
+  private long indexed;
+
+  /**
+   * The number of scores in the log
+   */
+  private int count;
+
+  /**
+   * The number of scores appended since the index was written
+   */
+  private int unindexed;
+
+  /**
+   * The best scores, best first; equal scores in the order they were logged
+   */
+  private final ScoreEntry[] top = new ScoreEntry[TOP];
+
+  /**
+   * The number of best scores known
+   */
+  private int topCount;
+
+  /**
+   * Open a log
+   * @param file the log
+   * @param retain the number of scores kept by compaction, at least TOP
+   * @param compactAt the number of scores that starts a compaction, more than retain
+   */
+  private ScoreLog(Path file, int retain, int compactAt) {
+    if (retain < TOP || compactAt <= retain) {
+      throw new IllegalArgumentException("Can't keep " + retain + " of " + compactAt + " scores");
+    }
+    this.file = file;
+    this.indexFile = file.resolveSibling(file.getFileName() + INDEX_EXTENSION);
+    this.retain = retain;
+    this.compactAt = compactAt;
+  }
+
+  /**
+   * Open a score log, creating it if it doesn't exist
+   * @param file the log, its index is kept beside it
+   * @return the log
+   * @throws IOException if the log can't be read or written
+   * @throws IllegalArgumentException if the file isn't a score log
+   */
+  public static ScoreLog open(Path file) throws IOException {
+    return open(file, RETAIN, COMPACT_AT);
+  }
+
+  /**
+   * Open a score log, creating it if it doesn't exist
+   * @param file the log, its index is kept beside it
+   * @param retain the number of scores kept by compaction, at least TOP
+   * @param compactAt the number of scores that starts a compaction, more than retain
+   * @return the log
+   * @throws IOException if the log can't be read or written
+   * @throws IllegalArgumentException if the file isn't a score log
+   */
+  public static ScoreLog open(Path file, int retain, int compactAt) throws IOException {
+    ScoreLog log = new ScoreLog(file, retain, compactAt);
+    try {
+      log.load();
+    } catch (IOException | RuntimeException e) {
+      log.close();
+      throw e;
+    }
+    return log;
+  }
+
+  /**
+   * Get the best scores
+   * @param n the number wanted, at most TOP
+   * @return up to n scores, best first
+   */
+  public List<ScoreEntry> top(int n) {
+    if (n < 0 || n > TOP) {
+      throw new IllegalArgumentException("Only the best " + TOP + " scores are kept, not " + n);
+    }
+    return List.of(Arrays.copyOf(top, Math.min(n, topCount)));
+  }
+
+  /**
+   * Get the best score
+   * @return the best score, null if none have been logged
+   */
+  public ScoreEntry best() {
+    return topCount == 0 ? null : top[0];
+  }
+
+  /**
+   * Log a score, written to the disk before this returns
+   * @param name the player's name, cut to MAX_NAME characters
+   * @param score the points scored
+   * @param time the wall clock time in milliseconds
+   * @return the score as logged
+   * @throws IOException if the log can't be written
+   */
+  public ScoreEntry add(String name, int score, long time) throws IOException {
+    if (name.length() > MAX_NAME) {
+      name = name.substring(0, MAX_NAME);
+    }
+    ScoreEntry entry = new ScoreEntry(name, score, time);
+    ByteBuffer record = encode(entry);
+    int length = record.remaining();
+    while (record.hasRemaining()) {
+      channel.write(record, end + record.position());
+    }
+    channel.force(false);
+    end += length;
+    count++;
+    unindexed++;
+
+    if (offer(entry) || unindexed >= INDEX_LAG) {
+      writeIndex();
+    }
+    if (count >= compactAt) {
+      compact();
+    }
+    return entry;
+  }
+
+  /**
+   * Keep only the best retain scores, writing them to a new log which replaces this one
+   * @throws IOException if the log can't be read or written
+   */
+  public void compact() throws IOException {
+    //Score and position of the best scores, the worst and then the latest at the head so they go first
+    PriorityQueue<long[]> kept = new PriorityQueue<>(retain + 1,
+        Comparator.<long[]>comparingLong(keep -> keep[0]).thenComparingLong(keep -> -keep[1]));
+    List<ScoreEntry> entries = new ArrayList<>();
+    ByteBuffer records = read(HEADER);
+    for (ScoreEntry entry = decode(records); entry != null; entry = decode(records)) {
+      kept.add(new long[] {entry.getScore(), entries.size()});
+      entries.add(entry);
+      if (kept.size() > retain) {
+        kept.poll();
+      }
+    }
+    long[] order = kept.stream().mapToLong(keep -> keep[1]).sorted().toArray();
+
+    long newId = ThreadLocalRandom.current().nextLong();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER + order.length * 32);
+    bytes.write(header(newId).array());
+    for (long index : order) {
+      ByteBuffer record = encode(entries.get((int) index));
+      bytes.write(record.array(), 0, record.limit());
+    }
+    channel.close();
+    try {
+      AtomicFiles.write(file, bytes.toByteArray());
+    } finally {
+      //The new log if it was written, the old one if not
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    logger.info("Compacted {} from {} scores to {}", file, count, order.length);
+    id = newId;
+    end = channel.size();
+    count = order.length;
+    writeIndex();
+  }
+
+  /**
+   * Get the number of scores in the log
+   * @return the number of scores
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Get the log
+   * @return the file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Get the index of the log
+   * @return the file
+   */
+  public Path getIndexFile() {
+    return indexFile;
+  }
+
+  /**
+   * Close the log
+   * @throws IOException if it can't be closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+  /**
+   * Open the log, start it if it is new, read the index and the records after it, and cut off a damaged end
+   * @throws IOException if the log can't be read or written
+   */
+  private void load() throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    if (channel.size() < HEADER) {
+      //New, or created by a crash before the header was written
+      id = ThreadLocalRandom.current().nextLong();
+      channel.truncate(0);
+      channel.write(header(id), 0);
+      channel.force(true);
+    } else {
+      ByteBuffer header = ByteBuffer.allocate(HEADER);
+      while (header.hasRemaining()) {
+        channel.read(header, header.position());
+      }
+      header.flip();
+      byte[] magic = new byte[MAGIC.length];
+      header.get(magic);
+      int version = header.get();
+      if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+        throw new IllegalArgumentException(file + " is not a score log");
+      }
+      id = header.getLong();
+    }
+
+    long size = channel.size();
+    if (!readIndex(size)) {
+      indexed = HEADER;
+      count = 0;
+      topCount = 0;
+    }
+    ByteBuffer records = read(indexed);
+    for (ScoreEntry entry = decode(records); entry != null; entry = decode(records)) {
+      count++;
+      offer(entry);
+    }
+    end = indexed + records.position();
+    if (end < size) {
+      logger.warn("Cutting {} damaged bytes off the end of {}", size - end, file);
+      channel.truncate(end);
+      channel.force(true);
+    }
+    if (end > indexed) {
+      writeIndex();
+    }
+    if (count >= compactAt) {
+      compact();
+    }
+  }
+
+  /**
+   * Read the index, if it is whole and belongs to this log
+   * @param size the size of the log
+   * @return whether the index was read
+   */
+  private boolean readIndex(long size) {
+    if (!Files.exists(indexFile)) {
+      return false;
+    }
+    try {
+      byte[] data = Files.readAllBytes(indexFile);
+      ByteBuffer in = ByteBuffer.wrap(data);
+      CRC32 crc = new CRC32();
+      crc.update(data, 0, data.length - Integer.BYTES);
+      if (in.getInt(data.length - Integer.BYTES) != (int) crc.getValue()) {
+        throw new IllegalArgumentException("checksum");
+      }
+      byte[] magic = new byte[INDEX_MAGIC.length];
+      in.get(magic);
+      if (!Arrays.equals(magic, INDEX_MAGIC) || in.get() != VERSION || in.getLong() != id) {
+        throw new IllegalArgumentException("another log");
+      }
+      long covered = in.getLong();
+      int logged = in.getInt();
+      int known = in.getInt();
+      if (covered < HEADER || covered > size || known > TOP) {
+        throw new IllegalArgumentException("beyond the log");
+      }
+      for (int entry = 0; entry < known; entry++) {
+        top[entry] = readEntry(in);
+      }
+      indexed = covered;
+      count = logged;
+      topCount = known;
+      return true;
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Rebuilding the index of {}: {}", file, e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Write the index of everything logged so far
+   * @throws IOException if the index can't be written
+   */
+  private void writeIndex() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.write(INDEX_MAGIC);
+    out.writeByte(VERSION);
+    out.writeLong(id);
+    out.writeLong(end);
+    out.writeInt(count);
+    out.writeInt(topCount);
+    for (int entry = 0; entry < topCount; entry++) {
+      byte[] name = top[entry].getName().getBytes(StandardCharsets.UTF_8);
+      out.writeLong(top[entry].getTime());
+      out.writeInt(top[entry].getScore());
+      out.writeShort(name.length);
+      out.write(name);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray());
+    out.writeInt((int) crc.getValue());
+    AtomicFiles.write(indexFile, bytes.toByteArray());
+    indexed = end;
+    unindexed = 0;
+  }
+
+  /**
+   * Consider a score for the best scores
+   * @param entry the score, logged after every score already known
+   * @return whether it is one of the best
+   */
+  private boolean offer(ScoreEntry entry) {
+    if (topCount == TOP && entry.getScore() <= top[TOP - 1].getScore()) {
+      return false;
+    }
+    int at = topCount == TOP ? TOP - 1 : topCount++;
+    while (at > 0 && top[at - 1].getScore() < entry.getScore()) {
+      top[at] = top[at - 1];
+      at--;
+    }
+    top[at] = entry;
+    return true;
+  }
+
+  /**
+   * Read the log from an offset to its end
+   * @param from the offset
+   * @return the bytes read, positioned at the start
+   * @throws IOException if the log can't be read
+   */
+  private ByteBuffer read(long from) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - from));
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, from + buffer.position()) < 0) {
+        break;
+      }
+    }
+    return buffer.flip();
+  }
+
+  /**
+   * Read the next record
+   * @param in the records, moved past the record if it is whole
+   * @return the score, null at the end or at a record cut short or damaged
+   */
+  private static ScoreEntry decode(ByteBuffer in) {
+    if (in.remaining() < RECORD_HEADER) {
+      return null;
+    }
+    int start = in.position();
+    int length = in.getInt(start);
+    if (length < RECORD_FIXED || length > MAX_RECORD || in.remaining() < RECORD_HEADER + length) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(in.array(), in.arrayOffset() + start + RECORD_HEADER, length);
+    if (in.getInt(start + Integer.BYTES) != (int) crc.getValue()) {
+      return null;
+    }
+    ByteBuffer data = in.slice(start + RECORD_HEADER, length);
+    try {
+      ScoreEntry entry = readEntry(data);
+      if (data.hasRemaining()) {
+        return null;
+      }
+      in.position(start + RECORD_HEADER + length);
+      return entry;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Encode a score as a record
+   * @param entry the score
+   * @return the record, ready to be written
+   */
+  private static ByteBuffer encode(ScoreEntry entry) {
+    byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+    int length = RECORD_FIXED + name.length;
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + length);
+    record.putInt(length);
+    record.putInt(0);
+    record.putLong(entry.getTime());
+    record.putInt(entry.getScore());
+    record.putShort((short) name.length);
+    record.put(name);
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), RECORD_HEADER, length);
+    record.putInt(Integer.BYTES, (int) crc.getValue());
+    return record.flip();
+  }
+
+  /**
+   * Read the time, score and name of a score
+   * @param in where to read it from, moved past it
+   * @return the score
+   */
+  private static ScoreEntry readEntry(ByteBuffer in) {
+    long time = in.getLong();
+    int score = in.getInt();
+    byte[] name = new byte[in.getShort() & 0xFFFF];
+    in.get(name);
+    return new ScoreEntry(new String(name, StandardCharsets.UTF_8), score, time);
+  }
+
+  /**
+   * Make the header of a log
+   * @param id the id of the log
+   * @return the header, ready to be written
+   */
+  private static ByteBuffer header(long id) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER);
+    header.put(MAGIC);
+    header.put((byte) VERSION);
+    header.putLong(id);
+    return header.flip();
+  }
+}
@@ -0,0 +1,204 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.bot.AutoPlayer;
+import uk.ac.soton.comp1206.bot.Decision;
+import uk.ac.soton.comp1206.bot.Player;
+import uk.ac.soton.comp1206.engine.ClearResult;
+import uk.ac.soton.comp1206.engine.DeadBoardAction;
+import uk.ac.soton.comp1206.engine.EngineListener;
+import uk.ac.soton.comp1206.engine.GameEngine;
+import uk.ac.soton.comp1206.engine.GameLoop;
+import uk.ac.soton.comp1206.engine.PieceSet;
+import uk.ac.soton.comp1206.engine.PieceSource;
+import uk.ac.soton.comp1206.engine.VirtualGameClock;
+
+/**
+ * Plays a batch of games without a window, each on its own seed, and collects the distribution of the results.
+ * Every game uses the same GameEngine rules as a game on screen, with the dead board action the Game uses, and runs its
+ * GameLoop on a VirtualGameClock, so the timer still takes lives but no real time passes. The player thinks for a
+ * fixed amount of game time before every move.
+ * The seeds are split into chunks which run in parallel. Each chunk makes its own player, as players are not thread
+ * safe, and fills its own results, which are merged at the end.
+ */
+public class BatchSimulation {
+
+  private static final Logger logger = LogManager.getLogger(BatchSimulation.class);
+
+  /**
+   * The most games in one chunk
+   */
+  private static final int CHUNK = 256;
+
+  /**
+   * The size of the boards
+   */
+  private final int cols, rows;
+
+  /**
+   * Makes a player for a chunk from the first seed of the chunk
+   */
+  private final LongFunction<Player> players;
+
+  /**
+   * Game time the player thinks before every move, in milliseconds
+   */
+  private long think = 0;
+
+  /**
+   * The most pieces played in one game, so a player that never loses still finishes
+   */
+  private int maxPieces = 10_000;
+
+  /**
+   * The set the pieces are dealt from
+   */
+  private PieceSet pieceSet = PieceSet.standard();
+
+  /**
+   * Create a new simulation
+   * @param cols number of columns of the boards
+   * @param rows number of rows of the boards
+   * @param players makes a player for each chunk of games from the first seed of the chunk
+   */
+  public BatchSimulation(int cols, int rows, LongFunction<Player> players) {
+    this.cols = cols;
+    this.rows = rows;
+    this.players = players;
+  }
+
+  /**
+   * Set how long the player thinks before every move
+   * @param think game time in milliseconds, 0 to play instantly
+   */
+  public void setThink(long think) {
+    this.think = Math.max(0, think);
+  }
+
+  /**
+   * Set the most pieces played in one game
+   * @param maxPieces the number of pieces
+   */
+  public void setMaxPieces(int maxPieces) {
+    this.maxPieces = Math.max(1, maxPieces);
+  }
+
+  /**
+   * Set the set the pieces are dealt from
+   * @param pieceSet the piece set
+   */
+  public void setPieceSet(PieceSet pieceSet) {
+    this.pieceSet = pieceSet;
+  }
+
+  /**
+   * Play a batch of games, one for each seed in a range
+   * @param firstSeed the seed of the first game
+   * @param games the number of games
+   * @param executor runs the chunks of games, for example a fixed pool of platform threads
+   * @return the results of every game
+   * @throws InterruptedException if interrupted while waiting for the games
+   */
+  public SimulationResults run(long firstSeed, int games, ExecutorService executor) throws InterruptedException {
+    List<Future<SimulationResults>> chunks = new ArrayList<>();
+    for (int start = 0; start < games; start += CHUNK) {
+      long seed = firstSeed + start;
+      int count = Math.min(CHUNK, games - start);
+      chunks.add(executor.submit(() -> runChunk(seed, count)));
+    }
+
+    SimulationResults results = new SimulationResults();
+    for (Future<SimulationResults> chunk : chunks) {
+      try {
+        results.addAll(chunk.get());
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Simulation failed", e.getCause());
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Create an executor for run, with one task per virtual thread if asked for and the Java runtime has them
+   * @param threads the number of platform threads, used when virtual threads are not asked for or not available
+   * @param virtual whether to use virtual threads
+   * @return the executor
+   */
+  public static ExecutorService createExecutor(int threads, boolean virtual) {
+    if (virtual) {
+      try {
+        //Looked up by name, so the game still builds and runs on Java versions without virtual threads
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        logger.warn("Virtual threads are not available in Java {}, using {} platform threads",
+            Runtime.version().feature(), threads);
+      }
+    }
+    return Executors.newFixedThreadPool(Math.max(1, threads));
+  }
+
+  /**
+   * Play a chunk of games with one player
+   * @param firstSeed the seed of the first game
+   * @param games the number of games
+   * @return the results of the chunk
+   */
+  private SimulationResults runChunk(long firstSeed, int games) {
+    Player player = players.apply(firstSeed);
+    SimulationResults results = new SimulationResults();
+    for (int game = 0; game < games; game++) {
+      play(firstSeed + game, player, results);
+    }
+    return results;
+  }
+
+  /**
+   * Play one game to the end, or until the piece limit
+   * @param seed the seed of the pieces
+   * @param player chooses the moves
+   * @param results where to add the result
+   */
+  private void play(long seed, Player player, SimulationResults results) {
+    GameEngine engine = new GameEngine(cols, rows, PieceSource.random(seed, pieceSet));
+    engine.setDeadBoardAction(DeadBoardAction.SKIP_PIECE);
+    int[] lines = {0};
+    engine.setListener(new EngineListener() {
+      @Override
+      public void linesCleared(ClearResult cleared) {
+        lines[0] += cleared.getLines();
+      }
+    });
+    VirtualGameClock clock = new VirtualGameClock();
+    GameLoop loop = new GameLoop(engine, clock, Runnable::run);
+    engine.start();
+    loop.start();
+
+    int pieces = 0;
+    while (!engine.isOver() && pieces < maxPieces) {
+      if (think > 0) {
+        clock.advance(think);
+        if (engine.isOver()) {
+          break;
+        }
+      }
+      Decision decision = player.decide(engine);
+      if (decision != null && AutoPlayer.apply(engine, decision)) {
+        pieces++;
+        loop.reset();
+      } else if (!clock.advanceToNext()) {
+        //Nothing can be played and the timer has stopped
+        break;
+      }
+    }
+    loop.stop();
+    results.add(engine.getScore(), engine.getLevel(), lines[0], pieces, clock.now());
+  }
+}
@@ -0,0 +1,149 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.Arrays;
+
+/**
+ * Every value of one measurement over a batch of games, such as the final score. Values are kept in a growable int
+ * array, so percentiles and histograms are exact. Distributions filled by different threads are merged at the end.
+ */
+public class Distribution {
+
+  /**
+   * The values, the first count are used
+   */
+  private int[] values = new int[1024];
+
+  /**
+   * The number of values
+   */
+  private int count = 0;
+
+  /**
+   * Whether the values are sorted
+   */
+  private boolean sorted = true;
+
+  /**
+   * Create an empty distribution
+   */
+  public Distribution() {
+  }
+
+  /**
+   * Add a value
+   * @param value the value
+   */
+  public void add(int value) {
+    if (count == values.length) {
+      values = Arrays.copyOf(values, count * 2);
+    }
+    values[count++] = value;
+    sorted = false;
+  }
+
+  /**
+   * Add every value of another distribution
+   * @param other the other distribution
+   */
+  public void addAll(Distribution other) {
+    if (count + other.count > values.length) {
+      values = Arrays.copyOf(values, Math.max(values.length * 2, count + other.count));
+    }
+    System.arraycopy(other.values, 0, values, count, other.count);
+    count += other.count;
+    sorted = false;
+  }
+
+  /**
+   * @return the number of values
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @return the mean of the values, 0 if there are none
+   */
+  public double getMean() {
+    if (count == 0) {
+      return 0;
+    }
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += values[i];
+    }
+    return sum / count;
+  }
+
+  /**
+   * @return the standard deviation of the values, 0 if there are fewer than two
+   */
+  public double getStandardDeviation() {
+    if (count < 2) {
+      return 0;
+    }
+    double mean = getMean(), squares = 0;
+    for (int i = 0; i < count; i++) {
+      squares += (values[i] - mean) * (values[i] - mean);
+    }
+    return Math.sqrt(squares / (count - 1));
+  }
+
+  /**
+   * @return the smallest value, 0 if there are none
+   */
+  public int getMin() {
+    return count == 0 ? 0 : sorted().values[0];
+  }
+
+  /**
+   * @return the largest value, 0 if there are none
+   */
+  public int getMax() {
+    return count == 0 ? 0 : sorted().values[count - 1];
+  }
+
+  /**
+   * Get a percentile of the values, by the nearest rank
+   * @param fraction the percentile as a fraction, 0.5 for the median
+   * @return the smallest value with at least the fraction of values at or below it, 0 if there are none
+   */
+  public int getPercentile(double fraction) {
+    if (count == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(fraction * count);
+    return sorted().values[Math.min(count - 1, Math.max(0, rank - 1))];
+  }
+
+  /**
+   * Count the values in equal width bins from the smallest to the largest value
+   * @param bins the most bins to use, fewer are used if the values span fewer integers
+   * @return the width of each bin followed by the number of values in each bin
+   */
+  public long[] getHistogram(int bins) {
+    if (count == 0) {
+      return new long[] {1};
+    }
+    long min = getMin(), span = (long) getMax() - min + 1;
+    long width = (span + bins - 1) / bins;
+    long[] histogram = new long[1 + (int) ((span + width - 1) / width)];
+    histogram[0] = width;
+    for (int i = 0; i < count; i++) {
+      histogram[1 + (int) ((values[i] - min) / width)]++;
+    }
+    return histogram;
+  }
+
+  /**
+   * Sort the values if they changed since they were last sorted
+   * @return this distribution
+   */
+  private Distribution sorted() {
+    if (!sorted) {
+      Arrays.sort(values, 0, count);
+      sorted = true;
+    }
+    return this;
+  }
+}
@@ -0,0 +1,100 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the results of a simulation as CSV or JSON. Both list the summary of every measurement: the number of games,
+ * mean, standard deviation, minimum, percentiles and maximum. JSON also includes a histogram of each measurement.
+ */
+public class ResultWriter {
+
+  /**
+   * The percentiles written, as fractions
+   */
+  private static final double[] PERCENTILES = {0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99};
+
+  /**
+   * The most bins in a histogram
+   */
+  private static final int BINS = 20;
+
+  /**
+   * Only used through its static methods
+   */
+  private ResultWriter() {
+  }
+
+  /**
+   * Write results to a file, as JSON if the name ends in .json and CSV otherwise
+   * @param results the results
+   * @param file the file
+   * @throws IOException if the file can't be written
+   */
+  public static void write(SimulationResults results, Path file) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")) {
+        writeJson(results, writer);
+      } else {
+        writeCsv(results, writer);
+      }
+    }
+  }
+
+  /**
+   * Write results as CSV, one row per measurement
+   * @param results the results
+   * @param out where to write
+   */
+  public static void writeCsv(SimulationResults results, Writer out) {
+    PrintWriter writer = new PrintWriter(out);
+    writer.print("metric,count,mean,stddev,min");
+    for (double percentile : PERCENTILES) {
+      writer.print(",p" + Math.round(percentile * 100));
+    }
+    writer.println(",max");
+    for (Map.Entry<String, Distribution> metric : results.getMetrics().entrySet()) {
+      Distribution distribution = metric.getValue();
+      writer.printf(Locale.ROOT, "%s,%d,%.3f,%.3f,%d", metric.getKey(), distribution.getCount(),
+          distribution.getMean(), distribution.getStandardDeviation(), distribution.getMin());
+      for (double percentile : PERCENTILES) {
+        writer.print("," + distribution.getPercentile(percentile));
+      }
+      writer.println("," + distribution.getMax());
+    }
+    writer.flush();
+  }
+
+  /**
+   * Write results as a JSON object with one member per measurement
+   * @param results the results
+   * @param out where to write
+   */
+  public static void writeJson(SimulationResults results, Writer out) {
+    PrintWriter writer = new PrintWriter(out);
+    writer.printf("{%n  \"games\": %d", results.getGames());
+    for (Map.Entry<String, Distribution> metric : results.getMetrics().entrySet()) {
+      Distribution distribution = metric.getValue();
+      writer.printf(Locale.ROOT, ",%n  \"%s\": {%n    \"mean\": %.3f,%n    \"stddev\": %.3f,%n    \"min\": %d,%n",
+          metric.getKey(), distribution.getMean(), distribution.getStandardDeviation(), distribution.getMin());
+      for (double percentile : PERCENTILES) {
+        writer.printf("    \"p%d\": %d,%n", Math.round(percentile * 100), distribution.getPercentile(percentile));
+      }
+      long[] histogram = distribution.getHistogram(BINS);
+      writer.printf("    \"max\": %d,%n    \"histogram\": {\"from\": %d, \"width\": %d, \"counts\": [",
+          distribution.getMax(), distribution.getMin(), histogram[0]);
+      for (int bin = 1; bin < histogram.length; bin++) {
+        writer.print((bin > 1 ? ", " : "") + histogram[bin]);
+      }
+      writer.printf("]}%n  }");
+    }
+    writer.printf("%n}%n");
+    writer.flush();
+  }
+}
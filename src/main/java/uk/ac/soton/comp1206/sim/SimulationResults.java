@@ -0,0 +1,84 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The results of a batch of simulated games: the distribution of the final score, level, lines cleared, pieces
+ * played and game length over every game
+ */
+public class SimulationResults {
+
+  /**
+   * The distributions, by the name of the measurement
+   */
+  private final Map<String, Distribution> metrics = new LinkedHashMap<>();
+
+  /**
+   * The distributions of each measurement
+   */
+  private final Distribution score, level, lines, pieces, time;
+
+  /**
+   * Create new, empty results
+   */
+  public SimulationResults() {
+    score = metric("score");
+    level = metric("level");
+    lines = metric("lines");
+    pieces = metric("pieces");
+    time = metric("time_ms");
+  }
+
+  /**
+   * Add the result of one game
+   * @param score the final score
+   * @param level the final level
+   * @param lines the number of lines cleared
+   * @param pieces the number of pieces played
+   * @param time the length of the game in milliseconds of game time
+   */
+  public void add(int score, int level, int lines, int pieces, long time) {
+    this.score.add(score);
+    this.level.add(level);
+    this.lines.add(lines);
+    this.pieces.add(pieces);
+    this.time.add((int) Math.min(Integer.MAX_VALUE, time));
+  }
+
+  /**
+   * Add every game of other results
+   * @param other the other results
+   */
+  public void addAll(SimulationResults other) {
+    for (Map.Entry<String, Distribution> metric : metrics.entrySet()) {
+      metric.getValue().addAll(other.metrics.get(metric.getKey()));
+    }
+  }
+
+  /**
+   * @return the number of games
+   */
+  public int getGames() {
+    return score.getCount();
+  }
+
+  /**
+   * Get every distribution, by the name of the measurement, in a fixed order
+   * @return the distributions
+   */
+  public Map<String, Distribution> getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Create and register a distribution
+   * @param name the name of the measurement
+   * @return the distribution
+   */
+  private Distribution metric(String name) {
+    Distribution distribution = new Distribution();
+    metrics.put(name, distribution);
+    return distribution;
+  }
+}
@@ -11,8 +11,11 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.App;
 import uk.ac.soton.comp1206.component.LeaderBoard;
+import uk.ac.soton.comp1206.engine.Checkpoint;
+import uk.ac.soton.comp1206.engine.PieceSet;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.replay.ReplayFile;
 import uk.ac.soton.comp1206.scene.*;
 
 /**
@@ -85,9 +88,48 @@ public class GameWindow {
 
     /**
      * Display the single player challenge
+     * @param cols number of columns of the board
+     * @param rows number of rows of the board
+     * @param pieces the set of pieces to play with
      */
-    public void startChallenge() {
-        loadScene(new ChallengeScene(this));
+    public void startChallenge(int cols, int rows, PieceSet pieces) {
+        loadScene(new ChallengeScene(this, ChallengeScene.Mode.CHALLENGE, cols, rows, pieces));
+    }
+
+    /**
+     * Display a practice challenge, where moves can be undone
+     * @param cols number of columns of the board
+     * @param rows number of rows of the board
+     * @param pieces the set of pieces to play with
+     */
+    public void startPractice(int cols, int rows, PieceSet pieces) {
+        loadScene(new ChallengeScene(this, ChallengeScene.Mode.PRACTICE, cols, rows, pieces));
+    }
+
+    /**
+     * Display a challenge played by the AutoPlayer
+     * @param cols number of columns of the board
+     * @param rows number of rows of the board
+     * @param pieces the set of pieces to play with
+     */
+    public void startAutoplay(int cols, int rows, PieceSet pieces) {
+        loadScene(new ChallengeScene(this, ChallengeScene.Mode.AUTOPLAY, cols, rows, pieces));
+    }
+
+    /**
+     * Display a saved single player game, carrying on where it was left
+     * @param checkpoint the saved game
+     */
+    public void startResumed(Checkpoint checkpoint) {
+        loadScene(new ChallengeScene(this, checkpoint));
+    }
+
+    /**
+     * Display a recorded game being played back
+     * @param replay the replay
+     */
+    public void startReplay(ReplayFile replay) {
+        loadScene(new ChallengeScene(this, replay));
     }
 
     /**
@@ -0,0 +1,65 @@
+package uk.ac.soton.comp1206.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes files whole or not at all. The data goes to a temporary file beside the file, which is forced to the disk and
+ * then renamed over the old one, so after a crash or a power cut the file is either as it was or completely new.
+ */
+public class AtomicFiles {
+
+  /**
+   * Only used through its static methods
+   */
+  private AtomicFiles() {
+  }
+
+  /**
+   * Write a file whole or not at all, creating its directory if needed
+   * @param file the file
+   * @param data everything in it
+   * @throws IOException if the file can't be written
+   */
+  public static void write(Path file, byte[] data) throws IOException {
+    Path absolute = file.toAbsolutePath();
+    Path parent = absolute.getParent();
+    Files.createDirectories(parent);
+    Path temp = Files.createTempFile(parent, absolute.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+          out.write(buffer);
+        }
+        out.force(true);
+      }
+      try {
+        Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    forceDirectory(parent);
+  }
+
+  /**
+   * Make a rename in a directory survive a power cut, where the system allows a directory to be opened
+   * @param directory the directory
+   */
+  private static void forceDirectory(Path directory) {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      //Windows can't open a directory; the rename is as durable as it will be told to be
+    }
+  }
+}